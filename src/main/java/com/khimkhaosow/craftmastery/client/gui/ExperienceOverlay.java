@@ -9,7 +9,7 @@ import net.minecraftforge.client.event.RenderGameOverlayEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 
 // 1. Добавь импорты для недостающих классов:
-import com.khimkhaosow.craftmastery.experience.ExperienceManager;
+import com.khimkhaosow.craftmastery.experience.ClientExperienceState;
 import com.khimkhaosow.craftmastery.experience.PlayerExperienceData; // Импорт PlayerExperienceData
 import com.khimkhaosow.craftmastery.experience.ExperienceType;       // Импорт ExperienceType
 import com.khimkhaosow.craftmastery.util.Reference; // Импорт Reference, предполагается, что он находится в util
@@ -30,6 +30,12 @@ public class ExperienceOverlay extends Gui {
     private String lastExperienceType;
     private int fadeOutTicks;
 
+    // Тексты полосы опыта пересобираются только при изменении данных
+    private PlayerExperienceData textData;
+    private int textRevision = -1;
+    private String levelText;
+    private String xpText;
+
     public ExperienceOverlay() {
         this.mc = Minecraft.getMinecraft();
         this.fadeOutTicks = 0;
@@ -41,7 +47,7 @@ public class ExperienceOverlay extends Gui {
         if (mc.player == null) return;
 
         // 3. Теперь PlayerExperienceData должен быть найден
-        PlayerExperienceData data = ExperienceManager.getInstance().getPlayerData(mc.player);
+        PlayerExperienceData data = ClientExperienceState.getInstance().getData();
         if (data == null) return;
 
         ScaledResolution scaledRes = new ScaledResolution(mc);
@@ -67,16 +73,21 @@ public class ExperienceOverlay extends Gui {
         drawTexturedModalRect(x, y, 0, 0, BAR_WIDTH, BAR_HEIGHT);
 
         // Заполнение прогресс-бара
-        float progress = data.getLevelProgress() / 100.0f;
+        float progress = data.getLevelProgressFraction();
         int fillWidth = (int)(BAR_WIDTH * progress);
         drawTexturedModalRect(x, y, 0, BAR_HEIGHT, fillWidth, BAR_HEIGHT);
 
+        if (data != textData || data.getRevision() != textRevision) {
+            textData = data;
+            textRevision = data.getRevision();
+            levelText = String.format("Уровень %d", data.getLevel());
+            xpText = String.format("%.0f / %.0f XP", data.getCurrentLevelExperience(), data.getExperienceForNextLevel());
+        }
+
         // Текст уровня
-        String levelText = String.format("Уровень %d", data.getLevel());
         drawCenteredString(mc.fontRenderer, levelText, x + BAR_WIDTH/2, y - 10, XP_NUMBER_COLOR);
 
         // Текст опыта
-        String xpText = String.format("%.0f / %.0f XP", data.getCurrentLevelExperience(), data.getExperienceForNextLevel());
         drawCenteredString(mc.fontRenderer, xpText, x + BAR_WIDTH/2, y + BAR_HEIGHT + 2, XP_NUMBER_COLOR);
 
         GlStateManager.disableBlend();
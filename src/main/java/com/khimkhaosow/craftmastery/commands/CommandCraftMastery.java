@@ -9,6 +9,8 @@ import com.khimkhaosow.craftmastery.experience.PlayerExperienceData;
 import com.khimkhaosow.craftmastery.experience.PointsType;
 import com.khimkhaosow.craftmastery.permissions.PermissionManager;
 import com.khimkhaosow.craftmastery.permissions.PermissionType;
+import com.khimkhaosow.craftmastery.recipe.PrerequisiteGraph;
+import com.khimkhaosow.craftmastery.recipe.RecipeManager;
 import com.khimkhaosow.craftmastery.tabs.TabManager;
 
 import net.minecraft.command.CommandBase;
@@ -25,6 +27,9 @@ import net.minecraft.util.text.TextFormatting;
  */
 public class CommandCraftMastery extends CommandBase {
 
+    // Сколько проблем графа выводить в чат
+    private static final int MAX_GRAPH_PROBLEMS_SHOWN = 15;
+
     private final List<String> aliases;
 
     public CommandCraftMastery() {
@@ -38,7 +43,7 @@ public class CommandCraftMastery extends CommandBase {
 
     @Override
     public String getUsage(ICommandSender sender) {
-        return "/craftmastery <points|experience|tab|permission|reset|info> [параметры]";
+        return "/craftmastery <points|experience|tab|permission|reset|info|graph> [параметры]";
     }
 
     @Override
@@ -81,6 +86,9 @@ public class CommandCraftMastery extends CommandBase {
             case "info":
                 handleInfoCommand(server, sender, Arrays.copyOfRange(args, 1, args.length));
                 break;
+            case "graph":
+                handleGraphCommand(sender);
+                break;
             case "help":
                 showHelp(sender);
                 break;
@@ -129,17 +137,16 @@ public class CommandCraftMastery extends CommandBase {
             return;
         }
 
-        PlayerExperienceData data = ExperienceManager.getInstance().getPlayerData(player);
+        ExperienceManager experience = ExperienceManager.getInstance();
 
         switch (action) {
             case "give":
-                data.addPoints(pointsType, amount);
+                experience.addPoints(player, pointsType, amount);
                 sender.sendMessage(new TextComponentString(TextFormatting.GREEN +
                     "Выдано " + amount + " " + pointsType.getDisplayName() + " игроку " + playerName));
                 break;
             case "take":
-                if (data.getPoints(pointsType) >= amount) {
-                    data.spendPoints(pointsType, amount);
+                if (experience.spendPoints(player, pointsType, amount)) {
                     sender.sendMessage(new TextComponentString(TextFormatting.GREEN +
                         "Снято " + amount + " " + pointsType.getDisplayName() + " у игрока " + playerName));
                 } else {
@@ -147,10 +154,7 @@ public class CommandCraftMastery extends CommandBase {
                 }
                 break;
             case "set":
-                // Сбрасываем до 0 и добавляем нужное количество
-                int current = data.getPoints(pointsType);
-                data.spendPoints(pointsType, current);
-                data.addPoints(pointsType, amount);
+                experience.setPoints(player, pointsType, amount);
                 sender.sendMessage(new TextComponentString(TextFormatting.GREEN +
                     "Установлено " + amount + " " + pointsType.getDisplayName() + " игроку " + playerName));
                 break;
@@ -189,11 +193,10 @@ public class CommandCraftMastery extends CommandBase {
             return;
         }
 
-        PlayerExperienceData data = ExperienceManager.getInstance().getPlayerData(player);
-
         switch (action) {
             case "give":
-                data.addExperience(com.khimkhaosow.craftmastery.experience.ExperienceType.BLOCK_MINING, amount);
+                ExperienceManager.getInstance().giveExperience(player,
+                    com.khimkhaosow.craftmastery.experience.ExperienceType.BLOCK_MINING, amount);
                 sender.sendMessage(new TextComponentString(TextFormatting.GREEN +
                     "Выдано " + amount + " опыта игроку " + playerName));
                 break;
@@ -316,7 +319,46 @@ public class CommandCraftMastery extends CommandBase {
     }
 
     private void handlePermissionCommand(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
-        sender.sendMessage(new TextComponentString(TextFormatting.RED + "Команда permissions еще не реализована"));
+        if (args.length < 1) {
+            sender.sendMessage(new TextComponentString(TextFormatting.RED + "Использование: /craftmastery permission <reload|roles>"));
+            return;
+        }
+
+        PermissionManager permissionManager = PermissionManager.getInstance();
+        EntityPlayer senderPlayer = sender instanceof EntityPlayer ? (EntityPlayer) sender : null;
+        if (senderPlayer != null && !permissionManager.hasPermission(senderPlayer, PermissionType.MANAGE_PERMISSIONS)) {
+            sender.sendMessage(new TextComponentString(TextFormatting.RED + "У вас нет прав на управление правами доступа"));
+            return;
+        }
+
+        String action = args[0].toLowerCase();
+
+        switch (action) {
+            case "reload":
+                if (permissionManager.reloadRoles()) {
+                    sender.sendMessage(new TextComponentString(TextFormatting.GREEN + "Роли перезагружены из permissions.json"));
+                } else {
+                    sender.sendMessage(new TextComponentString(TextFormatting.RED + "Не удалось загрузить permissions.json, оставлены прежние роли (см. лог сервера)"));
+                }
+                break;
+            case "roles":
+                if (args.length < 2) {
+                    sender.sendMessage(new TextComponentString(TextFormatting.RED + "Использование: /craftmastery permission roles <игрок>"));
+                    return;
+                }
+                EntityPlayer player = server.getPlayerList().getPlayerByUsername(args[1]);
+                if (player == null) {
+                    sender.sendMessage(new TextComponentString(TextFormatting.RED + "Игрок не найден: " + args[1]));
+                    return;
+                }
+                List<String> roles = permissionManager.getPlayerRoles(player);
+                sender.sendMessage(new TextComponentString(TextFormatting.GOLD + "Роли игрока " + player.getName() + ": " +
+                    TextFormatting.WHITE + (roles.isEmpty() ? "нет" : String.join(", ", roles))));
+                break;
+            default:
+                sender.sendMessage(new TextComponentString(TextFormatting.RED + "Неверное действие: " + action));
+                break;
+        }
     }
 
     private void handleResetCommand(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
@@ -345,10 +387,8 @@ public class CommandCraftMastery extends CommandBase {
                 sender.sendMessage(new TextComponentString(TextFormatting.GREEN + "Сброс опыта игрока " + playerName));
                 break;
             case "points":
-                PlayerExperienceData data = ExperienceManager.getInstance().getPlayerData(player);
                 for (PointsType type : PointsType.values()) {
-                    int current = data.getPoints(type);
-                    data.spendPoints(type, current);
+                    ExperienceManager.getInstance().setPoints(player, type, 0);
                 }
                 sender.sendMessage(new TextComponentString(TextFormatting.GREEN + "Сброс очков игрока " + playerName));
                 break;
@@ -379,6 +419,29 @@ public class CommandCraftMastery extends CommandBase {
         showPlayerInfo(sender, player);
     }
 
+    private void handleGraphCommand(ICommandSender sender) {
+        PrerequisiteGraph graph = RecipeManager.getInstance().getPrerequisiteGraph();
+        List<String> problems = graph.getProblems();
+
+        sender.sendMessage(new TextComponentString(TextFormatting.GOLD + "=== Граф связей рецептов ==="));
+        sender.sendMessage(new TextComponentString("Рецептов: " + TextFormatting.WHITE + graph.getRecipeCount()
+            + TextFormatting.RESET + ", узлов: " + TextFormatting.WHITE + graph.getNodeCount()));
+
+        if (problems.isEmpty()) {
+            sender.sendMessage(new TextComponentString(TextFormatting.GREEN + "Циклов и битых ссылок не найдено"));
+            return;
+        }
+
+        sender.sendMessage(new TextComponentString(TextFormatting.RED + "Проблем: " + problems.size()));
+        int shown = Math.min(problems.size(), MAX_GRAPH_PROBLEMS_SHOWN);
+        for (int i = 0; i < shown; i++) {
+            sender.sendMessage(new TextComponentString(TextFormatting.YELLOW + "- " + problems.get(i)));
+        }
+        if (shown < problems.size()) {
+            sender.sendMessage(new TextComponentString(TextFormatting.GRAY + "... и ещё " + (problems.size() - shown) + " (см. лог сервера)"));
+        }
+    }
+
     private void showGeneralInfo(ICommandSender sender) {
         sender.sendMessage(new TextComponentString(TextFormatting.GOLD + "=== CraftMastery ==="));
         sender.sendMessage(new TextComponentString(TextFormatting.WHITE + "Вкладок: " + TabManager.getInstance().getTabCount()));
@@ -407,7 +470,8 @@ public class CommandCraftMastery extends CommandBase {
         sender.sendMessage(new TextComponentString(TextFormatting.WHITE + "/craftmastery tab <create|delete|info|list> - управление вкладками"));
         sender.sendMessage(new TextComponentString(TextFormatting.WHITE + "/craftmastery reset <игрок> <all|experience|points|tabs> - сброс данных"));
         sender.sendMessage(new TextComponentString(TextFormatting.WHITE + "/craftmastery info [игрок] - информация"));
-        sender.sendMessage(new TextComponentString(TextFormatting.WHITE + "/craftmastery permission - управление правами (скоро)"));
+        sender.sendMessage(new TextComponentString(TextFormatting.WHITE + "/craftmastery permission <reload|roles> - роли и права доступа"));
+        sender.sendMessage(new TextComponentString(TextFormatting.WHITE + "/craftmastery graph - проверка связей рецептов и дерева"));
         sender.sendMessage(new TextComponentString(TextFormatting.WHITE + "/craftmastery help - эта справка"));
     }
 
@@ -416,7 +480,7 @@ public class CommandCraftMastery extends CommandBase {
         List<String> completions = new ArrayList<>();
 
         if (args.length == 1) {
-            completions.addAll(Arrays.asList("points", "experience", "tab", "permission", "reset", "info", "help"));
+            completions.addAll(Arrays.asList("points", "experience", "tab", "permission", "reset", "info", "graph", "help"));
         } else if (args.length == 2) {
             String command = args[0].toLowerCase();
             switch (command) {
@@ -430,6 +494,10 @@ public class CommandCraftMastery extends CommandBase {
                 case "tab":
                     completions.addAll(Arrays.asList("create", "delete", "info", "list"));
                     break;
+                case "permission":
+                case "perm":
+                    completions.addAll(Arrays.asList("reload", "roles"));
+                    break;
                 case "reset":
                     completions.addAll(Arrays.asList("all", "experience", "points", "tabs"));
                     break;
@@ -442,7 +510,7 @@ public class CommandCraftMastery extends CommandBase {
             }
         } else if (args.length == 3) {
             String command = args[0].toLowerCase();
-            if (command.equals("points")) {
+            if (command.equals("points") || ((command.equals("permission") || command.equals("perm")) && args[1].equals("roles"))) {
                 // Добавляем имена игроков
                 for (EntityPlayer player : server.getPlayerList().getPlayers()) {
                     completions.add(player.getName());
@@ -114,17 +114,19 @@ public class CommandExperience extends CommandBase {
         PlayerExperienceData data = ExperienceManager.getInstance().getPlayerData(target);
         if (type.equals("LEVEL")) {
             data.setLevel((int)amount);
+            ExperienceManager.getInstance().commitPlayerData(target);
             NotificationHelper.sendSuccessMessage(target, String.format("Установлен уровень %d", (int)amount));
         } else if (type.equals("POINTS")) {
             if (args.length < 5) {
                 throw new WrongUsageException("commands.craftexp.set.points.usage");
             }
             PointsType pointsType = PointsType.valueOf(args[4].toUpperCase());
-            data.setPoints(pointsType, (int)amount);
+            ExperienceManager.getInstance().setPoints(target, pointsType, (int)amount);
             NotificationHelper.sendSuccessMessage(target, String.format("Установлено %d очков типа %s", (int)amount, pointsType.getDisplayName()));
         } else {
             ExperienceType expType = ExperienceType.valueOf(type);
             data.setExperience(expType, amount);
+            ExperienceManager.getInstance().commitPlayerData(target);
             NotificationHelper.sendSuccessMessage(target, String.format("Установлено %.1f опыта типа %s", amount, expType.getDisplayName()));
         }
     }
@@ -0,0 +1,244 @@
+package com.khimkhaosow.craftmastery.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.stream.JsonWriter;
+import com.khimkhaosow.craftmastery.CraftMastery;
+
+/**
+ * Отложенное сохранение файлов конфигурации в фоновом потоке.
+ * Запрос сохранения по ключу откладывается на SAVE_DELAY_MILLIS после последнего запроса
+ * (но не дольше MAX_DELAY_MILLIS от первого), поэтому серия правок даёт одну запись.
+ * Внутри пакетной правки (beginBatch) запросы только накапливаются и планируются при закрытии пакета.
+ * Пакет принадлежит открывшему его потоку: запросы других потоков он не задерживает.
+ * Данные изменяемых объектов снимаются шагом подготовки в вызывающем потоке (сразу или при закрытии пакета),
+ * чтобы поток записи работал только со снятой копией.
+ * Файлы пишутся потоково через JsonWriter во временный файл, который затем атомарно заменяет основной.
+ */
+public class ConfigSaveScheduler {
+
+    private static final long SAVE_DELAY_MILLIS = 500;
+    private static final long MAX_DELAY_MILLIS = 5000;
+
+    private static ConfigSaveScheduler instance;
+
+    private final ScheduledExecutorService executor;
+
+    // Ожидающие сохранения по ключу (порядок запросов сохраняется)
+    private final Map<String, Runnable> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduled;
+    private long firstRequestAt;
+
+    // Открытая пакетная правка текущего потока (null — пакета нет)
+    private final ThreadLocal<BatchState> batches = new ThreadLocal<>();
+
+    // Сохранения выполняются по одному: из фонового потока или из flush()
+    private final Object writeLock = new Object();
+
+    private ConfigSaveScheduler() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CraftMastery Config Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Поток записи — демон, поэтому при выходе из игры отложенные сохранения выполняются здесь
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "CraftMastery Config Flush"));
+    }
+
+    public static synchronized ConfigSaveScheduler getInstance() {
+        if (instance == null) {
+            instance = new ConfigSaveScheduler();
+        }
+        return instance;
+    }
+
+    /**
+     * Запрашивает отложенное сохранение; повторный запрос с тем же ключом заменяет предыдущий
+     */
+    public void request(String key, Runnable save) {
+        BatchState batch = batches.get();
+        if (batch != null) {
+            batch.requests.put(key, new PreparedSave(null, save));
+            return;
+        }
+        enqueue(key, save);
+    }
+
+    /**
+     * Запрашивает отложенное сохранение с подготовкой: prepare снимает данные в вызывающем потоке
+     * (внутри его пакетной правки — один раз, при закрытии пакета), save записывает снятое в потоке сохранения
+     */
+    public void request(String key, Runnable prepare, Runnable save) {
+        BatchState batch = batches.get();
+        if (batch != null) {
+            batch.requests.put(key, new PreparedSave(prepare, save));
+            return;
+        }
+        prepare.run();
+        enqueue(key, save);
+    }
+
+    /**
+     * Начинает пакетную правку в текущем потоке: его сохранения откладываются до закрытия пакета
+     * (пакеты могут быть вложенными; закрывать пакет нужно в том же потоке)
+     */
+    public Batch beginBatch() {
+        BatchState batch = batches.get();
+        if (batch == null) {
+            batch = new BatchState();
+            batches.set(batch);
+        }
+        batch.depth++;
+        return new Batch(batch);
+    }
+
+    /**
+     * Выполняет все ожидающие сохранения в текущем потоке
+     */
+    public void flush() {
+        synchronized (this) {
+            if (scheduled != null) {
+                scheduled.cancel(false);
+                scheduled = null;
+            }
+        }
+        runPending();
+    }
+
+    private void endBatch(BatchState batch) {
+        if (batch.depth == 0 || --batch.depth > 0) return;
+        if (batches.get() == batch) {
+            batches.remove();
+        }
+
+        // Снимаем данные в потоке, закрывающем пакет (вне блокировки планировщика)
+        for (Map.Entry<String, PreparedSave> entry : batch.requests.entrySet()) {
+            PreparedSave request = entry.getValue();
+            try {
+                if (request.prepare != null) {
+                    request.prepare.run();
+                }
+                enqueue(entry.getKey(), request.save);
+            } catch (RuntimeException e) {
+                CraftMastery.logger.error("Failed to prepare deferred config save", e);
+            }
+        }
+    }
+
+    private synchronized void enqueue(String key, Runnable save) {
+        if (pending.isEmpty()) {
+            firstRequestAt = System.currentTimeMillis();
+        }
+        pending.put(key, save);
+        reschedule();
+    }
+
+    private void reschedule() {
+        long delay = Math.min(SAVE_DELAY_MILLIS, Math.max(0L, firstRequestAt + MAX_DELAY_MILLIS - System.currentTimeMillis()));
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+        scheduled = executor.schedule(this::runPending, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void runPending() {
+        synchronized (writeLock) {
+            List<Runnable> saves;
+            synchronized (this) {
+                saves = new ArrayList<>(pending.values());
+                pending.clear();
+            }
+            for (Runnable save : saves) {
+                try {
+                    save.run();
+                } catch (RuntimeException e) {
+                    CraftMastery.logger.error("Deferred config save failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Записывает JSON во временный файл рядом с target и атомарно заменяет им target
+     */
+    public static void writeJsonAtomically(File target, JsonWriteAction action) throws IOException {
+        Path targetPath = target.toPath();
+        Path parent = targetPath.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = targetPath.resolveSibling(targetPath.getFileName() + ".tmp");
+
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8);
+             JsonWriter writer = new JsonWriter(out)) {
+            writer.setIndent("  ");
+            writer.setSerializeNulls(false);
+            action.write(writer);
+        }
+
+        try {
+            Files.move(temp, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, targetPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Запись содержимого файла
+     */
+    public interface JsonWriteAction {
+        void write(JsonWriter writer) throws IOException;
+    }
+
+    /**
+     * Запросы, накопленные пакетной правкой одного потока
+     */
+    private static final class BatchState {
+        final Map<String, PreparedSave> requests = new LinkedHashMap<>();
+        int depth = 0;
+    }
+
+    private static final class PreparedSave {
+        final Runnable prepare;
+        final Runnable save;
+
+        PreparedSave(Runnable prepare, Runnable save) {
+            this.prepare = prepare;
+            this.save = save;
+        }
+    }
+
+    /**
+     * Пакетная правка; закрытие снимает данные и планирует накопленные сохранения
+     */
+    public final class Batch implements AutoCloseable {
+        private final BatchState state;
+        private boolean closed = false;
+
+        private Batch(BatchState state) {
+            this.state = state;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            endBatch(state);
+        }
+    }
+}
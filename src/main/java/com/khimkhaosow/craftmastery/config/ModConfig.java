@@ -1,9 +1,17 @@
 package com.khimkhaosow.craftmastery.config;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
+import org.apache.commons.io.FileUtils;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParser;
 import com.khimkhaosow.craftmastery.CraftMastery;
+import com.khimkhaosow.craftmastery.experience.ExperienceCurve;
 import com.khimkhaosow.craftmastery.experience.ExperienceType;
+import com.khimkhaosow.craftmastery.permissions.PermissionManager;
 
 import net.minecraftforge.common.config.Configuration;
 import net.minecraftforge.fml.common.Loader;
@@ -14,6 +22,9 @@ import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
  */
 public class ModConfig {
 
+    private static final String EXPERIENCE_CURVE_FILE = "experience_curve.json";
+    private static final String PERMISSIONS_FILE = "permissions.json";
+
     private static Configuration config;
 
     // Общие настройки
@@ -36,6 +47,9 @@ public class ModConfig {
     public static float mobKillMultiplier = 1.0f;
     public static float playerKillMultiplier = 1.0f;
 
+    // Окно (в тиках), за которое начисления опыта объединяются в одно обновление
+    public static int experienceBatchTicks = 1;
+
     // Настройки конвертации опыта в очки изучения
     public static float blockMiningToLearningRatio = 0.1f;
     public static float craftingToLearningRatio = 0.5f;
@@ -74,6 +88,20 @@ public class ModConfig {
     public static boolean playersCanManageTabs = false;
     public static boolean playersCanGivePoints = false;
 
+    // Настройки хранения прогресса
+    public static int progressionSaveTicks = 200;
+    public static int offlinePlayerCacheSize = 64;
+    public static boolean progressionJournal = true;
+    public static String progressionBackend = "file";
+    public static String progressionJdbcUrl = "jdbc:sqlite:{world}/data/craftmastery/progression.db";
+
+    // Настройки аудита крафта
+    public static String craftAuditLevel = "blocked";
+    public static int craftAuditSampleRate = 10;
+    public static int craftAuditMaxPerSecond = 5;
+    public static int craftAuditMaxFileSizeKb = 10240;
+    public static int craftAuditMaxFiles = 5;
+
     public static void init(FMLPreInitializationEvent event) {
         File configDir = new File(Loader.instance().getConfigDir(), "CraftMastery");
         if (!configDir.exists()) {
@@ -93,6 +121,27 @@ public class ModConfig {
                 config.save();
             }
         }
+
+        loadExperienceCurve(new File(configDir, EXPERIENCE_CURVE_FILE));
+        PermissionManager.getInstance().loadRoles(new File(configDir, PERMISSIONS_FILE));
+    }
+
+    /**
+     * Загружает кривую опыта из experience_curve.json; если файла нет, записывает стандартную кривую
+     */
+    private static void loadExperienceCurve(File file) {
+        ExperienceCurve curve = ExperienceCurve.getInstance();
+        try {
+            if (file.exists()) {
+                String json = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+                curve.loadFromJson(new JsonParser().parse(json).getAsJsonObject());
+            } else {
+                String json = new GsonBuilder().setPrettyPrinting().create().toJson(curve.saveToJson());
+                FileUtils.writeStringToFile(file, json, StandardCharsets.UTF_8);
+            }
+        } catch (IOException | RuntimeException e) {
+            CraftMastery.logger.error("Error loading experience curve from {}: ", file, e);
+        }
     }
 
     private static void loadConfiguration() {
@@ -131,6 +180,9 @@ public class ModConfig {
         playerKillMultiplier = (float) config.get("experience", "playerKillMultiplier", 1.0f,
             "Множитель опыта за убийство игроков").getDouble();
 
+        experienceBatchTicks = config.getInt("experienceBatchTicks", "experience", 1, 1, 200,
+            "Интервал в тиках, за который начисления опыта объединяются в одно уведомление и синхронизацию");
+
         // Конвертация опыта в очки изучения
         blockMiningToLearningRatio = (float) config.get("experience", "blockMiningToLearningRatio", 0.1f,
             "Конвертация опыта добычи в очки изучения").getDouble();
@@ -197,6 +249,33 @@ public class ModConfig {
         playersCanGivePoints = config.getBoolean("playersCanGivePoints", "permissions", false,
             "Игроки могут выдавать очки по умолчанию");
 
+        // Хранение прогресса
+        progressionSaveTicks = config.getInt("progressionSaveTicks", "storage", 200, 20, 12000,
+            "Интервал в тиках, с которым изменённый прогресс игроков записывается на диск в фоне");
+        offlinePlayerCacheSize = config.getInt("offlinePlayerCacheSize", "storage", 64, 1, 10000,
+            "Сколько вышедших игроков держать в памяти, прежде чем выгружать их прогресс");
+        progressionJournal = config.getBoolean("progressionJournal", "storage", true,
+            "Сразу дописывать изменения прогресса в журнал на диске, чтобы они переживали падение сервера между записями");
+        progressionBackend = config.getString("progressionBackend", "storage", "file",
+            "Где хранить прогресс: file — файлы в папке мира, sql — база JDBC из progressionJdbcUrl (по умолчанию встроенная SQLite)",
+            new String[] { "file", "sql" });
+        progressionJdbcUrl = config.getString("progressionJdbcUrl", "storage",
+            "jdbc:sqlite:{world}/data/craftmastery/progression.db",
+            "Адрес базы для progressionBackend=sql; {world} заменяется на папку мира. Драйвер SQLite встроен в мод, для H2 и MySQL/MariaDB положите драйвер в mods. Для общего прогресса нескольких серверов укажите один файл или сервер БД");
+
+        // Аудит крафта
+        craftAuditLevel = config.getString("craftAuditLevel", "audit", "blocked",
+            "Какие решения о крафте писать в logs/craftmastery-audit.log: off — ничего, blocked — только запреты, all — всё",
+            new String[] { "off", "blocked", "all" });
+        craftAuditSampleRate = config.getInt("craftAuditSampleRate", "audit", 10, 1, 10000,
+            "Записывать каждый N-й разрешённый крафт игрока (запреты записываются все)");
+        craftAuditMaxPerSecond = config.getInt("craftAuditMaxPerSecond", "audit", 5, 1, 1000,
+            "Сколько событий одного типа в секунду записывать для одного игрока");
+        craftAuditMaxFileSizeKb = config.getInt("craftAuditMaxFileSizeKb", "audit", 10240, 64, 1048576,
+            "Размер файла аудита в КБ, после которого он переименовывается и начинается новый");
+        craftAuditMaxFiles = config.getInt("craftAuditMaxFiles", "audit", 5, 1, 100,
+            "Сколько старых файлов аудита хранить");
+
         // Валидация значений
         validateConfiguration();
     }
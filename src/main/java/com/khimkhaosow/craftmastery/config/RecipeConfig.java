@@ -1,128 +1,131 @@
 package com.khimkhaosow.craftmastery.config;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
 import com.khimkhaosow.craftmastery.CraftMastery;
 import com.khimkhaosow.craftmastery.recipe.RecipeEntry;
 import com.khimkhaosow.craftmastery.recipe.RecipeManager;
 import com.khimkhaosow.craftmastery.recipe.RecipeTag;
 import net.minecraft.util.ResourceLocation;
-import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 /**
- * Управляет конфигурацией рецептов и их сохранением/загрузкой
+ * Управляет конфигурацией рецептов и их сохранением/загрузкой.
+ * Рецепты хранятся по файлу на категорию; изменённые категории помечаются и записываются
+ * отложенно через ConfigSaveScheduler, поэтому серия правок переписывает только затронутые файлы и один раз.
+ * Рецепты изменённых категорий снимаются в неизменяемые записи RecipePatch в потоке, который их изменил
+ * (внутри пакетной правки — при её закрытии); поток сохранения пишет только снятые записи.
  */
 public class RecipeConfig {
     private static final String RECIPES_DIR = "config/craftmastery/recipes";
-    private static final Gson GSON = new GsonBuilder()
-            .setPrettyPrinting()
-            .create();
+    private static final String UNCATEGORIZED = "uncategorized";
+    private static final String SAVE_KEY = "recipes";
+
+    // Категории, изменённые после последнего снятия
+    private static final Set<String> dirtyCategories = ConcurrentHashMap.newKeySet();
+
+    // Снятые категории, ожидающие записи (пустой список — в категории не осталось рецептов)
+    private static final Map<String, List<RecipePatch>> capturedCategories = new ConcurrentHashMap<>();
 
     /**
-     * Сохраняет все рецепты в JSON файлы
+     * Запрашивает сохранение всех категорий рецептов
      */
     public static void saveRecipes(RecipeManager recipeManager) {
         if (recipeManager == null) {
             recipeManager = RecipeManager.getInstance();
         }
 
-        saveRecipesInternal(recipeManager);
+        for (RecipeEntry recipe : recipeManager.getAllRecipes()) {
+            dirtyCategories.add(getFileCategory(recipe.getCategory()));
+        }
+        requestSave();
     }
 
-    private static void saveRecipesInternal(RecipeManager recipeManager) {
-        File recipesDir = new File(RECIPES_DIR);
-        if (!recipesDir.exists()) {
-            recipesDir.mkdirs();
-        }
+    /**
+     * Помечает категорию изменённой и запрашивает отложенное сохранение её файла
+     */
+    public static void markDirty(String category) {
+        dirtyCategories.add(getFileCategory(category));
+        requestSave();
+    }
 
-        // Группируем рецепты по категориям
-        Map<String, List<RecipeEntry>> recipesByCategory = new HashMap<>();
-        for (RecipeEntry recipe : recipeManager.getAllRecipes()) {
-            String category = recipe.getCategory();
-            if (category == null || category.isEmpty()) {
-                category = "uncategorized";
+    private static void requestSave() {
+        ConfigSaveScheduler.getInstance().request(SAVE_KEY, RecipeConfig::captureDirtyCategories,
+            RecipeConfig::saveCapturedCategories);
+    }
+
+    private static String getFileCategory(String category) {
+        return category == null || category.isEmpty() ? UNCATEGORIZED : category;
+    }
+
+    /**
+     * Снимает рецепты изменённых категорий (выполняется в потоке, изменяющем рецепты)
+     */
+    private static void captureDirtyCategories() {
+        if (dirtyCategories.isEmpty()) return;
+
+        Set<String> categories = new HashSet<>(dirtyCategories);
+        dirtyCategories.removeAll(categories);
+
+        Map<String, List<RecipePatch>> recipesByCategory = new HashMap<>();
+        for (String category : categories) {
+            recipesByCategory.put(category, new ArrayList<>());
+        }
+        for (RecipeEntry recipe : RecipeManager.getInstance().getAllRecipes()) {
+            List<RecipePatch> recipes = recipesByCategory.get(getFileCategory(recipe.getCategory()));
+            if (recipes != null) {
+                recipes.add(RecipePatch.capture(recipe));
             }
-            recipesByCategory.computeIfAbsent(category, k -> new ArrayList<>()).add(recipe);
         }
 
-        // Сохраняем каждую категорию в отдельный файл
-        for (Map.Entry<String, List<RecipeEntry>> entry : recipesByCategory.entrySet()) {
-            String category = entry.getKey();
-            List<RecipeEntry> recipes = entry.getValue();
+        for (Map.Entry<String, List<RecipePatch>> entry : recipesByCategory.entrySet()) {
+            capturedCategories.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+        }
+    }
 
-            JsonArray recipesArray = new JsonArray();
-            for (RecipeEntry recipe : recipes) {
-                JsonObject recipeJson = new JsonObject();
-                
-                // Базовая информация
-                recipeJson.addProperty("recipeId", recipe.getRecipeId());
-                recipeJson.addProperty("recipeLocation", recipe.getRecipeLocation().toString());
-                
-                // Требования
-                recipeJson.addProperty("requiredLearningPoints", recipe.getRequiredLearningPoints());
-                recipeJson.addProperty("requiredLevel", recipe.getRequiredLevel());
-                
-                // Требуемые рецепты
-                JsonArray requiredRecipes = new JsonArray();
-                for (String reqRecipe : recipe.getRequiredRecipes()) {
-                    requiredRecipes.add(reqRecipe);
-                }
-                recipeJson.add("requiredRecipes", requiredRecipes);
-                
-                // Теги
-                JsonArray tags = new JsonArray();
-                for (RecipeTag tag : recipe.getTags()) {
-                    tags.add(tag.name());
-                }
-                recipeJson.add("tags", tags);
-                
-                // Блокировки и разблокировки
-                JsonArray blockingRecipes = new JsonArray();
-                for (String blockRecipe : recipe.getBlockingRecipes()) {
-                    blockingRecipes.add(blockRecipe);
-                }
-                recipeJson.add("blockingRecipes", blockingRecipes);
-                
-                JsonArray unlockingRecipes = new JsonArray();
-                for (String unlockRecipe : recipe.getUnlockingRecipes()) {
-                    unlockingRecipes.add(unlockRecipe);
-                }
-                recipeJson.add("unlockingRecipes", unlockingRecipes);
-                
-                // Права доступа
-                recipeJson.addProperty("requiresPermission", recipe.requiresPermission());
-                recipeJson.addProperty("requiredPermission", recipe.getRequiredPermission());
-                
-                // Отображение
-                recipeJson.addProperty("studyMessage", recipe.getStudyMessage());
-                recipeJson.addProperty("description", recipe.getDescription());
-                recipeJson.addProperty("tooltip", recipe.getTooltip());
-                recipeJson.addProperty("difficulty", recipe.getDifficulty());
-                recipeJson.addProperty("category", recipe.getCategory());
-                
-                // Позиция в графе
-                recipeJson.addProperty("graphX", recipe.getGraphX());
-                recipeJson.addProperty("graphY", recipe.getGraphY());
-                
-                recipesArray.add(recipeJson);
-            }
+    /**
+     * Переписывает файлы снятых категорий (выполняется в потоке сохранения)
+     */
+    private static void saveCapturedCategories() {
+        File recipesDir = new File(RECIPES_DIR);
+        for (String category : new ArrayList<>(capturedCategories.keySet())) {
+            List<RecipePatch> recipes = capturedCategories.remove(category);
+            if (recipes == null) continue;
 
-            // Сохраняем в файл
             File categoryFile = new File(recipesDir, category + ".json");
             try {
-                FileUtils.writeStringToFile(categoryFile, GSON.toJson(recipesArray), StandardCharsets.UTF_8);
+                if (recipes.isEmpty()) {
+                    // В категории не осталось рецептов — иначе при загрузке вернутся старые записи
+                    Files.deleteIfExists(categoryFile.toPath());
+                    continue;
+                }
+                ConfigSaveScheduler.writeJsonAtomically(categoryFile, writer -> {
+                    writer.beginArray();
+                    for (RecipePatch recipe : recipes) {
+                        recipe.write(writer);
+                    }
+                    writer.endArray();
+                });
             } catch (IOException e) {
                 CraftMastery.logger.error("Failed to save recipes for category: " + category, e);
+                // Повторим при следующем сохранении, если категорию не сняли заново
+                capturedCategories.putIfAbsent(category, recipes);
             }
         }
     }
 
     /**
-     * Загружает все рецепты из JSON файлов
+     * Загружает все рецепты из JSON файлов.
+     * Файлы категорий разбираются параллельно в общем пуле fork-join потоковым JsonReader
+     * в неизменяемые записи RecipePatch; рецепты создаются и добавляются в RecipeManager
+     * в вызывающем потоке одной пакетной правкой, в порядке имён файлов.
      */
     public static void loadRecipes() {
         File recipesDir = new File(RECIPES_DIR);
@@ -135,81 +138,72 @@ public class RecipeConfig {
 
         // Загружаем все JSON файлы из директории
         File[] categoryFiles = recipesDir.listFiles((dir, name) -> name.endsWith(".json"));
-        if (categoryFiles != null) {
-            for (File categoryFile : categoryFiles) {
-                try {
-                    String json = FileUtils.readFileToString(categoryFile, StandardCharsets.UTF_8);
-                    JsonParser parser = new JsonParser();
-                    JsonArray recipesArray = parser.parse(json).getAsJsonArray();
+        if (categoryFiles == null || categoryFiles.length == 0) {
+            return;
+        }
+        Arrays.sort(categoryFiles, Comparator.comparing(File::getName));
+
+        long start = System.nanoTime();
+        List<ParsedFile> parsed = Arrays.stream(categoryFiles)
+            .parallel()
+            .map(RecipeConfig::parseFile)
+            .collect(Collectors.toList());
+        long parseNanos = System.nanoTime() - start;
 
-                    for (JsonElement element : recipesArray) {
-                        JsonObject recipeJson = element.getAsJsonObject();
-                        
-                        // Создаем базовый рецепт
-                        ResourceLocation recipeLocation = new ResourceLocation(
-                            recipeJson.get("recipeLocation").getAsString());
-                        RecipeEntry recipe = new RecipeEntry(recipeLocation);
-                        
-                        // Загружаем требования
-                        recipe.setRequiredLearningPoints(
-                            recipeJson.get("requiredLearningPoints").getAsInt());
-                        recipe.setRequiredLevel(
-                            recipeJson.get("requiredLevel").getAsInt());
-                        
-                        // Загружаем требуемые рецепты
-                        JsonArray requiredRecipes = recipeJson.getAsJsonArray("requiredRecipes");
-                        for (JsonElement reqRecipe : requiredRecipes) {
-                            recipe.addRequiredRecipe(reqRecipe.getAsString());
-                        }
-                        
-                        // Загружаем теги
-                        JsonArray tags = recipeJson.getAsJsonArray("tags");
-                        for (JsonElement tag : tags) {
-                            recipe.addTag(RecipeTag.valueOf(tag.getAsString()));
-                        }
-                        
-                        // Загружаем блокировки и разблокировки
-                        JsonArray blockingRecipes = recipeJson.getAsJsonArray("blockingRecipes");
-                        for (JsonElement blockRecipe : blockingRecipes) {
-                            recipe.addBlockingRecipe(blockRecipe.getAsString());
-                        }
-                        
-                        JsonArray unlockingRecipes = recipeJson.getAsJsonArray("unlockingRecipes");
-                        for (JsonElement unlockRecipe : unlockingRecipes) {
-                            recipe.addUnlockingRecipe(unlockRecipe.getAsString());
-                        }
-                        
-                        // Загружаем права доступа
-                        recipe.setRequiresPermission(
-                            recipeJson.get("requiresPermission").getAsBoolean());
-                        recipe.setRequiredPermission(
-                            recipeJson.get("requiredPermission").getAsString());
-                        
-                        // Загружаем отображение
-                        recipe.setStudyMessage(
-                            recipeJson.get("studyMessage").getAsString());
-                        recipe.setDescription(
-                            recipeJson.get("description").getAsString());
-                        recipe.setTooltip(
-                            recipeJson.get("tooltip").getAsString());
-                        recipe.setDifficulty(
-                            recipeJson.get("difficulty").getAsInt());
-                        recipe.setCategory(
-                            recipeJson.get("category").getAsString());
-                        
-                        // Загружаем позицию в графе
-                        recipe.setGraphX(recipeJson.get("graphX").getAsInt());
-                        recipe.setGraphY(recipeJson.get("graphY").getAsInt());
-                        
+        int loaded = 0;
+        ParsedFile slowest = null;
+        try (ConfigSaveScheduler.Batch batch = ConfigSaveScheduler.getInstance().beginBatch()) {
+            for (ParsedFile file : parsed) {
+                CraftMastery.logger.debug("Parsed {} recipes from {} in {} ms",
+                    file.patches.size(), file.name, file.nanos / 1_000_000.0);
+                if (slowest == null || file.nanos > slowest.nanos) {
+                    slowest = file;
+                }
+                for (RecipePatch patch : file.patches) {
+                    try {
                         // Добавляем рецепт в менеджер
-                        recipeManager.addRecipe(recipe);
+                        recipeManager.addRecipe(patch.toEntry());
+                        loaded++;
+                    } catch (RuntimeException e) {
+                        CraftMastery.logger.error("Failed to apply recipe {} from file: {}", patch.recipeLocation, file.name, e);
                     }
-                } catch (Exception e) {
-                    CraftMastery.logger.error("Failed to load recipes from file: " + 
-                        categoryFile.getName(), e);
                 }
             }
         }
+
+        CraftMastery.logger.info("Loaded {} recipe settings from {} files: parsed in {} ms (slowest {}: {} ms), applied in {} ms",
+            loaded, parsed.size(), parseNanos / 1_000_000, slowest.name, slowest.nanos / 1_000_000,
+            (System.nanoTime() - start - parseNanos) / 1_000_000);
+    }
+
+    /**
+     * Разбирает файл категории (выполняется в потоке пула, RecipeManager не трогает)
+     */
+    private static ParsedFile parseFile(File categoryFile) {
+        long start = System.nanoTime();
+        List<RecipePatch> patches;
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(categoryFile.toPath(), StandardCharsets.UTF_8))) {
+            patches = RecipePatch.readArray(reader, categoryFile.getName());
+        } catch (IOException | RuntimeException e) {
+            CraftMastery.logger.error("Failed to load recipes from file: " + categoryFile.getName(), e);
+            patches = Collections.emptyList();
+        }
+        return new ParsedFile(categoryFile.getName(), patches, System.nanoTime() - start);
+    }
+
+    /**
+     * Результат разбора одного файла
+     */
+    private static final class ParsedFile {
+        final String name;
+        final List<RecipePatch> patches;
+        final long nanos;
+
+        ParsedFile(String name, List<RecipePatch> patches, long nanos) {
+            this.name = name;
+            this.patches = patches;
+            this.nanos = nanos;
+        }
     }
 
     /**
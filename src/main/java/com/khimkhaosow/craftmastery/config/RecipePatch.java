@@ -0,0 +1,269 @@
+package com.khimkhaosow.craftmastery.config;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.khimkhaosow.craftmastery.recipe.RecipeEntry;
+import com.khimkhaosow.craftmastery.recipe.RecipeTag;
+
+import net.minecraft.util.ResourceLocation;
+
+/**
+ * Настройки одного рецепта из файла категории (неизменяемая запись).
+ * Записи разбираются в потоках загрузки без обращения к RecipeManager и применяются
+ * в основном потоке через toEntry(); отсутствующие в файле поля оставляют значения RecipeEntry по умолчанию.
+ * При сохранении запись снимается с рецепта через capture() в потоке, изменяющем рецепты,
+ * и пишется в потоке сохранения через write().
+ */
+final class RecipePatch {
+
+    final String recipeId;
+    final String recipeLocation;
+    final Integer requiredLearningPoints;
+    final Integer requiredLevel;
+    final List<String> requiredRecipes;
+    final List<RecipeTag> tags;
+    final List<String> blockingRecipes;
+    final List<String> unlockingRecipes;
+    final Boolean requiresPermission;
+    final String requiredPermission;
+    final String studyMessage;
+    final String description;
+    final String tooltip;
+    final Integer difficulty;
+    final String category;
+    final Integer graphX;
+    final Integer graphY;
+
+    private RecipePatch(Builder builder) {
+        this.recipeId = builder.recipeId;
+        this.recipeLocation = builder.recipeLocation;
+        this.requiredLearningPoints = builder.requiredLearningPoints;
+        this.requiredLevel = builder.requiredLevel;
+        this.requiredRecipes = Collections.unmodifiableList(builder.requiredRecipes);
+        this.tags = Collections.unmodifiableList(builder.tags);
+        this.blockingRecipes = Collections.unmodifiableList(builder.blockingRecipes);
+        this.unlockingRecipes = Collections.unmodifiableList(builder.unlockingRecipes);
+        this.requiresPermission = builder.requiresPermission;
+        this.requiredPermission = builder.requiredPermission;
+        this.studyMessage = builder.studyMessage;
+        this.description = builder.description;
+        this.tooltip = builder.tooltip;
+        this.difficulty = builder.difficulty;
+        this.category = builder.category;
+        this.graphX = builder.graphX;
+        this.graphY = builder.graphY;
+    }
+
+    /**
+     * Создаёт рецепт по записи (вызывается в основном потоке)
+     */
+    RecipeEntry toEntry() {
+        RecipeEntry recipe = new RecipeEntry(new ResourceLocation(recipeLocation));
+
+        if (requiredLearningPoints != null) recipe.setRequiredLearningPoints(requiredLearningPoints);
+        if (requiredLevel != null) recipe.setRequiredLevel(requiredLevel);
+        for (String requiredRecipe : requiredRecipes) {
+            recipe.addRequiredRecipe(requiredRecipe);
+        }
+        for (RecipeTag tag : tags) {
+            recipe.addTag(tag);
+        }
+        for (String blockingRecipe : blockingRecipes) {
+            recipe.addBlockingRecipe(blockingRecipe);
+        }
+        for (String unlockingRecipe : unlockingRecipes) {
+            recipe.addUnlockingRecipe(unlockingRecipe);
+        }
+        if (requiresPermission != null) recipe.setRequiresPermission(requiresPermission);
+        if (requiredPermission != null) recipe.setRequiredPermission(requiredPermission);
+        if (studyMessage != null) recipe.setStudyMessage(studyMessage);
+        if (description != null) recipe.setDescription(description);
+        if (tooltip != null) recipe.setTooltip(tooltip);
+        if (difficulty != null) recipe.setDifficulty(difficulty);
+        if (category != null) recipe.setCategory(category);
+        if (graphX != null) recipe.setGraphX(graphX);
+        if (graphY != null) recipe.setGraphY(graphY);
+        return recipe;
+    }
+
+    /**
+     * Снимает настройки рецепта (вызывается в потоке, изменяющем рецепты)
+     */
+    static RecipePatch capture(RecipeEntry recipe) {
+        Builder builder = new Builder();
+        builder.recipeId = recipe.getRecipeId();
+        builder.recipeLocation = recipe.getRecipeLocation().toString();
+        builder.requiredLearningPoints = recipe.getRequiredLearningPoints();
+        builder.requiredLevel = recipe.getRequiredLevel();
+        builder.requiredRecipes.addAll(recipe.getRequiredRecipes());
+        builder.tags.addAll(recipe.getTags());
+        builder.blockingRecipes.addAll(recipe.getBlockingRecipes());
+        builder.unlockingRecipes.addAll(recipe.getUnlockingRecipes());
+        builder.requiresPermission = recipe.requiresPermission();
+        builder.requiredPermission = recipe.getRequiredPermission();
+        builder.studyMessage = recipe.getStudyMessage();
+        builder.description = recipe.getDescription();
+        builder.tooltip = recipe.getTooltip();
+        builder.difficulty = recipe.getDifficulty();
+        builder.category = recipe.getCategory();
+        builder.graphX = recipe.getGraphX();
+        builder.graphY = recipe.getGraphY();
+        return new RecipePatch(builder);
+    }
+
+    /**
+     * Пишет запись в файл категории (вызывается в потоке сохранения)
+     */
+    void write(JsonWriter writer) throws IOException {
+        writer.beginObject();
+
+        // Базовая информация
+        writer.name("recipeId").value(recipeId);
+        writer.name("recipeLocation").value(recipeLocation);
+
+        // Требования
+        writer.name("requiredLearningPoints").value(requiredLearningPoints);
+        writer.name("requiredLevel").value(requiredLevel);
+
+        // Требуемые рецепты
+        writeStrings(writer, "requiredRecipes", requiredRecipes);
+
+        // Теги
+        writer.name("tags").beginArray();
+        for (RecipeTag tag : tags) {
+            writer.value(tag.name());
+        }
+        writer.endArray();
+
+        // Блокировки и разблокировки
+        writeStrings(writer, "blockingRecipes", blockingRecipes);
+        writeStrings(writer, "unlockingRecipes", unlockingRecipes);
+
+        // Права доступа
+        writer.name("requiresPermission").value(requiresPermission);
+        writer.name("requiredPermission").value(requiredPermission);
+
+        // Отображение
+        writer.name("studyMessage").value(studyMessage);
+        writer.name("description").value(description);
+        writer.name("tooltip").value(tooltip);
+        writer.name("difficulty").value(difficulty);
+        writer.name("category").value(category);
+
+        // Позиция в графе
+        writer.name("graphX").value(graphX);
+        writer.name("graphY").value(graphY);
+
+        writer.endObject();
+    }
+
+    private static void writeStrings(JsonWriter writer, String name, List<String> values) throws IOException {
+        writer.name(name).beginArray();
+        for (String value : values) {
+            writer.value(value);
+        }
+        writer.endArray();
+    }
+
+    /**
+     * Читает массив рецептов файла категории потоково, без построения дерева JSON
+     */
+    static List<RecipePatch> readArray(JsonReader reader, String source) throws IOException {
+        List<RecipePatch> patches = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            patches.add(read(reader, source));
+        }
+        reader.endArray();
+        return patches;
+    }
+
+    private static RecipePatch read(JsonReader reader, String source) throws IOException {
+        Builder builder = new Builder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "recipeId": builder.recipeId = reader.nextString(); break;
+                case "recipeLocation": builder.recipeLocation = reader.nextString(); break;
+                case "requiredLearningPoints": builder.requiredLearningPoints = reader.nextInt(); break;
+                case "requiredLevel": builder.requiredLevel = reader.nextInt(); break;
+                case "requiredRecipes": readStrings(reader, builder.requiredRecipes); break;
+                case "tags": readTags(reader, builder.tags, source); break;
+                case "blockingRecipes": readStrings(reader, builder.blockingRecipes); break;
+                case "unlockingRecipes": readStrings(reader, builder.unlockingRecipes); break;
+                case "requiresPermission": builder.requiresPermission = reader.nextBoolean(); break;
+                case "requiredPermission": builder.requiredPermission = reader.nextString(); break;
+                case "studyMessage": builder.studyMessage = reader.nextString(); break;
+                case "description": builder.description = reader.nextString(); break;
+                case "tooltip": builder.tooltip = reader.nextString(); break;
+                case "difficulty": builder.difficulty = reader.nextInt(); break;
+                case "category": builder.category = reader.nextString(); break;
+                case "graphX": builder.graphX = reader.nextInt(); break;
+                case "graphY": builder.graphY = reader.nextInt(); break;
+                default: reader.skipValue(); break;
+            }
+        }
+        reader.endObject();
+
+        if (builder.recipeLocation == null) {
+            throw new IOException("Recipe without recipeLocation in " + source + " at " + reader.getPath());
+        }
+        return new RecipePatch(builder);
+    }
+
+    private static void readStrings(JsonReader reader, List<String> target) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            target.add(reader.nextString());
+        }
+        reader.endArray();
+    }
+
+    private static void readTags(JsonReader reader, List<RecipeTag> target, String source) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String tag = reader.nextString();
+            try {
+                target.add(RecipeTag.valueOf(tag.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown recipe tag '" + tag + "' in " + source + " at " + reader.getPath());
+            }
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Изменяемые поля, заполняемые при чтении или снятии (используются только в одном потоке)
+     */
+    private static final class Builder {
+        String recipeId;
+        String recipeLocation;
+        Integer requiredLearningPoints;
+        Integer requiredLevel;
+        final List<String> requiredRecipes = new ArrayList<>();
+        final List<RecipeTag> tags = new ArrayList<>();
+        final List<String> blockingRecipes = new ArrayList<>();
+        final List<String> unlockingRecipes = new ArrayList<>();
+        Boolean requiresPermission;
+        String requiredPermission;
+        String studyMessage;
+        String description;
+        String tooltip;
+        Integer difficulty;
+        String category;
+        Integer graphX;
+        Integer graphY;
+    }
+}
@@ -4,22 +4,28 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonParseException;
 import com.khimkhaosow.craftmastery.CraftMastery;
+import com.khimkhaosow.craftmastery.recipe.CraftDecisionCache;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
 /**
  * Управляет конфигурацией древ дерева рецептов, хранящейся в файле config/craftmastery/recipe_tree.json.
  * Формат файла описан в RecipeTreeConfigManager.TreeConfig.
+ * Читатели (поток отрисовки и поток сервера) берут неизменяемый снимок через volatile-ссылку
+ * без блокировок; в снимке есть индексы «ID -> узел», «ID -> вкладка» и «вкладка -> узлы».
+ * Изменения выполняются по одному (synchronized): писатель копирует списки, изменяет копию
+ * и публикует новый снимок с новой ревизией. Сохранение отложенное и пишет файл потоково,
+ * только если ревизия изменилась с последней записи.
  */
 public class RecipeTreeConfigManager {
 
@@ -27,10 +33,15 @@ public class RecipeTreeConfigManager {
 
     private static final String CONFIG_DIR = "config/craftmastery";
     private static final String CONFIG_FILE = "recipe_tree.json";
+    private static final String SAVE_KEY = "recipe_tree";
 
     private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
 
-    private TreeConfig config;
+    // Текущий снимок конфигурации (ревизия увеличивается при каждой загрузке и изменении)
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    // Ревизия последнего записанного снимка
+    private volatile int savedRevision = -1;
 
     private RecipeTreeConfigManager() {
         loadInternal();
@@ -44,127 +55,202 @@ public class RecipeTreeConfigManager {
         loadInternal();
     }
 
-    public synchronized void save() {
-        ensureConfigPresent();
-        File file = getConfigFile();
-        File directory = file.getParentFile();
-        if (!directory.exists() && !directory.mkdirs()) {
-            CraftMastery.logger.error("Failed to create recipe tree config directory: {}", directory.getAbsolutePath());
+    /**
+     * Получает ревизию конфигурации (по ней пересобирается граф связей в RecipeManager)
+     */
+    public int getRevision() {
+        return snapshot.revision;
+    }
+
+    /**
+     * Публикует новую конфигурацию и сбрасывает решения о крафте, зависящие от связей рецептов
+     */
+    private void publish(TreeConfig next) {
+        snapshot = new Snapshot(next, snapshot.revision + 1);
+        CraftDecisionCache.getInstance().invalidateAll();
+    }
+
+    /**
+     * Запрашивает отложенное сохранение: серия правок в редакторе записывается одним проходом
+     */
+    public void save() {
+        ConfigSaveScheduler.getInstance().request(SAVE_KEY, this::writeSnapshot);
+    }
+
+    /**
+     * Записывает текущий снимок, если он изменился с последней записи (выполняется в потоке сохранения)
+     */
+    private void writeSnapshot() {
+        Snapshot current = snapshot;
+        if (current.revision == savedRevision) {
             return;
         }
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-            gson.toJson(config, writer);
-        } catch (IOException e) {
+        try {
+            ConfigSaveScheduler.writeJsonAtomically(getConfigFile(),
+                writer -> gson.toJson(current.config, TreeConfig.class, writer));
+            savedRevision = current.revision;
+        } catch (IOException | RuntimeException e) {
+            // Любая ошибка сериализации только пропускает запись: снимок сохранится при следующем запросе
             CraftMastery.logger.error("Failed to save recipe tree config", e);
         }
     }
 
-    public synchronized List<TabData> getTabs() {
-        ensureConfigPresent();
-        return Collections.unmodifiableList(config.tabs);
+    public List<TabData> getTabs() {
+        return snapshot.tabs;
+    }
+
+    public Optional<TabData> getTab(String tabId) {
+        return Optional.ofNullable(snapshot.tabsById.get(tabId));
     }
 
-    public synchronized Optional<TabData> getTab(String tabId) {
-        ensureConfigPresent();
-        return config.tabs.stream().filter(tab -> Objects.equals(tab.id, tabId)).findFirst();
+    public List<NodeData> getNodes() {
+        return snapshot.nodes;
     }
 
-    public synchronized List<NodeData> getNodes() {
-        ensureConfigPresent();
-        return Collections.unmodifiableList(config.nodes);
+    public Optional<NodeData> getNode(String nodeId) {
+        return Optional.ofNullable(snapshot.nodesById.get(nodeId));
     }
 
-    public synchronized Optional<NodeData> getNode(String nodeId) {
-        ensureConfigPresent();
-        return config.nodes.stream().filter(node -> Objects.equals(node.id, nodeId)).findFirst();
+    /**
+     * Получает узлы вкладки (в порядке конфигурации)
+     */
+    public List<NodeData> getNodesInTab(String tabId) {
+        List<NodeData> nodes = snapshot.nodesByTab.get(tabId);
+        return nodes != null ? nodes : Collections.emptyList();
     }
 
+    /**
+     * Публикует глубокую копию узла: переданный объект вызывающий может менять и дальше,
+     * не трогая опубликованный снимок
+     */
     public synchronized void upsertNode(NodeData node) {
-        ensureConfigPresent();
         Objects.requireNonNull(node, "node");
         if (node.id == null || node.id.trim().isEmpty()) {
             throw new IllegalArgumentException("Node id must not be empty");
         }
 
-        getNode(node.id).ifPresent(existing -> config.nodes.remove(existing));
-        config.nodes.add(node);
+        TreeConfig next = snapshot.copy();
+        replaceNode(next, node.copy());
+        publish(next);
     }
 
     public synchronized void upsertTab(TabData tab) {
-        ensureConfigPresent();
         Objects.requireNonNull(tab, "tab");
         if (tab.id == null || tab.id.trim().isEmpty()) {
             throw new IllegalArgumentException("Tab id must not be empty");
         }
-        getTab(tab.id).ifPresent(existing -> config.tabs.remove(existing));
-        config.tabs.add(tab);
+        TreeConfig next = snapshot.copy();
+        TabData existing = snapshot.tabsById.get(tab.id);
+        if (existing != null) {
+            next.tabs.remove(existing);
+        }
+        next.tabs.add(tab);
+        publish(next);
     }
 
     public synchronized boolean removeTab(String tabId) {
-        ensureConfigPresent();
         if (tabId == null || tabId.trim().isEmpty()) {
             return false;
         }
-        boolean removed = config.tabs.removeIf(tab -> Objects.equals(tab.id, tabId));
+        TreeConfig next = snapshot.copy();
+        boolean removed = next.tabs.removeIf(tab -> Objects.equals(tab.id, tabId));
         if (removed) {
-            for (NodeData node : config.nodes) {
-                if (tabId.equals(node.tab)) {
-                    node.tab = TabData.defaultTab().id;
+            for (int i = 0; i < next.nodes.size(); i++) {
+                NodeData node = next.nodes.get(i);
+                boolean inTab = tabId.equals(node.tab);
+                boolean unlocksTab = node.unlocks != null && node.unlocks.tabs != null && node.unlocks.tabs.contains(tabId);
+                if (!inTab && !unlocksTab) continue;
+
+                NodeData edited = editNode(next, i);
+                if (inTab) {
+                    edited.tab = TabData.defaultTab().id;
                 }
-                if (node.unlocks != null && node.unlocks.tabs != null) {
-                    node.unlocks.tabs.removeIf(tabId::equals);
+                if (unlocksTab) {
+                    edited.unlocks.tabs.removeIf(tabId::equals);
                 }
             }
+            publish(next);
         }
         return removed;
     }
 
     public synchronized boolean removeLink(String sourceId, String targetId) {
-        ensureConfigPresent();
         if (sourceId == null || targetId == null) {
             return false;
         }
-        NodeData source = getNode(sourceId).orElse(null);
-        NodeData target = getNode(targetId).orElse(null);
+        NodeData source = snapshot.nodesById.get(sourceId);
+        NodeData target = snapshot.nodesById.get(targetId);
         if (source == null || target == null) {
             return false;
         }
-        boolean changed = false;
-        if (source.unlocks != null && source.unlocks.nodes != null) {
-            changed |= source.unlocks.nodes.removeIf(targetId::equals);
+        boolean unlocksTarget = source.unlocks != null && source.unlocks.nodes != null
+            && source.unlocks.nodes.contains(targetId);
+        boolean requiresSource = target.availability != null && target.availability.requiredNodes != null
+            && target.availability.requiredNodes.contains(sourceId);
+        if (!unlocksTarget && !requiresSource) {
+            return false;
         }
-        if (target.availability != null && target.availability.requiredNodes != null) {
-            changed |= target.availability.requiredNodes.removeIf(sourceId::equals);
+
+        TreeConfig next = snapshot.copy();
+        if (unlocksTarget) {
+            editNode(next, next.nodes.indexOf(source)).unlocks.nodes.removeIf(targetId::equals);
         }
-        if (changed) {
-            upsertNode(source);
-            upsertNode(target);
+        if (requiresSource) {
+            editNode(next, next.nodes.indexOf(target)).availability.requiredNodes.removeIf(sourceId::equals);
         }
-        return changed;
+        publish(next);
+        return true;
     }
 
     public synchronized boolean removeNode(String nodeId) {
-        ensureConfigPresent();
-        return config.nodes.removeIf(node -> Objects.equals(node.id, nodeId));
+        TreeConfig next = snapshot.copy();
+        boolean removed = next.nodes.removeIf(node -> Objects.equals(node.id, nodeId));
+        if (removed) {
+            publish(next);
+        }
+        return removed;
     }
 
     public synchronized void replaceTabs(List<TabData> tabs) {
-        ensureConfigPresent();
-        config.tabs.clear();
+        TreeConfig next = snapshot.copy();
+        next.tabs.clear();
         if (tabs != null) {
-            config.tabs.addAll(tabs);
+            next.tabs.addAll(tabs);
         }
+        publish(next);
     }
 
-    public synchronized File getConfigFile() {
+    public File getConfigFile() {
         return new File(CONFIG_DIR, CONFIG_FILE);
     }
 
+    /**
+     * Заменяет узел с тем же ID в копии конфигурации (новый узел ставится в конец списка)
+     */
+    private void replaceNode(TreeConfig next, NodeData node) {
+        NodeData existing = snapshot.nodesById.get(node.id);
+        if (existing != null) {
+            next.nodes.remove(existing);
+        }
+        next.nodes.remove(node);
+        next.nodes.add(node);
+    }
+
+    /**
+     * Заменяет опубликованный узел в копии конфигурации его глубокой копией (на том же месте)
+     * и возвращает её; изменять можно только возвращённый узел
+     */
+    private static NodeData editNode(TreeConfig next, int index) {
+        NodeData copy = next.nodes.get(index).copy();
+        next.nodes.set(index, copy);
+        return copy;
+    }
+
     private void loadInternal() {
         File file = getConfigFile();
         if (!file.exists()) {
-            config = createDefaultConfig();
+            publish(createDefaultConfig());
             save();
             return;
         }
@@ -173,25 +259,21 @@ public class RecipeTreeConfigManager {
             TreeConfig loaded = gson.fromJson(reader, TreeConfig.class);
             if (loaded == null) {
                 CraftMastery.logger.warn("Recipe tree config is empty, regenerating default");
-                config = createDefaultConfig();
+                publish(createDefaultConfig());
                 save();
             } else {
                 normalizeConfig(loaded);
-                config = loaded;
+                publish(loaded);
+                // Загруженная конфигурация совпадает с файлом
+                savedRevision = snapshot.revision;
             }
         } catch (IOException | JsonParseException ex) {
             CraftMastery.logger.error("Failed to load recipe tree config, using default", ex);
-            config = createDefaultConfig();
+            publish(createDefaultConfig());
             save();
         }
     }
 
-    private void ensureConfigPresent() {
-        if (config == null) {
-            config = createDefaultConfig();
-        }
-    }
-
     private void normalizeConfig(TreeConfig target) {
         if (target.tabs == null) {
             target.tabs = new ArrayList<>();
@@ -242,6 +324,59 @@ public class RecipeTreeConfigManager {
         return defaultConfig;
     }
 
+    /**
+     * Неизменяемый снимок конфигурации с индексами. Списки снимка после публикации не изменяются
+     */
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new TreeConfig(), 0);
+
+        final TreeConfig config;
+        final int revision;
+        final List<TabData> tabs;
+        final List<NodeData> nodes;
+        final Map<String, TabData> tabsById;
+        final Map<String, NodeData> nodesById;
+        final Map<String, List<NodeData>> nodesByTab;
+
+        Snapshot(TreeConfig config, int revision) {
+            this.config = config;
+            this.revision = revision;
+            this.tabs = Collections.unmodifiableList(config.tabs);
+            this.nodes = Collections.unmodifiableList(config.nodes);
+
+            // При повторяющихся ID побеждает первый, как при прежнем поиске по списку
+            Map<String, TabData> tabIndex = new HashMap<>();
+            for (TabData tab : config.tabs) {
+                tabIndex.putIfAbsent(tab.id, tab);
+            }
+            Map<String, NodeData> nodeIndex = new HashMap<>();
+            Map<String, List<NodeData>> tabNodes = new HashMap<>();
+            for (NodeData node : config.nodes) {
+                nodeIndex.putIfAbsent(node.id, node);
+                if (node.tab != null) {
+                    tabNodes.computeIfAbsent(node.tab, key -> new ArrayList<>()).add(node);
+                }
+            }
+            for (Map.Entry<String, List<NodeData>> entry : tabNodes.entrySet()) {
+                entry.setValue(Collections.unmodifiableList(entry.getValue()));
+            }
+            this.tabsById = tabIndex;
+            this.nodesById = nodeIndex;
+            this.nodesByTab = tabNodes;
+        }
+
+        /**
+         * Копия конфигурации для изменения писателем. Узлы и вкладки в ней те же, что в опубликованном
+         * снимке, поэтому менять их на месте нельзя: изменяемый узел сначала заменяется копией через editNode
+         */
+        TreeConfig copy() {
+            TreeConfig next = new TreeConfig();
+            next.tabs = new ArrayList<>(config.tabs);
+            next.nodes = new ArrayList<>(config.nodes);
+            return next;
+        }
+    }
+
     public static class TreeConfig {
         public List<TabData> tabs = new ArrayList<>();
         public List<NodeData> nodes = new ArrayList<>();
@@ -276,11 +411,37 @@ public class RecipeTreeConfigManager {
         public boolean grantsCraftAccess = false;
         public String customIcon;
         public String nodeTitle;
+
+        /**
+         * Глубокая копия узла (вместе с позицией, условиями доступности и открываемыми элементами)
+         */
+        public NodeData copy() {
+            NodeData copy = new NodeData();
+            copy.id = id;
+            copy.tab = tab;
+            copy.recipeId = recipeId;
+            copy.displayName = displayName;
+            copy.studyCost = studyCost;
+            copy.position = position != null ? position.copy() : null;
+            copy.availability = availability != null ? availability.copy() : null;
+            copy.unlocks = unlocks != null ? unlocks.copy() : null;
+            copy.grantsCraftAccess = grantsCraftAccess;
+            copy.customIcon = customIcon;
+            copy.nodeTitle = nodeTitle;
+            return copy;
+        }
     }
 
     public static class Position {
         public int x;
         public int y;
+
+        public Position copy() {
+            Position copy = new Position();
+            copy.x = x;
+            copy.y = y;
+            return copy;
+        }
     }
 
     public static class Availability {
@@ -290,11 +451,31 @@ public class RecipeTreeConfigManager {
         public String mode = MODE_ALWAYS;
         public List<String> requiredNodes = new ArrayList<>();
         public boolean allowIndependentStudy = false;
+
+        public Availability copy() {
+            Availability copy = new Availability();
+            copy.mode = mode;
+            copy.requiredNodes = copyList(requiredNodes);
+            copy.allowIndependentStudy = allowIndependentStudy;
+            return copy;
+        }
     }
 
     public static class Unlocks {
         public List<String> nodes = new ArrayList<>();
         public List<String> tabs = new ArrayList<>();
         public List<String> permissions = new ArrayList<>();
+
+        public Unlocks copy() {
+            Unlocks copy = new Unlocks();
+            copy.nodes = copyList(nodes);
+            copy.tabs = copyList(tabs);
+            copy.permissions = copyList(permissions);
+            return copy;
+        }
+    }
+
+    private static List<String> copyList(List<String> list) {
+        return list != null ? new ArrayList<>(list) : null;
     }
 }
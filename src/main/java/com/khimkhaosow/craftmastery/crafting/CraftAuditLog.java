@@ -0,0 +1,373 @@
+package com.khimkhaosow.craftmastery.crafting;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import com.khimkhaosow.craftmastery.CraftMastery;
+import com.khimkhaosow.craftmastery.config.ModConfig;
+
+import net.minecraft.entity.player.EntityPlayer;
+
+/**
+ * Журнал аудита решений о крафте.
+ * Вместо строки INFO в общем логе на каждый крафт событие (игрок, рецепт, решение, время проверки)
+ * кладётся в кольцевой буфер без блокировок, а отдельный поток пишет его строкой JSON
+ * в logs/craftmastery-audit.log с ротацией по размеру. Перед буфером стоят:
+ * уровень (off — ничего, blocked — только запреты, all — всё), выборка разрешённых крафтов
+ * (каждое N-е событие игрока) и ограничение числа событий в секунду на игрока и тип события.
+ * Если буфер переполнен, событие отбрасывается и учитывается в счётчике; счётчики событий
+ * по типам ведутся всегда, даже для отфильтрованных событий.
+ */
+public class CraftAuditLog {
+
+    /**
+     * Тип события
+     */
+    public enum EventType {
+        // Крафт разрешён
+        CRAFT_ALLOWED(false),
+        // Проверка запретила крафт
+        CRAFT_BLOCKED(true),
+        // Уже выполненный крафт отменён
+        CRAFT_CANCELLED(true),
+        // Результат крафта скрыт на клиенте
+        RESULT_HIDDEN(true);
+
+        private final boolean blocked;
+
+        EventType(boolean blocked) {
+            this.blocked = blocked;
+        }
+    }
+
+    private static final EventType[] EVENT_TYPES = EventType.values();
+
+    private static final int LEVEL_OFF = 0;
+    private static final int LEVEL_BLOCKED = 1;
+    private static final int LEVEL_ALL = 2;
+
+    private static final int BUFFER_SIZE = 4096;
+    private static final String FILE_NAME = "craftmastery-audit";
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private static CraftAuditLog instance;
+
+    // Кольцевой буфер: производители занимают номер через CAS по head, читатель двигает tail
+    private final AtomicReferenceArray<Record> buffer = new AtomicReferenceArray<>(BUFFER_SIZE);
+    private final AtomicLong head = new AtomicLong();
+    private volatile long tail = 0;
+
+    // Счётчики событий по типам и отброшенных при переполнении
+    private final AtomicLongArray counts = new AtomicLongArray(EVENT_TYPES.length);
+    private final AtomicLong dropped = new AtomicLong();
+
+    // Выборка и ограничение частоты по игрокам
+    private final Map<UUID, PlayerLimiter> limiters = new ConcurrentHashMap<>();
+
+    private volatile int level = LEVEL_OFF;
+    private volatile Thread writerThread;
+    private File directory;
+    private Writer writer;
+    private long fileSize;
+
+    public static CraftAuditLog getInstance() {
+        if (instance == null) {
+            instance = new CraftAuditLog();
+        }
+        return instance;
+    }
+
+    /**
+     * Настраивает уровень из конфигурации и запускает поток записи (если аудит включён)
+     */
+    public synchronized void start(File logDirectory) {
+        level = parseLevel(ModConfig.craftAuditLevel);
+        if (level == LEVEL_OFF || writerThread != null) return;
+
+        directory = logDirectory;
+        Thread thread = new Thread(this::runWriter, "CraftMastery Craft Audit");
+        thread.setDaemon(true);
+        writerThread = thread;
+        thread.start();
+        CraftMastery.logger.info("Craft audit enabled ({}), writing to {}", ModConfig.craftAuditLevel,
+            new File(logDirectory, FILE_NAME + ".log"));
+    }
+
+    /**
+     * Проверяет, будет ли записано событие такого типа (для отказа от подготовки данных)
+     */
+    public boolean isEnabled(EventType type) {
+        int current = level;
+        return current == LEVEL_ALL || (current == LEVEL_BLOCKED && type.blocked);
+    }
+
+    /**
+     * Записывает событие
+     * @param latencyNanos время принятия решения или -1, если не измерялось
+     */
+    public void record(EventType type, EntityPlayer player, String recipeId, String decision, long latencyNanos) {
+        counts.incrementAndGet(type.ordinal());
+        if (!isEnabled(type) || player == null) return;
+
+        UUID playerUUID = player.getUniqueID();
+        PlayerLimiter limiter = limiters.computeIfAbsent(playerUUID, key -> new PlayerLimiter());
+        if (!limiter.accept(type, System.nanoTime())) return;
+
+        offer(new Record(System.currentTimeMillis(), playerUUID, player.getName(), type, recipeId, decision, latencyNanos));
+    }
+
+    /**
+     * Получает число событий типа с момента запуска
+     */
+    public long getCount(EventType type) {
+        return counts.get(type.ordinal());
+    }
+
+    /**
+     * Получает число событий, отброшенных из-за переполнения буфера
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Удаляет состояние ограничителя игрока (при выходе)
+     */
+    public void forgetPlayer(UUID playerUUID) {
+        if (playerUUID != null) {
+            limiters.remove(playerUUID);
+        }
+    }
+
+    /**
+     * Ждёт, пока поток записи запишет всё, что уже в буфере (не дольше timeoutMillis)
+     */
+    public void flush(long timeoutMillis) {
+        Thread thread = writerThread;
+        if (thread == null) return;
+
+        long target = head.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (tail < target && System.nanoTime() < deadline) {
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+        }
+    }
+
+    private void offer(Record record) {
+        long slot;
+        do {
+            slot = head.get();
+            if (slot - tail >= BUFFER_SIZE) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!head.compareAndSet(slot, slot + 1));
+
+        buffer.lazySet((int) (slot % BUFFER_SIZE), record);
+    }
+
+    private void runWriter() {
+        while (true) {
+            int written = drain();
+            if (written == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Записывает опубликованные события по порядку; занятый, но ещё не заполненный слот ждёт следующего прохода
+     */
+    private int drain() {
+        int written = 0;
+        long next = tail;
+        while (next < head.get()) {
+            int index = (int) (next % BUFFER_SIZE);
+            Record record = buffer.get(index);
+            if (record == null) break;
+
+            buffer.set(index, null);
+            next++;
+            write(record);
+            written++;
+        }
+
+        if (written > 0 && writer != null) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                CraftMastery.logger.warn("Failed to flush craft audit log: {}", e.getMessage());
+                closeWriter();
+            }
+        }
+        // Слоты освобождаются для производителей после записи, поэтому flush() видит уже записанные события
+        tail = next;
+        return written;
+    }
+
+    private void write(Record record) {
+        try {
+            if (writer == null) {
+                openWriter();
+            }
+            String line = record.toJson();
+            writer.write(line);
+            writer.write('\n');
+            fileSize += line.length() + 1;
+            if (fileSize >= ModConfig.craftAuditMaxFileSizeKb * 1024L) {
+                rotate();
+            }
+        } catch (IOException e) {
+            CraftMastery.logger.warn("Failed to write craft audit log: {}", e.getMessage());
+            closeWriter();
+        }
+    }
+
+    private void openWriter() throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+        File file = new File(directory, FILE_NAME + ".log");
+        fileSize = file.length();
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Сдвигает файлы: craftmastery-audit.log -> .1.log -> .2.log ..., самый старый удаляется
+     */
+    private void rotate() throws IOException {
+        closeWriter();
+        int keep = ModConfig.craftAuditMaxFiles;
+        File oldest = new File(directory, FILE_NAME + "." + keep + ".log");
+        if (oldest.exists() && !oldest.delete()) {
+            throw new IOException("Unable to delete " + oldest);
+        }
+        for (int i = keep - 1; i >= 1; i--) {
+            File from = new File(directory, FILE_NAME + "." + i + ".log");
+            if (from.exists() && !from.renameTo(new File(directory, FILE_NAME + "." + (i + 1) + ".log"))) {
+                throw new IOException("Unable to rotate " + from);
+            }
+        }
+        File current = new File(directory, FILE_NAME + ".log");
+        if (current.exists() && !current.renameTo(new File(directory, FILE_NAME + ".1.log"))) {
+            throw new IOException("Unable to rotate " + current);
+        }
+    }
+
+    private void closeWriter() {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException ignored) {
+        }
+        writer = null;
+    }
+
+    private static int parseLevel(String value) {
+        if ("all".equalsIgnoreCase(value)) return LEVEL_ALL;
+        if ("blocked".equalsIgnoreCase(value)) return LEVEL_BLOCKED;
+        return LEVEL_OFF;
+    }
+
+    /**
+     * Выборка и ограничение частоты событий одного игрока по типам событий (окно — одна секунда)
+     */
+    private static class PlayerLimiter {
+        private final long[] windowStart = new long[EVENT_TYPES.length];
+        private final int[] inWindow = new int[EVENT_TYPES.length];
+        private final int[] sampleCounter = new int[EVENT_TYPES.length];
+
+        synchronized boolean accept(EventType type, long now) {
+            int i = type.ordinal();
+
+            // Разрешённые крафты пишутся выборочно, запреты — все
+            if (!type.blocked) {
+                if (sampleCounter[i] > 0) {
+                    sampleCounter[i]--;
+                    return false;
+                }
+                sampleCounter[i] = ModConfig.craftAuditSampleRate - 1;
+            }
+
+            if (now - windowStart[i] >= TimeUnit.SECONDS.toNanos(1)) {
+                windowStart[i] = now;
+                inWindow[i] = 0;
+            }
+            return inWindow[i]++ < ModConfig.craftAuditMaxPerSecond;
+        }
+    }
+
+    /**
+     * Одно событие аудита
+     */
+    private static final class Record {
+        final long time;
+        final UUID playerUUID;
+        final String playerName;
+        final EventType type;
+        final String recipeId;
+        final String decision;
+        final long latencyNanos;
+
+        Record(long time, UUID playerUUID, String playerName, EventType type, String recipeId, String decision,
+               long latencyNanos) {
+            this.time = time;
+            this.playerUUID = playerUUID;
+            this.playerName = playerName;
+            this.type = type;
+            this.recipeId = recipeId;
+            this.decision = decision;
+            this.latencyNanos = latencyNanos;
+        }
+
+        String toJson() {
+            StringBuilder json = new StringBuilder(160);
+            json.append("{\"time\":").append(time);
+            json.append(",\"player\":");
+            appendString(json, playerName);
+            json.append(",\"uuid\":\"").append(playerUUID).append('"');
+            json.append(",\"event\":\"").append(type.name()).append('"');
+            json.append(",\"recipe\":");
+            appendString(json, recipeId);
+            json.append(",\"decision\":");
+            appendString(json, decision);
+            if (latencyNanos >= 0) {
+                json.append(",\"latencyMicros\":").append(latencyNanos / 1000);
+            }
+            return json.append('}').toString();
+        }
+
+        private static void appendString(StringBuilder json, String value) {
+            if (value == null) {
+                json.append("null");
+                return;
+            }
+            json.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    json.append('\\').append(c);
+                } else if (c < 0x20) {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+            json.append('"');
+        }
+    }
+}
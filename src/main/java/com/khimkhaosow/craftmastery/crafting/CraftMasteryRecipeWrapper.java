@@ -1,10 +1,7 @@
 package com.khimkhaosow.craftmastery.crafting;
 
 import com.khimkhaosow.craftmastery.CraftMastery;
-import com.khimkhaosow.craftmastery.experience.ExperienceManager;
-import com.khimkhaosow.craftmastery.experience.PlayerExperienceData;
-import com.khimkhaosow.craftmastery.permissions.PermissionManager;
-import com.khimkhaosow.craftmastery.permissions.PermissionType;
+import com.khimkhaosow.craftmastery.recipe.CraftDecisionCache;
 import com.khimkhaosow.craftmastery.recipe.RecipeEntry;
 import com.khimkhaosow.craftmastery.recipe.RecipeManager;
 
@@ -58,8 +55,10 @@ public class CraftMasteryRecipeWrapper extends IForgeRegistryEntry.Impl<IRecipe>
     public boolean canPlayerUseRecipe(EntityPlayer player) {
         if (player == null) return true;
 
+        CraftDecisionCache decisions = CraftDecisionCache.getInstance();
+
         // Проверяем права доступа
-        if (!PermissionManager.getInstance().hasPermission(player, PermissionType.LEARN_RECIPES)) {
+        if (!decisions.canLearn(player)) {
             return false;
         }
 
@@ -68,20 +67,8 @@ public class CraftMasteryRecipeWrapper extends IForgeRegistryEntry.Impl<IRecipe>
             return true;
         }
 
-        // Проверяем, изучен ли рецепт
-        if (recipeEntry.isStudiedByPlayer(player.getUniqueID())) {
-            return true;
-        }
-
-        // Проверяем, может ли игрок изучить рецепт
-        PlayerExperienceData expData = ExperienceManager.getInstance().getPlayerData(player);
-        if (recipeEntry.canPlayerStudy(player, expData)) {
-            // Показываем рецепт, но крафт будет заблокирован CraftingHandler'ом
-            return true;
-        }
-
-        // Рецепт недоступен
-        return false;
+        // Изученный рецепт доступен; доступный для изучения показываем, но крафт будет заблокирован CraftingHandler'ом
+        return decisions.getDecision(player, recipeEntry) != CraftDecisionCache.Decision.LOCKED;
     }
 
     /**
@@ -7,7 +7,7 @@ import net.minecraft.world.World;
 
 import com.khimkhaosow.craftmastery.recipe.RecipeManager;
 import com.khimkhaosow.craftmastery.recipe.RecipeEntry;
-import com.khimkhaosow.craftmastery.experience.ExperienceManager;
+import com.khimkhaosow.craftmastery.recipe.CraftDecisionCache;
 
 /**
  * Guard for crafting checks using a ThreadLocal current player.
@@ -44,16 +44,8 @@ public final class CraftingGuard {
             RecipeEntry entry = RecipeManager.getInstance().getRecipe(recipe.getRegistryName());
             if (entry == null) return true; // не наш рецепт
 
-            // если изучен — разрешаем
-            if (entry.isStudiedByPlayer(player.getUniqueID())) return true;
-
-            // если игрок может изучить — считаем недоступным (предложим изучить)
-            if (entry.canPlayerStudy(player, ExperienceManager.getInstance().getPlayerData(player))) {
-                return false;
-            }
-
-            // иначе недоступен
-            return false;
+            // разрешаем только изученные (доступный для изучения рецепт тоже недоступен — предложим изучить)
+            return CraftDecisionCache.getInstance().isAllowed(player, entry);
         } catch (Throwable t) {
             // На случай ошибок — не ломаем ваниль
             return true;
@@ -1,21 +1,22 @@
 package com.khimkhaosow.craftmastery.crafting;
 
 import com.khimkhaosow.craftmastery.CraftMastery;
+import com.khimkhaosow.craftmastery.recipe.CraftDecisionCache;
 import com.khimkhaosow.craftmastery.recipe.RecipeEntry;
 import com.khimkhaosow.craftmastery.recipe.RecipeManager;
 
 import net.minecraft.client.Minecraft;
+import net.minecraft.client.entity.EntityPlayerSP;
 import net.minecraft.client.gui.inventory.GuiContainer;
 import net.minecraft.client.gui.inventory.GuiCrafting;
-import net.minecraft.client.gui.inventory.GuiInventory;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.inventory.ClickType;
 import net.minecraft.inventory.Container;
-import net.minecraft.inventory.ContainerWorkbench;
 import net.minecraft.inventory.ContainerPlayer;
+import net.minecraft.inventory.ContainerWorkbench;
 import net.minecraft.inventory.IInventory;
+import net.minecraft.inventory.InventoryCraftResult;
 import net.minecraft.inventory.InventoryCrafting;
-import net.minecraft.inventory.Slot;
 import net.minecraft.item.ItemStack;
 import net.minecraft.item.crafting.CraftingManager;
 import net.minecraft.item.crafting.IRecipe;
@@ -23,21 +24,34 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
 import net.minecraftforge.client.event.GuiOpenEvent;
-import net.minecraftforge.client.event.GuiScreenEvent;
 import net.minecraftforge.common.MinecraftForge;
-import net.minecraftforge.fml.common.ObfuscationReflectionHelper;
+import net.minecraftforge.event.entity.EntityJoinWorldEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
 import java.lang.reflect.Field;
-
+import java.util.List;
+
+/**
+ * Скрывает на клиенте результат крафта неизученного рецепта.
+ * Проверка живёт в самих контейнерах (верстак и сетка 2x2 инвентаря игрока) и выполняется
+ * только при изменении сетки или при получении результата от сервера, а не в каждом кадре.
+ * Контейнер верстака заменяется при открытии GuiCrafting, контейнер инвентаря — при появлении
+ * локального игрока в мире, до того как GuiInventory его получит. Поля, до которых приходится
+ * добираться отражением, ищутся один раз.
+ */
 @SideOnly(Side.CLIENT)
 public class CraftingGuiHandler {
 
     private static final String[] GUI_CONTAINER_INVENTORY_SLOTS = {"inventorySlots", "field_147002_h"};
-    private static final String[] CONTAINER_WORKBENCH_WORLD = {"world", "worldObj", "field_75170_e"};
-    private static final String[] CONTAINER_WORKBENCH_POS = {"pos", "field_178146_j"};
+    private static final String[] CONTAINER_WORKBENCH_WORLD = {"world", "worldObj", "field_75161_g", "field_75170_e"};
+    private static final String[] CONTAINER_WORKBENCH_POS = {"pos", "field_178145_h", "field_178146_j"};
+
+    // Найденные поля (null — ещё не искали)
+    private static Field guiContainerSlotsField;
+    private static Field workbenchWorldField;
+    private static Field workbenchPosField;
 
     public CraftingGuiHandler() {
         MinecraftForge.EVENT_BUS.register(this);
@@ -57,42 +71,46 @@ public class CraftingGuiHandler {
         }
 
         GuiCrafting gui = (GuiCrafting) event.getGui();
-        CraftMastery.logger.info("GuiCrafting opened, attempting to guard container");
         replaceContainer(gui, player);
     }
 
+    /**
+     * Событие: сущность появилась в мире; локальному игроку ставится защищённый контейнер инвентаря
+     */
     @SubscribeEvent
-    public void onDrawScreen(GuiScreenEvent.DrawScreenEvent.Pre event) {
-        if (!(event.getGui() instanceof GuiCrafting) && !(event.getGui() instanceof GuiInventory)) {
+    public void onEntityJoinWorld(EntityJoinWorldEvent event) {
+        if (!event.getWorld().isRemote || !(event.getEntity() instanceof EntityPlayerSP)) {
             return;
         }
 
-        Minecraft mc = Minecraft.getMinecraft();
-        EntityPlayer player = mc.player;
-        if (player == null) {
+        EntityPlayer player = (EntityPlayer) event.getEntity();
+        Container original = player.inventoryContainer;
+        if (original instanceof BlockedContainerPlayer) {
             return;
         }
 
-        if (event.getGui() instanceof GuiCrafting) {
-            clearResultIfBlocked((GuiCrafting) event.getGui(), player);
-        } else if (event.getGui() instanceof GuiInventory) {
-            clearInventoryResultIfBlocked((GuiInventory) event.getGui(), player);
+        BlockedContainerPlayer guarded = new BlockedContainerPlayer(player);
+        guarded.windowId = original.windowId;
+        if (player.openContainer == original) {
+            player.openContainer = guarded;
         }
+        player.inventoryContainer = guarded;
+        CraftMastery.logger.debug("Replaced player inventory container with guarded variant");
     }
 
     private void replaceContainer(GuiCrafting gui, EntityPlayer player) {
         try {
             Container original = getContainer(gui);
             if (original == null) {
-                CraftMastery.logger.info("GuiCrafting has no container instance, skipping guard");
+                CraftMastery.logger.debug("GuiCrafting has no container instance, skipping guard");
                 return;
             }
             if (original instanceof BlockedContainerWorkbench) {
-                CraftMastery.logger.info("GuiCrafting container already guarded");
+                CraftMastery.logger.debug("GuiCrafting container already guarded");
                 return; // уже заменён
             }
             if (!(original instanceof ContainerWorkbench)) {
-                CraftMastery.logger.info("GuiCrafting container is not a ContainerWorkbench ({}), skipping guard", original.getClass().getName());
+                CraftMastery.logger.debug("GuiCrafting container is not a ContainerWorkbench ({}), skipping guard", original.getClass().getName());
                 return;
             }
 
@@ -111,23 +129,27 @@ public class CraftingGuiHandler {
             }
 
             blocked.updateResultVisibility();
-            CraftMastery.logger.info("Replaced crafting container with guarded variant");
+            CraftMastery.logger.debug("Replaced crafting container with guarded variant");
         } catch (Exception e) {
             CraftMastery.logger.warn("Could not replace crafting container", e);
         }
     }
 
-    private Container getContainer(GuiContainer gui) throws Exception {
-        Field field = findField(gui.getClass(), GUI_CONTAINER_INVENTORY_SLOTS);
-        return (Container) field.get(gui);
+    private static Container getContainer(GuiContainer gui) throws Exception {
+        if (guiContainerSlotsField == null) {
+            guiContainerSlotsField = findField(GuiContainer.class, GUI_CONTAINER_INVENTORY_SLOTS);
+        }
+        return (Container) guiContainerSlotsField.get(gui);
     }
 
-    private void setContainer(GuiCrafting gui, Container container) throws Exception {
-        Field field = findField(gui.getClass(), GUI_CONTAINER_INVENTORY_SLOTS);
-        field.set(gui, container);
+    private static void setContainer(GuiCrafting gui, Container container) throws Exception {
+        if (guiContainerSlotsField == null) {
+            guiContainerSlotsField = findField(GuiContainer.class, GUI_CONTAINER_INVENTORY_SLOTS);
+        }
+        guiContainerSlotsField.set(gui, container);
     }
 
-    private Field findField(Class<?> clazz, String[] names) throws NoSuchFieldException {
+    private static Field findField(Class<?> clazz, String[] names) throws NoSuchFieldException {
         Class<?> current = clazz;
         while (current != null) {
             for (String name : names) {
@@ -142,64 +164,24 @@ public class CraftingGuiHandler {
         throw new NoSuchFieldException(names[0]);
     }
 
-    private void clearResultIfBlocked(GuiCrafting gui, EntityPlayer player) {
+    private static World getWorkbenchWorld(ContainerWorkbench workbench, World fallback) {
         try {
-            Container container = getContainer(gui);
-            if (!(container instanceof BlockedContainerWorkbench)) {
-                CraftMastery.logger.debug("GuiCrafting container is not guarded during draw ({}), skipping clear", container != null ? container.getClass().getName() : "null");
-                return;
-            }
-
-            BlockedContainerWorkbench blocked = (BlockedContainerWorkbench) container;
-            blocked.updateResultVisibility();
-        } catch (Exception e) {
-            CraftMastery.logger.warn("Could not clear crafting result", e);
-        }
-    }
-
-    private void clearInventoryResultIfBlocked(GuiInventory gui, EntityPlayer player) {
-        try {
-            Container container = getContainer(gui);
-            if (!(container instanceof ContainerPlayer)) {
-                CraftMastery.logger.debug("GuiInventory container is not a ContainerPlayer ({}), skipping clear", container != null ? container.getClass().getName() : "null");
-                return;
+            if (workbenchWorldField == null) {
+                workbenchWorldField = findField(ContainerWorkbench.class, CONTAINER_WORKBENCH_WORLD);
             }
-
-            ContainerPlayer playerContainer = (ContainerPlayer) container;
-            ItemStack result = playerContainer.craftResult.getStackInSlot(0);
-            if (result.isEmpty() || isRecipeAllowed(player, playerContainer.craftMatrix)) {
-                return;
-            }
-
-            playerContainer.craftResult.setInventorySlotContents(0, ItemStack.EMPTY);
-            if (!playerContainer.inventorySlots.isEmpty()) {
-                Slot resultSlot = playerContainer.inventorySlots.get(0);
-                if (resultSlot != null) {
-                    resultSlot.putStack(ItemStack.EMPTY);
-                }
-            }
-
-            // Update slots to ensure GUI refreshes
-            playerContainer.detectAndSendChanges();
-
-            CraftMastery.logger.info("Cleared blocked player inventory crafting result on client");
-        } catch (Exception e) {
-            CraftMastery.logger.warn("Could not clear player inventory crafting result", e);
-        }
-    }
-
-    private World getWorkbenchWorld(ContainerWorkbench workbench, World fallback) {
-        try {
-            World world = ObfuscationReflectionHelper.getPrivateValue(ContainerWorkbench.class, workbench, CONTAINER_WORKBENCH_WORLD);
+            World world = (World) workbenchWorldField.get(workbench);
             return world != null ? world : fallback;
         } catch (Exception ignored) {
             return fallback;
         }
     }
 
-    private BlockPos getWorkbenchPos(ContainerWorkbench workbench) {
+    private static BlockPos getWorkbenchPos(ContainerWorkbench workbench) {
         try {
-            BlockPos pos = ObfuscationReflectionHelper.getPrivateValue(ContainerWorkbench.class, workbench, CONTAINER_WORKBENCH_POS);
+            if (workbenchPosField == null) {
+                workbenchPosField = findField(ContainerWorkbench.class, CONTAINER_WORKBENCH_POS);
+            }
+            BlockPos pos = (BlockPos) workbenchPosField.get(workbench);
             return pos != null ? pos : BlockPos.ORIGIN;
         } catch (Exception ignored) {
             return BlockPos.ORIGIN;
@@ -217,7 +199,23 @@ public class CraftingGuiHandler {
             return false;
         }
 
-        return entry.isStudiedByPlayer(player.getUniqueID());
+        return CraftDecisionCache.getInstance().isAllowed(player, entry);
+    }
+
+    /**
+     * Убирает результат, если рецепт в сетке не изучен (слот результата всегда нулевой)
+     */
+    private static void guardResult(Container container, EntityPlayer player, InventoryCrafting craftMatrix,
+                                    InventoryCraftResult craftResult) {
+        ItemStack result = craftResult.getStackInSlot(0);
+        if (!result.isEmpty() && !isRecipeAllowed(player, craftMatrix)) {
+            craftResult.setInventorySlotContents(0, ItemStack.EMPTY);
+            if (!container.inventorySlots.isEmpty()) {
+                container.inventorySlots.get(0).putStack(ItemStack.EMPTY);
+            }
+            CraftAuditLog.getInstance().record(CraftAuditLog.EventType.RESULT_HIDDEN, player,
+                result.getItem().getRegistryName() != null ? result.getItem().getRegistryName().toString() : null, "NOT_STUDIED", -1);
+        }
     }
 
     private static class BlockedContainerWorkbench extends ContainerWorkbench {
@@ -241,28 +239,18 @@ public class CraftingGuiHandler {
 
         @Override
         public ItemStack transferStackInSlot(EntityPlayer playerIn, int index) {
-            if (index == 0) {
-                ItemStack result = this.craftResult.getStackInSlot(0);
-                if (!result.isEmpty() && !isRecipeAllowed(player, this.craftMatrix)) {
-                    return ItemStack.EMPTY;
-                }
+            if (index == 0 && !this.craftResult.getStackInSlot(0).isEmpty() && !isRecipeAllowed(player, this.craftMatrix)) {
+                return ItemStack.EMPTY;
             }
-
             return super.transferStackInSlot(playerIn, index);
         }
 
         @Override
         public ItemStack slotClick(int slotId, int dragType, ClickType clickType, EntityPlayer playerIn) {
-            if (slotId == 0) {
-                ItemStack result = this.craftResult.getStackInSlot(0);
-                if (!result.isEmpty() && !isRecipeAllowed(player, this.craftMatrix)) {
-                    return ItemStack.EMPTY;
-                }
+            if (slotId == 0 && !this.craftResult.getStackInSlot(0).isEmpty() && !isRecipeAllowed(player, this.craftMatrix)) {
+                return ItemStack.EMPTY;
             }
-
-            ItemStack resultStack = super.slotClick(slotId, dragType, clickType, playerIn);
-            updateResultVisibility();
-            return resultStack;
+            return super.slotClick(slotId, dragType, clickType, playerIn);
         }
 
         @Override
@@ -271,15 +259,73 @@ public class CraftingGuiHandler {
             updateResultVisibility();
         }
 
+        /**
+         * Результат на клиенте присылает сервер, поэтому проверяем его и при установке слота
+         */
+        @Override
+        public void putStackInSlot(int slotID, ItemStack stack) {
+            super.putStackInSlot(slotID, stack);
+            if (slotID == 0) {
+                updateResultVisibility();
+            }
+        }
+
+        @Override
+        public void setAll(List<ItemStack> stacks) {
+            super.setAll(stacks);
+            updateResultVisibility();
+        }
+
         void updateResultVisibility() {
-            ItemStack result = this.craftResult.getStackInSlot(0);
-            if (!result.isEmpty() && !isRecipeAllowed(player, this.craftMatrix)) {
-                this.craftResult.setInventorySlotContents(0, ItemStack.EMPTY);
-                if (!this.inventorySlots.isEmpty()) {
-                    this.inventorySlots.get(0).putStack(ItemStack.EMPTY);
-                }
-                CraftMastery.logger.info("Cleared blocked crafting result on client");
+            guardResult(this, player, this.craftMatrix, this.craftResult);
+        }
+    }
+
+    /**
+     * Контейнер инвентаря игрока с той же защитой сетки 2x2
+     */
+    private static class BlockedContainerPlayer extends ContainerPlayer {
+        private final EntityPlayer player;
+
+        BlockedContainerPlayer(EntityPlayer player) {
+            super(player.inventory, true, player);
+            this.player = player;
+        }
+
+        @Override
+        public ItemStack transferStackInSlot(EntityPlayer playerIn, int index) {
+            if (index == 0 && !this.craftResult.getStackInSlot(0).isEmpty() && !isRecipeAllowed(player, this.craftMatrix)) {
+                return ItemStack.EMPTY;
             }
+            return super.transferStackInSlot(playerIn, index);
+        }
+
+        @Override
+        public ItemStack slotClick(int slotId, int dragType, ClickType clickType, EntityPlayer playerIn) {
+            if (slotId == 0 && !this.craftResult.getStackInSlot(0).isEmpty() && !isRecipeAllowed(player, this.craftMatrix)) {
+                return ItemStack.EMPTY;
+            }
+            return super.slotClick(slotId, dragType, clickType, playerIn);
+        }
+
+        @Override
+        public void onCraftMatrixChanged(IInventory inventoryIn) {
+            super.onCraftMatrixChanged(inventoryIn);
+            guardResult(this, player, this.craftMatrix, this.craftResult);
+        }
+
+        @Override
+        public void putStackInSlot(int slotID, ItemStack stack) {
+            super.putStackInSlot(slotID, stack);
+            if (slotID == 0) {
+                guardResult(this, player, this.craftMatrix, this.craftResult);
+            }
+        }
+
+        @Override
+        public void setAll(List<ItemStack> stacks) {
+            super.setAll(stacks);
+            guardResult(this, player, this.craftMatrix, this.craftResult);
         }
     }
-}
\ No newline at end of file
+}
@@ -5,13 +5,13 @@ import com.khimkhaosow.craftmastery.experience.ExperienceManager;
 import com.khimkhaosow.craftmastery.experience.PlayerExperienceData;
 import com.khimkhaosow.craftmastery.permissions.PermissionManager;
 import com.khimkhaosow.craftmastery.permissions.PermissionType;
+import com.khimkhaosow.craftmastery.recipe.CraftDecisionCache;
 import com.khimkhaosow.craftmastery.recipe.RecipeEntry;
 import com.khimkhaosow.craftmastery.recipe.RecipeManager;
 
 import net.minecraft.inventory.IInventory;
 import net.minecraft.inventory.InventoryCrafting;
 import net.minecraft.item.ItemStack;
-import net.minecraft.item.crafting.CraftingManager;
 import net.minecraft.item.crafting.IRecipe;
 import net.minecraft.util.text.TextComponentString;
 import net.minecraft.util.text.TextFormatting;
@@ -20,6 +20,7 @@ import net.minecraftforge.fml.common.gameevent.PlayerEvent.ItemCraftedEvent;
 import net.minecraftforge.fml.common.eventhandler.EventPriority;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedInEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedOutEvent;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
@@ -28,6 +29,10 @@ import net.minecraftforge.fml.relauncher.SideOnly;
  */
 public class CraftingHandler {
 
+    // Решения для аудита, не выражаемые через CraftDecisionCache.Decision
+    private static final String DECISION_NO_PERMISSION = "NO_PERMISSION";
+    private static final String DECISION_UNKNOWN_RECIPE = "UNKNOWN_RECIPE";
+
     private static CraftingHandler instance;
     private ThreadLocal<net.minecraft.entity.player.EntityPlayer> currentPlayer = new ThreadLocal<>();
 
@@ -66,8 +71,12 @@ public class CraftingHandler {
     public boolean canPlayerCraftRecipe(net.minecraft.entity.player.EntityPlayer player, IRecipe recipe) {
         if (player == null || recipe == null) return true;
 
+        long start = System.nanoTime();
+        CraftDecisionCache decisions = CraftDecisionCache.getInstance();
+
         // Проверяем права доступа
-        if (!PermissionManager.getInstance().hasPermission(player, PermissionType.LEARN_RECIPES)) {
+        if (!decisions.canLearn(player)) {
+            audit(CraftAuditLog.EventType.CRAFT_BLOCKED, player, recipe, DECISION_NO_PERMISSION, start);
             return false;
         }
 
@@ -75,29 +84,30 @@ public class CraftingHandler {
         RecipeEntry recipeEntry = RecipeManager.getInstance().getRecipe(recipe.getRegistryName());
         if (recipeEntry == null) {
             // Если рецепт не найден в системе CraftMastery, блокируем крафт
-            CraftMastery.logger.info("Блокировка крафта - рецепт не в системе: {}", recipe.getRegistryName());
+            audit(CraftAuditLog.EventType.CRAFT_BLOCKED, player, recipe, DECISION_UNKNOWN_RECIPE, start);
             player.sendMessage(new TextComponentString(
                 TextFormatting.RED + "Этот рецепт не добавлен в систему CraftMastery и заблокирован."));
             return false;
         }
 
+        CraftDecisionCache.Decision decision = decisions.getDecision(player, recipeEntry);
+
         // Проверяем, изучен ли рецепт
-        if (recipeEntry.isStudiedByPlayer(player.getUniqueID())) {
-            CraftMastery.logger.info("Крафт разрешен - рецепт изучен: {}", recipe.getRegistryName());
+        if (decision == CraftDecisionCache.Decision.ALLOWED) {
+            audit(CraftAuditLog.EventType.CRAFT_ALLOWED, player, recipe, decision.name(), start);
             return true;
         }
 
+        audit(CraftAuditLog.EventType.CRAFT_BLOCKED, player, recipe, decision.name(), start);
+
         // Проверяем, может ли игрок изучить рецепт
-        PlayerExperienceData expData = ExperienceManager.getInstance().getPlayerData(player);
-        if (recipeEntry.canPlayerStudy(player, expData)) {
+        if (decision == CraftDecisionCache.Decision.STUDIABLE) {
             // Предлагаем изучить рецепт
             suggestRecipeStudy(player, recipeEntry);
-            CraftMastery.logger.info("Крафт заблокирован - рецепт доступен для изучения: {}", recipe.getRegistryName());
             return false;
         }
 
         // Рецепт недоступен
-        CraftMastery.logger.info("Крафт заблокирован - рецепт недоступен: {}", recipe.getRegistryName());
         player.sendMessage(new TextComponentString(
             TextFormatting.RED + "Рецепт '" + recipe.getRecipeOutput().getDisplayName() +
             "' недоступен. Изучите его в интерфейсе CraftMastery (клавиша G)"));
@@ -105,6 +115,15 @@ public class CraftingHandler {
         return false;
     }
 
+    /**
+     * Передаёт решение в журнал аудита (вместо строки в общем логе на каждый крафт)
+     */
+    private static void audit(CraftAuditLog.EventType type, net.minecraft.entity.player.EntityPlayer player,
+                              IRecipe recipe, String decision, long startNanos) {
+        String recipeId = recipe != null && recipe.getRegistryName() != null ? recipe.getRegistryName().toString() : null;
+        CraftAuditLog.getInstance().record(type, player, recipeId, decision, System.nanoTime() - startNanos);
+    }
+
     /**
      * Предлагает игроку изучить рецепт
      */
@@ -131,17 +150,20 @@ public class CraftingHandler {
         setCurrentPlayer(event.player);
 
         net.minecraft.entity.player.EntityPlayer player = event.player;
+        long start = System.nanoTime();
 
         // Проверяем права доступа
-        if (!PermissionManager.getInstance().hasPermission(player, PermissionType.LEARN_RECIPES)) {
+        if (!CraftDecisionCache.getInstance().canLearn(player)) {
+            audit(CraftAuditLog.EventType.CRAFT_CANCELLED, player, null, DECISION_NO_PERMISSION, start);
             cancelCrafting(event, player, "У вас нет прав на крафт");
             return;
         }
 
         // Находим рецепт, который использовался для крафта
-        IRecipe usedRecipe = findRecipeFromOutput(event.craftMatrix, event.crafting);
+        IRecipe usedRecipe = findRecipeFromOutput(event.craftMatrix, event.crafting, player.world);
         if (usedRecipe == null) {
             if (!PermissionManager.getInstance().hasPermission(player, PermissionType.ADMIN_SETTINGS)) {
+                audit(CraftAuditLog.EventType.CRAFT_CANCELLED, player, null, DECISION_UNKNOWN_RECIPE, start);
                 cancelCrafting(event, player, "Неизвестный рецепт");
             }
             return;
@@ -151,15 +173,16 @@ public class CraftingHandler {
         RecipeEntry recipeEntry = RecipeManager.getInstance().getRecipe(usedRecipe.getRegistryName());
         if (recipeEntry == null) {
             // Это рецепт не в системе CraftMastery - блокируем
-            CraftMastery.logger.info("Блокировка крафта в onItemCrafted - рецепт не в системе: {}", usedRecipe.getRegistryName());
+            audit(CraftAuditLog.EventType.CRAFT_CANCELLED, player, usedRecipe, DECISION_UNKNOWN_RECIPE, start);
             cancelCrafting(event, player, "Этот рецепт не добавлен в систему CraftMastery");
             return;
         }
 
         // Проверяем изучен ли рецепт
-        if (!recipeEntry.isStudiedByPlayer(player.getUniqueID())) {
+        CraftDecisionCache.Decision decision = CraftDecisionCache.getInstance().getDecision(player, recipeEntry);
+        if (decision != CraftDecisionCache.Decision.ALLOWED) {
             // Отменяем крафт до того, как предмет появится в инвентаре
-            CraftMastery.logger.info("Блокировка крафта в onItemCrafted - рецепт не изучен: {}", usedRecipe.getRegistryName());
+            audit(CraftAuditLog.EventType.CRAFT_CANCELLED, player, usedRecipe, decision.name(), start);
             cancelCrafting(event, player, "Рецепт '" + usedRecipe.getRecipeOutput().getDisplayName() + "' не изучен");
             
             // Показываем информацию о рецепте
@@ -167,7 +190,7 @@ public class CraftingHandler {
             return;
         }
 
-        CraftMastery.logger.info("Крафт разрешен в onItemCrafted: {}", usedRecipe.getRegistryName());
+        audit(CraftAuditLog.EventType.CRAFT_ALLOWED, player, usedRecipe, decision.name(), start);
 
         // Рецепт изучен - начисляем опыт за крафт
         awardCraftingExperience(player, usedRecipe);
@@ -177,8 +200,6 @@ public class CraftingHandler {
      * Отменяет крафт и возвращает материалы
      */
     private void cancelCrafting(ItemCraftedEvent event, net.minecraft.entity.player.EntityPlayer player, String reason) {
-        CraftMastery.logger.info("Отмена крафта: {}", reason);
-
         // Делаем копию результата до того, как обнулим стек
         ItemStack craftedCopy = ItemStack.EMPTY;
         if (event.crafting != null && !event.crafting.isEmpty()) {
@@ -194,7 +215,6 @@ public class CraftingHandler {
             if (!cursorStack.isEmpty() && !craftedCopy.isEmpty()
                 && ItemStack.areItemsEqual(cursorStack, craftedCopy)
                 && ItemStack.areItemStackTagsEqual(cursorStack, craftedCopy)) {
-                CraftMastery.logger.info("Очищен курсор от заблокированного рецепта: {}", cursorStack.getItem().getRegistryName());
                 player.inventory.setItemStack(net.minecraft.item.ItemStack.EMPTY);
             }
         } catch (Exception e) {
@@ -204,8 +224,6 @@ public class CraftingHandler {
         // Для shift-клика предмет, возможно, уже добавлен в инвентарь
         if (!craftedCopy.isEmpty()) {
             int amountToRemove = craftedCopy.getCount();
-            CraftMastery.logger.info("Удаляем {} предмет(ов) из инвентаря игрока", amountToRemove);
-
             for (int slot = 0; slot < player.inventory.getSizeInventory(); slot++) {
                 ItemStack invStack = player.inventory.getStackInSlot(slot);
                 if (!invStack.isEmpty()
@@ -226,7 +244,7 @@ public class CraftingHandler {
             }
 
             if (amountToRemove > 0) {
-                CraftMastery.logger.info("Осталось удалить {} предмет(ов) — возможно, они уже отсутствовали", amountToRemove);
+                CraftMastery.logger.debug("{} crafted item(s) were not found in the inventory of {}", amountToRemove, player.getName());
             }
         }
 
@@ -268,28 +286,12 @@ public class CraftingHandler {
     }
 
     /**
-     * Находит рецепт по результату крафта
+     * Находит рецепт по результату крафта через индекс результатов RecipeManager
      */
-    private IRecipe findRecipeFromOutput(IInventory craftMatrix, ItemStack output) {
+    private IRecipe findRecipeFromOutput(IInventory craftMatrix, ItemStack output, net.minecraft.world.World world) {
         if (output.isEmpty()) return null;
 
-        // Проверяем все рецепты
-        for (IRecipe recipe : CraftingManager.REGISTRY) {
-            if (recipe.getRecipeOutput().isEmpty()) continue;
-
-            // Сравниваем результаты
-            if (ItemStack.areItemsEqual(recipe.getRecipeOutput(), output) &&
-                ItemStack.areItemStackTagsEqual(recipe.getRecipeOutput(), output)) {
-
-                // Проверяем, может ли этот рецепт быть использован с текущими ингредиентами
-                // Временно упрощаем проверку - просто проверяем, что результат совпадает
-                if (recipe.getRecipeOutput().getCount() <= output.getCount()) {
-                    return recipe;
-                }
-            }
-        }
-
-        return null;
+        return RecipeManager.getInstance().getOutputIndex().findRecipe(craftMatrix, output, world);
     }
 
     /**
@@ -312,6 +314,7 @@ public class CraftingHandler {
         // Добавляем опыт
         expData.addExperience(com.khimkhaosow.craftmastery.experience.ExperienceType.CRAFTING,
                              baseExperience * multiplier);
+        ExperienceManager.getInstance().commitPlayerData(player);
 
         // Показываем уведомление если включено
         if (com.khimkhaosow.craftmastery.config.ModConfig.showExperienceNotifications) {
@@ -341,6 +344,14 @@ public class CraftingHandler {
         ExperienceManager.getInstance().getPlayerData(player);
     }
 
+    /**
+     * Обработчик выхода игрока
+     */
+    @SubscribeEvent
+    public void onPlayerLogout(PlayerLoggedOutEvent event) {
+        CraftAuditLog.getInstance().forgetPlayer(event.player.getUniqueID());
+    }
+
     /**
      * Проверяет, нужно ли скрывать рецепт в JEI для игрока
      */
@@ -348,8 +359,10 @@ public class CraftingHandler {
     public boolean shouldHideRecipeInJEI(net.minecraft.entity.player.EntityPlayer player, IRecipe recipe) {
         if (player == null || recipe == null) return false;
 
+        CraftDecisionCache decisions = CraftDecisionCache.getInstance();
+
         // Проверяем права
-        if (!PermissionManager.getInstance().hasPermission(player, PermissionType.LEARN_RECIPES)) {
+        if (!decisions.canLearn(player)) {
             return true; // Скрываем все рецепты если нет прав
         }
 
@@ -358,11 +371,6 @@ public class CraftingHandler {
         if (recipeEntry == null) return false;
 
         // Скрываем, если рецепт не изучен и не доступен для изучения
-        if (!recipeEntry.isStudiedByPlayer(player.getUniqueID())) {
-            PlayerExperienceData expData = ExperienceManager.getInstance().getPlayerData(player);
-            return !recipeEntry.canPlayerStudy(player, expData);
-        }
-
-        return false;
+        return decisions.getDecision(player, recipeEntry) == CraftDecisionCache.Decision.LOCKED;
     }
 }
\ No newline at end of file
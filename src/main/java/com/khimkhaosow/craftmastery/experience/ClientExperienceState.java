@@ -0,0 +1,87 @@
+package com.khimkhaosow.craftmastery.experience;
+
+import com.khimkhaosow.craftmastery.network.NetworkHandler;
+import com.khimkhaosow.craftmastery.network.messages.MessageExperienceResync;
+import com.khimkhaosow.craftmastery.network.messages.MessageExperienceSync;
+
+import net.minecraft.client.Minecraft;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.network.FMLNetworkEvent.ClientDisconnectionFromServerEvent;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
+
+/**
+ * Данные опыта локального игрока, полученные с сервера.
+ * Один экземпляр PlayerExperienceData обновляется на месте снимками и дельтами;
+ * при пропуске номера последовательности запрашивается полный снимок.
+ */
+@SideOnly(Side.CLIENT)
+public class ClientExperienceState {
+
+    private static ClientExperienceState instance;
+
+    private PlayerExperienceData data;
+    private int lastSequence = -1;
+    private boolean awaitingSnapshot = true;
+
+    public static ClientExperienceState getInstance() {
+        if (instance == null) {
+            instance = new ClientExperienceState();
+        }
+        return instance;
+    }
+
+    /**
+     * Применяет сообщение синхронизации
+     */
+    public void accept(MessageExperienceSync message) {
+        Minecraft mc = Minecraft.getMinecraft();
+        if (mc.player == null) return;
+
+        if (message.isFullSnapshot()) {
+            data = new PlayerExperienceData(mc.player.getUniqueID());
+            awaitingSnapshot = false;
+        } else if (awaitingSnapshot) {
+            // Снимок уже запрошен, дельты до него не применимы
+            return;
+        } else if (data == null || message.getSequence() != lastSequence + 1) {
+            requestSnapshot();
+            return;
+        }
+
+        message.applyTo(data);
+        lastSequence = message.getSequence();
+
+        ExperienceManager manager = ExperienceManager.getInstance();
+        manager.handleSyncUpdate(data, manager.getLevelProgress(data));
+    }
+
+    /**
+     * Получает данные локального игрока или null, если снимок ещё не получен
+     */
+    public PlayerExperienceData getData() {
+        return data;
+    }
+
+    /**
+     * Сбрасывает состояние (например, при отключении от сервера)
+     */
+    public void clear() {
+        data = null;
+        lastSequence = -1;
+        awaitingSnapshot = true;
+    }
+
+    /**
+     * Событие: клиент отключился от сервера
+     */
+    @SubscribeEvent
+    public void onClientDisconnect(ClientDisconnectionFromServerEvent event) {
+        Minecraft.getMinecraft().addScheduledTask(this::clear);
+    }
+
+    private void requestSnapshot() {
+        awaitingSnapshot = true;
+        NetworkHandler.INSTANCE.sendToServer(new MessageExperienceResync());
+    }
+}
@@ -0,0 +1,133 @@
+package com.khimkhaosow.craftmastery.experience;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import net.minecraft.entity.player.EntityPlayer;
+
+/**
+ * Накопитель начислений опыта.
+ * События добычи и убийств складываются по игрокам и применяются пачкой раз в несколько тиков:
+ * один пересчёт уровня, одно сохранение, один пакет синхронизации и одно уведомление
+ * вместо полного цикла на каждый сломанный блок. Используется только в серверном потоке
+ * (в одиночной игре клиентский поток сюда не пишет, см. ExperienceManager.addExperience).
+ */
+public class ExperienceAccumulator {
+
+    private static final ExperienceType[] TYPES = ExperienceType.values();
+
+    // Накопленные начисления по игрокам (в порядке поступления)
+    private final Map<UUID, PendingGain> pending = new LinkedHashMap<>();
+
+    /**
+     * Добавляет начисление опыта и очков изучения
+     */
+    public void add(EntityPlayer player, ExperienceType type, float experience, int learningPoints) {
+        pending.computeIfAbsent(player.getUniqueID(), uuid -> new PendingGain(uuid))
+            .add(player, type, experience, learningPoints);
+    }
+
+    /**
+     * Создаёт начисление одного события без накопления (для клиентского потока, который накопитель не использует)
+     */
+    public static PendingGain single(EntityPlayer player, ExperienceType type, float experience, int learningPoints) {
+        PendingGain gain = new PendingGain(player.getUniqueID());
+        gain.add(player, type, experience, learningPoints);
+        return gain;
+    }
+
+    /**
+     * Проверяет, есть ли неприменённые начисления
+     */
+    public boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Забирает все накопленные начисления
+     */
+    public List<PendingGain> drainAll() {
+        List<PendingGain> drained = new ArrayList<>(pending.values());
+        pending.clear();
+        return drained;
+    }
+
+    /**
+     * Забирает начисления одного игрока (или null, если их нет)
+     */
+    public PendingGain drain(UUID playerUUID) {
+        return pending.remove(playerUUID);
+    }
+
+    /**
+     * Возвращает забранные начисления обратно (например, пока прогресс игрока ещё загружается)
+     */
+    public void restore(PendingGain gain) {
+        PendingGain existing = pending.get(gain.playerUUID);
+        if (existing == null) {
+            pending.put(gain.playerUUID, gain);
+            return;
+        }
+        for (int i = 0; i < TYPES.length; i++) {
+            existing.experience[i] += gain.experience[i];
+            existing.events[i] += gain.events[i];
+        }
+        existing.learningPoints += gain.learningPoints;
+    }
+
+    /**
+     * Сумма начислений одного игрока за окно
+     */
+    public static class PendingGain {
+        private final UUID playerUUID;
+        private EntityPlayer player;
+        private final float[] experience = new float[TYPES.length];
+        private final int[] events = new int[TYPES.length];
+        private int learningPoints;
+
+        PendingGain(UUID playerUUID) {
+            this.playerUUID = playerUUID;
+        }
+
+        private void add(EntityPlayer player, ExperienceType type, float amount, int points) {
+            this.player = player;
+            experience[type.ordinal()] += amount;
+            events[type.ordinal()]++;
+            learningPoints += points;
+        }
+
+        public UUID getPlayerUUID() {
+            return playerUUID;
+        }
+
+        /**
+         * Получает последний известный объект игрока
+         */
+        public EntityPlayer getPlayer() {
+            return player;
+        }
+
+        public float getExperience(ExperienceType type) {
+            return experience[type.ordinal()];
+        }
+
+        public int getEventCount(ExperienceType type) {
+            return events[type.ordinal()];
+        }
+
+        public float getTotalExperience() {
+            float total = 0.0f;
+            for (float amount : experience) {
+                total += amount;
+            }
+            return total;
+        }
+
+        public int getLearningPoints() {
+            return learningPoints;
+        }
+    }
+}
@@ -1,87 +1,138 @@
 package com.khimkhaosow.craftmastery.experience;
 
+import java.util.Arrays;
+
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.khimkhaosow.craftmastery.CraftMastery;
 
-// --- Добавленные импорты ---
-import com.khimkhaosow.craftmastery.experience.ExperienceType; // Для использования в других методах (если потребуется)
-import com.khimkhaosow.craftmastery.experience.PointsType;     // Для использования в других методах (если потребуется)
-
 /**
- * Класс для управления кривой опыта и расчета уровней
+ * Кривая опыта — единственный источник правил уровней.
+ * Опыт хранится в фиксированной точке: 1 единица опыта = XP_SCALE долей в long, поэтому
+ * большие суммы не теряют точность, как накопленные float. Таблица хранит префиксные суммы
+ * (сколько опыта нужно набрать с 1-го уровня, чтобы достичь уровня), поэтому стоимость уровня —
+ * O(1), а уровень по опыту — двоичный поиск. Размер кривой задаётся JSON и не ограничен.
+ * Уровни за концом таблицы стоят по стандартной формуле, поэтому прогресс не упирается в длину таблицы;
+ * предел задаётся только явно ключом "maxLevel" — на нём опыт копится в суммах, но не в текущем уровне.
+ * Таблица неизменяема и заменяется целиком; getVersion() растёт при каждой замене.
  */
 public class ExperienceCurve {
-    private static final int MAX_LEVEL = 100;
-    private final long[] experienceForLevel;
-    private final int[] pointsPerLevel;
-    private final float[] multiplierPerLevel;
+
+    // Долей единицы опыта в фиксированной точке
+    public static final long XP_SCALE = 1000L;
+
+    // Уровней в стандартной таблице (дальше та же формула считается на лету)
+    private static final int DEFAULT_TABLE_LEVELS = 100;
+
+    // Без явного предела уровень не ограничен
+    private static final int UNCAPPED = Integer.MAX_VALUE;
+
+    private static ExperienceCurve instance;
+
+    private volatile Table table;
+    private volatile int version = 0;
 
     public ExperienceCurve() {
-        this.experienceForLevel = new long[MAX_LEVEL + 1];
-        this.pointsPerLevel = new int[MAX_LEVEL + 1];
-        this.multiplierPerLevel = new float[MAX_LEVEL + 1];
+        this.table = createDefaultTable();
+    }
 
-        initializeDefaultCurve();
+    public static ExperienceCurve getInstance() {
+        if (instance == null) {
+            instance = new ExperienceCurve();
+        }
+        return instance;
     }
 
     /**
-     * Инициализирует стандартную кривую опыта
+     * Стандартная стоимость уровня: 100 * уровень^1.5 опыта (как раньше считал PlayerExperienceData)
      */
-    private void initializeDefaultCurve() {
-        // Базовый опыт для первого уровня
-        experienceForLevel[0] = 0;
-        experienceForLevel[1] = 100;
-
-        // Очки за уровень
-        pointsPerLevel[0] = 0;
-        pointsPerLevel[1] = 1;
-
-        // Множители опыта
-        multiplierPerLevel[0] = 1.0f;
-        multiplierPerLevel[1] = 1.0f;
-
-        // Генерируем значения для остальных уровней
-        for (int level = 2; level <= MAX_LEVEL; level++) {
-            // Формула: каждый следующий уровень требует на 15% больше опыта
-            experienceForLevel[level] = Math.round(experienceForLevel[level - 1] * 1.15);
+    private static long defaultLevelCost(int level) {
+        return Math.round(100.0 * Math.pow(level, 1.5));
+    }
 
+    /**
+     * Стандартная кривая без предела уровня
+     */
+    private static Table createDefaultTable() {
+        long[] costs = new long[DEFAULT_TABLE_LEVELS - 1];
+        int[] points = new int[DEFAULT_TABLE_LEVELS + 1];
+        float[] multipliers = new float[DEFAULT_TABLE_LEVELS + 1];
+        for (int level = 1; level < DEFAULT_TABLE_LEVELS; level++) {
+            costs[level - 1] = defaultLevelCost(level);
+        }
+        for (int level = 1; level <= DEFAULT_TABLE_LEVELS; level++) {
             // Очки: каждые 5 уровней дают +1 очко
-            pointsPerLevel[level] = 1 + (level / 5);
-
+            points[level] = 1 + (level / 5);
             // Множитель: небольшое увеличение каждые 10 уровней
-            multiplierPerLevel[level] = 1.0f + (level / 10) * 0.1f;
+            multipliers[level] = 1.0f + (level / 10) * 0.1f;
         }
+        multipliers[0] = 1.0f;
+        return new Table(costs, points, multipliers, UNCAPPED);
     }
 
     /**
-     * Загружает кривую опыта из JSON конфигурации
+     * Загружает кривую опыта из JSON конфигурации.
+     * "levelCosts" — стоимость каждого уровня, начиная с перехода 1 → 2 (любой длины, дальше — стандартная формула);
+     * старый ключ "experienceCurve" — суммарный опыт для достижения уровня по индексу уровня;
+     * "maxLevel" — предел уровня (0 или нет ключа — без предела).
+     * При ошибке остаётся прежняя кривая.
      */
     public void loadFromJson(JsonObject json) {
         try {
-            if (json.has("experienceCurve")) {
-                JsonArray expArray = json.getAsJsonArray("experienceCurve");
-                for (int i = 0; i < expArray.size() && i <= MAX_LEVEL; i++) {
-                    experienceForLevel[i] = expArray.get(i).getAsLong();
+            Table current = table;
+            long[] costs = current.costs();
+            if (json.has("levelCosts")) {
+                JsonArray array = json.getAsJsonArray("levelCosts");
+                costs = new long[array.size()];
+                for (int i = 0; i < costs.length; i++) {
+                    costs[i] = array.get(i).getAsLong();
+                }
+            } else if (json.has("experienceCurve")) {
+                JsonArray array = json.getAsJsonArray("experienceCurve");
+                costs = new long[Math.max(0, array.size() - 2)];
+                for (int i = 0; i < costs.length; i++) {
+                    costs[i] = array.get(i + 2).getAsLong() - array.get(i + 1).getAsLong();
                 }
             }
+            int cap = current.maxLevel;
+            if (json.has("maxLevel")) {
+                int configured = json.get("maxLevel").getAsInt();
+                cap = configured > 0 ? configured : UNCAPPED;
+            }
+            if (cap <= costs.length) {
+                // Уровни за пределом недостижимы — их стоимость не нужна
+                costs = Arrays.copyOf(costs, cap - 1);
+            }
+            int levels = costs.length + 1;
 
+            int[] points = new int[levels + 1];
             if (json.has("pointsPerLevel")) {
-                JsonArray pointsArray = json.getAsJsonArray("pointsPerLevel");
-                for (int i = 0; i < pointsArray.size() && i <= MAX_LEVEL; i++) {
-                    pointsPerLevel[i] = pointsArray.get(i).getAsInt();
+                JsonArray array = json.getAsJsonArray("pointsPerLevel");
+                for (int i = 0; i <= levels; i++) {
+                    points[i] = Math.max(0, i < array.size() ? array.get(i).getAsInt() : points[Math.max(0, i - 1)]);
                 }
+            } else {
+                for (int i = 0; i <= levels; i++) points[i] = current.getPoints(i);
             }
 
+            float[] multipliers = new float[levels + 1];
             if (json.has("multipliers")) {
-                JsonArray multArray = json.getAsJsonArray("multipliers");
-                for (int i = 0; i < multArray.size() && i <= MAX_LEVEL; i++) {
-                    multiplierPerLevel[i] = multArray.get(i).getAsFloat();
+                JsonArray array = json.getAsJsonArray("multipliers");
+                for (int i = 0; i <= levels; i++) {
+                    multipliers[i] = Math.max(0.1f, i < array.size() ? array.get(i).getAsFloat() : multipliers[Math.max(0, i - 1)]);
                 }
+            } else {
+                for (int i = 0; i <= levels; i++) multipliers[i] = current.getMultiplier(i);
             }
-        } catch (Exception e) {
-            CraftMastery.logger.error("Error loading experience curve from JSON", e);
-            initializeDefaultCurve(); // Восстанавливаем стандартную кривую в случае ошибки
+
+            replace(new Table(costs, points, multipliers, cap));
+            if (cap == UNCAPPED) {
+                CraftMastery.logger.info("Loaded experience curve with {} levels, uncapped", levels);
+            } else {
+                CraftMastery.logger.info("Loaded experience curve with {} levels, capped at level {}", levels, cap);
+            }
+        } catch (RuntimeException e) {
+            CraftMastery.logger.error("Error loading experience curve from JSON, keeping the current curve", e);
         }
     }
 
@@ -89,98 +140,157 @@ public class ExperienceCurve {
      * Сохраняет кривую опыта в JSON
      */
     public JsonObject saveToJson() {
+        Table current = table;
         JsonObject json = new JsonObject();
-        JsonArray expArray = new JsonArray();
+        JsonArray costsArray = new JsonArray();
         JsonArray pointsArray = new JsonArray();
         JsonArray multArray = new JsonArray();
 
-        for (int i = 0; i <= MAX_LEVEL; i++) {
-            expArray.add(experienceForLevel[i]);
-            pointsArray.add(pointsPerLevel[i]);
-            multArray.add(multiplierPerLevel[i]);
+        for (long cost : current.costs()) {
+            costsArray.add(cost);
+        }
+        for (int i = 0; i <= current.tableLevels; i++) {
+            pointsArray.add(current.getPoints(i));
+            multArray.add(current.getMultiplier(i));
         }
 
-        json.add("experienceCurve", expArray);
+        json.add("levelCosts", costsArray);
         json.add("pointsPerLevel", pointsArray);
         json.add("multipliers", multArray);
+        if (current.maxLevel != UNCAPPED) {
+            json.addProperty("maxLevel", current.maxLevel);
+        }
 
         return json;
     }
 
     /**
-     * Получает необходимый опыт для достижения уровня
+     * Стоимость уровня (опыт от его начала до следующего) в фиксированной точке; 0 на максимальном уровне
      */
-    public long getExperienceForLevel(int level) {
-        if (level < 0) return 0;
-        if (level > MAX_LEVEL) level = MAX_LEVEL; // Ограничиваем максимальным уровнем
-        return experienceForLevel[level];
+    public long getLevelCostFixed(int level) {
+        return table.getLevelCost(level);
     }
 
     /**
-     * Вычисляет уровень по опыту
+     * Опыт, набранный с 1-го уровня до начала уровня, в фиксированной точке
+     * (Long.MAX_VALUE — уровень так далеко за таблицей, что недостижим)
      */
-    public int calculateLevel(long experience) {
-        for (int level = MAX_LEVEL; level >= 0; level--) {
-            if (experience >= experienceForLevel[level]) {
-                return level;
-            }
+    public long getCumulativeFixed(int level) {
+        Table current = table;
+        if (level <= 1) return 0;
+        level = Math.min(level, current.maxLevel);
+        if (level <= current.tableLevels) {
+            return current.cumulative[level];
         }
-        return 0; // Если опыт меньше, чем нужно для 1-го уровня
+
+        long cumulative = current.cumulative[current.tableLevels];
+        for (int next = current.tableLevels; next < level; next++) {
+            long cost = current.getLevelCost(next);
+            if (cumulative > Long.MAX_VALUE - cost) return Long.MAX_VALUE;
+            cumulative += cost;
+        }
+        return cumulative;
     }
 
     /**
-     * Вычисляет прогресс до следующего уровня (0.0 - 1.0)
+     * Уровень, на котором оказывается игрок с указанным опытом от начала 1-го уровня (фиксированная точка)
      */
-    public float calculateProgress(long experience) {
-        int currentLevel = calculateLevel(experience);
-        if (currentLevel >= MAX_LEVEL) return 1.0f; // Максимальный уровень - 100% прогресс
+    public int levelForCumulativeFixed(long experience) {
+        Table current = table;
+        long[] cumulative = current.cumulative;
+        // Последний уровень, начало которого не больше опыта
+        int index = Arrays.binarySearch(cumulative, 1, cumulative.length, experience);
+        if (index < 0) {
+            index = -index - 2;
+        } else {
+            // Одинаковые префиксы невозможны (стоимость уровня > 0), но на всякий случай берём последний
+            while (index + 1 < cumulative.length && cumulative[index + 1] == experience) index++;
+        }
+        int level = Math.max(1, index);
+        if (level < current.tableLevels) {
+            return level;
+        }
 
-        long currentLevelExp = experienceForLevel[currentLevel];
-        long nextLevelExp = experienceForLevel[currentLevel + 1];
-        long expInLevel = experience - currentLevelExp;
-        long expNeeded = nextLevelExp - currentLevelExp;
+        // За концом таблицы уровни идут по стандартной формуле до предела
+        long start = cumulative[current.tableLevels];
+        while (level < current.maxLevel) {
+            long cost = current.getLevelCost(level);
+            if (experience - start < cost) break;
+            start += cost;
+            level++;
+        }
+        return level;
+    }
 
-        return (float) expInLevel / expNeeded;
+    /**
+     * Получает суммарный опыт для достижения уровня
+     */
+    public long getExperienceForLevel(int level) {
+        return getCumulativeFixed(level) / XP_SCALE;
+    }
+
+    /**
+     * Вычисляет уровень по суммарному опыту
+     */
+    public int calculateLevel(long experience) {
+        return levelForCumulativeFixed(experience * XP_SCALE);
+    }
+
+    /**
+     * Вычисляет прогресс до следующего уровня (0.0 - 1.0) по суммарному опыту
+     */
+    public float calculateProgress(long experience) {
+        long fixed = experience * XP_SCALE;
+        int level = levelForCumulativeFixed(fixed);
+        long cost = getLevelCostFixed(level);
+        if (cost <= 0) return 1.0f; // Максимальный уровень - 100% прогресс
+        return (float) (fixed - getCumulativeFixed(level)) / cost;
     }
 
     /**
      * Проверяет, является ли уровень максимальным
      */
     public boolean isMaxLevel(int level) {
-        return level >= MAX_LEVEL;
+        return level >= table.maxLevel;
     }
 
     /**
-     * Получает максимальный уровень
+     * Получает максимальный уровень (Integer.MAX_VALUE — без предела)
      */
     public int getMaxLevel() {
-        return MAX_LEVEL;
+        return table.maxLevel;
+    }
+
+    /**
+     * Номер версии таблицы (для кеширования порогов)
+     */
+    public int getVersion() {
+        return version;
     }
 
     /**
      * Получает количество очков за уровень
      */
     public int getPointsForLevel(int level) {
-        if (level < 0) return 0;
-        if (level > MAX_LEVEL) level = MAX_LEVEL;
-        return pointsPerLevel[level];
+        return table.getPoints(level);
     }
 
     /**
      * Получает множитель опыта для уровня
      */
     public float getMultiplierForLevel(int level) {
-        if (level < 0) return 1.0f;
-        if (level > MAX_LEVEL) level = MAX_LEVEL;
-        return multiplierPerLevel[level];
+        return table.getMultiplier(level);
     }
 
     /**
      * Устанавливает количество очков за уровень (для конфигурации)
      */
     public void setPointsForLevel(int level, int points) {
-        if (level >= 0 && level <= MAX_LEVEL) {
-            pointsPerLevel[level] = Math.max(0, points); // Не меньше 0
+        Table current = table;
+        if (level >= 0 && level <= current.tableLevels) {
+            int[] updated = current.points.clone();
+            updated[level] = Math.max(0, points); // Не меньше 0
+            replace(new Table(current.costs(), updated, current.multipliers, current.maxLevel));
         }
     }
 
@@ -188,8 +298,83 @@ public class ExperienceCurve {
      * Устанавливает множитель опыта для уровня (для конфигурации)
      */
     public void setMultiplierForLevel(int level, float multiplier) {
-        if (level >= 0 && level <= MAX_LEVEL) {
-            multiplierPerLevel[level] = Math.max(0.1f, multiplier); // Не меньше 0.1
+        Table current = table;
+        if (level >= 0 && level <= current.tableLevels) {
+            float[] updated = current.multipliers.clone();
+            updated[level] = Math.max(0.1f, multiplier); // Не меньше 0.1
+            replace(new Table(current.costs(), current.points, updated, current.maxLevel));
+        }
+    }
+
+    private void replace(Table updated) {
+        table = updated;
+        version++;
+    }
+
+    /**
+     * Переводит опыт в фиксированную точку
+     */
+    public static long toFixed(float experience) {
+        return Math.round((double) experience * XP_SCALE);
+    }
+
+    /**
+     * Переводит опыт из фиксированной точки
+     */
+    public static float fromFixed(long experience) {
+        return (float) ((double) experience / XP_SCALE);
+    }
+
+    /**
+     * Неизменяемая таблица кривой: cumulative[уровень] — опыт от начала 1-го уровня (индекс 0 не используется).
+     * tableLevels — последний уровень таблицы, maxLevel — предел уровня (не меньше tableLevels)
+     */
+    private static final class Table {
+        final int tableLevels;
+        final int maxLevel;
+        final long[] cumulative;
+        final int[] points;
+        final float[] multipliers;
+
+        Table(long[] costs, int[] points, float[] multipliers, int maxLevel) {
+            this.tableLevels = costs.length + 1;
+            this.maxLevel = Math.max(maxLevel, tableLevels);
+            this.cumulative = new long[tableLevels + 1];
+            for (int level = 1; level < tableLevels; level++) {
+                long cost = costs[level - 1];
+                if (cost <= 0) {
+                    throw new IllegalArgumentException("Level " + level + " must cost more than 0 experience");
+                }
+                cumulative[level + 1] = Math.addExact(cumulative[level], Math.multiplyExact(cost, XP_SCALE));
+            }
+            this.points = points;
+            this.multipliers = multipliers;
+        }
+
+        long[] costs() {
+            long[] costs = new long[tableLevels - 1];
+            for (int level = 1; level < tableLevels; level++) {
+                costs[level - 1] = (cumulative[level + 1] - cumulative[level]) / XP_SCALE;
+            }
+            return costs;
+        }
+
+        long getLevelCost(int level) {
+            if (level < 1 || level >= maxLevel) return 0;
+            if (level < tableLevels) {
+                return cumulative[level + 1] - cumulative[level];
+            }
+            return defaultLevelCost(level) * XP_SCALE;
+        }
+
+        int getPoints(int level) {
+            if (level < 0) return 0;
+            return points[Math.min(level, tableLevels)];
+        }
+
+        float getMultiplier(int level) {
+            if (level < 0) return 1.0f;
+            return multipliers[Math.min(level, tableLevels)];
         }
     }
 }
@@ -1,8 +1,10 @@
 package com.khimkhaosow.craftmastery.experience;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.List; // Добавлен
 
 // Импорты для логирования
@@ -12,12 +14,14 @@ import org.apache.logging.log4j.Logger;
 // Импорты для других компонентов мода
 import com.khimkhaosow.craftmastery.CraftMastery; // Уже был
 import com.khimkhaosow.craftmastery.config.ModConfig; // Added
+import com.khimkhaosow.craftmastery.network.ExperienceSyncTracker;
 import com.khimkhaosow.craftmastery.network.NetworkHandler; // Уже был
+import com.khimkhaosow.craftmastery.network.RecipeSyncTracker;
 import com.khimkhaosow.craftmastery.network.messages.MessageExperienceSync; // Уже был
 import com.khimkhaosow.craftmastery.network.messages.MessageExperienceEffectSync; // Added
 import com.khimkhaosow.craftmastery.permissions.PermissionManager; // Уже был
 import com.khimkhaosow.craftmastery.permissions.PermissionType; // Уже был
-import com.khimkhaosow.craftmastery.storage.PlayerDataStorage; // Уже был
+import com.khimkhaosow.craftmastery.storage.ProgressionStore;
 import com.khimkhaosow.craftmastery.util.Reference; // Уже был
 import com.khimkhaosow.craftmastery.gui.widgets.ExperienceBarWidget; // Added import
 
@@ -25,13 +29,12 @@ import com.khimkhaosow.craftmastery.gui.widgets.ExperienceBarWidget; // Added im
 import net.minecraft.client.Minecraft; // Добавлен
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.math.Vec3d; // Уже был
-import net.minecraft.world.World;
-import net.minecraft.world.storage.MapStorage;
 import net.minecraftforge.event.entity.living.LivingDeathEvent;
 import net.minecraftforge.event.world.BlockEvent.BreakEvent;
-import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
 import net.minecraftforge.fml.common.gameevent.PlayerEvent;
 import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedInEvent;
 import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedOutEvent;
@@ -53,12 +56,16 @@ public class ExperienceManager {
     // Конфигурация получения очков из опыта
     private final Map<ExperienceType, Float> pointsConversionRates;
 
-    // Хранилище данных опыта
-    private PlayerDataStorage storage;
+    // Данные опыта загруженных игроков
+    private final Map<UUID, PlayerExperienceData> loadedPlayers = new ConcurrentHashMap<>();
 
     // Системы визуальных эффектов и расчета опыта
     private final ExperienceCurve experienceCurve;
     private final ExperienceEffectManager effectManager;
+
+    // Накопитель начислений опыта, применяется раз в ModConfig.experienceBatchTicks тиков
+    private final ExperienceAccumulator accumulator;
+    private int ticksSinceFlush = 0;
     
     @SideOnly(Side.CLIENT)
     private ExperienceBarWidget experienceBarWidget; // Предполагается, что этот класс существует
@@ -66,36 +73,14 @@ public class ExperienceManager {
     public ExperienceManager() {
         this.globalMultipliers = new HashMap<>();
         this.pointsConversionRates = new HashMap<>();
-        this.experienceCurve = new ExperienceCurve();
+        this.experienceCurve = ExperienceCurve.getInstance();
         // --- ИСПРАВЛЕНО: используем singleton для ExperienceEffectManager ---
         this.effectManager = ExperienceEffectManager.getInstance();
+        this.accumulator = new ExperienceAccumulator();
 
         setupDefaultConfiguration();
     }
 
-    /**
-     * Инициализирует хранилище данных для мира
-     */
-    public void initStorage(World world) {
-        if (world == null || world.isRemote) {
-            return;
-        }
-
-        MapStorage mapStorage = world.getMapStorage();
-        if (mapStorage == null) {
-            CraftMastery.logger.error("Unable to access world storage for experience data");
-            return;
-        }
-
-        storage = (PlayerDataStorage) mapStorage.getOrLoadData(PlayerDataStorage.class, PlayerDataStorage.DATA_NAME);
-
-        if (storage == null) {
-            storage = new PlayerDataStorage();
-            mapStorage.setData(PlayerDataStorage.DATA_NAME, storage);
-            mapStorage.saveAllData();
-        }
-    }
-
     public static ExperienceManager getInstance() {
         if (instance == null) {
             instance = new ExperienceManager();
@@ -121,15 +106,50 @@ public class ExperienceManager {
      * Получает данные опыта игрока
      */
     public PlayerExperienceData getPlayerData(UUID playerUUID) {
-        if (storage == null) {
+        PlayerExperienceData data = loadedPlayers.get(playerUUID);
+        if (data != null) {
+            return data;
+        }
+
+        ProgressionStore progression = ProgressionStore.getInstance();
+        if (!progression.isOpen()) {
             CraftMastery.logger.warn("Experience storage not initialized, creating temporary data for {}", playerUUID);
             return new PlayerExperienceData(playerUUID);
         }
-        PlayerExperienceData data = storage.getPlayerData(playerUUID);
-        storage.markDirty();
+        if (progression.isLoading(playerUUID)) {
+            // Прогресс ещё читается в фоне — временные данные, которые никуда не сохраняются
+            return new PlayerExperienceData(playerUUID);
+        }
+
+        try {
+            return acceptLoadedData(playerUUID, progression.loadPlayer(playerUUID));
+        } catch (IOException e) {
+            // Сохранённый прогресс не читается — временные данные, чтобы не перезаписать его пустым
+            CraftMastery.logger.error("Failed to load progression for {}: {}", playerUUID, e.getMessage());
+            return new PlayerExperienceData(playerUUID);
+        }
+    }
+
+    /**
+     * Принимает данные, загруженные ProgressionStore (null — новый игрок)
+     */
+    public PlayerExperienceData acceptLoadedData(UUID playerUUID, PlayerExperienceData data) {
+        if (data == null) {
+            // Новый игрок — снимок будет создан при следующей записи
+            data = new PlayerExperienceData(playerUUID);
+            ProgressionStore.getInstance().markDirty(playerUUID);
+        }
+        loadedPlayers.put(playerUUID, data);
         return data;
     }
 
+    /**
+     * Выгружает данные опыта игрока из памяти (запись выполняет ProgressionStore)
+     */
+    public void unloadPlayerData(UUID playerUUID) {
+        loadedPlayers.remove(playerUUID);
+    }
+
     /**
      * Получает данные опыта игрока
      */
@@ -142,26 +162,104 @@ public class ExperienceManager {
      * Сохраняет данные игрока
      */
     private void savePlayerData(PlayerExperienceData data) {
-        if (storage != null) {
-            storage.savePlayerData(data.getPlayerUUID(), data);
+        ProgressionStore progression = ProgressionStore.getInstance();
+        if (progression.isOpen()) {
+            // Состояние сразу уходит в журнал, снимок записывается в фоне раз в ModConfig.progressionSaveTicks тиков
+            progression.recordExperience(data);
         } else {
             CraftMastery.logger.error("Experience storage not initialized!" );
         }
     }
 
     /**
-     * Добавляет опыт игроку
+     * Добавляет опыт игроку.
+     * На сервере начисление откладывается в накопитель и применяется вместе с остальными
+     * начислениями игрока в конце окна (см. flushExperience).
      */
     public void addExperience(EntityPlayer player, ExperienceType type, float baseAmount) {
         if (player == null || baseAmount <= 0) return;
 
-        PlayerExperienceData data = getPlayerData(player);
         float globalMultiplier = globalMultipliers.getOrDefault(type, 1.0f);
         float actualAmount = baseAmount * globalMultiplier;
 
+        // Очки считаются по каждому событию отдельно, как и раньше (с отбрасыванием дробной части)
+        int pointsToAdd = (int) (actualAmount * pointsConversionRates.getOrDefault(type, 0.0f));
+
+        if (player.world.isRemote) {
+            // На клиенте нет серверного тика — применяем сразу, минуя накопитель:
+            // в одиночной игре он принадлежит потоку встроенного сервера
+            applyGain(ExperienceAccumulator.single(player, type, actualAmount, pointsToAdd));
+            return;
+        }
+        accumulator.add(player, type, actualAmount, pointsToAdd);
+    }
+
+    /**
+     * Применяет накопленные начисления всех игроков
+     */
+    public void flushExperience() {
+        if (!accumulator.hasPending()) return;
+        ProgressionStore progression = ProgressionStore.getInstance();
+        for (ExperienceAccumulator.PendingGain gain : accumulator.drainAll()) {
+            if (progression.isLoading(gain.getPlayerUUID())) {
+                // Применим, когда прогресс игрока загрузится
+                accumulator.restore(gain);
+            } else {
+                applyGain(gain);
+            }
+        }
+    }
+
+    /**
+     * Применяет накопленные начисления одного игрока
+     */
+    public void flushExperience(UUID playerUUID) {
+        ExperienceAccumulator.PendingGain gain = accumulator.drain(playerUUID);
+        if (gain == null) return;
+        if (ProgressionStore.getInstance().isLoading(playerUUID)) {
+            accumulator.restore(gain);
+        } else {
+            applyGain(gain);
+        }
+    }
+
+    /**
+     * Применяет сумму начислений: один пересчёт уровня, одно уведомление, одно сохранение и одна синхронизация
+     */
+    private void applyGain(ExperienceAccumulator.PendingGain gain) {
+        EntityPlayer player = resolvePlayer(gain);
+        PlayerExperienceData data = getPlayerData(gain.getPlayerUUID());
+        float totalAmount = gain.getTotalExperience();
+
         // Добавляем опыт
         int oldLevel = data.getLevel();
-        data.addExperience(type, actualAmount);
+        StringBuilder sources = new StringBuilder();
+        for (ExperienceType type : ExperienceType.values()) {
+            float amount = gain.getExperience(type);
+            if (amount <= 0) continue;
+
+            data.addExperience(type, amount);
+
+            if (sources.length() > 0) sources.append(", ");
+            sources.append(type.getDisplayName());
+            int events = gain.getEventCount(type);
+            if (events > 1) {
+                sources.append(" x").append(events);
+            }
+        }
+
+        // Конвертированные очки изучения
+        int pointsToAdd = gain.getLearningPoints();
+        if (pointsToAdd > 0) {
+            data.addPoints(PointsType.LEARNING, pointsToAdd);
+        }
+
+        // Сохраняем изменения
+        savePlayerData(data);
+
+        if (player == null) {
+            return;
+        }
 
         // Проверяем повышение уровня
         boolean leveledUp = data.getLevel() > oldLevel;
@@ -171,22 +269,15 @@ public class ExperienceManager {
         }
 
         // Создаем визуальный эффект получения опыта
-        createExperienceEffect(player, actualAmount, leveledUp);
+        createExperienceEffect(player, totalAmount, leveledUp);
 
-        // Отправляем уведомление об опыте
-        player.sendMessage(new net.minecraft.util.text.TextComponentString(
-            net.minecraft.util.text.TextFormatting.YELLOW + "Получено " + String.format("%.1f", actualAmount) + " опыта (" + type.getDisplayName() + ")"));
-
-        // Конвертируем часть опыта в очки изучения
-        float pointsToAdd = actualAmount * pointsConversionRates.getOrDefault(type, 0.0f);
+        // Отправляем одно сводное уведомление об опыте и очках
+        String message = net.minecraft.util.text.TextFormatting.YELLOW + "Получено " + String.format("%.1f", totalAmount)
+            + " опыта (" + sources + ")";
         if (pointsToAdd > 0) {
-            data.addPoints(PointsType.LEARNING, (int) pointsToAdd);
-            player.sendMessage(new net.minecraft.util.text.TextComponentString(
-                net.minecraft.util.text.TextFormatting.AQUA + "Получено " + (int) pointsToAdd + " очков изучения!"));
+            message += net.minecraft.util.text.TextFormatting.AQUA + " и " + pointsToAdd + " очков изучения!";
         }
-
-        // Сохраняем изменения
-        savePlayerData(data);
+        player.sendMessage(new net.minecraft.util.text.TextComponentString(message));
 
         // Синхронизация с клиентом если это серверный игрок
         if (player instanceof EntityPlayerMP) {
@@ -194,6 +285,33 @@ public class ExperienceManager {
         }
     }
 
+    /**
+     * Находит актуальный объект игрока (после смерти или смены измерения объект заменяется)
+     */
+    private EntityPlayer resolvePlayer(ExperienceAccumulator.PendingGain gain) {
+        EntityPlayer player = gain.getPlayer();
+        if (player != null && !player.world.isRemote) {
+            MinecraftServer server = player.getServer();
+            if (server != null) {
+                return server.getPlayerList().getPlayerByUUID(gain.getPlayerUUID());
+            }
+        }
+        return player;
+    }
+
+    /**
+     * Событие: конец серверного тика — применяем накопленный опыт раз в окно
+     */
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) return;
+
+        if (++ticksSinceFlush >= ModConfig.experienceBatchTicks) {
+            ticksSinceFlush = 0;
+            flushExperience();
+        }
+    }
+
     /**
      * Добавляет очки игроку
      */
@@ -235,6 +353,40 @@ public class ExperienceManager {
         return success;
     }
 
+    /**
+     * Устанавливает количество очков игрока (команды администратора)
+     */
+    public void setPoints(EntityPlayer player, PointsType type, int amount) {
+        if (player == null) return;
+
+        getPlayerData(player).setPoints(type, amount);
+        commitPlayerData(player);
+    }
+
+    /**
+     * Выдаёт опыт сразу, без накопителя, глобальных множителей и конвертации в очки (команды администратора)
+     */
+    public void giveExperience(EntityPlayer player, ExperienceType type, float amount) {
+        if (player == null || amount <= 0) return;
+
+        getPlayerData(player).addExperience(type, amount);
+        commitPlayerData(player);
+    }
+
+    /**
+     * Сохраняет и отправляет клиенту данные игрока, изменённые напрямую через PlayerExperienceData.
+     * Без этого изменение не попадёт ни в журнал, ни в снимок и пропадёт при перезапуске.
+     */
+    public void commitPlayerData(EntityPlayer player) {
+        if (player == null || player.world.isRemote) return;
+
+        PlayerExperienceData data = getPlayerData(player);
+        savePlayerData(data);
+        if (player instanceof EntityPlayerMP) {
+            syncToClient((EntityPlayerMP) player, data);
+        }
+    }
+
     /**
      * Событие: игрок сломал блок
      */
@@ -263,10 +415,16 @@ public class ExperienceManager {
         EntityPlayer player = event.player;
         if (player.world.isRemote) return;
 
-        initStorage(player.world);
+        if (ProgressionStore.getInstance().isLoading(player.getUniqueID())) {
+            // Данные отправятся клиенту, когда ProgressionStore дочитает прогресс
+            return;
+        }
+
         PlayerExperienceData data = getPlayerData(player);
         CraftMastery.logger.info("Loaded experience data for player: {}", player.getName());
         if (player instanceof EntityPlayerMP) {
+            // После входа клиент ждёт полный снимок
+            ExperienceSyncTracker.getInstance().reset(player.getUniqueID());
             syncToClient((EntityPlayerMP) player, data);
         }
     }
@@ -279,11 +437,12 @@ public class ExperienceManager {
         EntityPlayer player = event.player;
         if (player.world.isRemote) return;
 
-        if (storage != null) {
-            PlayerExperienceData data = getPlayerData(player);
-            savePlayerData(data);
-            CraftMastery.logger.info("Saved experience data for player: {}", player.getName());
-        }
+        // Применяем начисления, накопленные до выхода
+        flushExperience(player.getUniqueID());
+
+        savePlayerData(getPlayerData(player));
+
+        ExperienceSyncTracker.getInstance().reset(player.getUniqueID());
 
         // Очищаем эффекты при выходе игрока
         clearEffects();
@@ -356,19 +515,6 @@ public class ExperienceManager {
         return Math.max(1.0f, Math.min(10.0f, hardness * 2.0f));
     }
 
-    @SubscribeEvent
-    public void onWorldLoad(WorldEvent.Load event) {
-        World world = event.getWorld();
-        initStorage(world);
-    }
-
-    @SubscribeEvent
-    public void onWorldSave(WorldEvent.Save event) {
-        if (storage != null) {
-            storage.markDirty();
-        }
-    }
-
     public void syncWithConfig() {
         globalMultipliers.put(ExperienceType.BLOCK_MINING,
                 ModConfig.globalExperienceMultiplier * ModConfig.blockMiningMultiplier);
@@ -407,9 +553,13 @@ public class ExperienceManager {
      * Синхронизирует данные с клиентом
      */
     private void syncToClient(EntityPlayerMP player, PlayerExperienceData data) {
-        // Отправляем основные данные опыта
-        // --- ПРЕДПОЛАГАЕТСЯ, ЧТО MessageExperienceSync ИМЕЕТ КОНСТРУКТОР (PlayerExperienceData, float) ---
-        NetworkHandler.INSTANCE.sendTo(new MessageExperienceSync(data, getLevelProgress(data)), player);
+        // Отправляем только изменившиеся поля опыта (или полный снимок, если клиент его ждёт)
+        MessageExperienceSync message = ExperienceSyncTracker.getInstance().createUpdate(player.getUniqueID(), data);
+        if (message != null) {
+            NetworkHandler.INSTANCE.sendTo(message, player);
+            // Уровень и очки влияют на доступные для изучения рецепты
+            RecipeSyncTracker.getInstance().markDirty(player.getUniqueID());
+        }
         
         // Отправляем информацию об эффектах всем игрокам в радиусе видимости
         // --- ПРЕДПОЛАГАЕТСЯ, ЧТО effectManager ИМЕЕТ МЕТОДЫ hasActiveEffects() и getActiveEffects() ---
@@ -422,6 +572,14 @@ public class ExperienceManager {
         }
     }
 
+    /**
+     * Отправляет клиенту полный снимок данных опыта (по запросу после рассинхронизации)
+     */
+    public void resyncToClient(EntityPlayerMP player) {
+        ExperienceSyncTracker.getInstance().reset(player.getUniqueID());
+        syncToClient(player, getPlayerData(player));
+    }
+
     /**
      * Сбрасывает данные игрока
      */
@@ -430,7 +588,7 @@ public class ExperienceManager {
 
         PlayerExperienceData data = getPlayerData(player);
         data.reset();
-        savePlayerData(data);
+        commitPlayerData(player);
 
         // CraftMastery.logger должен быть найден
         CraftMastery.logger.info("Reset experience data for player: {}", player.getName());
@@ -473,13 +631,7 @@ public class ExperienceManager {
      * Получает прогресс уровня игрока (0.0 - 1.0)
      */
     public float getLevelProgress(PlayerExperienceData data) {
-        // --- ИСПРАВЛЕНО: явное преобразование для избежания потери точности ---
-        long currentXp = (long) data.getTotalExperience(); // Используем long для промежуточного хранения
-        int currentLevel = data.getLevel();
-        long xpForNextLevel = experienceCurve.getExperienceForLevel(currentLevel + 1);
-        
-        if (xpForNextLevel == 0) return 0.0f; // Избегаем деления на 0
-        return (float) (currentXp % xpForNextLevel) / xpForNextLevel;
+        return data.getLevelProgressFraction();
     }
     
     /**
@@ -527,10 +679,8 @@ public class ExperienceManager {
      */
     @SideOnly(Side.CLIENT)
     public void handleSyncUpdate(PlayerExperienceData data, float levelProgress) {
-        // Обновляем данные в хранилище
-        if (storage != null) {
-            storage.savePlayerData(data.getPlayerUUID(), data);
-        }
+        // Данные хранятся в ClientExperienceState; в хранилище не пишем, чтобы не
+        // затирать серверные данные встроенного сервера
 
         // Обновляем интерфейс, если он открыт
         // ПРЕДПОЛАГАЕТСЯ, ЧТО GuiExperience СУЩЕСТВУЕТ
@@ -564,7 +714,8 @@ public class ExperienceManager {
     @SideOnly(Side.CLIENT)
     public void renderWidget(Minecraft mc) { // Требует import net.minecraft.client.Minecraft;
         if (experienceBarWidget != null && mc.player != null && !mc.gameSettings.hideGUI) {
-            PlayerExperienceData data = getPlayerData(mc.player);
+            PlayerExperienceData data = ClientExperienceState.getInstance().getData();
+            if (data == null) return;
             experienceBarWidget.setLevel(data.getLevel());
             experienceBarWidget.setProgress(getLevelProgress(data));
             experienceBarWidget.render(); // ПРЕДПОЛАГАЕТСЯ, ЧТО МЕТОД СУЩЕСТВУЕТ
@@ -1,226 +1,301 @@
 package com.khimkhaosow.craftmastery.experience;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.UUID;
 
-// 1. Импорты для других компонентов мода
-import com.khimkhaosow.craftmastery.CraftMastery; // Уже был
-import com.khimkhaosow.craftmastery.experience.ExperienceType; // Добавлен импорт
-import com.khimkhaosow.craftmastery.experience.PointsType;     // Добавлен импорт
+import com.khimkhaosow.craftmastery.CraftMastery;
+import com.khimkhaosow.craftmastery.recipe.CraftDecisionCache;
 
 /**
- * Данные опыта и очков игрока
+ * Данные опыта и очков игрока.
+ * Опыт, множители и очки хранятся в массивах по ordinal() перечислений, без упаковки в объекты.
+ * Опыт хранится в фиксированной точке (long, ExperienceCurve.XP_SCALE долей единицы), поэтому
+ * не теряет точность при накоплении; правила уровней берутся только из ExperienceCurve, а стоимость
+ * текущего уровня кешируется до смены уровня или версии кривой. Все методы чтения не создают
+ * объектов, поэтому HUD может вызывать их каждый кадр, а getRevision() позволяет ему пересобирать
+ * строки только после изменения данных.
  */
 public class PlayerExperienceData {
 
+    private static final ExperienceType[] EXPERIENCE_TYPES = ExperienceType.values();
+    private static final PointsType[] POINTS_TYPES = PointsType.values();
+
     private final UUID playerUUID;
 
     // Текущий уровень игрока
     private int level = 1;
 
-    // Текущий опыт в рамках уровня
-    private float currentLevelExperience = 0.0f;
+    // Текущий опыт в рамках уровня (фиксированная точка)
+    private long currentLevelExperience = 0L;
 
-    // Общий накопленный опыт
-    private float totalExperience = 0.0f;
+    // Общий накопленный опыт (фиксированная точка)
+    private long totalExperience = 0L;
 
-    // Очки игрока
-    private final Map<PointsType, Integer> points; // PointsType должен быть найден
+    // Стоимость текущего уровня (фиксированная точка) и для какой версии кривой и уровня она посчитана
+    private long nextLevelThreshold;
+    private int thresholdCurveVersion = -1;
+    private int thresholdLevel = -1;
 
-    // Опыт по источникам
-    private final Map<ExperienceType, Float> experienceByType; // ExperienceType должен быть найден
+    // Очки игрока по PointsType.ordinal()
+    private final int[] points = new int[POINTS_TYPES.length];
 
-    // Настройки множителей опыта (из конфигурации)
-    private final Map<ExperienceType, Float> experienceMultipliers; // ExperienceType должен быть найден
+    // Опыт по источникам по ExperienceType.ordinal() (фиксированная точка)
+    private final long[] experienceByType = new long[EXPERIENCE_TYPES.length];
 
-    public PlayerExperienceData(UUID playerUUID) {
-        this.playerUUID = playerUUID;
-        this.points = new HashMap<>();
-        this.experienceByType = new HashMap<>();
-        this.experienceMultipliers = new HashMap<>();
+    // Настройки множителей опыта (из конфигурации) по ExperienceType.ordinal()
+    private final float[] experienceMultipliers = new float[EXPERIENCE_TYPES.length];
 
-        // Инициализация всех типов очков
-        for (PointsType type : PointsType.values()) { // PointsType должен быть найден
-            points.put(type, 0);
-        }
+    // Счётчик изменений
+    private int revision = 0;
 
-        // Инициализация опыта по типам
-        for (ExperienceType type : ExperienceType.values()) { // ExperienceType должен быть найден
-            experienceByType.put(type, 0.0f);
-            experienceMultipliers.put(type, 1.0f); // По умолчанию множитель 1.0
-        }
+    public PlayerExperienceData(UUID playerUUID) {
+        this.playerUUID = playerUUID;
+        Arrays.fill(experienceMultipliers, 1.0f); // По умолчанию множитель 1.0
     }
 
     /**
      * Добавляет опыт игроку
      */
-    public void addExperience(ExperienceType type, float amount) { // ExperienceType должен быть найден
+    public void addExperience(ExperienceType type, float amount) {
         if (amount <= 0) return;
 
-        float actualAmount = amount * experienceMultipliers.get(type); // ExperienceType должен быть найден
-        experienceByType.put(type, experienceByType.get(type) + actualAmount); // ExperienceType должен быть найден
-        currentLevelExperience += actualAmount;
+        long actualAmount = ExperienceCurve.toFixed(amount * experienceMultipliers[type.ordinal()]);
+        if (actualAmount <= 0) return;
+
+        experienceByType[type.ordinal()] += actualAmount;
+        // На явном пределе кривой опыт учитывается только в суммах: прогресс уровня там всегда полный
+        if (!ExperienceCurve.getInstance().isMaxLevel(level)) {
+            currentLevelExperience += actualAmount;
+        }
         totalExperience += actualAmount;
+        revision++;
 
         // Проверяем, не пора ли повысить уровень
         checkLevelUp();
 
-        // CraftMastery.logger должен быть найден (предполагается, что это статическое поле в классе CraftMastery)
         CraftMastery.logger.debug("Player {} gained {} experience from {}, total: {}",
-            playerUUID, actualAmount, type.name(), totalExperience);
+            playerUUID, ExperienceCurve.fromFixed(actualAmount), type.name(), ExperienceCurve.fromFixed(totalExperience));
     }
 
     /**
-     * Проверяет и выполняет повышение уровня
+     * Проверяет и выполняет повышение уровня.
+     * Новый уровень находится одним двоичным поиском по префиксным суммам кривой, поэтому
+     * большое начисление, перескакивающее много уровней, не перебирает их по одному.
      */
     private void checkLevelUp() {
-        float requiredExperience = getExperienceForNextLevel();
-        while (currentLevelExperience >= requiredExperience) {
-            levelUp();
-        }
+        long threshold = getThresholdFixed();
+        if (threshold <= 0 || currentLevelExperience < threshold) return;
+
+        ExperienceCurve curve = ExperienceCurve.getInstance();
+        long reached = curve.getCumulativeFixed(level) + currentLevelExperience;
+        int newLevel = curve.levelForCumulativeFixed(reached);
+        if (newLevel <= level) return;
+
+        int oldLevel = level;
+        level = newLevel;
+        currentLevelExperience = curve.isMaxLevel(newLevel) ? 0L : reached - curve.getCumulativeFixed(newLevel);
+        onProgressionChanged();
+
+        CraftMastery.logger.info("Player {} leveled up from level {} to level {}", playerUUID, oldLevel, level);
     }
 
     /**
-     * Повышает уровень игрока
+     * Стоимость текущего уровня в фиксированной точке (0 на максимальном уровне)
      */
-    private void levelUp() {
-        currentLevelExperience -= getExperienceForNextLevel();
-        level++;
-
-        // CraftMastery.logger должен быть найден (предполагается, что это статическое поле в классе CraftMastery)
-        CraftMastery.logger.info("Player {} leveled up to level {}", playerUUID, level);
+    private long getThresholdFixed() {
+        ExperienceCurve curve = ExperienceCurve.getInstance();
+        int curveVersion = curve.getVersion();
+        if (thresholdLevel != level || thresholdCurveVersion != curveVersion) {
+            nextLevelThreshold = curve.getLevelCostFixed(level);
+            thresholdLevel = level;
+            thresholdCurveVersion = curveVersion;
+        }
+        return nextLevelThreshold;
     }
 
     /**
      * Получает необходимый опыт для следующего уровня
      */
     public float getExperienceForNextLevel() {
-        // Формула: базовый_опыт * (уровень ^ 1.5)
-        return 100.0f * (float) Math.pow(level, 1.5);
+        return ExperienceCurve.fromFixed(getThresholdFixed());
     }
 
     /**
      * Получает прогресс до следующего уровня в процентах
      */
     public float getLevelProgress() {
-        float required = getExperienceForNextLevel();
-        return required > 0 ? (currentLevelExperience / required) * 100.0f : 100.0f;
+        return getLevelProgressFraction() * 100.0f;
+    }
+
+    /**
+     * Получает прогресс до следующего уровня от 0.0 до 1.0
+     */
+    public float getLevelProgressFraction() {
+        long threshold = getThresholdFixed();
+        return threshold > 0 ? (float) currentLevelExperience / threshold : 1.0f;
     }
 
     /**
      * Добавляет очки игроку
      */
-    public void addPoints(PointsType type, int amount) { // PointsType должен быть найден
+    public void addPoints(PointsType type, int amount) {
         if (amount == 0) return;
 
-        int currentPoints = points.getOrDefault(type, 0); // PointsType должен быть найден
-        points.put(type, currentPoints + amount); // PointsType должен быть найден
+        points[type.ordinal()] += amount;
+        revision++;
+        onProgressionChanged();
 
-        // CraftMastery.logger должен быть найден (предполагается, что это статическое поле в классе CraftMastery)
         CraftMastery.logger.debug("Player {} gained {} {}, total: {}",
-            playerUUID, amount, type.getDisplayName(), points.get(type)); // PointsType должен быть найден
+            playerUUID, amount, type.getDisplayName(), points[type.ordinal()]);
     }
 
     /**
      * Тратит очки игрока
      */
-    public boolean spendPoints(PointsType type, int amount) { // PointsType должен быть найден
-        int currentPoints = points.getOrDefault(type, 0); // PointsType должен быть найден
+    public boolean spendPoints(PointsType type, int amount) {
+        int currentPoints = points[type.ordinal()];
         if (currentPoints < amount) {
             return false;
         }
 
-        points.put(type, currentPoints - amount); // PointsType должен быть найден
-        // CraftMastery.logger должен быть найден (предполагается, что это статическое поле в классе CraftMastery)
+        points[type.ordinal()] = currentPoints - amount;
+        revision++;
+        onProgressionChanged();
         CraftMastery.logger.debug("Player {} spent {} {}, remaining: {}",
-            playerUUID, amount, type.getDisplayName(), points.get(type)); // PointsType должен быть найден
+            playerUUID, amount, type.getDisplayName(), points[type.ordinal()]);
         return true;
     }
 
     /**
      * Получает количество очков определенного типа
      */
-    public int getPoints(PointsType type) { // PointsType должен быть найден
-        return points.getOrDefault(type, 0); // PointsType должен быть найден
+    public int getPoints(PointsType type) {
+        return points[type.ordinal()];
     }
 
     /**
      * Получает опыт определенного типа
      */
-    public float getExperience(ExperienceType type) { // ExperienceType должен быть найден
-        return experienceByType.getOrDefault(type, 0.0f); // ExperienceType должен быть найден
+    public float getExperience(ExperienceType type) {
+        return ExperienceCurve.fromFixed(experienceByType[type.ordinal()]);
+    }
+
+    /**
+     * Получает опыт определенного типа в фиксированной точке
+     */
+    public long getExperienceFixed(ExperienceType type) {
+        return experienceByType[type.ordinal()];
     }
 
     /**
      * Устанавливает множитель опыта для типа
      */
-    public void setExperienceMultiplier(ExperienceType type, float multiplier) { // ExperienceType должен быть найден
-        experienceMultipliers.put(type, Math.max(0.0f, multiplier)); // ExperienceType должен быть найден
+    public void setExperienceMultiplier(ExperienceType type, float multiplier) {
+        experienceMultipliers[type.ordinal()] = Math.max(0.0f, multiplier);
+        revision++;
     }
 
     /**
      * Получает множитель опыта для типа
      */
-    public float getExperienceMultiplier(ExperienceType type) { // ExperienceType должен быть найден
-        return experienceMultipliers.getOrDefault(type, 1.0f); // ExperienceType должен быть найден
+    public float getExperienceMultiplier(ExperienceType type) {
+        return experienceMultipliers[type.ordinal()];
     }
 
     /**
      * Устанавливает опыт определенного типа
      */
-    public void setExperience(ExperienceType type, float experience) { // ExperienceType должен быть найден
-        experienceByType.put(type, Math.max(0.0f, experience)); // ExperienceType должен быть найден
+    public void setExperience(ExperienceType type, float experience) {
+        setExperienceFixed(type, ExperienceCurve.toFixed(experience));
+    }
+
+    /**
+     * Устанавливает опыт определенного типа в фиксированной точке
+     */
+    public void setExperienceFixed(ExperienceType type, long experience) {
+        experienceByType[type.ordinal()] = Math.max(0L, experience);
+        revision++;
     }
 
     /**
      * Устанавливает количество очков определенного типа
      */
-    public void setPoints(PointsType type, int amount) { // PointsType должен быть найден
-        points.put(type, Math.max(0, amount)); // PointsType должен быть найден
+    public void setPoints(PointsType type, int amount) {
+        points[type.ordinal()] = Math.max(0, amount);
+        revision++;
+        onProgressionChanged();
     }
 
     /**
      * Устанавливает текущий уровень
      */
     public void setLevel(int newLevel) {
-        this.level = Math.max(1, newLevel);
+        level = Math.max(1, newLevel);
+        revision++;
+        onProgressionChanged();
     }
 
     /**
      * Устанавливает текущий опыт уровня
      */
     public void setCurrentLevelExperience(float experience) {
-        this.currentLevelExperience = Math.max(0.0f, experience);
+        setCurrentLevelExperienceFixed(ExperienceCurve.toFixed(experience));
+    }
+
+    /**
+     * Устанавливает текущий опыт уровня в фиксированной точке
+     */
+    public void setCurrentLevelExperienceFixed(long experience) {
+        this.currentLevelExperience = Math.max(0L, experience);
+        revision++;
     }
 
     /**
      * Устанавливает общий опыт
      */
     public void setTotalExperience(float experience) {
-        this.totalExperience = Math.max(0.0f, experience);
+        setTotalExperienceFixed(ExperienceCurve.toFixed(experience));
+    }
+
+    /**
+     * Устанавливает общий опыт в фиксированной точке
+     */
+    public void setTotalExperienceFixed(long experience) {
+        this.totalExperience = Math.max(0L, experience);
+        revision++;
     }
 
     // Геттеры
     public int getLevel() { return level; }
-    public float getCurrentLevelExperience() { return currentLevelExperience; }
-    public float getTotalExperience() { return totalExperience; }
+    public float getCurrentLevelExperience() { return ExperienceCurve.fromFixed(currentLevelExperience); }
+    public float getTotalExperience() { return ExperienceCurve.fromFixed(totalExperience); }
+    public long getCurrentLevelExperienceFixed() { return currentLevelExperience; }
+    public long getTotalExperienceFixed() { return totalExperience; }
     public UUID getPlayerUUID() { return playerUUID; }
 
+    /**
+     * Счётчик изменений: растёт при любом изменении данных (для кеширования текста в HUD)
+     */
+    public int getRevision() { return revision; }
+
     /**
      * Сбрасывает все данные игрока
      */
     public void reset() {
         level = 1;
-        currentLevelExperience = 0.0f;
-        totalExperience = 0.0f;
+        currentLevelExperience = 0L;
+        totalExperience = 0L;
 
-        for (PointsType type : PointsType.values()) { // PointsType должен быть найден
-            points.put(type, 0); // PointsType должен быть найден
-        }
+        Arrays.fill(points, 0);
+        Arrays.fill(experienceByType, 0L);
+        revision++;
+        onProgressionChanged();
+    }
 
-        for (ExperienceType type : ExperienceType.values()) { // ExperienceType должен быть найден
-            experienceByType.put(type, 0.0f); // ExperienceType должен быть найден
-        }
+    /**
+     * Уровень или очки изменились: решения о крафте, зависящие от них, устарели
+     */
+    private void onProgressionChanged() {
+        CraftDecisionCache.getInstance().invalidate(playerUUID);
     }
-}
\ No newline at end of file
+}
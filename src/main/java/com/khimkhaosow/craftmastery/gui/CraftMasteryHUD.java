@@ -8,7 +8,7 @@ import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.util.ResourceLocation;
 import net.minecraftforge.client.event.RenderGameOverlayEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
-import com.khimkhaosow.craftmastery.experience.ExperienceManager;
+import com.khimkhaosow.craftmastery.experience.ClientExperienceState;
 import com.khimkhaosow.craftmastery.experience.PlayerExperienceData;
 import com.khimkhaosow.craftmastery.config.ModConfig;
 
@@ -25,6 +25,12 @@ public class CraftMasteryHUD extends GuiIngame {
     private boolean showExperience = true;
     private boolean showLevel = true;
 
+    // Тексты HUD пересобираются только при изменении данных
+    private PlayerExperienceData textData;
+    private int textRevision = -1;
+    private String levelText;
+    private String progressText;
+
     public CraftMasteryHUD(Minecraft mc) {
         super(mc);
     }
@@ -36,7 +42,7 @@ public class CraftMasteryHUD extends GuiIngame {
         EntityPlayer player = Minecraft.getMinecraft().player;
         if (player == null) return;
 
-        PlayerExperienceData data = ExperienceManager.getInstance().getPlayerData(player);
+        PlayerExperienceData data = ClientExperienceState.getInstance().getData();
         if (data == null) return;
 
         ScaledResolution resolution = new ScaledResolution(Minecraft.getMinecraft());
@@ -57,14 +63,14 @@ public class CraftMasteryHUD extends GuiIngame {
             drawTexturedModalRect(x, y, 0, 0, BAR_WIDTH, BAR_HEIGHT);
 
             // Рисуем заполнение полосы опыта
-            float progress = data.getLevelProgress() / 100.0f;
+            float progress = data.getLevelProgressFraction();
             int fillWidth = (int)(BAR_WIDTH * progress);
             drawTexturedModalRect(x, y, 0, BAR_HEIGHT, fillWidth, BAR_HEIGHT);
         }
 
         // Рисуем текст уровня
         if (showLevel) {
-            String levelText = "Уровень " + data.getLevel();
+            updateTexts(data);
             int textX = (int)((screenWidth / 2 - Minecraft.getMinecraft().fontRenderer.getStringWidth(levelText) / 2 + xOffset) / scale);
             int textY = (int)((screenHeight - 42 + yOffset) / scale);
 
@@ -72,7 +78,6 @@ public class CraftMasteryHUD extends GuiIngame {
             Minecraft.getMinecraft().fontRenderer.drawStringWithShadow(levelText, textX, textY, 0xFFFFFF);
 
             // Показываем прогресс в процентах
-            String progressText = String.format("%.1f%%", data.getLevelProgress());
             textX = (int)((screenWidth / 2 - Minecraft.getMinecraft().fontRenderer.getStringWidth(progressText) / 2 + xOffset) / scale);
             textY = (int)((screenHeight - 20 + yOffset) / scale);
             Minecraft.getMinecraft().fontRenderer.drawStringWithShadow(progressText, textX, textY, 0xFFFFFF);
@@ -81,6 +86,14 @@ public class CraftMasteryHUD extends GuiIngame {
         GlStateManager.popMatrix();
     }
 
+    private void updateTexts(PlayerExperienceData data) {
+        if (data == textData && data.getRevision() == textRevision) return;
+        textData = data;
+        textRevision = data.getRevision();
+        levelText = "Уровень " + data.getLevel();
+        progressText = String.format("%.1f%%", data.getLevelProgress());
+    }
+
     // Методы настройки HUD
     public void setScale(float scale) {
         this.scale = Math.max(0.5f, Math.min(2.0f, scale));
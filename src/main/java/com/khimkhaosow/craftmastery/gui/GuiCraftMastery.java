@@ -148,14 +148,8 @@ public class GuiCraftMastery extends GuiScreen implements GuiYesNoCallback {
             return;
         }
 
-        List<RecipeEntry> allRecipes = RecipeManager.getInstance().searchRecipes(query);
-        searchResults = new ArrayList<>();
-        for (RecipeEntry entry : allRecipes) {
-            ItemStack result = entry.getRecipeResult();
-            if (!result.isEmpty() && result.getDisplayName().toLowerCase().contains(query)) {
-                searchResults.add(entry);
-            }
-        }
+        // Индекс уже отбрасывает рецепты без результата и сортирует по релевантности
+        searchResults = new ArrayList<>(RecipeManager.getInstance().searchRecipes(query));
 
         searchPage = 0;
         updateButtonsForPage();
@@ -434,7 +428,9 @@ public class GuiCraftMastery extends GuiScreen implements GuiYesNoCallback {
 
     private void handleRecipeAction(int recipeIndex) {
         String searchText = searchField != null ? searchField.getText() : "";
-        List<RecipeEntry> searchResults = RecipeManager.getInstance().searchRecipes(searchText);
+        List<RecipeEntry> searchResults = this.searchResults != null
+            ? this.searchResults
+            : RecipeManager.getInstance().searchRecipes(searchText);
         if (recipeIndex >= 0 && recipeIndex < searchResults.size()) {
             RecipeEntry recipe = searchResults.get(recipeIndex);
             showRecipeDetails(recipe);
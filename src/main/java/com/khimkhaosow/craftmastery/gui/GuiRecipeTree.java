@@ -13,6 +13,7 @@ import com.khimkhaosow.craftmastery.experience.PointsType;
 import com.khimkhaosow.craftmastery.permissions.PermissionManager;
 import com.khimkhaosow.craftmastery.permissions.PermissionType;
 import com.khimkhaosow.craftmastery.recipe.RecipeEntry;
+import com.khimkhaosow.craftmastery.recipe.ClientRecipeProgress;
 import com.khimkhaosow.craftmastery.recipe.RecipeManager;
 import com.khimkhaosow.craftmastery.recipe.RecipeTag;
 import com.khimkhaosow.craftmastery.tabs.Tab;
@@ -93,8 +94,10 @@ public class GuiRecipeTree extends GuiScreen {
                 }
             }
         } else {
-            // Показываем все доступные рецепты
-            recipes = RecipeManager.getInstance().getAvailableRecipes(player);
+            // Показываем все доступные рецепты (по данным сервера, если они уже получены)
+            ClientRecipeProgress progress = ClientRecipeProgress.getInstance();
+            recipes = progress.hasData() ? progress.getAvailableRecipes()
+                : RecipeManager.getInstance().getAvailableRecipes(player);
         }
 
         // Создаем узлы для рецептов
@@ -660,30 +660,14 @@ public class RecipeTreeEditorScreen extends GuiScreen {
         return result;
     }
 
+    /**
+     * Глубокая копия узла для формы: недостающие части дополняются у копии, а не у опубликованного узла
+     */
     private NodeData copyNode(NodeData original) {
-        NodeData copy = new NodeData();
-        copy.id = original.id;
-        copy.tab = original.tab;
-        copy.recipeId = original.recipeId;
-        copy.displayName = original.displayName;
-        copy.nodeTitle = original.nodeTitle;
-        copy.customIcon = original.customIcon;
-        copy.studyCost = original.studyCost;
-        copy.grantsCraftAccess = original.grantsCraftAccess;
-        Position pos = ensurePosition(original);
-        copy.position = new Position();
-        copy.position.x = pos.x;
-        copy.position.y = pos.y;
-        Availability availability = ensureAvailability(original);
-        copy.availability = new Availability();
-        copy.availability.mode = availability.mode;
-        copy.availability.allowIndependentStudy = availability.allowIndependentStudy;
-        copy.availability.requiredNodes = new ArrayList<>(availability.requiredNodes);
-        Unlocks unlocks = ensureUnlocks(original);
-        copy.unlocks = new Unlocks();
-        copy.unlocks.nodes = new ArrayList<>(unlocks.nodes);
-        copy.unlocks.tabs = new ArrayList<>(unlocks.tabs);
-        copy.unlocks.permissions = new ArrayList<>(unlocks.permissions);
+        NodeData copy = original.copy();
+        ensurePosition(copy);
+        ensureAvailability(copy);
+        ensureUnlocks(copy);
         return copy;
     }
 
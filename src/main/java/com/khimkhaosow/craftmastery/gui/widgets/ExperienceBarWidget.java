@@ -1,6 +1,6 @@
 package com.khimkhaosow.craftmastery.gui.widgets;
 
-import com.khimkhaosow.craftmastery.experience.ExperienceManager;
+import com.khimkhaosow.craftmastery.experience.ClientExperienceState;
 import com.khimkhaosow.craftmastery.experience.PlayerExperienceData;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.Gui;
@@ -53,10 +53,10 @@ public class ExperienceBarWidget extends Gui {
         int screenHeight = scaledRes.getScaledHeight();
 
         // Получаем данные об опыте
-        PlayerExperienceData expData = ExperienceManager.getInstance().getPlayerData(player);
+        PlayerExperienceData expData = ClientExperienceState.getInstance().getData();
+        if (expData == null) return;
         int level = expData.getLevel();
-        // --- ИСПРАВЛЕНО: используем getLevelProgress() ---
-        float progress = expData.getLevelProgress() / 100.0f; // getLevelProgress() возвращает 0-100, нужно 0.0-1.0
+        float progress = expData.getLevelProgressFraction();
 
         // Проверяем повышение уровня
         if (level > lastLevel) {
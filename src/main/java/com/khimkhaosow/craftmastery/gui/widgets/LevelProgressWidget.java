@@ -35,7 +35,7 @@ public class LevelProgressWidget extends Gui {
         drawRect(x, y, x + width, y + BAR_HEIGHT, 0xFF000000);
 
         // Зеленая полоса прогресса
-        float progress = experienceData.getLevelProgress() / 100.0f;
+        float progress = experienceData.getLevelProgressFraction();
         int progressWidth = (int)(width * progress);
         drawRect(x + PADDING, y + PADDING, 
                 x + progressWidth - PADDING, y + BAR_HEIGHT - PADDING, 
@@ -4,11 +4,11 @@ import com.khimkhaosow.craftmastery.CraftMastery;
 import com.khimkhaosow.craftmastery.config.RecipeTreeConfigManager;
 import com.khimkhaosow.craftmastery.config.RecipeTreeConfigManager.Availability;
 import com.khimkhaosow.craftmastery.config.RecipeTreeConfigManager.NodeData;
-import com.khimkhaosow.craftmastery.config.RecipeTreeConfigManager.Position;
 import com.khimkhaosow.craftmastery.config.RecipeTreeConfigManager.TabData;
 import com.khimkhaosow.craftmastery.config.RecipeTreeConfigManager.Unlocks;
 import com.khimkhaosow.craftmastery.experience.PlayerExperienceData;
 import com.khimkhaosow.craftmastery.gui.RecipeTreeEditorScreen;
+import com.khimkhaosow.craftmastery.recipe.PrerequisiteGraph;
 import com.khimkhaosow.craftmastery.recipe.RecipeEntry;
 import com.khimkhaosow.craftmastery.recipe.RecipeManager;
 import com.khimkhaosow.craftmastery.util.Reference;
@@ -182,42 +182,25 @@ public class RecipeTreeWidget extends Gui {
             dataById.put(data.id, data);
         }
 
+        // Рецепты и связи узлов берём из скомпилированного графа (недостающие рецепты он сообщает в лог сам)
+        RecipeManager recipeManager = RecipeManager.getInstance();
+        PrerequisiteGraph graph = recipeManager.getPrerequisiteGraph();
         for (Map.Entry<String, NodeData> entry : dataById.entrySet()) {
-            NodeData data = entry.getValue();
-            RecipeEntry recipe = resolveRecipe(data);
-            if (recipe == null && data != null && data.recipeId != null && !data.recipeId.trim().isEmpty()) {
-                CraftMastery.logger.warn("Recipe tree node '{}' references missing recipe '{}'", data.id, data.recipeId);
-            }
-            nodes.put(entry.getKey(), new Node(entry.getKey(), data, recipe));
+            int recipeOrdinal = graph.getNodeRecipe(graph.getNodeIndex(entry.getKey()));
+            RecipeEntry recipe = recipeOrdinal >= 0 ? recipeManager.getRecipeByOrdinal(recipeOrdinal) : null;
+            nodes.put(entry.getKey(), new Node(entry.getKey(), entry.getValue(), recipe));
         }
 
         for (Node node : nodes.values()) {
-            NodeData data = node.data;
-            if (data == null) {
+            int nodeIndex = graph.getNodeIndex(node.id);
+            if (nodeIndex < 0) {
                 continue;
             }
-
-            if (data.availability != null && data.availability.requiredNodes != null) {
-                for (String requiredId : data.availability.requiredNodes) {
-                    Node parent = nodes.get(requiredId);
-                    if (parent != null && !node.parents.contains(parent)) {
-                        node.parents.add(parent);
-                        if (!parent.children.contains(node)) {
-                            parent.children.add(node);
-                        }
-                    }
-                }
-            }
-
-            if (data.unlocks != null && data.unlocks.nodes != null) {
-                for (String childId : data.unlocks.nodes) {
-                    Node child = nodes.get(childId);
-                    if (child != null && !node.children.contains(child)) {
-                        node.children.add(child);
-                        if (!child.parents.contains(node)) {
-                            child.parents.add(node);
-                        }
-                    }
+            for (int parentIndex : graph.getNodeParents(nodeIndex)) {
+                Node parent = nodes.get(graph.getNodeId(parentIndex));
+                if (parent != null && parent != node) {
+                    node.parents.add(parent);
+                    parent.children.add(node);
                 }
             }
         }
@@ -237,24 +220,6 @@ public class RecipeTreeWidget extends Gui {
         }
     }
 
-    private RecipeEntry resolveRecipe(NodeData data) {
-        if (data == null || data.recipeId == null || data.recipeId.trim().isEmpty()) {
-            return null;
-        }
-
-        RecipeEntry entry = RecipeManager.getInstance().getRecipe(data.recipeId);
-        if (entry != null) {
-            return entry;
-        }
-
-        ResourceLocation location = parseResource(data.recipeId);
-        if (location != null) {
-            entry = RecipeManager.getInstance().getRecipe(location.toString());
-        }
-
-        return entry;
-    }
-
     public void draw(int width, int height, float offsetX, float offsetY, float scale) {
         GlStateManager.pushMatrix();
         GlStateManager.translate(width/2 + offsetX, height/2 + offsetY, 0);
@@ -969,27 +934,12 @@ public class RecipeTreeWidget extends Gui {
         return result;
     }
 
+    /**
+     * Глубокая копия узла: перетаскивание и новые связи меняют только данные виджета,
+     * а в конфигурацию они попадают через upsertNode
+     */
     private NodeData cloneNodeData(NodeData source) {
-        NodeData copy = new NodeData();
-        copy.id = source.id;
-        copy.tab = source.tab;
-        copy.recipeId = source.recipeId;
-        copy.displayName = source.displayName;
-        copy.studyCost = source.studyCost;
-        copy.position = source.position != null ? clonePosition(source.position) : null;
-        copy.availability = source.availability;
-        copy.unlocks = source.unlocks;
-        copy.grantsCraftAccess = source.grantsCraftAccess;
-        copy.customIcon = source.customIcon;
-        copy.nodeTitle = source.nodeTitle;
-        return copy;
-    }
-
-    private Position clonePosition(Position position) {
-        Position result = new Position();
-        result.x = position.x;
-        result.y = position.y;
-        return result;
+        return source.copy();
     }
 
     private String normalizeTabId(String tabId) {
@@ -354,10 +354,7 @@ public class TabBarWidget extends Gui {
         int total = 0;
         int studied = 0;
         RecipeManager recipeManager = RecipeManager.getInstance();
-        for (NodeData node : RecipeTreeConfigManager.getInstance().getNodes()) {
-            if (node == null || node.tab == null || !tabId.equals(node.tab)) {
-                continue;
-            }
+        for (NodeData node : RecipeTreeConfigManager.getInstance().getNodesInTab(tabId)) {
             RecipeEntry entry = resolveRecipe(node, recipeManager);
             if (entry == null) {
                 continue;
@@ -0,0 +1,239 @@
+package com.khimkhaosow.craftmastery.integration.jei;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.khimkhaosow.craftmastery.CraftMastery;
+import com.khimkhaosow.craftmastery.experience.ClientExperienceState;
+import com.khimkhaosow.craftmastery.experience.PlayerExperienceData;
+import com.khimkhaosow.craftmastery.experience.PointsType;
+import com.khimkhaosow.craftmastery.recipe.RecipeEntry;
+import com.khimkhaosow.craftmastery.recipe.RecipeManager;
+import com.khimkhaosow.craftmastery.recipe.RecipeProgressStore;
+
+import mezz.jei.api.ingredients.IIngredientRegistry;
+import mezz.jei.api.recipe.VanillaTypes;
+import net.minecraft.client.Minecraft;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.crafting.CraftingManager;
+import net.minecraft.item.crafting.IRecipe;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
+
+/**
+ * Видимость результатов рецептов в JEI для локального игрока.
+ * Набор скрытых предметов пересчитывается только после изменения изученных рецептов, уровня
+ * или очков игрока (клиентский тик лишь сравнивает несколько чисел). Новый набор сравнивается
+ * с предыдущим, и в JEI одним вызовом удаляются только ставшие скрытыми предметы и одним
+ * вызовом возвращаются ставшие видимыми.
+ * Индекс «рецепт -> результат» строится один раз по CraftingManager.REGISTRY и перестраивается
+ * при смене списка рецептов RecipeManager; одинаковые результаты разных рецептов объединяются
+ * по уникальному ID предмета JEI.
+ */
+@SideOnly(Side.CLIENT)
+public class RecipeVisibilityManager implements RecipeProgressStore.ProgressListener {
+
+    private static final PointsType[] POINTS_TYPES = PointsType.values();
+
+    private static RecipeVisibilityManager instance;
+
+    private IIngredientRegistry ingredients;
+
+    // Индекс: номер рецепта RecipeManager и номер его результата в outputs
+    private int[] indexedOrdinals = new int[0];
+    private int[] indexedOutputs = new int[0];
+    private final List<ItemStack> outputs = new ArrayList<>();
+    private long indexedTableHash;
+    private boolean indexBuilt = false;
+
+    // Результаты, скрытые в JEI сейчас (номера в outputs)
+    private final BitSet hidden = new BitSet();
+
+    // Изменились изученные рецепты (слушатель может вызываться из потока встроенного сервера)
+    private volatile boolean dirty = true;
+
+    // Состояние, по которому был посчитан набор
+    private UUID lastPlayer;
+    private PlayerExperienceData lastData;
+    private int lastLevel;
+    private final int[] lastPoints = new int[POINTS_TYPES.length];
+
+    public RecipeVisibilityManager() {
+        RecipeProgressStore.getInstance().addListener(this);
+    }
+
+    public static RecipeVisibilityManager getInstance() {
+        if (instance == null) {
+            instance = new RecipeVisibilityManager();
+        }
+        return instance;
+    }
+
+    /**
+     * Подключает реестр ингредиентов JEI (при каждом запуске JEI список ингредиентов создаётся заново)
+     */
+    public void attach(IIngredientRegistry ingredients) {
+        this.ingredients = ingredients;
+        hidden.clear();
+        indexBuilt = false;
+        dirty = true;
+    }
+
+    /**
+     * Запрашивает пересчёт видимости в ближайшем клиентском тике
+     */
+    public void markDirty() {
+        dirty = true;
+    }
+
+    @Override
+    public void onStudiedChanged(UUID playerUUID, int ordinal, boolean studied) {
+        if (playerUUID.equals(lastPlayer)) {
+            dirty = true;
+        }
+    }
+
+    @Override
+    public void onPlayerCleared(UUID playerUUID) {
+        if (playerUUID.equals(lastPlayer)) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Событие: клиентский тик
+     */
+    @SubscribeEvent
+    public void onClientTick(TickEvent.ClientTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || ingredients == null) return;
+
+        EntityPlayer player = Minecraft.getMinecraft().player;
+        PlayerExperienceData data = ClientExperienceState.getInstance().getData();
+        if (player == null || data == null) return;
+
+        if (!dirty && !stateChanged(player.getUniqueID(), data)) return;
+
+        try {
+            refresh(player, data);
+        } catch (RuntimeException e) {
+            CraftMastery.logger.warn("JEI visibility refresh failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Проверяет, изменились ли игрок, его уровень или очки с последнего пересчёта
+     */
+    private boolean stateChanged(UUID playerUUID, PlayerExperienceData data) {
+        if (!playerUUID.equals(lastPlayer) || data != lastData || data.getLevel() != lastLevel) {
+            return true;
+        }
+        for (PointsType type : POINTS_TYPES) {
+            if (data.getPoints(type) != lastPoints[type.ordinal()]) {
+                return true;
+            }
+        }
+        return indexBuilt && RecipeManager.getInstance().getOrdinalTableHash() != indexedTableHash;
+    }
+
+    private void refresh(EntityPlayer player, PlayerExperienceData data) {
+        dirty = false;
+        lastPlayer = player.getUniqueID();
+        lastData = data;
+        lastLevel = data.getLevel();
+        for (PointsType type : POINTS_TYPES) {
+            lastPoints[type.ordinal()] = data.getPoints(type);
+        }
+
+        RecipeManager manager = RecipeManager.getInstance();
+        if (!indexBuilt || manager.getOrdinalTableHash() != indexedTableHash) {
+            buildIndex(manager);
+        }
+
+        BitSet shouldHide = new BitSet(outputs.size());
+        for (int i = 0; i < indexedOrdinals.length; i++) {
+            if (shouldHide.get(indexedOutputs[i])) continue;
+            RecipeEntry entry = manager.getRecipeByOrdinal(indexedOrdinals[i]);
+            if (entry != null && !entry.isStudiedByPlayer(lastPlayer) && !entry.canPlayerStudy(player, data)) {
+                shouldHide.set(indexedOutputs[i]);
+            }
+        }
+
+        BitSet toHide = (BitSet) shouldHide.clone();
+        toHide.andNot(hidden);
+        BitSet toShow = (BitSet) hidden.clone();
+        toShow.andNot(shouldHide);
+        if (toHide.isEmpty() && toShow.isEmpty()) return;
+
+        if (!toShow.isEmpty()) {
+            ingredients.addIngredientsAtRuntime(VanillaTypes.ITEM, collect(toShow));
+        }
+        if (!toHide.isEmpty()) {
+            ingredients.removeIngredientsAtRuntime(VanillaTypes.ITEM, collect(toHide));
+        }
+        hidden.clear();
+        hidden.or(shouldHide);
+
+        CraftMastery.logger.debug("JEI visibility updated: {} hidden, {} shown, {} hidden in total",
+            toHide.cardinality(), toShow.cardinality(), hidden.cardinality());
+    }
+
+    /**
+     * Строит индекс «рецепт -> результат» по рецептам CraftMastery из реестра Minecraft
+     */
+    private void buildIndex(RecipeManager manager) {
+        // Уже скрытые результаты возвращаем: номера результатов в новом индексе будут другими
+        if (!hidden.isEmpty()) {
+            ingredients.addIngredientsAtRuntime(VanillaTypes.ITEM, collect(hidden));
+            hidden.clear();
+        }
+        outputs.clear();
+
+        Map<String, Integer> outputIndex = new HashMap<>();
+        int[] ordinals = new int[64];
+        int[] outputNumbers = new int[64];
+        int count = 0;
+        for (IRecipe recipe : CraftingManager.REGISTRY) {
+            if (recipe == null || recipe.getRecipeOutput().isEmpty()) continue;
+            RecipeEntry entry = manager.getRecipe(recipe.getRegistryName());
+            if (entry == null || entry.getOrdinal() < 0) continue;
+
+            ItemStack output = recipe.getRecipeOutput();
+            String uid = ingredients.getIngredientHelper(output).getUniqueId(output);
+            Integer number = outputIndex.get(uid);
+            if (number == null) {
+                number = outputs.size();
+                outputIndex.put(uid, number);
+                outputs.add(output.copy());
+            }
+
+            if (count == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, count * 2);
+                outputNumbers = Arrays.copyOf(outputNumbers, count * 2);
+            }
+            ordinals[count] = entry.getOrdinal();
+            outputNumbers[count] = number;
+            count++;
+        }
+
+        indexedOrdinals = Arrays.copyOf(ordinals, count);
+        indexedOutputs = Arrays.copyOf(outputNumbers, count);
+        indexedTableHash = manager.getOrdinalTableHash();
+        indexBuilt = true;
+    }
+
+    private List<ItemStack> collect(BitSet numbers) {
+        List<ItemStack> stacks = new ArrayList<>(numbers.cardinality());
+        for (int i = numbers.nextSetBit(0); i >= 0; i = numbers.nextSetBit(i + 1)) {
+            stacks.add(outputs.get(i));
+        }
+        return stacks;
+    }
+}
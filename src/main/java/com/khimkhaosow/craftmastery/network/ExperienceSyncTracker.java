@@ -0,0 +1,83 @@
+package com.khimkhaosow.craftmastery.network;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.khimkhaosow.craftmastery.experience.PlayerExperienceData;
+import com.khimkhaosow.craftmastery.network.messages.MessageExperienceSync;
+
+/**
+ * Отслеживает, какие значения опыта уже отправлены каждому игроку,
+ * и строит по ним полный снимок или дельту только с изменёнными полями.
+ */
+public class ExperienceSyncTracker {
+
+    private static ExperienceSyncTracker instance;
+
+    // Последние отправленные значения по игрокам
+    private final Map<UUID, SentState> sent = new ConcurrentHashMap<>();
+
+    public static ExperienceSyncTracker getInstance() {
+        if (instance == null) {
+            instance = new ExperienceSyncTracker();
+        }
+        return instance;
+    }
+
+    /**
+     * Строит сообщение для игрока или возвращает null, если ничего не изменилось
+     */
+    public MessageExperienceSync createUpdate(UUID playerUUID, PlayerExperienceData data) {
+        int[] ints = MessageExperienceSync.captureInts(data);
+        float[] floats = MessageExperienceSync.captureFloats(data);
+
+        SentState state = sent.get(playerUUID);
+        if (state == null) {
+            state = new SentState(ints, floats);
+            sent.put(playerUUID, state);
+            return MessageExperienceSync.snapshot(state.sequence, ints, floats);
+        }
+
+        int mask = 0;
+        for (int i = 0; i < ints.length; i++) {
+            if (ints[i] != state.ints[i]) {
+                mask |= 1 << i;
+            }
+        }
+        for (int i = 0; i < floats.length; i++) {
+            if (Float.floatToIntBits(floats[i]) != Float.floatToIntBits(state.floats[i])) {
+                mask |= 1 << (ints.length + i);
+            }
+        }
+        if (mask == 0) {
+            return null;
+        }
+
+        MessageExperienceSync message = MessageExperienceSync.delta(++state.sequence, mask, ints, state.ints, floats);
+        state.ints = ints;
+        state.floats = floats;
+        return message;
+    }
+
+    /**
+     * Забывает отправленное состояние игрока; следующее сообщение будет полным снимком
+     */
+    public void reset(UUID playerUUID) {
+        sent.remove(playerUUID);
+    }
+
+    /**
+     * Значения, известные клиенту
+     */
+    private static class SentState {
+        int sequence = 0;
+        int[] ints;
+        float[] floats;
+
+        SentState(int[] ints, float[] floats) {
+            this.ints = ints;
+            this.floats = floats;
+        }
+    }
+}
@@ -6,7 +6,10 @@ import net.minecraftforge.fml.common.network.simpleimpl.SimpleNetworkWrapper;
 // Добавлен импорт Side
 import net.minecraftforge.fml.relauncher.Side; // Добавлен
 // --- Добавлен импорт MessageExperienceSync ---
+import com.khimkhaosow.craftmastery.network.messages.MessageExperienceResync;
 import com.khimkhaosow.craftmastery.network.messages.MessageExperienceSync;
+import com.khimkhaosow.craftmastery.network.messages.MessageRecipeProgressResync;
+import com.khimkhaosow.craftmastery.network.messages.MessageRecipeProgressSync;
 
 /**
  * Обработчик сетевых сообщений
@@ -19,5 +22,8 @@ public class NetworkHandler {
         // Регистрируем сообщения
         // Теперь MessageExperienceSync.Handler.class и MessageExperienceSync.class должны быть найдены
         INSTANCE.registerMessage(MessageExperienceSync.Handler.class, MessageExperienceSync.class, discriminator++, Side.CLIENT);
+        INSTANCE.registerMessage(MessageExperienceResync.Handler.class, MessageExperienceResync.class, discriminator++, Side.SERVER);
+        INSTANCE.registerMessage(MessageRecipeProgressSync.Handler.class, MessageRecipeProgressSync.class, discriminator++, Side.CLIENT);
+        INSTANCE.registerMessage(MessageRecipeProgressResync.Handler.class, MessageRecipeProgressResync.class, discriminator++, Side.SERVER);
     }
 }
\ No newline at end of file
@@ -0,0 +1,211 @@
+package com.khimkhaosow.craftmastery.network;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.khimkhaosow.craftmastery.network.messages.MessageRecipeProgressSync;
+import com.khimkhaosow.craftmastery.recipe.RecipeEntry;
+import com.khimkhaosow.craftmastery.recipe.RecipeManager;
+import com.khimkhaosow.craftmastery.recipe.RecipeProgressStore;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.server.MinecraftServer;
+import net.minecraftforge.fml.common.FMLCommonHandler;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedInEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedOutEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+/**
+ * Синхронизация прогресса изучения рецептов с клиентами.
+ * Хранит наборы, уже отправленные каждому игроку; изменения прогресса помечают игрока,
+ * и в конце серверного тика ему отправляется дельта только с изменившимися номерами.
+ * После входа или запроса клиента отправляется полный снимок.
+ */
+public class RecipeSyncTracker implements RecipeProgressStore.ProgressListener {
+
+    private static RecipeSyncTracker instance;
+
+    // Последние отправленные наборы по игрокам
+    private final Map<UUID, SentState> sent = new ConcurrentHashMap<>();
+
+    // Игроки, которым нужно отправить изменения
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+
+    // Игроки, запросившие таблицу ID рецептов
+    private final Set<UUID> needIdTable = ConcurrentHashMap.newKeySet();
+
+    public RecipeSyncTracker() {
+        RecipeProgressStore.getInstance().addListener(this);
+    }
+
+    public static RecipeSyncTracker getInstance() {
+        if (instance == null) {
+            instance = new RecipeSyncTracker();
+        }
+        return instance;
+    }
+
+    /**
+     * Помечает игрока для отправки изменений в конце тика
+     * (например, после изменения уровня, от которого зависят доступные рецепты)
+     */
+    public void markDirty(UUID playerUUID) {
+        if (playerUUID != null) {
+            dirty.add(playerUUID);
+        }
+    }
+
+    /**
+     * Отправляет игроку полный снимок (по запросу клиента)
+     */
+    public void resync(EntityPlayerMP player, boolean includeIdTable) {
+        UUID playerUUID = player.getUniqueID();
+        sent.remove(playerUUID);
+        if (includeIdTable) {
+            needIdTable.add(playerUUID);
+        }
+        sendUpdate(player);
+    }
+
+    @Override
+    public void onStudiedChanged(UUID playerUUID, int ordinal, boolean studied) {
+        markDirty(playerUUID);
+    }
+
+    @Override
+    public void onPlayerCleared(UUID playerUUID) {
+        markDirty(playerUUID);
+    }
+
+    /**
+     * Событие: игрок зашел на сервер — снимок уйдёт в конце тика, когда данные игрока загружены
+     */
+    @SubscribeEvent
+    public void onPlayerLogin(PlayerLoggedInEvent event) {
+        EntityPlayer player = event.player;
+        if (player.world.isRemote) return;
+
+        sent.remove(player.getUniqueID());
+        markDirty(player.getUniqueID());
+    }
+
+    /**
+     * Событие: игрок вышел с сервера
+     */
+    @SubscribeEvent
+    public void onPlayerLogout(PlayerLoggedOutEvent event) {
+        UUID playerUUID = event.player.getUniqueID();
+        sent.remove(playerUUID);
+        dirty.remove(playerUUID);
+        needIdTable.remove(playerUUID);
+    }
+
+    /**
+     * Событие: серверный тик — отправляем накопленные изменения
+     */
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || dirty.isEmpty()) return;
+
+        MinecraftServer server = FMLCommonHandler.instance().getMinecraftServerInstance();
+        if (server == null) return;
+
+        Iterator<UUID> iterator = dirty.iterator();
+        while (iterator.hasNext()) {
+            UUID playerUUID = iterator.next();
+            iterator.remove();
+            EntityPlayerMP player = server.getPlayerList().getPlayerByUUID(playerUUID);
+            if (player != null) {
+                sendUpdate(player);
+            }
+        }
+    }
+
+    private void sendUpdate(EntityPlayerMP player) {
+        MessageRecipeProgressSync message = createUpdate(player);
+        if (message != null) {
+            NetworkHandler.INSTANCE.sendTo(message, player);
+        }
+    }
+
+    /**
+     * Строит сообщение для игрока или возвращает null, если ничего не изменилось
+     */
+    private MessageRecipeProgressSync createUpdate(EntityPlayerMP player) {
+        UUID playerUUID = player.getUniqueID();
+        RecipeManager manager = RecipeManager.getInstance();
+        RecipeProgressStore progress = RecipeProgressStore.getInstance();
+
+        BitSet studied = progress.getStudied(playerUUID);
+        BitSet reset = progress.getReset(playerUUID);
+        BitSet available = new BitSet(manager.getOrdinalCount());
+        for (RecipeEntry entry : manager.getAvailableRecipes(player)) {
+            if (entry.getOrdinal() >= 0) {
+                available.set(entry.getOrdinal());
+            }
+        }
+
+        SentState state = sent.get(playerUUID);
+        if (state == null) {
+            state = new SentState(studied, reset, available);
+            sent.put(playerUUID, state);
+            boolean withIds = needIdTable.remove(playerUUID);
+            return MessageRecipeProgressSync.snapshot(state.sequence, manager.getOrdinalTableHash(),
+                withIds ? new ArrayList<>(manager.getOrdinalIds()) : null, studied, reset, available);
+        }
+
+        BitSet changed = (BitSet) studied.clone();
+        changed.xor(state.studied);
+        BitSet resetChanged = (BitSet) reset.clone();
+        resetChanged.xor(state.reset);
+        changed.or(resetChanged);
+        BitSet availableChanged = (BitSet) available.clone();
+        availableChanged.xor(state.available);
+        changed.or(availableChanged);
+        if (changed.isEmpty()) {
+            return null;
+        }
+
+        int count = changed.cardinality();
+        int[] ordinals = new int[count];
+        byte[] states = new byte[count];
+        int index = 0;
+        for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+            int flags = 0;
+            if (studied.get(i)) flags |= MessageRecipeProgressSync.STATE_STUDIED;
+            if (reset.get(i)) flags |= MessageRecipeProgressSync.STATE_RESET;
+            if (available.get(i)) flags |= MessageRecipeProgressSync.STATE_AVAILABLE;
+            ordinals[index] = i;
+            states[index] = (byte) flags;
+            index++;
+        }
+
+        state.studied = studied;
+        state.reset = reset;
+        state.available = available;
+        return MessageRecipeProgressSync.delta(++state.sequence, ordinals, states);
+    }
+
+    /**
+     * Наборы, известные клиенту
+     */
+    private static class SentState {
+        int sequence = 0;
+        BitSet studied;
+        BitSet reset;
+        BitSet available;
+
+        SentState(BitSet studied, BitSet reset, BitSet available) {
+            this.studied = studied;
+            this.reset = reset;
+            this.available = available;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.khimkhaosow.craftmastery.network;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Компактное кодирование чисел для сетевых сообщений и файлов прогресса:
+ * varint (7 бит на байт) и zig-zag для знаковых значений, чтобы небольшие дельты
+ * занимали один байт независимо от знака; битовые наборы кодируются длинами серий.
+ */
+public final class WireFormat {
+
+    private WireFormat() {
+    }
+
+    /**
+     * Записывает беззнаковое 32-битное число в формате varint
+     */
+    public static void writeVarInt(ByteBuf buf, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf.writeByte(value);
+    }
+
+    /**
+     * Читает беззнаковое 32-битное число в формате varint
+     */
+    public static int readVarInt(ByteBuf buf) {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buf.readByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("VarInt is too long");
+    }
+
+    /**
+     * Записывает знаковое число в формате zig-zag varint
+     */
+    public static void writeSignedVarInt(ByteBuf buf, int value) {
+        writeVarInt(buf, (value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Читает знаковое число в формате zig-zag varint
+     */
+    public static int readSignedVarInt(ByteBuf buf) {
+        int raw = readVarInt(buf);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    /**
+     * Записывает битовый набор как чередующиеся длины серий нулей и единиц (начиная с нулей).
+     * Изученные рецепты обычно идут группами, поэтому набор из тысяч бит занимает десятки байт.
+     */
+    public static void writeBitSet(ByteBuf buf, BitSet bits) {
+        int runs = 0;
+        int countIndex = buf.writerIndex();
+        buf.writeInt(0); // Количество серий, заполняется в конце
+
+        int position = 0;
+        while (true) {
+            int setStart = bits.nextSetBit(position);
+            if (setStart < 0) break;
+            int setEnd = bits.nextClearBit(setStart);
+            writeVarInt(buf, setStart - position);
+            writeVarInt(buf, setEnd - setStart);
+            runs += 2;
+            position = setEnd;
+        }
+        buf.setInt(countIndex, runs);
+    }
+
+    /**
+     * Читает битовый набор, записанный writeBitSet
+     */
+    public static BitSet readBitSet(ByteBuf buf) {
+        BitSet bits = new BitSet();
+        int runs = buf.readInt();
+        int position = 0;
+        for (int i = 0; i < runs; i += 2) {
+            position += readVarInt(buf);
+            int length = readVarInt(buf);
+            bits.set(position, position + length);
+            position += length;
+        }
+        return bits;
+    }
+
+    /**
+     * Записывает строку UTF-8 с длиной в формате varint
+     */
+    public static void writeString(ByteBuf buf, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(buf, bytes.length);
+        buf.writeBytes(bytes);
+    }
+
+    /**
+     * Читает строку, записанную writeString
+     */
+    public static String readString(ByteBuf buf) {
+        byte[] bytes = new byte[readVarInt(buf)];
+        buf.readBytes(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,35 @@
+package com.khimkhaosow.craftmastery.network.messages;
+
+import com.khimkhaosow.craftmastery.experience.ExperienceManager;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+/**
+ * Запрос клиента на полный снимок данных опыта (после пропущенной дельты)
+ */
+public class MessageExperienceResync implements IMessage {
+
+    public MessageExperienceResync() {
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+    }
+
+    public static class Handler implements IMessageHandler<MessageExperienceResync, IMessage> {
+        @Override
+        public IMessage onMessage(MessageExperienceResync message, MessageContext ctx) {
+            EntityPlayerMP player = ctx.getServerHandler().player;
+            player.getServerWorld().addScheduledTask(() -> ExperienceManager.getInstance().resyncToClient(player));
+            return null;
+        }
+    }
+}
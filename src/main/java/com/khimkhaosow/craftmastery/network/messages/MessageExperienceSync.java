@@ -1,9 +1,11 @@
 package com.khimkhaosow.craftmastery.network.messages;
 
-import com.khimkhaosow.craftmastery.experience.ExperienceManager;
+import com.khimkhaosow.craftmastery.experience.ClientExperienceState;
 import com.khimkhaosow.craftmastery.experience.ExperienceType;
 import com.khimkhaosow.craftmastery.experience.PlayerExperienceData;
 import com.khimkhaosow.craftmastery.experience.PointsType;
+import com.khimkhaosow.craftmastery.network.WireFormat;
+
 import io.netty.buffer.ByteBuf;
 import net.minecraft.client.Minecraft;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
@@ -13,85 +15,178 @@ import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
 /**
- * Сообщение для синхронизации данных опыта между сервером и клиентом
+ * Сообщение для синхронизации данных опыта между сервером и клиентом.
+ * Полный снимок отправляется при входе или рассинхронизации, в остальных случаях —
+ * только изменённые поля: маска изменённых полей, целые поля (уровень и очки) как
+ * zig-zag varint дельты, вещественные поля (опыт и множители) как есть.
+ * Номер последовательности позволяет клиенту заметить пропуск и запросить снимок.
  */
 public class MessageExperienceSync implements IMessage {
 
-    private int level;
-    private float currentLevelExperience;
-    private float totalExperience;
-    private float[] experienceByType;
-    private int[] pointsByType;
-    private float[] experienceMultipliers;
+    // Версия формата; клиент с другой версией игнорирует сообщения
+    public static final int PROTOCOL_VERSION = 1;
+
+    private static final ExperienceType[] EXPERIENCE_TYPES = ExperienceType.values();
+    private static final PointsType[] POINTS_TYPES = PointsType.values();
+
+    // Целые поля: уровень, затем очки по типам
+    public static final int INT_FIELDS = 1 + POINTS_TYPES.length;
+
+    // Вещественные поля: опыт уровня, общий опыт, опыт по типам, множители по типам
+    public static final int FLOAT_FIELDS = 2 + EXPERIENCE_TYPES.length * 2;
+
+    private static final int ALL_FIELDS_MASK = (1 << (INT_FIELDS + FLOAT_FIELDS)) - 1;
+
+    private int protocolVersion = PROTOCOL_VERSION;
+    private boolean fullSnapshot;
+    private int sequence;
+    private int mask;
+
+    // Для полного снимка — значения, для дельты — разница с предыдущим значением
+    private final int[] ints = new int[INT_FIELDS];
+    private final float[] floats = new float[FLOAT_FIELDS];
 
     public MessageExperienceSync() {
-        experienceByType = new float[ExperienceType.values().length];
-        pointsByType = new int[PointsType.values().length];
-        experienceMultipliers = new float[ExperienceType.values().length];
     }
 
-    public MessageExperienceSync(PlayerExperienceData data) {
-        this();
-        level = data.getLevel();
-        currentLevelExperience = data.getCurrentLevelExperience();
-        totalExperience = data.getTotalExperience();
-
-        // Копируем опыт
-        ExperienceType[] types = ExperienceType.values();
-        for (int i = 0; i < types.length; i++) {
-            experienceByType[i] = data.getExperience(types[i]);
-            experienceMultipliers[i] = data.getExperienceMultiplier(types[i]);
-        }
+    /**
+     * Создаёт полный снимок
+     */
+    public static MessageExperienceSync snapshot(int sequence, int[] ints, float[] floats) {
+        MessageExperienceSync message = new MessageExperienceSync();
+        message.fullSnapshot = true;
+        message.sequence = sequence;
+        message.mask = ALL_FIELDS_MASK;
+        System.arraycopy(ints, 0, message.ints, 0, INT_FIELDS);
+        System.arraycopy(floats, 0, message.floats, 0, FLOAT_FIELDS);
+        return message;
+    }
 
-        // Копируем очки
-        PointsType[] pointTypes = PointsType.values();
-        for (int i = 0; i < pointTypes.length; i++) {
-            pointsByType[i] = data.getPoints(pointTypes[i]);
+    /**
+     * Создаёт дельту относительно предыдущих отправленных значений
+     */
+    public static MessageExperienceSync delta(int sequence, int mask, int[] ints, int[] previousInts, float[] floats) {
+        MessageExperienceSync message = new MessageExperienceSync();
+        message.fullSnapshot = false;
+        message.sequence = sequence;
+        message.mask = mask;
+        for (int i = 0; i < INT_FIELDS; i++) {
+            message.ints[i] = ints[i] - previousInts[i];
         }
+        System.arraycopy(floats, 0, message.floats, 0, FLOAT_FIELDS);
+        return message;
     }
 
-    public MessageExperienceSync(PlayerExperienceData data, float levelProgress) {
-        this(data);
-        // levelProgress is 0.0-1.0, but currentLevelExperience is absolute
-        // Perhaps set currentLevelExperience = levelProgress * something, but since it's calculated, maybe ignore or adjust
-        // For now, keep as is
+    /**
+     * Считывает целые поля из данных игрока
+     */
+    public static int[] captureInts(PlayerExperienceData data) {
+        int[] values = new int[INT_FIELDS];
+        values[0] = data.getLevel();
+        for (int i = 0; i < POINTS_TYPES.length; i++) {
+            values[1 + i] = data.getPoints(POINTS_TYPES[i]);
+        }
+        return values;
     }
 
-    @Override
-    public void fromBytes(io.netty.buffer.ByteBuf buf) {
-        level = buf.readInt();
-        currentLevelExperience = buf.readFloat();
-        totalExperience = buf.readFloat();
-
-        for (int i = 0; i < experienceByType.length; i++) {
-            experienceByType[i] = buf.readFloat();
+    /**
+     * Считывает вещественные поля из данных игрока
+     */
+    public static float[] captureFloats(PlayerExperienceData data) {
+        float[] values = new float[FLOAT_FIELDS];
+        values[0] = data.getCurrentLevelExperience();
+        values[1] = data.getTotalExperience();
+        for (int i = 0; i < EXPERIENCE_TYPES.length; i++) {
+            values[2 + i] = data.getExperience(EXPERIENCE_TYPES[i]);
+            values[2 + EXPERIENCE_TYPES.length + i] = data.getExperienceMultiplier(EXPERIENCE_TYPES[i]);
         }
+        return values;
+    }
 
-        for (int i = 0; i < pointsByType.length; i++) {
-            pointsByType[i] = buf.readInt();
+    /**
+     * Применяет сообщение к данным игрока на клиенте
+     */
+    public void applyTo(PlayerExperienceData data) {
+        int[] current = fullSnapshot ? new int[INT_FIELDS] : captureInts(data);
+        for (int i = 0; i < INT_FIELDS; i++) {
+            if ((mask & (1 << i)) == 0) continue;
+            int value = fullSnapshot ? ints[i] : current[i] + ints[i];
+            if (i == 0) {
+                data.setLevel(value);
+            } else {
+                data.setPoints(POINTS_TYPES[i - 1], value);
+            }
         }
 
-        for (int i = 0; i < experienceMultipliers.length; i++) {
-            experienceMultipliers[i] = buf.readFloat();
+        for (int i = 0; i < FLOAT_FIELDS; i++) {
+            if ((mask & (1 << (INT_FIELDS + i))) == 0) continue;
+            float value = floats[i];
+            if (i == 0) {
+                data.setCurrentLevelExperience(value);
+            } else if (i == 1) {
+                data.setTotalExperience(value);
+            } else if (i < 2 + EXPERIENCE_TYPES.length) {
+                data.setExperience(EXPERIENCE_TYPES[i - 2], value);
+            } else {
+                data.setExperienceMultiplier(EXPERIENCE_TYPES[i - 2 - EXPERIENCE_TYPES.length], value);
+            }
         }
     }
 
+    public boolean isFullSnapshot() {
+        return fullSnapshot;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public boolean isCompatible() {
+        return protocolVersion == PROTOCOL_VERSION;
+    }
+
     @Override
-    public void toBytes(io.netty.buffer.ByteBuf buf) {
-        buf.writeInt(level);
-        buf.writeFloat(currentLevelExperience);
-        buf.writeFloat(totalExperience);
+    public void fromBytes(ByteBuf buf) {
+        protocolVersion = buf.readUnsignedByte();
+        if (protocolVersion != PROTOCOL_VERSION) {
+            buf.skipBytes(buf.readableBytes());
+            return;
+        }
 
-        for (float exp : experienceByType) {
-            buf.writeFloat(exp);
+        fullSnapshot = buf.readBoolean();
+        sequence = WireFormat.readVarInt(buf);
+        mask = fullSnapshot ? ALL_FIELDS_MASK : WireFormat.readVarInt(buf);
+
+        for (int i = 0; i < INT_FIELDS; i++) {
+            if ((mask & (1 << i)) != 0) {
+                ints[i] = WireFormat.readSignedVarInt(buf);
+            }
         }
+        for (int i = 0; i < FLOAT_FIELDS; i++) {
+            if ((mask & (1 << (INT_FIELDS + i))) != 0) {
+                floats[i] = buf.readFloat();
+            }
+        }
+    }
 
-        for (int points : pointsByType) {
-            buf.writeInt(points);
+    @Override
+    public void toBytes(ByteBuf buf) {
+        buf.writeByte(PROTOCOL_VERSION);
+        buf.writeBoolean(fullSnapshot);
+        WireFormat.writeVarInt(buf, sequence);
+        if (!fullSnapshot) {
+            WireFormat.writeVarInt(buf, mask);
         }
 
-        for (float multiplier : experienceMultipliers) {
-            buf.writeFloat(multiplier);
+        for (int i = 0; i < INT_FIELDS; i++) {
+            if ((mask & (1 << i)) != 0) {
+                WireFormat.writeSignedVarInt(buf, ints[i]);
+            }
+        }
+        for (int i = 0; i < FLOAT_FIELDS; i++) {
+            if ((mask & (1 << (INT_FIELDS + i))) != 0) {
+                buf.writeFloat(floats[i]);
+            }
         }
     }
 
@@ -99,33 +194,10 @@ public class MessageExperienceSync implements IMessage {
         @Override
         @SideOnly(Side.CLIENT)
         public IMessage onMessage(final MessageExperienceSync message, MessageContext ctx) {
-            if (ctx.side == Side.CLIENT) {
-                Minecraft.getMinecraft().addScheduledTask(() -> {
-                    PlayerExperienceData data = new PlayerExperienceData(
-                        Minecraft.getMinecraft().player.getUniqueID());
-
-                    data.setLevel(message.level);
-                    data.setCurrentLevelExperience(message.currentLevelExperience);
-                    data.setTotalExperience(message.totalExperience);
-
-                    // Устанавливаем опыт
-                    ExperienceType[] types = ExperienceType.values();
-                    for (int i = 0; i < types.length; i++) {
-                        data.setExperience(types[i], message.experienceByType[i]);
-                        data.setExperienceMultiplier(types[i], message.experienceMultipliers[i]);
-                    }
-
-                    // Устанавливаем очки
-                    PointsType[] pointTypes = PointsType.values();
-                    for (int i = 0; i < pointTypes.length; i++) {
-                        data.setPoints(pointTypes[i], message.pointsByType[i]);
-                    }
-
-                    // Данные обновляются автоматически через другие механизмы
-                    // ExperienceManager.getInstance().setPlayerData(Minecraft.getMinecraft().player, data);
-                });
+            if (ctx.side == Side.CLIENT && message.isCompatible()) {
+                Minecraft.getMinecraft().addScheduledTask(() -> ClientExperienceState.getInstance().accept(message));
             }
             return null;
         }
     }
-}
\ No newline at end of file
+}
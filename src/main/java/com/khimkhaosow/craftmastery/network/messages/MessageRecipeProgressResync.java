@@ -0,0 +1,45 @@
+package com.khimkhaosow.craftmastery.network.messages;
+
+import com.khimkhaosow.craftmastery.network.RecipeSyncTracker;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+/**
+ * Запрос клиента на полный снимок прогресса рецептов (после пропущенной дельты
+ * или несовпадения хеша списка рецептов — тогда вместе с таблицей ID)
+ */
+public class MessageRecipeProgressResync implements IMessage {
+
+    private boolean includeIdTable;
+
+    public MessageRecipeProgressResync() {
+    }
+
+    public MessageRecipeProgressResync(boolean includeIdTable) {
+        this.includeIdTable = includeIdTable;
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        includeIdTable = buf.readBoolean();
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        buf.writeBoolean(includeIdTable);
+    }
+
+    public static class Handler implements IMessageHandler<MessageRecipeProgressResync, IMessage> {
+        @Override
+        public IMessage onMessage(MessageRecipeProgressResync message, MessageContext ctx) {
+            EntityPlayerMP player = ctx.getServerHandler().player;
+            player.getServerWorld().addScheduledTask(
+                () -> RecipeSyncTracker.getInstance().resync(player, message.includeIdTable));
+            return null;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.khimkhaosow.craftmastery.network.messages;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import com.khimkhaosow.craftmastery.network.WireFormat;
+import com.khimkhaosow.craftmastery.recipe.ClientRecipeProgress;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.client.Minecraft;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
+
+/**
+ * Сообщение для синхронизации прогресса изучения рецептов.
+ * Полный снимок содержит хеш списка ID рецептов и битовые наборы изученных, сброшенных
+ * и доступных рецептов (по порядковым номерам, длинами серий). Дельта содержит только
+ * изменившиеся номера с новым состоянием. Если хеш у клиента не совпал, он запрашивает
+ * снимок с таблицей ID и переводит номера сервера в свои.
+ */
+public class MessageRecipeProgressSync implements IMessage {
+
+    // Версия формата; клиент с другой версией игнорирует сообщения
+    public static final int PROTOCOL_VERSION = 1;
+
+    // Флаги состояния рецепта в дельте
+    public static final int STATE_STUDIED = 1;
+    public static final int STATE_RESET = 1 << 1;
+    public static final int STATE_AVAILABLE = 1 << 2;
+
+    private int protocolVersion = PROTOCOL_VERSION;
+    private boolean fullSnapshot;
+    private int sequence;
+
+    // Полный снимок
+    private long tableHash;
+    private List<String> ordinalIds;
+    private BitSet studied;
+    private BitSet reset;
+    private BitSet available;
+
+    // Дельта: номера по возрастанию и их новое состояние
+    private int[] changedOrdinals;
+    private byte[] changedStates;
+
+    public MessageRecipeProgressSync() {
+    }
+
+    /**
+     * Создаёт полный снимок (ordinalIds — таблица ID или null, если клиент её не запрашивал)
+     */
+    public static MessageRecipeProgressSync snapshot(int sequence, long tableHash, List<String> ordinalIds,
+                                                     BitSet studied, BitSet reset, BitSet available) {
+        MessageRecipeProgressSync message = new MessageRecipeProgressSync();
+        message.fullSnapshot = true;
+        message.sequence = sequence;
+        message.tableHash = tableHash;
+        message.ordinalIds = ordinalIds;
+        message.studied = studied;
+        message.reset = reset;
+        message.available = available;
+        return message;
+    }
+
+    /**
+     * Создаёт дельту из изменившихся номеров (по возрастанию) и их новых состояний
+     */
+    public static MessageRecipeProgressSync delta(int sequence, int[] changedOrdinals, byte[] changedStates) {
+        MessageRecipeProgressSync message = new MessageRecipeProgressSync();
+        message.fullSnapshot = false;
+        message.sequence = sequence;
+        message.changedOrdinals = changedOrdinals;
+        message.changedStates = changedStates;
+        return message;
+    }
+
+    public boolean isFullSnapshot() {
+        return fullSnapshot;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public boolean isCompatible() {
+        return protocolVersion == PROTOCOL_VERSION;
+    }
+
+    public long getTableHash() {
+        return tableHash;
+    }
+
+    /**
+     * Таблица ID рецептов сервера или null, если она не передавалась
+     */
+    public List<String> getOrdinalIds() {
+        return ordinalIds;
+    }
+
+    public BitSet getStudied() {
+        return studied;
+    }
+
+    public BitSet getReset() {
+        return reset;
+    }
+
+    public BitSet getAvailable() {
+        return available;
+    }
+
+    public int[] getChangedOrdinals() {
+        return changedOrdinals;
+    }
+
+    public byte[] getChangedStates() {
+        return changedStates;
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        protocolVersion = buf.readUnsignedByte();
+        if (protocolVersion != PROTOCOL_VERSION) {
+            buf.skipBytes(buf.readableBytes());
+            return;
+        }
+
+        fullSnapshot = buf.readBoolean();
+        sequence = WireFormat.readVarInt(buf);
+
+        if (fullSnapshot) {
+            tableHash = buf.readLong();
+            if (buf.readBoolean()) {
+                int count = WireFormat.readVarInt(buf);
+                ordinalIds = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    ordinalIds.add(WireFormat.readString(buf));
+                }
+            }
+            studied = WireFormat.readBitSet(buf);
+            reset = WireFormat.readBitSet(buf);
+            available = WireFormat.readBitSet(buf);
+        } else {
+            int count = WireFormat.readVarInt(buf);
+            changedOrdinals = new int[count];
+            changedStates = new byte[count];
+            int previous = 0;
+            for (int i = 0; i < count; i++) {
+                previous += WireFormat.readVarInt(buf);
+                changedOrdinals[i] = previous;
+                changedStates[i] = buf.readByte();
+            }
+        }
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        buf.writeByte(PROTOCOL_VERSION);
+        buf.writeBoolean(fullSnapshot);
+        WireFormat.writeVarInt(buf, sequence);
+
+        if (fullSnapshot) {
+            buf.writeLong(tableHash);
+            buf.writeBoolean(ordinalIds != null);
+            if (ordinalIds != null) {
+                WireFormat.writeVarInt(buf, ordinalIds.size());
+                for (String id : ordinalIds) {
+                    WireFormat.writeString(buf, id);
+                }
+            }
+            WireFormat.writeBitSet(buf, studied);
+            WireFormat.writeBitSet(buf, reset);
+            WireFormat.writeBitSet(buf, available);
+        } else {
+            // Номера по возрастанию, поэтому пишем разницу с предыдущим
+            WireFormat.writeVarInt(buf, changedOrdinals.length);
+            int previous = 0;
+            for (int i = 0; i < changedOrdinals.length; i++) {
+                WireFormat.writeVarInt(buf, changedOrdinals[i] - previous);
+                previous = changedOrdinals[i];
+                buf.writeByte(changedStates[i]);
+            }
+        }
+    }
+
+    public static class Handler implements IMessageHandler<MessageRecipeProgressSync, IMessage> {
+        @Override
+        @SideOnly(Side.CLIENT)
+        public IMessage onMessage(final MessageRecipeProgressSync message, MessageContext ctx) {
+            if (ctx.side == Side.CLIENT && message.isCompatible()) {
+                Minecraft.getMinecraft().addScheduledTask(() -> ClientRecipeProgress.getInstance().accept(message));
+            }
+            return null;
+        }
+    }
+}
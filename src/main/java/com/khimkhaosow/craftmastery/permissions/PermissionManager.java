@@ -1,43 +1,74 @@
 package com.khimkhaosow.craftmastery.permissions;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.commons.io.FileUtils;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.khimkhaosow.craftmastery.CraftMastery;
 import com.khimkhaosow.craftmastery.config.ModConfig;
 import net.minecraft.entity.player.EntityPlayer;
+import net.minecraftforge.event.CommandEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedInEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedOutEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
 
 /**
- * Менеджер прав доступа игроков
+ * Менеджер прав доступа игроков.
+ * Итоговые права игрока (статус, роли, группа, индивидуальные права) сворачиваются в одну маску long
+ * по PermissionType.ordinal() и хранятся до изменения, поэтому hasPermission — чтение из карты
+ * и проверка бита без обхода списка операторов. Любое изменение прав по умолчанию, групп,
+ * индивидуальных прав или статуса оператора увеличивает версию; маски другой версии
+ * пересчитываются при следующем обращении, а зависимые кеши сверяют версию через getVersion().
+ * Роли с наследованием загружаются из permissions.json в скомпилированную таблицу RoleTable,
+ * которая при перезагрузке заменяется целиком.
  */
 public class PermissionManager {
 
+    private static final PermissionType[] PERMISSION_TYPES = PermissionType.values();
+
+    // Маска со всеми правами (права администраторов)
+    private static final long ALL_PERMISSIONS = (1L << PERMISSION_TYPES.length) - 1;
+
     private static PermissionManager instance;
 
     // Права по умолчанию для игроков
-    private final Map<PermissionType, Boolean> defaultPlayerPermissions;
+    private volatile long defaultPlayerPermissions;
 
     // Права по умолчанию для операторов
-    private final Map<PermissionType, Boolean> defaultOpPermissions;
-
-    // Права по умолчанию для администраторов (все права)
-    private final Map<PermissionType, Boolean> defaultAdminPermissions;
+    private volatile long defaultOpPermissions;
 
     // Индивидуальные права игроков
-    private final Map<UUID, Map<PermissionType, Boolean>> playerPermissions;
+    private final Map<UUID, PermissionOverride> playerPermissions = new ConcurrentHashMap<>();
 
-    // Права групп
-    private final Map<String, Map<PermissionType, Boolean>> groupPermissions;
+    // Права групп (накладываются поверх ролей с тем же именем)
+    private final Map<String, PermissionOverride> groupPermissions = new ConcurrentHashMap<>();
 
-    private PermissionManager() {
-        this.playerPermissions = new HashMap<>();
-        this.groupPermissions = new HashMap<>();
+    // Скомпилированные роли и файл, из которого они загружены
+    private volatile RoleTable roleTable = RoleTable.EMPTY;
+    private File rolesFile;
 
-        // Инициализация прав по умолчанию
-        this.defaultPlayerPermissions = new HashMap<>();
-        this.defaultOpPermissions = new HashMap<>();
-        this.defaultAdminPermissions = new HashMap<>();
+    // Итоговые маски прав игроков
+    private final Map<UUID, ResolvedPermissions> resolvedPermissions = new ConcurrentHashMap<>();
 
+    // Версия прав: растёт при любом изменении, влияющем на итоговые маски
+    private final AtomicInteger version = new AtomicInteger();
+
+    // Выполнена команда op/deop: статус операторов перечитывается в конце тика сервера
+    private volatile boolean opStatusChanged = false;
+
+    private PermissionManager() {
         setupDefaultPermissions();
         applyDefaultsFromConfig();
     }
@@ -51,35 +82,23 @@ public class PermissionManager {
 
     private void setupDefaultPermissions() {
         // Права игроков по умолчанию
-        defaultPlayerPermissions.put(PermissionType.OPEN_INTERFACE, true);
-        defaultPlayerPermissions.put(PermissionType.LEARN_RECIPES, true);
-        defaultPlayerPermissions.put(PermissionType.RESET_TABS, false);
-        defaultPlayerPermissions.put(PermissionType.MANAGE_RECIPES, false);
-        defaultPlayerPermissions.put(PermissionType.MANAGE_TABS, false);
-        defaultPlayerPermissions.put(PermissionType.MANAGE_PERMISSIONS, false);
-        defaultPlayerPermissions.put(PermissionType.GIVE_POINTS, false);
+        defaultPlayerPermissions = mask(PermissionType.OPEN_INTERFACE, PermissionType.LEARN_RECIPES);
 
         // Права операторов (расширенные права)
-        defaultOpPermissions.put(PermissionType.OPEN_INTERFACE, true);
-        defaultOpPermissions.put(PermissionType.LEARN_RECIPES, true);
-        defaultOpPermissions.put(PermissionType.RESET_TABS, true);
-        defaultOpPermissions.put(PermissionType.MANAGE_RECIPES, true);
-        defaultOpPermissions.put(PermissionType.MANAGE_TABS, true);
-        defaultOpPermissions.put(PermissionType.MANAGE_PERMISSIONS, false);
-        defaultOpPermissions.put(PermissionType.GIVE_POINTS, true);
-
-        // Права администраторов (все права)
-        for (PermissionType permission : PermissionType.values()) {
-            defaultAdminPermissions.put(permission, true);
-        }
+        defaultOpPermissions = mask(PermissionType.OPEN_INTERFACE, PermissionType.LEARN_RECIPES,
+            PermissionType.RESET_TABS, PermissionType.MANAGE_RECIPES, PermissionType.MANAGE_TABS,
+            PermissionType.GIVE_POINTS);
     }
 
     public Map<PermissionType, Boolean> getDefaultPlayerPermissions() {
-        return new HashMap<>(defaultPlayerPermissions);
+        return toMap(defaultPlayerPermissions);
     }
 
     public void setDefaultPlayerPermission(PermissionType permission, boolean value) {
-        defaultPlayerPermissions.put(permission, value);
+        synchronized (this) {
+            defaultPlayerPermissions = apply(defaultPlayerPermissions, permission, value);
+        }
+        onPermissionsChanged();
     }
 
     public void applyDefaultsFromConfig() {
@@ -96,58 +115,98 @@ public class PermissionManager {
      */
     public boolean hasPermission(EntityPlayer player, PermissionType permission) {
         if (player == null) return false;
+        return (getPermissionMask(player) & bit(permission)) != 0;
+    }
 
-        UUID playerUUID = player.getUniqueID();
-
-        // Проверяем индивидуальные права игрока
-        Map<PermissionType, Boolean> playerPerms = playerPermissions.get(playerUUID);
-        if (playerPerms != null && playerPerms.containsKey(permission)) {
-            return playerPerms.get(permission);
-        }
-
-        // Проверяем права группы игрока
-        String group = getPlayerGroup(player);
-        if (group != null) {
-            Map<PermissionType, Boolean> groupPerms = groupPermissions.get(group);
-            if (groupPerms != null && groupPerms.containsKey(permission)) {
-                return groupPerms.get(permission);
-            }
-        }
+    /**
+     * Получает итоговую маску прав игрока (бит PermissionType.ordinal())
+     */
+    public long getPermissionMask(EntityPlayer player) {
+        if (player == null) return 0L;
 
-        // Проверяем права по статусу игрока
-        if (player.canUseCommand(2, "")) {
-            // Администратор (уровень 2+)
-            return defaultAdminPermissions.get(permission);
-        } else if (player.canUseCommand(1, "")) {
-            // Оператор (уровень 1+)
-            return defaultOpPermissions.get(permission);
+        UUID playerUUID = player.getUniqueID();
+        int currentVersion = version.get();
+        ResolvedPermissions resolved = resolvedPermissions.get(playerUUID);
+        if (resolved == null || resolved.version != currentVersion) {
+            // Версия читается до расчёта: если права изменятся во время расчёта, маска устареет и пересчитается
+            resolved = new ResolvedPermissions(resolve(player), currentVersion);
+            resolvedPermissions.put(playerUUID, resolved);
         }
+        return resolved.mask;
+    }
 
-        // Права обычного игрока по умолчанию
-        return defaultPlayerPermissions.get(permission);
+    /**
+     * Получает версию прав (для кешей, зависящих от прав игроков)
+     */
+    public int getVersion() {
+        return version.get();
     }
 
     /**
      * Устанавливает индивидуальное право для игрока
      */
     public void setPlayerPermission(UUID playerUUID, PermissionType permission, boolean value) {
-        playerPermissions.computeIfAbsent(playerUUID, k -> new HashMap<>()).put(permission, value);
+        playerPermissions.compute(playerUUID,
+            (key, current) -> (current != null ? current : PermissionOverride.EMPTY).with(permission, value));
+        onPermissionsChanged();
     }
 
     /**
      * Устанавливает право для группы
      */
     public void setGroupPermission(String group, PermissionType permission, boolean value) {
-        groupPermissions.computeIfAbsent(group, k -> new HashMap<>()).put(permission, value);
+        groupPermissions.compute(group,
+            (key, current) -> (current != null ? current : PermissionOverride.EMPTY).with(permission, value));
+        onPermissionsChanged();
+    }
+
+    /**
+     * Получает роли игрока из permissions.json
+     */
+    public List<String> getPlayerRoles(EntityPlayer player) {
+        return roleTable.getPlayerRoles(player);
+    }
+
+    /**
+     * Загружает роли из файла; если файла нет, записывает пустой шаблон
+     */
+    public void loadRoles(File file) {
+        rolesFile = file;
+        if (!file.exists()) {
+            JsonObject template = new JsonObject();
+            template.add("roles", new JsonObject());
+            template.add("players", new JsonObject());
+            try {
+                FileUtils.writeStringToFile(file, new GsonBuilder().setPrettyPrinting().create().toJson(template),
+                    StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                CraftMastery.logger.error("Error writing permission roles template to {}: ", file, e);
+            }
+            return;
+        }
+        reloadRoles();
     }
 
     /**
-     * Получает группу игрока (простая реализация)
+     * Перечитывает permissions.json. Таблица компилируется целиком и подменяется одной записью,
+     * поэтому проверки прав во время перезагрузки видят либо старую, либо новую таблицу.
+     * При ошибке остаётся прежняя таблица
+     * @return true, если таблица загружена
      */
-    private String getPlayerGroup(EntityPlayer player) {
-        // В будущем можно интегрировать с системами вроде LuckPerms
-        // Пока возвращаем null, чтобы использовать права по статусу
-        return null;
+    public boolean reloadRoles() {
+        if (rolesFile == null) return false;
+        try {
+            String json = FileUtils.readFileToString(rolesFile, StandardCharsets.UTF_8);
+            RoleTable table = RoleTable.compile(new JsonParser().parse(json).getAsJsonObject());
+            roleTable = table;
+            onPermissionsChanged();
+            CraftMastery.logger.info("Loaded {} permission roles for {} players from {}",
+                table.getRoleCount(), table.getPlayerCount(), rolesFile);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            CraftMastery.logger.error("Error loading permission roles from {}: ", rolesFile, e);
+            return false;
+        }
     }
 
     /**
@@ -155,6 +214,7 @@ public class PermissionManager {
      */
     public void resetPlayerPermissions(UUID playerUUID) {
         playerPermissions.remove(playerUUID);
+        onPermissionsChanged();
     }
 
     /**
@@ -162,6 +222,7 @@ public class PermissionManager {
      */
     public void resetGroupPermissions(String group) {
         groupPermissions.remove(group);
+        onPermissionsChanged();
     }
 
     /**
@@ -169,34 +230,124 @@ public class PermissionManager {
      */
     public Map<PermissionType, Boolean> getPlayerPermissions(EntityPlayer player) {
         if (player == null) return new HashMap<>();
+        return toMap(getPermissionMask(player));
+    }
 
-        UUID playerUUID = player.getUniqueID();
-        Map<PermissionType, Boolean> permissions = new HashMap<>();
+    /**
+     * Событие: вход игрока — маска считается заранее, а не при первой проверке
+     */
+    @SubscribeEvent
+    public void onPlayerLogin(PlayerLoggedInEvent event) {
+        resolvedPermissions.put(event.player.getUniqueID(),
+            new ResolvedPermissions(resolve(event.player), version.get()));
+    }
+
+    /**
+     * Событие: выход игрока
+     */
+    @SubscribeEvent
+    public void onPlayerLogout(PlayerLoggedOutEvent event) {
+        resolvedPermissions.remove(event.player.getUniqueID());
+    }
+
+    /**
+     * Событие: команда. Событие приходит до выполнения команды, поэтому после op/deop
+     * маски пересчитываются только в конце тика, когда список операторов уже изменён
+     */
+    @SubscribeEvent
+    public void onCommand(CommandEvent event) {
+        String name = event.getCommand().getName();
+        if ("op".equals(name) || "deop".equals(name)) {
+            opStatusChanged = true;
+        }
+    }
+
+    /**
+     * Событие: тик сервера
+     */
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || !opStatusChanged) return;
+        opStatusChanged = false;
+        onPermissionsChanged();
+    }
 
-        // Получаем базовые права по статусу
+    /**
+     * Сворачивает права игрока в маску: статус, затем роли, затем права групп,
+     * затем индивидуальные права (наивысший приоритет)
+     */
+    private long resolve(EntityPlayer player) {
+        long mask;
         if (player.canUseCommand(2, "")) {
-            permissions.putAll(defaultAdminPermissions);
+            // Администратор (уровень 2+)
+            mask = ALL_PERMISSIONS;
         } else if (player.canUseCommand(1, "")) {
-            permissions.putAll(defaultOpPermissions);
+            // Оператор (уровень 1+)
+            mask = defaultOpPermissions;
         } else {
-            permissions.putAll(defaultPlayerPermissions);
+            // Права обычного игрока по умолчанию
+            mask = defaultPlayerPermissions;
         }
 
-        // Применяем групповые права
-        String group = getPlayerGroup(player);
-        if (group != null) {
-            Map<PermissionType, Boolean> groupPerms = groupPermissions.get(group);
-            if (groupPerms != null) {
-                permissions.putAll(groupPerms);
+        RoleTable roles = roleTable;
+        PermissionOverride rolePerms = roles.getPlayerOverride(player);
+        if (rolePerms != null) {
+            mask = rolePerms.applyTo(mask);
+            if (!groupPermissions.isEmpty()) {
+                for (String role : roles.getPlayerRoles(player)) {
+                    PermissionOverride groupPerms = groupPermissions.get(role);
+                    if (groupPerms != null) {
+                        mask = groupPerms.applyTo(mask);
+                    }
+                }
             }
         }
 
-        // Применяем индивидуальные права (они имеют наивысший приоритет)
-        Map<PermissionType, Boolean> playerPerms = playerPermissions.get(playerUUID);
+        PermissionOverride playerPerms = playerPermissions.get(player.getUniqueID());
         if (playerPerms != null) {
-            permissions.putAll(playerPerms);
+            mask = playerPerms.applyTo(mask);
+        }
+        return mask;
+    }
+
+    private void onPermissionsChanged() {
+        version.incrementAndGet();
+    }
+
+    private static long bit(PermissionType permission) {
+        return 1L << permission.ordinal();
+    }
+
+    private static long mask(PermissionType... permissions) {
+        long mask = 0L;
+        for (PermissionType permission : permissions) {
+            mask |= bit(permission);
         }
+        return mask;
+    }
 
+    private static long apply(long mask, PermissionType permission, boolean value) {
+        return value ? mask | bit(permission) : mask & ~bit(permission);
+    }
+
+    private static Map<PermissionType, Boolean> toMap(long mask) {
+        Map<PermissionType, Boolean> permissions = new HashMap<>();
+        for (PermissionType permission : PERMISSION_TYPES) {
+            permissions.put(permission, (mask & bit(permission)) != 0);
+        }
         return permissions;
     }
+
+    /**
+     * Итоговая маска игрока и версия прав, для которой она посчитана
+     */
+    private static final class ResolvedPermissions {
+        final long mask;
+        final int version;
+
+        ResolvedPermissions(long mask, int version) {
+            this.mask = mask;
+            this.version = version;
+        }
+    }
 }
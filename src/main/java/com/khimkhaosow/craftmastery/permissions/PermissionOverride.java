@@ -0,0 +1,63 @@
+package com.khimkhaosow.craftmastery.permissions;
+
+/**
+ * Заданные права игрока, группы или роли: какие биты заданы и их значения (неизменяемый объект).
+ * Биты — PermissionType.ordinal(); незаданные биты берутся из прав уровнем ниже.
+ */
+final class PermissionOverride {
+
+    static final PermissionOverride EMPTY = new PermissionOverride(0L, 0L);
+
+    // Заданные права
+    final long defined;
+
+    // Значения заданных прав (подмножество defined)
+    final long values;
+
+    PermissionOverride(long defined, long values) {
+        this.defined = defined;
+        this.values = values & defined;
+    }
+
+    /**
+     * Создаёт права из масок разрешений и запретов; при пересечении побеждает запрет
+     */
+    static PermissionOverride of(long allow, long deny) {
+        return new PermissionOverride(allow | deny, allow & ~deny);
+    }
+
+    long getAllowMask() {
+        return values;
+    }
+
+    long getDenyMask() {
+        return defined & ~values;
+    }
+
+    PermissionOverride with(PermissionType permission, boolean value) {
+        long bit = 1L << permission.ordinal();
+        return new PermissionOverride(defined | bit, value ? values | bit : values & ~bit);
+    }
+
+    /**
+     * Объединяет права равного приоритета (несколько ролей или родителей): запрет побеждает разрешение
+     */
+    PermissionOverride merge(PermissionOverride other) {
+        return of(getAllowMask() | other.getAllowMask(), getDenyMask() | other.getDenyMask());
+    }
+
+    /**
+     * Накладывает более приоритетные права поверх этих (собственные права роли поверх унаследованных)
+     */
+    PermissionOverride overriddenBy(PermissionOverride other) {
+        return new PermissionOverride(defined | other.defined, (values & ~other.defined) | other.values);
+    }
+
+    long applyTo(long mask) {
+        return (mask & ~defined) | values;
+    }
+
+    boolean isEmpty() {
+        return defined == 0L;
+    }
+}
@@ -0,0 +1,243 @@
+package com.khimkhaosow.craftmastery.permissions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.khimkhaosow.craftmastery.CraftMastery;
+
+import net.minecraft.entity.player.EntityPlayer;
+
+/**
+ * Скомпилированная таблица ролей из permissions.json (неизменяемая).
+ * Роли наследуют друг друга и задают разрешения и запреты; при загрузке граф наследования
+ * сворачивается в пару масок на роль, а роли каждого игрока — в одну пару масок на игрока,
+ * поэтому права игрока берутся одним чтением из карты при любой глубине наследования.
+ * Собственные права роли важнее унаследованных; между родителями и между ролями игрока
+ * запрет побеждает разрешение.
+ *
+ * Формат файла:
+ * <pre>
+ * {
+ *   "roles": {
+ *     "builder": { "allow": ["MANAGE_TABS"] },
+ *     "moderator": { "inherits": ["builder"], "allow": ["RESET_TABS", "GIVE_POINTS"], "deny": ["ADMIN_SETTINGS"] }
+ *   },
+ *   "players": {
+ *     "Notch": ["moderator"],
+ *     "069a79f4-44e9-4726-a5be-fca90e38aaf5": ["builder"]
+ *   }
+ * }
+ * </pre>
+ * Игрок задаётся UUID или именем; "*" в списке прав означает все права.
+ */
+final class RoleTable {
+
+    static final RoleTable EMPTY = new RoleTable(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+
+    private static final long ALL_PERMISSIONS = (1L << PermissionType.values().length) - 1;
+
+    // Свёрнутые права ролей
+    private final Map<String, PermissionOverride> roles;
+
+    // Назначения игрокам по UUID и по имени (в нижнем регистре)
+    private final Map<UUID, Assignment> playersById;
+    private final Map<String, Assignment> playersByName;
+
+    private RoleTable(Map<String, PermissionOverride> roles, Map<UUID, Assignment> playersById,
+                      Map<String, Assignment> playersByName) {
+        this.roles = roles;
+        this.playersById = playersById;
+        this.playersByName = playersByName;
+    }
+
+    /**
+     * Получает свёрнутые права всех ролей игрока (null, если ролей нет)
+     */
+    PermissionOverride getPlayerOverride(EntityPlayer player) {
+        Assignment assignment = getAssignment(player);
+        return assignment != null ? assignment.permissions : null;
+    }
+
+    /**
+     * Получает роли игрока
+     */
+    List<String> getPlayerRoles(EntityPlayer player) {
+        Assignment assignment = getAssignment(player);
+        return assignment != null ? assignment.roles : Collections.emptyList();
+    }
+
+    int getRoleCount() {
+        return roles.size();
+    }
+
+    int getPlayerCount() {
+        return playersById.size() + playersByName.size();
+    }
+
+    private Assignment getAssignment(EntityPlayer player) {
+        Assignment assignment = playersById.get(player.getUniqueID());
+        if (assignment == null && !playersByName.isEmpty()) {
+            assignment = playersByName.get(player.getName().toLowerCase(Locale.ROOT));
+        }
+        return assignment;
+    }
+
+    /**
+     * Компилирует таблицу из JSON. Неизвестные права и роли, а также циклы наследования
+     * пропускаются с предупреждением в лог
+     */
+    static RoleTable compile(JsonObject json) {
+        Map<String, RoleDefinition> definitions = new LinkedHashMap<>();
+        if (json.has("roles")) {
+            for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject("roles").entrySet()) {
+                definitions.put(entry.getKey(), RoleDefinition.fromJson(entry.getKey(), entry.getValue().getAsJsonObject()));
+            }
+        }
+
+        Map<String, PermissionOverride> compiled = new HashMap<>();
+        for (String role : definitions.keySet()) {
+            flatten(role, definitions, compiled, new HashSet<>());
+        }
+
+        Map<UUID, Assignment> playersById = new HashMap<>();
+        Map<String, Assignment> playersByName = new HashMap<>();
+        if (json.has("players")) {
+            for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject("players").entrySet()) {
+                Assignment assignment = Assignment.fromJson(entry.getKey(), entry.getValue().getAsJsonArray(), compiled);
+                UUID playerUUID = parseUUID(entry.getKey());
+                if (playerUUID != null) {
+                    playersById.put(playerUUID, assignment);
+                } else {
+                    playersByName.put(entry.getKey().toLowerCase(Locale.ROOT), assignment);
+                }
+            }
+        }
+
+        return new RoleTable(Collections.unmodifiableMap(compiled), playersById, playersByName);
+    }
+
+    /**
+     * Сворачивает права роли с учётом всех предков (результаты запоминаются в compiled)
+     */
+    private static PermissionOverride flatten(String role, Map<String, RoleDefinition> definitions,
+                                              Map<String, PermissionOverride> compiled, Set<String> visiting) {
+        PermissionOverride result = compiled.get(role);
+        if (result != null) return result;
+
+        RoleDefinition definition = definitions.get(role);
+        if (definition == null) return null;
+
+        visiting.add(role);
+        PermissionOverride inherited = PermissionOverride.EMPTY;
+        for (String parent : definition.parents) {
+            if (visiting.contains(parent)) {
+                CraftMastery.logger.warn("Permission role '{}' inherits '{}' in a cycle, ignoring that link", role, parent);
+                continue;
+            }
+            PermissionOverride parentPermissions = flatten(parent, definitions, compiled, visiting);
+            if (parentPermissions == null) {
+                CraftMastery.logger.warn("Permission role '{}' inherits unknown role '{}'", role, parent);
+                continue;
+            }
+            inherited = inherited.merge(parentPermissions);
+        }
+        visiting.remove(role);
+
+        result = inherited.overriddenBy(definition.own);
+        compiled.put(role, result);
+        return result;
+    }
+
+    private static long parsePermissions(String owner, JsonObject json, String key) {
+        long mask = 0L;
+        if (!json.has(key)) return mask;
+
+        for (JsonElement element : json.getAsJsonArray(key)) {
+            String name = element.getAsString();
+            if ("*".equals(name)) {
+                mask |= ALL_PERMISSIONS;
+                continue;
+            }
+            try {
+                mask |= 1L << PermissionType.valueOf(name.toUpperCase(Locale.ROOT)).ordinal();
+            } catch (IllegalArgumentException e) {
+                CraftMastery.logger.warn("Unknown permission '{}' in role '{}'", name, owner);
+            }
+        }
+        return mask;
+    }
+
+    private static UUID parseUUID(String value) {
+        if (value.length() != 36) return null;
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Роль, как она записана в файле
+     */
+    private static final class RoleDefinition {
+        final List<String> parents;
+        final PermissionOverride own;
+
+        RoleDefinition(List<String> parents, PermissionOverride own) {
+            this.parents = parents;
+            this.own = own;
+        }
+
+        static RoleDefinition fromJson(String name, JsonObject json) {
+            List<String> parents = new ArrayList<>();
+            if (json.has("inherits")) {
+                for (JsonElement parent : json.getAsJsonArray("inherits")) {
+                    parents.add(parent.getAsString());
+                }
+            }
+            PermissionOverride own = PermissionOverride.of(parsePermissions(name, json, "allow"),
+                parsePermissions(name, json, "deny"));
+            return new RoleDefinition(parents, own);
+        }
+    }
+
+    /**
+     * Роли игрока и их объединённые права
+     */
+    private static final class Assignment {
+        final List<String> roles;
+        final PermissionOverride permissions;
+
+        Assignment(List<String> roles, PermissionOverride permissions) {
+            this.roles = roles;
+            this.permissions = permissions;
+        }
+
+        static Assignment fromJson(String player, JsonArray json, Map<String, PermissionOverride> compiled) {
+            List<String> roles = new ArrayList<>();
+            PermissionOverride permissions = PermissionOverride.EMPTY;
+            for (JsonElement element : json) {
+                String role = element.getAsString();
+                PermissionOverride rolePermissions = compiled.get(role);
+                if (rolePermissions == null) {
+                    CraftMastery.logger.warn("Player '{}' is assigned unknown permission role '{}'", player, role);
+                    continue;
+                }
+                roles.add(role);
+                permissions = permissions.merge(rolePermissions);
+            }
+            return new Assignment(Collections.unmodifiableList(roles), permissions);
+        }
+    }
+}
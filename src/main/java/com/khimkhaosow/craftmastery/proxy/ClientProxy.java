@@ -3,8 +3,11 @@ package com.khimkhaosow.craftmastery.proxy;
 import com.khimkhaosow.craftmastery.CraftMastery;
 import com.khimkhaosow.craftmastery.crafting.CraftingGuiHandler;
 import com.khimkhaosow.craftmastery.crafting.RecipeButtonHider;
+import com.khimkhaosow.craftmastery.experience.ClientExperienceState;
 import com.khimkhaosow.craftmastery.gui.GuiHandler;
+import com.khimkhaosow.craftmastery.recipe.ClientRecipeProgress;
 
+import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.fml.common.event.FMLInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPostInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
@@ -25,6 +28,10 @@ public class ClientProxy extends CommonProxy {
         // Инициализация скрывателя кнопок рецептов
         CraftMastery.logger.info("ClientProxy preInit: creating RecipeButtonHider");
         new RecipeButtonHider();
+
+        // Состояние опыта, полученное с сервера
+        MinecraftForge.EVENT_BUS.register(ClientExperienceState.getInstance());
+        MinecraftForge.EVENT_BUS.register(ClientRecipeProgress.getInstance());
     }
 
     @Override
@@ -1,22 +1,30 @@
 package com.khimkhaosow.craftmastery.proxy;
 
 import com.khimkhaosow.craftmastery.CraftMastery;
+import com.khimkhaosow.craftmastery.config.ConfigSaveScheduler;
 import com.khimkhaosow.craftmastery.config.ModConfig;
+import com.khimkhaosow.craftmastery.crafting.CraftAuditLog;
 import com.khimkhaosow.craftmastery.crafting.ItemUsageHandler;
 import com.khimkhaosow.craftmastery.crafting.CraftingHandler;
 import com.khimkhaosow.craftmastery.crafting.RecipeFilter;
 import com.khimkhaosow.craftmastery.commands.CommandRegistry;
 import com.khimkhaosow.craftmastery.network.NetworkHandler;
+import com.khimkhaosow.craftmastery.network.RecipeSyncTracker;
 import com.khimkhaosow.craftmastery.experience.ExperienceManager;
+import com.khimkhaosow.craftmastery.recipe.CraftDecisionCache;
 import com.khimkhaosow.craftmastery.recipe.RecipeManager;
 import com.khimkhaosow.craftmastery.permissions.PermissionManager;
+import com.khimkhaosow.craftmastery.storage.ProgressionStore;
 import com.khimkhaosow.craftmastery.tabs.TabManager;
 
+import java.io.File;
+
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.fml.common.event.FMLInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPostInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
+import net.minecraftforge.fml.common.event.FMLServerStoppingEvent;
 
 public class CommonProxy {
 
@@ -24,6 +32,9 @@ public class CommonProxy {
         // Инициализация конфигурации
         ModConfig.init(event);
 
+        // Журнал аудита крафта пишется рядом с логами игры
+        CraftAuditLog.getInstance().start(new File(event.getModConfigurationDirectory().getParentFile(), "logs"));
+
         // Инициализация сети
         NetworkHandler.init();
 
@@ -33,6 +44,9 @@ public class CommonProxy {
         MinecraftForge.EVENT_BUS.register(CraftingHandler.getInstance());
         MinecraftForge.EVENT_BUS.register(RecipeFilter.getInstance());
         MinecraftForge.EVENT_BUS.register(new ItemUsageHandler());
+        MinecraftForge.EVENT_BUS.register(RecipeSyncTracker.getInstance());
+        MinecraftForge.EVENT_BUS.register(CraftDecisionCache.getInstance());
+        MinecraftForge.EVENT_BUS.register(ProgressionStore.getInstance());
 
         CraftMastery.logger.info("CommonProxy Pre-Init completed");
     }
@@ -60,6 +74,22 @@ public class CommonProxy {
         // Регистрация команд
         CommandRegistry.registerCommands(event);
 
+        // Открываем хранилище прогресса игроков для этого мира
+        ProgressionStore.getInstance().open(event.getServer().getEntityWorld().getSaveHandler().getWorldDirectory());
+
         CraftMastery.logger.info("CommonProxy Server Starting completed");
     }
+
+    public void serverStopping(FMLServerStoppingEvent event) {
+        // Синхронно записываем несохранённый прогресс
+        ProgressionStore.getInstance().close();
+
+        // Дописываем события аудита, ещё не попавшие в файл
+        CraftAuditLog.getInstance().flush(2000);
+
+        // Записываем отложенные сохранения конфигурации рецептов
+        ConfigSaveScheduler.getInstance().flush();
+
+        CraftMastery.logger.info("CommonProxy Server Stopping completed");
+    }
 }
@@ -0,0 +1,200 @@
+package com.khimkhaosow.craftmastery.recipe;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+
+import com.khimkhaosow.craftmastery.CraftMastery;
+import com.khimkhaosow.craftmastery.network.NetworkHandler;
+import com.khimkhaosow.craftmastery.network.messages.MessageRecipeProgressResync;
+import com.khimkhaosow.craftmastery.network.messages.MessageRecipeProgressSync;
+
+import net.minecraft.client.Minecraft;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.network.FMLNetworkEvent.ClientDisconnectionFromServerEvent;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
+
+/**
+ * Прогресс изучения рецептов локального игрока, полученный с сервера.
+ * Изученные и сброшенные рецепты записываются в RecipeProgressStore, поэтому клиентский код
+ * продолжает пользоваться RecipeEntry.isStudiedByPlayer. Доступные для изучения рецепты
+ * хранятся здесь. В одиночной игре хранилище общее со встроенным сервером и уже актуально,
+ * поэтому в него ничего не записывается.
+ */
+@SideOnly(Side.CLIENT)
+public class ClientRecipeProgress {
+
+    private static ClientRecipeProgress instance;
+
+    // Номер рецепта сервера -> локальный номер (null, если номера совпадают)
+    private int[] remap;
+
+    // Доступные для изучения рецепты (локальные номера)
+    private final BitSet available = new BitSet();
+
+    private boolean hasData = false;
+    private boolean writesToStore = false;
+    private UUID playerUUID;
+    private int lastSequence = -1;
+    private boolean awaitingSnapshot = true;
+
+    public static ClientRecipeProgress getInstance() {
+        if (instance == null) {
+            instance = new ClientRecipeProgress();
+        }
+        return instance;
+    }
+
+    /**
+     * Применяет сообщение синхронизации
+     */
+    public void accept(MessageRecipeProgressSync message) {
+        Minecraft mc = Minecraft.getMinecraft();
+        if (mc.player == null) return;
+
+        if (message.isFullSnapshot()) {
+            applySnapshot(mc, message);
+            return;
+        }
+
+        if (awaitingSnapshot) {
+            // Снимок уже запрошен, дельты до него не применимы
+            return;
+        }
+        if (message.getSequence() != lastSequence + 1) {
+            requestSnapshot(false);
+            return;
+        }
+
+        int[] ordinals = message.getChangedOrdinals();
+        byte[] states = message.getChangedStates();
+        RecipeProgressStore store = RecipeProgressStore.getInstance();
+        for (int i = 0; i < ordinals.length; i++) {
+            int local = toLocal(ordinals[i]);
+            if (local < 0) continue;
+
+            int state = states[i];
+            if (writesToStore) {
+                store.setState(playerUUID, local,
+                    (state & MessageRecipeProgressSync.STATE_STUDIED) != 0,
+                    (state & MessageRecipeProgressSync.STATE_RESET) != 0);
+            }
+            available.set(local, (state & MessageRecipeProgressSync.STATE_AVAILABLE) != 0);
+        }
+        lastSequence = message.getSequence();
+    }
+
+    private void applySnapshot(Minecraft mc, MessageRecipeProgressSync message) {
+        RecipeManager manager = RecipeManager.getInstance();
+        List<String> serverIds = message.getOrdinalIds();
+
+        if (message.getTableHash() == manager.getOrdinalTableHash()) {
+            remap = null;
+        } else if (serverIds == null) {
+            CraftMastery.logger.warn("Recipe list differs from server, requesting recipe id table");
+            requestSnapshot(true);
+            return;
+        } else {
+            remap = new int[serverIds.size()];
+            int unknown = 0;
+            for (int i = 0; i < remap.length; i++) {
+                RecipeEntry entry = manager.getRecipe(serverIds.get(i));
+                remap[i] = entry != null ? entry.getOrdinal() : -1;
+                if (remap[i] < 0) unknown++;
+            }
+            if (unknown > 0) {
+                CraftMastery.logger.warn("{} server recipes are unknown to the client and will be ignored", unknown);
+            }
+        }
+
+        playerUUID = mc.player.getUniqueID();
+        writesToStore = !mc.isIntegratedServerRunning();
+        if (writesToStore) {
+            RecipeProgressStore.getInstance().replace(playerUUID,
+                toLocal(message.getStudied()), toLocal(message.getReset()));
+        }
+        available.clear();
+        available.or(toLocal(message.getAvailable()));
+
+        hasData = true;
+        awaitingSnapshot = false;
+        lastSequence = message.getSequence();
+    }
+
+    /**
+     * Получен ли прогресс с сервера
+     */
+    public boolean hasData() {
+        return hasData;
+    }
+
+    /**
+     * Проверяет, доступен ли рецепт для изучения по данным сервера
+     */
+    public boolean isAvailable(RecipeEntry entry) {
+        return entry != null && entry.getOrdinal() >= 0 && available.get(entry.getOrdinal());
+    }
+
+    /**
+     * Получает рецепты, доступные для изучения по данным сервера
+     */
+    public List<RecipeEntry> getAvailableRecipes() {
+        List<RecipeEntry> result = new ArrayList<>(available.cardinality());
+        RecipeManager manager = RecipeManager.getInstance();
+        for (int i = available.nextSetBit(0); i >= 0; i = available.nextSetBit(i + 1)) {
+            RecipeEntry entry = manager.getRecipeByOrdinal(i);
+            if (entry != null) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Сбрасывает состояние (при отключении от сервера)
+     */
+    public void clear() {
+        if (writesToStore && playerUUID != null) {
+            RecipeProgressStore.getInstance().clearPlayer(playerUUID);
+        }
+        remap = null;
+        available.clear();
+        hasData = false;
+        writesToStore = false;
+        playerUUID = null;
+        lastSequence = -1;
+        awaitingSnapshot = true;
+    }
+
+    /**
+     * Событие: клиент отключился от сервера
+     */
+    @SubscribeEvent
+    public void onClientDisconnect(ClientDisconnectionFromServerEvent event) {
+        Minecraft.getMinecraft().addScheduledTask(this::clear);
+    }
+
+    private int toLocal(int serverOrdinal) {
+        if (remap == null) return serverOrdinal;
+        return serverOrdinal < remap.length ? remap[serverOrdinal] : -1;
+    }
+
+    private BitSet toLocal(BitSet serverBits) {
+        if (remap == null) return serverBits;
+        BitSet local = new BitSet();
+        for (int i = serverBits.nextSetBit(0); i >= 0; i = serverBits.nextSetBit(i + 1)) {
+            int ordinal = toLocal(i);
+            if (ordinal >= 0) {
+                local.set(ordinal);
+            }
+        }
+        return local;
+    }
+
+    private void requestSnapshot(boolean includeIdTable) {
+        awaitingSnapshot = true;
+        NetworkHandler.INSTANCE.sendToServer(new MessageRecipeProgressResync(includeIdTable));
+    }
+}
@@ -0,0 +1,188 @@
+package com.khimkhaosow.craftmastery.recipe;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.khimkhaosow.craftmastery.experience.ExperienceManager;
+import com.khimkhaosow.craftmastery.permissions.PermissionManager;
+import com.khimkhaosow.craftmastery.permissions.PermissionType;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedOutEvent;
+
+/**
+ * Кеш решений «может ли игрок крафтить рецепт» по (игрок, номер рецепта).
+ * Решение (изучен / можно изучить / недоступен) и право LEARN_RECIPES считаются один раз
+ * и хранятся в массиве игрока по номеру рецепта. У каждого игрока есть счётчик версии прогресса,
+ * который растёт при изучении и сбросе рецептов, изменении уровня и очков; у кеша —
+ * общая эпоха, которая растёт при изменении самих рецептов и их связей; права сверяются
+ * по версии PermissionManager. Массив игрока сбрасывается, если он заполнен для другой версии,
+ * эпохи или версии прав, поэтому повторная проверка при каждом изменении
+ * сетки крафта — одно чтение из массива.
+ */
+public class CraftDecisionCache implements RecipeProgressStore.ProgressListener {
+
+    /**
+     * Решение для рецепта
+     */
+    public enum Decision {
+        // Рецепт изучен
+        ALLOWED,
+        // Рецепт не изучен, но игрок может его изучить
+        STUDIABLE,
+        // Рецепт не изучен и недоступен для изучения
+        LOCKED
+    }
+
+    private static final Decision[] DECISIONS = Decision.values();
+
+    // 0 в массиве — решение ещё не посчитано, иначе ordinal() + 1
+    private static final byte UNKNOWN = 0;
+
+    private static CraftDecisionCache instance;
+
+    private final Map<UUID, PlayerDecisions> players = new ConcurrentHashMap<>();
+
+    // Эпоха: растёт при изменении рецептов, их требований и связей
+    private volatile int epoch = 0;
+
+    public CraftDecisionCache() {
+        RecipeProgressStore.getInstance().addListener(this);
+    }
+
+    public static CraftDecisionCache getInstance() {
+        if (instance == null) {
+            instance = new CraftDecisionCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Получает решение для рецепта
+     */
+    public Decision getDecision(EntityPlayer player, RecipeEntry entry) {
+        int ordinal = entry.getOrdinal();
+        if (ordinal < 0) {
+            // Рецепт не зарегистрирован в менеджере — номера нет, кешировать не по чему
+            return compute(player, entry);
+        }
+
+        PlayerDecisions decisions = players.computeIfAbsent(player.getUniqueID(), key -> new PlayerDecisions());
+        synchronized (decisions) {
+            byte[] values = decisions.validate(epoch, PermissionManager.getInstance().getVersion(), ordinal);
+            byte value = values[ordinal];
+            if (value == UNKNOWN) {
+                value = (byte) (compute(player, entry).ordinal() + 1);
+                values[ordinal] = value;
+            }
+            return DECISIONS[value - 1];
+        }
+    }
+
+    /**
+     * Проверяет, изучен ли рецепт игроком (через кеш)
+     */
+    public boolean isAllowed(EntityPlayer player, RecipeEntry entry) {
+        return getDecision(player, entry) == Decision.ALLOWED;
+    }
+
+    /**
+     * Проверяет право LEARN_RECIPES игрока (через кеш)
+     */
+    public boolean canLearn(EntityPlayer player) {
+        PlayerDecisions decisions = players.computeIfAbsent(player.getUniqueID(), key -> new PlayerDecisions());
+        synchronized (decisions) {
+            decisions.validate(epoch, PermissionManager.getInstance().getVersion(), 0);
+            if (decisions.canLearn == UNKNOWN) {
+                boolean allowed = PermissionManager.getInstance().hasPermission(player, PermissionType.LEARN_RECIPES);
+                decisions.canLearn = (byte) (allowed ? 1 : 2);
+            }
+            return decisions.canLearn == 1;
+        }
+    }
+
+    /**
+     * Сбрасывает решения игрока (изменились его прогресс, уровень или очки)
+     */
+    public void invalidate(UUID playerUUID) {
+        if (playerUUID == null) return;
+        PlayerDecisions decisions = players.get(playerUUID);
+        if (decisions != null) {
+            synchronized (decisions) {
+                decisions.version++;
+            }
+        }
+    }
+
+    /**
+     * Сбрасывает решения всех игроков (изменились рецепты или их требования)
+     */
+    public synchronized void invalidateAll() {
+        epoch++;
+    }
+
+    @Override
+    public void onStudiedChanged(UUID playerUUID, int ordinal, boolean studied) {
+        invalidate(playerUUID);
+    }
+
+    @Override
+    public void onPlayerCleared(UUID playerUUID) {
+        players.remove(playerUUID);
+    }
+
+    /**
+     * Событие: игрок вышел с сервера — его прогресс может остаться в памяти (кеш игроков не в сети),
+     * а решения больше не нужны
+     */
+    @SubscribeEvent
+    public void onPlayerLogout(PlayerLoggedOutEvent event) {
+        players.remove(event.player.getUniqueID());
+    }
+
+    private static Decision compute(EntityPlayer player, RecipeEntry entry) {
+        if (entry.isStudiedByPlayer(player.getUniqueID())) {
+            return Decision.ALLOWED;
+        }
+        if (entry.canPlayerStudy(player, ExperienceManager.getInstance().getPlayerData(player))) {
+            return Decision.STUDIABLE;
+        }
+        return Decision.LOCKED;
+    }
+
+    /**
+     * Решения одного игрока
+     */
+    private static class PlayerDecisions {
+        // Версия прогресса игрока
+        int version = 0;
+
+        // Версия, эпоха и версия прав, для которых заполнен массив
+        int filledVersion = -1;
+        int filledEpoch = -1;
+        int filledPermissionVersion = -1;
+
+        byte[] values = new byte[64];
+        byte canLearn = UNKNOWN;
+
+        /**
+         * Сбрасывает устаревшие решения и расширяет массив до номера рецепта
+         */
+        byte[] validate(int currentEpoch, int permissionVersion, int ordinal) {
+            if (filledVersion != version || filledEpoch != currentEpoch || filledPermissionVersion != permissionVersion) {
+                Arrays.fill(values, UNKNOWN);
+                canLearn = UNKNOWN;
+                filledVersion = version;
+                filledEpoch = currentEpoch;
+                filledPermissionVersion = permissionVersion;
+            }
+            if (ordinal >= values.length) {
+                values = Arrays.copyOf(values, Math.max(ordinal + 1, values.length * 2));
+            }
+            return values;
+        }
+    }
+}
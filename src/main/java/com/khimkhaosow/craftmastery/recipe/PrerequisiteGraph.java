@@ -0,0 +1,554 @@
+package com.khimkhaosow.craftmastery.recipe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+import com.khimkhaosow.craftmastery.config.RecipeTreeConfigManager.NodeData;
+import com.khimkhaosow.craftmastery.config.RecipeTreeConfigManager.TabData;
+
+import net.minecraft.util.ResourceLocation;
+
+/**
+ * Скомпилированный граф связей рецептов и узлов дерева.
+ * Строковые ссылки (requiredRecipes, blockingRecipes, unlockingRecipes у рецептов,
+ * availability.requiredNodes и unlocks.nodes у узлов, requiredNodes у вкладок) один раз
+ * разрешаются в номера и хранятся в массивах CSR (смещения + цели). Граф неизменяем;
+ * при перезагрузке рецептов или изменении дерева RecipeManager собирает новый.
+ * При сборке находятся циклы и ссылки на несуществующие рецепты и узлы.
+ */
+public final class PrerequisiteGraph {
+
+    private static final int MAX_REPORTED_CYCLES = 10;
+
+    // Рецепты (номера совпадают с порядковыми номерами RecipeEntry)
+    private final int recipeCount;
+    private final Csr recipeRequires;
+    private final Csr recipeDependents;
+    private final Csr recipeBlocks;
+    private final Csr recipeUnlocks;
+    private final int[] requirementCounts;
+    private final boolean[] unresolvedRequirement;
+    private final int[] recipeOrder;
+
+    // Узлы дерева
+    private final String[] nodeIds;
+    private final Map<String, Integer> nodeIndex;
+    private final int[] nodeRecipes;
+    private final Csr nodeParents;
+    private final Csr nodeChildren;
+
+    // Требуемые узлы вкладок
+    private final Map<String, int[]> tabRequiredNodes;
+
+    // Ревизия конфигурации дерева, по которой собран граф
+    private final int treeRevision;
+
+    private final List<String> problems;
+
+    private PrerequisiteGraph(Builder builder) {
+        this.recipeCount = builder.recipeCount;
+        this.recipeRequires = builder.recipeRequires.toCsr(recipeCount);
+        this.recipeDependents = builder.recipeRequires.reversed().toCsr(recipeCount);
+        this.recipeBlocks = builder.recipeBlocks.toCsr(recipeCount);
+        this.recipeUnlocks = builder.recipeUnlocks.toCsr(recipeCount);
+        this.requirementCounts = builder.requirementCounts;
+        this.unresolvedRequirement = builder.unresolvedRequirement;
+
+        this.nodeIds = builder.nodeIds.toArray(new String[0]);
+        this.nodeIndex = builder.nodeIndex;
+        this.nodeRecipes = builder.nodeRecipes;
+        this.nodeParents = builder.nodeParents.toCsr(nodeIds.length);
+        this.nodeChildren = builder.nodeParents.reversed().toCsr(nodeIds.length);
+
+        this.tabRequiredNodes = builder.tabRequiredNodes;
+        this.treeRevision = builder.treeRevision;
+
+        List<String> found = new ArrayList<>(builder.problems);
+        this.recipeOrder = topologicalOrder(recipeRequires, recipeCount);
+        reportCycles(recipeRequires, recipeCount, recipeOrder, "Recipe", this::describeRecipe, found);
+        int[] nodeOrder = topologicalOrder(nodeParents, nodeIds.length);
+        reportCycles(nodeParents, nodeIds.length, nodeOrder, "Tree node", index -> nodeIds[index], found);
+        this.problems = Collections.unmodifiableList(found);
+    }
+
+    /**
+     * Собирает граф по текущим рецептам и конфигурации дерева
+     */
+    public static PrerequisiteGraph compile(RecipeManager manager, List<NodeData> nodes, List<TabData> tabs, int treeRevision) {
+        Builder builder = new Builder(manager, treeRevision);
+        builder.addRecipes();
+        builder.addNodes(nodes);
+        builder.addTabs(tabs);
+        return new PrerequisiteGraph(builder);
+    }
+
+    // --- Рецепты ---
+
+    /**
+     * Проверяет, учтён ли рецепт с указанным номером в графе
+     */
+    public boolean hasRecipe(int ordinal) {
+        return ordinal >= 0 && ordinal < recipeCount;
+    }
+
+    /**
+     * Получает количество номеров рецептов в графе
+     */
+    public int getRecipeCount() {
+        return recipeCount;
+    }
+
+    /**
+     * Проверяет, изучены ли игроком все требуемые рецепты.
+     * Ссылка на несуществующий рецепт считается невыполнимым требованием.
+     */
+    public boolean areRequirementsStudied(int ordinal, UUID playerUUID) {
+        if (!hasRecipe(ordinal) || unresolvedRequirement[ordinal]) {
+            return false;
+        }
+        RecipeProgressStore progress = RecipeProgressStore.getInstance();
+        for (int i = recipeRequires.offsets[ordinal], end = recipeRequires.offsets[ordinal + 1]; i < end; i++) {
+            if (!progress.isStudied(playerUUID, recipeRequires.targets[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Получает количество требований рецепта, включая неразрешённые ссылки
+     */
+    public int getRequirementCount(int ordinal) {
+        return hasRecipe(ordinal) ? requirementCounts[ordinal] : 0;
+    }
+
+    /**
+     * Получает номера рецептов, которые требует указанный рецепт
+     */
+    public int[] getRequirements(int ordinal) {
+        return recipeRequires.row(ordinal);
+    }
+
+    /**
+     * Получает номера рецептов, которые требуют указанный рецепт
+     */
+    public int[] getDependents(int ordinal) {
+        return recipeDependents.row(ordinal);
+    }
+
+    /**
+     * Получает номера рецептов, которые блокируются при изучении указанного
+     */
+    public int[] getBlockedRecipes(int ordinal) {
+        return recipeBlocks.row(ordinal);
+    }
+
+    /**
+     * Получает номера рецептов, которые разблокируются при изучении указанного
+     */
+    public int[] getUnlockedRecipes(int ordinal) {
+        return recipeUnlocks.row(ordinal);
+    }
+
+    /**
+     * Получает номера рецептов в топологическом порядке (требования раньше зависимых).
+     * Рецепты, входящие в циклы или зависящие от них, в порядок не попадают.
+     */
+    public int[] getRecipeOrder() {
+        return recipeOrder.clone();
+    }
+
+    // --- Узлы дерева ---
+
+    /**
+     * Получает номер узла по ID или -1
+     */
+    public int getNodeIndex(String nodeId) {
+        if (nodeId == null) return -1;
+        Integer index = nodeIndex.get(nodeId);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Получает ID узла по номеру
+     */
+    public String getNodeId(int index) {
+        return nodeIds[index];
+    }
+
+    /**
+     * Получает номер рецепта узла или -1, если узел не связан с рецептом
+     */
+    public int getNodeRecipe(int index) {
+        return index >= 0 && index < nodeRecipes.length ? nodeRecipes[index] : -1;
+    }
+
+    /**
+     * Получает номера родительских узлов (требуемые узлы и узлы, которые разблокируют данный)
+     */
+    public int[] getNodeParents(int index) {
+        return nodeParents.row(index);
+    }
+
+    /**
+     * Получает номера дочерних узлов
+     */
+    public int[] getNodeChildren(int index) {
+        return nodeChildren.row(index);
+    }
+
+    /**
+     * Получает номера узлов, требуемых вкладкой (неизвестные узлы отброшены)
+     */
+    public int[] getTabRequiredNodes(String tabId) {
+        int[] required = tabRequiredNodes.get(tabId);
+        return required != null ? required.clone() : new int[0];
+    }
+
+    // --- Диагностика ---
+
+    /**
+     * Получает описания найденных проблем (циклы и ссылки на несуществующие объекты)
+     */
+    public List<String> getProblems() {
+        return problems;
+    }
+
+    public int getTreeRevision() {
+        return treeRevision;
+    }
+
+    public int getNodeCount() {
+        return nodeIds.length;
+    }
+
+    private String describeRecipe(int ordinal) {
+        RecipeEntry recipe = RecipeManager.getInstance().getRecipeByOrdinal(ordinal);
+        return recipe != null ? recipe.getRecipeId() : "#" + ordinal;
+    }
+
+    /**
+     * Алгоритм Кана по рёбрам «вершина -> требование»
+     */
+    private static int[] topologicalOrder(Csr requires, int count) {
+        int[] pending = new int[count];
+        Csr dependents = requires.transpose(count);
+        int[] queue = new int[count];
+        int head = 0;
+        int tail = 0;
+
+        for (int v = 0; v < count; v++) {
+            pending[v] = requires.offsets[v + 1] - requires.offsets[v];
+            if (pending[v] == 0) {
+                queue[tail++] = v;
+            }
+        }
+        while (head < tail) {
+            int v = queue[head++];
+            for (int i = dependents.offsets[v], end = dependents.offsets[v + 1]; i < end; i++) {
+                int dependent = dependents.targets[i];
+                if (--pending[dependent] == 0) {
+                    queue[tail++] = dependent;
+                }
+            }
+        }
+        return Arrays.copyOf(queue, tail);
+    }
+
+    /**
+     * Находит циклы среди вершин, не попавших в топологический порядок.
+     * У каждой такой вершины есть требование, которое тоже не попало в порядок,
+     * поэтому проход по таким требованиям обязательно замыкается в цикл.
+     */
+    private static void reportCycles(Csr requires, int count, int[] order, String kind,
+                                     IntFunction<String> names, List<String> out) {
+        if (order.length == count) return;
+
+        boolean[] ordered = new boolean[count];
+        for (int v : order) {
+            ordered[v] = true;
+        }
+        int[] visitedBy = new int[count];
+        Arrays.fill(visitedBy, -1);
+
+        int reported = 0;
+        for (int start = 0; start < count && reported < MAX_REPORTED_CYCLES; start++) {
+            if (ordered[start] || visitedBy[start] != -1) continue;
+
+            List<Integer> path = new ArrayList<>();
+            int v = start;
+            while (visitedBy[v] == -1) {
+                visitedBy[v] = start;
+                path.add(v);
+                int next = -1;
+                for (int i = requires.offsets[v], end = requires.offsets[v + 1]; i < end; i++) {
+                    if (!ordered[requires.targets[i]]) {
+                        next = requires.targets[i];
+                        break;
+                    }
+                }
+                if (next < 0) break;
+                v = next;
+            }
+            // Цикл найден, только если проход упёрся в вершину текущего прохода
+            if (visitedBy[v] != start || !path.contains(v)) continue;
+
+            StringBuilder cycle = new StringBuilder();
+            for (int i = path.indexOf(v); i < path.size(); i++) {
+                cycle.append(names.apply(path.get(i))).append(" -> ");
+            }
+            cycle.append(names.apply(v));
+            out.add(kind + " requirement cycle: " + cycle);
+            reported++;
+        }
+    }
+
+    /**
+     * Рёбра в формате CSR
+     */
+    private static final class Csr {
+        final int[] offsets;
+        final int[] targets;
+
+        Csr(int[] offsets, int[] targets) {
+            this.offsets = offsets;
+            this.targets = targets;
+        }
+
+        int[] row(int v) {
+            if (v < 0 || v + 1 >= offsets.length) {
+                return new int[0];
+            }
+            return Arrays.copyOfRange(targets, offsets[v], offsets[v + 1]);
+        }
+
+        Csr transpose(int count) {
+            EdgeList edges = new EdgeList();
+            for (int v = 0; v < count; v++) {
+                for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                    edges.add(targets[i], v);
+                }
+            }
+            return edges.toCsr(count);
+        }
+    }
+
+    /**
+     * Список рёбер, из которого собирается CSR (порядок рёбер сохраняется)
+     */
+    private static final class EdgeList {
+        private int[] from = new int[16];
+        private int[] to = new int[16];
+        private int size;
+
+        void add(int source, int target) {
+            if (size == from.length) {
+                from = Arrays.copyOf(from, size * 2);
+                to = Arrays.copyOf(to, size * 2);
+            }
+            from[size] = source;
+            to[size] = target;
+            size++;
+        }
+
+        EdgeList reversed() {
+            EdgeList reversed = new EdgeList();
+            for (int i = 0; i < size; i++) {
+                reversed.add(to[i], from[i]);
+            }
+            return reversed;
+        }
+
+        Csr toCsr(int count) {
+            int[] offsets = new int[count + 1];
+            for (int i = 0; i < size; i++) {
+                offsets[from[i] + 1]++;
+            }
+            for (int v = 0; v < count; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] targets = new int[size];
+            int[] fill = Arrays.copyOf(offsets, count);
+            for (int i = 0; i < size; i++) {
+                targets[fill[from[i]]++] = to[i];
+            }
+            return new Csr(offsets, targets);
+        }
+    }
+
+    /**
+     * Разрешает строковые ссылки в номера
+     */
+    private static final class Builder {
+        final RecipeManager manager;
+        final int treeRevision;
+        final int recipeCount;
+        final EdgeList recipeRequires = new EdgeList();
+        final EdgeList recipeBlocks = new EdgeList();
+        final EdgeList recipeUnlocks = new EdgeList();
+        final int[] requirementCounts;
+        final boolean[] unresolvedRequirement;
+
+        final List<String> nodeIds = new ArrayList<>();
+        final Map<String, Integer> nodeIndex = new HashMap<>();
+        int[] nodeRecipes = new int[0];
+        final EdgeList nodeParents = new EdgeList();
+
+        final Map<String, int[]> tabRequiredNodes = new HashMap<>();
+        final List<String> problems = new ArrayList<>();
+
+        Builder(RecipeManager manager, int treeRevision) {
+            this.manager = manager;
+            this.treeRevision = treeRevision;
+            this.recipeCount = manager.getOrdinalCount();
+            this.requirementCounts = new int[recipeCount];
+            this.unresolvedRequirement = new boolean[recipeCount];
+        }
+
+        void addRecipes() {
+            for (int ordinal = 0; ordinal < recipeCount; ordinal++) {
+                RecipeEntry recipe = manager.getRecipeByOrdinal(ordinal);
+                if (recipe == null) continue;
+
+                for (String requiredId : recipe.getRequiredRecipes()) {
+                    requirementCounts[ordinal]++;
+                    int required = resolveRecipe(requiredId);
+                    if (required < 0) {
+                        unresolvedRequirement[ordinal] = true;
+                        problems.add(String.format("Recipe %s requires missing recipe %s", recipe.getRecipeId(), requiredId));
+                    } else {
+                        recipeRequires.add(ordinal, required);
+                    }
+                }
+                for (String blockedId : recipe.getBlockingRecipes()) {
+                    int blocked = resolveRecipe(blockedId);
+                    if (blocked < 0) {
+                        problems.add(String.format("Recipe %s blocks missing recipe %s", recipe.getRecipeId(), blockedId));
+                    } else {
+                        recipeBlocks.add(ordinal, blocked);
+                    }
+                }
+                for (String unlockedId : recipe.getUnlockingRecipes()) {
+                    int unlocked = resolveRecipe(unlockedId);
+                    if (unlocked < 0) {
+                        problems.add(String.format("Recipe %s unlocks missing recipe %s", recipe.getRecipeId(), unlockedId));
+                    } else {
+                        recipeUnlocks.add(ordinal, unlocked);
+                    }
+                }
+            }
+        }
+
+        void addNodes(List<NodeData> nodes) {
+            List<NodeData> valid = new ArrayList<>();
+            for (NodeData node : nodes) {
+                if (node == null || node.id == null || node.id.trim().isEmpty()) continue;
+                if (nodeIndex.containsKey(node.id)) {
+                    problems.add(String.format("Duplicate tree node id %s", node.id));
+                    continue;
+                }
+                nodeIndex.put(node.id, nodeIds.size());
+                nodeIds.add(node.id);
+                valid.add(node);
+            }
+
+            nodeRecipes = new int[nodeIds.size()];
+            List<Set<Integer>> parents = new ArrayList<>(nodeIds.size());
+            for (int i = 0; i < nodeIds.size(); i++) {
+                parents.add(new LinkedHashSet<>());
+            }
+
+            for (int index = 0; index < valid.size(); index++) {
+                NodeData node = valid.get(index);
+                nodeRecipes[index] = resolveNodeRecipe(node);
+
+                if (node.availability != null && node.availability.requiredNodes != null) {
+                    for (String requiredId : node.availability.requiredNodes) {
+                        Integer parent = nodeIndex.get(requiredId);
+                        if (parent == null) {
+                            problems.add(String.format("Tree node %s requires missing node %s", node.id, requiredId));
+                        } else {
+                            parents.get(index).add(parent);
+                        }
+                    }
+                }
+            }
+
+            // Узел, разблокирующий другой, считается его родителем
+            for (int index = 0; index < valid.size(); index++) {
+                NodeData node = valid.get(index);
+                if (node.unlocks == null || node.unlocks.nodes == null) continue;
+                for (String childId : node.unlocks.nodes) {
+                    Integer child = nodeIndex.get(childId);
+                    if (child == null) {
+                        problems.add(String.format("Tree node %s unlocks missing node %s", node.id, childId));
+                    } else {
+                        parents.get(child).add(index);
+                    }
+                }
+            }
+
+            for (int index = 0; index < parents.size(); index++) {
+                for (int parent : parents.get(index)) {
+                    nodeParents.add(index, parent);
+                }
+            }
+        }
+
+        void addTabs(List<TabData> tabs) {
+            for (TabData tab : tabs) {
+                if (tab == null || tab.id == null) continue;
+                List<Integer> required = new ArrayList<>();
+                if (tab.requiredNodes != null) {
+                    for (String nodeId : tab.requiredNodes) {
+                        String trimmed = nodeId != null ? nodeId.trim() : "";
+                        if (trimmed.isEmpty()) continue;
+                        Integer index = nodeIndex.get(trimmed);
+                        if (index == null) {
+                            problems.add(String.format("Tab %s requires missing node %s", tab.id, trimmed));
+                        } else {
+                            required.add(index);
+                        }
+                    }
+                }
+                int[] indices = new int[required.size()];
+                for (int i = 0; i < indices.length; i++) {
+                    indices[i] = required.get(i);
+                }
+                tabRequiredNodes.put(tab.id, indices);
+            }
+        }
+
+        private int resolveNodeRecipe(NodeData node) {
+            if (node.recipeId == null || node.recipeId.trim().isEmpty()) {
+                return -1;
+            }
+            int ordinal = resolveRecipe(node.recipeId);
+            if (ordinal < 0) {
+                problems.add(String.format("Tree node %s references missing recipe %s", node.id, node.recipeId));
+            }
+            return ordinal;
+        }
+
+        private int resolveRecipe(String recipeId) {
+            if (recipeId == null) return -1;
+            RecipeEntry recipe = manager.getRecipe(recipeId);
+            if (recipe == null) {
+                try {
+                    recipe = manager.getRecipe(new ResourceLocation(recipeId.trim()));
+                } catch (Exception e) {
+                    return -1;
+                }
+            }
+            return recipe != null && recipe.getOrdinal() < recipeCount ? recipe.getOrdinal() : -1;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.khimkhaosow.craftmastery.recipe;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.khimkhaosow.craftmastery.experience.PlayerExperienceData;
+import com.khimkhaosow.craftmastery.experience.PointsType;
+import com.khimkhaosow.craftmastery.permissions.PermissionManager;
+import com.khimkhaosow.craftmastery.permissions.PermissionType;
+
+import net.minecraft.entity.player.EntityPlayer;
+
+/**
+ * Инкрементальный список доступных для изучения рецептов.
+ * Для каждого игрока хранится число ещё не изученных требуемых рецептов у каждого рецепта
+ * и набор рецептов, у которых все требования выполнены (фронтир); связи берутся из PrerequisiteGraph. При изучении или сбросе
+ * рецепта обновляются только зависящие от него рецепты, а при открытии книги проверяются
+ * уровень, очки и права только для рецептов фронтира.
+ */
+public class RecipeAvailabilityIndex implements RecipeProgressStore.ProgressListener {
+
+    private final RecipeManager manager;
+
+    // Граф, по которому построены фронтиры; при смене графа фронтиры собираются заново
+    private PrerequisiteGraph graph;
+
+    // Фронтиры игроков
+    private final Map<UUID, PlayerFrontier> players = new ConcurrentHashMap<>();
+
+    public RecipeAvailabilityIndex(RecipeManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Сбрасывает готовые результаты (после изменения уровня, очков или прав, требуемых рецептами)
+     */
+    public synchronized void invalidateResults() {
+        for (PlayerFrontier frontier : players.values()) {
+            frontier.available = null;
+        }
+    }
+
+    /**
+     * Получает рецепты, которые игрок может изучить
+     */
+    public synchronized List<RecipeEntry> getAvailable(EntityPlayer player, PlayerExperienceData expData) {
+        PrerequisiteGraph current = manager.getPrerequisiteGraph();
+        if (current != graph) {
+            graph = current;
+            players.clear();
+        }
+
+        UUID playerUUID = player.getUniqueID();
+        PlayerFrontier frontier = players.computeIfAbsent(playerUUID, this::buildFrontier);
+
+        int level = expData.getLevel();
+        int learningPoints = expData.getPoints(PointsType.LEARNING);
+        boolean canLearn = PermissionManager.getInstance().hasPermission(player, PermissionType.LEARN_RECIPES);
+
+        // Уровень, очки и права не менялись с прошлого запроса — возвращаем готовый результат
+        if (frontier.available != null && frontier.level == level
+            && frontier.learningPoints == learningPoints && frontier.canLearn == canLearn) {
+            return frontier.available;
+        }
+
+        List<RecipeEntry> available = new ArrayList<>();
+        BitSet ready = frontier.ready;
+        for (int ordinal = ready.nextSetBit(0); ordinal >= 0; ordinal = ready.nextSetBit(ordinal + 1)) {
+            RecipeEntry recipe = manager.getRecipeByOrdinal(ordinal);
+            if (recipe == null) continue;
+            if (recipe.requiresPermission() && !canLearn) continue;
+            if (learningPoints < recipe.getRequiredLearningPoints()) continue;
+            if (level < recipe.getRequiredLevel()) continue;
+            available.add(recipe);
+        }
+
+        frontier.available = Collections.unmodifiableList(available);
+        frontier.level = level;
+        frontier.learningPoints = learningPoints;
+        frontier.canLearn = canLearn;
+        return frontier.available;
+    }
+
+    @Override
+    public synchronized void onStudiedChanged(UUID playerUUID, int ordinal, boolean studied) {
+        PlayerFrontier frontier = players.get(playerUUID);
+        // Фронтир ещё не построен — он будет собран с актуальным прогрессом при первом запросе
+        if (frontier == null || graph == null || !graph.hasRecipe(ordinal)) return;
+
+        int delta = studied ? -1 : 1;
+        for (int dependent : graph.getDependents(ordinal)) {
+            frontier.missing[dependent] += delta;
+            frontier.ready.set(dependent, frontier.missing[dependent] == 0);
+        }
+        frontier.available = null;
+    }
+
+    @Override
+    public void onPlayerCleared(UUID playerUUID) {
+        players.remove(playerUUID);
+    }
+
+    /**
+     * Собирает фронтир игрока по его текущему прогрессу
+     */
+    private PlayerFrontier buildFrontier(UUID playerUUID) {
+        int count = graph.getRecipeCount();
+        PlayerFrontier frontier = new PlayerFrontier(count);
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            frontier.missing[ordinal] = graph.getRequirementCount(ordinal);
+        }
+
+        BitSet studied = RecipeProgressStore.getInstance().getStudied(playerUUID);
+        for (int ordinal = studied.nextSetBit(0); ordinal >= 0 && ordinal < count; ordinal = studied.nextSetBit(ordinal + 1)) {
+            for (int dependent : graph.getDependents(ordinal)) {
+                frontier.missing[dependent]--;
+            }
+        }
+
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            if (frontier.missing[ordinal] == 0 && manager.getRecipeByOrdinal(ordinal) != null) {
+                frontier.ready.set(ordinal);
+            }
+        }
+        return frontier;
+    }
+
+    /**
+     * Состояние одного игрока
+     */
+    private static class PlayerFrontier {
+        // Количество неизученных требований по рецептам
+        final int[] missing;
+        // Рецепты, все требования которых изучены
+        final BitSet ready = new BitSet();
+
+        // Последний результат и состояние игрока, для которого он посчитан
+        List<RecipeEntry> available;
+        int level;
+        int learningPoints;
+        boolean canLearn;
+
+        PlayerFrontier(int count) {
+            this.missing = new int[count];
+        }
+    }
+}
@@ -160,7 +160,7 @@ public class RecipeDataManager {
             }
 
             // Очищаем и добавляем новые теги
-            entry.tags.clear();
+            entry.clearTags();
             for (String tagName : this.tags) {
                 try {
                     RecipeTag tag = RecipeTag.valueOf(tagName);
@@ -57,8 +57,8 @@ public class RecipeEntry {
     // Рецепты, которые разблокируются при изучении этого рецепта
     private final Set<String> unlockingRecipes = new HashSet<>();
 
-    // Теги рецепта
-    final Set<RecipeTag> tags = new HashSet<>();
+    // Теги рецепта в виде битовой маски (бит = RecipeTag.ordinal())
+    private long tagMask = 0L;
 
     // Дополнительные визуальные данные
     private ResourceLocation customIcon;
@@ -70,9 +70,8 @@ public class RecipeEntry {
     private int difficulty = 1; // 1-5
     private String category = "";
 
-    // Кешированные данные игроков
-    private final Set<UUID> studiedPlayers = new HashSet<>();
-    private final Set<UUID> resetPlayers = new HashSet<>();
+    // Порядковый номер рецепта в RecipeManager (индекс в битовых наборах прогресса)
+    private int ordinal = -1;
 
     public RecipeEntry(ResourceLocation location) {
         this.recipeLocation = location;
@@ -103,7 +102,13 @@ public class RecipeEntry {
             return false;
         }
 
-        // Проверяем требуемые рецепты
+        // Проверяем требуемые рецепты по скомпилированному графу
+        PrerequisiteGraph graph = ordinal >= 0 ? RecipeManager.getInstance().getPrerequisiteGraph() : null;
+        if (graph != null && graph.hasRecipe(ordinal)) {
+            return graph.areRequirementsStudied(ordinal, player.getUniqueID());
+        }
+
+        // Рецепт ещё не зарегистрирован в менеджере
         for (String requiredId : requiredRecipes) {
             RecipeEntry requiredRecipe = RecipeManager.getInstance().getRecipe(requiredId);
             if (requiredRecipe == null || !requiredRecipe.isStudiedByPlayer(player.getUniqueID())) {
@@ -150,9 +155,8 @@ public class RecipeEntry {
             return false; // Хотя проверка выше должна это предотвратить
         }
 
-        // Добавляем игрока в изучившие
-        studiedPlayers.add(player.getUniqueID());
-        resetPlayers.remove(player.getUniqueID()); // Убираем из сброшенных
+        // Добавляем игрока в изучившие (и убираем из сброшенных)
+        RecipeProgressStore.getInstance().markStudied(player.getUniqueID(), ordinal);
 
         // Блокируем конфликтующие рецепты
         for (String blockId : blockingRecipes) {
@@ -175,8 +179,7 @@ public class RecipeEntry {
      * Сбрасывает изучение рецепта для игрока
      */
     public void resetForPlayer(UUID playerUUID, PlayerExperienceData expData) {
-        studiedPlayers.remove(playerUUID);
-        resetPlayers.add(playerUUID);
+        RecipeProgressStore.getInstance().markReset(playerUUID, ordinal);
 
         // Возвращаем очки изучения
         // NOTE: Возврат очков может быть сложной логикой, в зависимости от требований.
@@ -188,42 +191,76 @@ public class RecipeEntry {
      * Проверяет, изучен ли рецепт игроком
      */
     public boolean isStudiedByPlayer(UUID playerUUID) {
-        return studiedPlayers.contains(playerUUID);
+        return RecipeProgressStore.getInstance().isStudied(playerUUID, ordinal);
     }
 
     /**
      * Проверяет, сброшен ли рецепт игроком
      */
     public boolean isResetByPlayer(UUID playerUUID) {
-        return resetPlayers.contains(playerUUID);
+        return RecipeProgressStore.getInstance().isReset(playerUUID, ordinal);
     }
 
     /**
      * Добавляет требуемый рецепт
      */
     public void addRequiredRecipe(String recipeId) {
-        requiredRecipes.add(recipeId);
+        if (requiredRecipes.add(recipeId)) {
+            onRequirementsChanged();
+        }
     }
 
     /**
      * Добавляет разблокирующий рецепт
      */
     public void addUnlockingRecipe(String recipeId) {
-        unlockingRecipes.add(recipeId);
+        if (unlockingRecipes.add(recipeId)) {
+            onRequirementsChanged();
+        }
     }
 
     /**
      * Проверяет, содержит ли рецепт указанный тег
      */
     public boolean hasTag(RecipeTag tag) {
-        return tags.contains(tag);
+        return (tagMask & tag.getMask()) != 0;
     }
 
     /**
      * Добавляет тег
      */
     public void addTag(RecipeTag tag) {
-        tags.add(tag);
+        setTagMask(tagMask | tag.getMask());
+    }
+
+    /**
+     * Удаляет тег
+     */
+    public void removeTag(RecipeTag tag) {
+        setTagMask(tagMask & ~tag.getMask());
+    }
+
+    /**
+     * Удаляет все теги
+     */
+    public void clearTags() {
+        setTagMask(0L);
+    }
+
+    /**
+     * Получает битовую маску тегов
+     */
+    public long getTagMask() {
+        return tagMask;
+    }
+
+    private void setTagMask(long mask) {
+        if (mask == tagMask) return;
+        tagMask = mask;
+        // Зарегистрированный рецепт обновляет индекс тегов менеджера
+        if (ordinal >= 0) {
+            RecipeManager.getInstance().getTagIndex().update(this);
+        }
     }
 
     /**
@@ -249,17 +286,21 @@ public class RecipeEntry {
 
     // Геттеры и сеттеры
     public String getRecipeId() { return recipeId; }
+    public int getOrdinal() { return ordinal; }
+    void setOrdinal(int ordinal) { this.ordinal = ordinal; }
     public ResourceLocation getRecipeLocation() { return recipeLocation; }
     public int getRequiredLearningPoints() { return requiredLearningPoints; }
     public void setRequiredLearningPoints(int requiredLearningPoints) {
         this.requiredLearningPoints = Math.max(0, requiredLearningPoints);
+        onThresholdsChanged();
     }
     public int getRequiredLevel() { return requiredLevel; }
     public void setRequiredLevel(int requiredLevel) {
         this.requiredLevel = Math.max(1, requiredLevel);
+        onThresholdsChanged();
     }
     public Set<String> getRequiredRecipes() { return new HashSet<>(requiredRecipes); }
-    public Set<RecipeTag> getTags() { return new HashSet<>(tags); }
+    public Set<RecipeTag> getTags() { return RecipeTag.fromMask(tagMask); }
     public Set<String> getBlockingRecipes() { return new HashSet<>(blockingRecipes); }
     public Set<String> getUnlockingRecipes() { return new HashSet<>(unlockingRecipes); }
     public int getGraphX() { return graphX; }
@@ -295,6 +336,22 @@ public class RecipeEntry {
         for (RecipeEntry recipe : requirements) {
             requiredRecipes.add(recipe.getRecipeId());
         }
+        onRequirementsChanged();
+    }
+
+    private void onRequirementsChanged() {
+        // Связи зарегистрированного рецепта входят в граф RecipeManager
+        if (ordinal >= 0) {
+            RecipeManager.getInstance().invalidatePrerequisiteGraph();
+        }
+    }
+
+    private void onThresholdsChanged() {
+        // Уровень, очки и права проверяются по готовым результатам индекса доступности
+        if (ordinal >= 0) {
+            RecipeManager.getInstance().getAvailabilityIndex().invalidateResults();
+            CraftDecisionCache.getInstance().invalidateAll();
+        }
     }
 
     public void setRecipeUnlockables(List<RecipeEntry> unlockables) {
@@ -302,6 +359,7 @@ public class RecipeEntry {
         for (RecipeEntry recipe : unlockables) {
             unlockingRecipes.add(recipe.getRecipeId());
         }
+        onRequirementsChanged();
     }
 
     public String getDisplayName() {
@@ -365,6 +423,7 @@ public class RecipeEntry {
 
     public void setRequiresPermission(boolean requiresPermission) {
         this.requiresPermission = requiresPermission;
+        onThresholdsChanged();
     }
 
     public String getRequiredPermission() {
@@ -384,7 +443,9 @@ public class RecipeEntry {
     }
 
     public void addBlockingRecipe(String recipeId) {
-        blockingRecipes.add(recipeId);
+        if (blockingRecipes.add(recipeId)) {
+            onRequirementsChanged();
+        }
     }
 
     public boolean canPlayerReset(EntityPlayer player, PlayerExperienceData expData) {
@@ -1,18 +1,27 @@
 package com.khimkhaosow.craftmastery.recipe;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
 
 import com.khimkhaosow.craftmastery.CraftMastery; // Предполагается, что logger доступен
+import com.khimkhaosow.craftmastery.config.ConfigSaveScheduler;
+import com.khimkhaosow.craftmastery.config.RecipeConfig;
+import com.khimkhaosow.craftmastery.config.RecipeTreeConfigManager;
+import com.khimkhaosow.craftmastery.config.RecipeTreeConfigManager.NodeData;
+import com.khimkhaosow.craftmastery.config.RecipeTreeConfigManager.TabData;
 import com.khimkhaosow.craftmastery.experience.ExperienceManager;
 import com.khimkhaosow.craftmastery.experience.PlayerExperienceData;
 // --- Импорты для Gson ---
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
@@ -32,23 +41,56 @@ public class RecipeManager {
     // Все рецепты в системе
     private final Map<String, RecipeEntry> recipes;
 
-    // Рецепты по тегам
-    private final Map<RecipeTag, List<RecipeEntry>> recipesByTag;
+    // Рецепты по тегам (битовые наборы по порядковым номерам)
+    private final RecipeTagIndex tagIndex;
 
     // Фильтры для отображения рецептов
     private final Map<String, List<RecipeEntry>> filteredRecipes;
 
+    // Порядковые номера рецептов. Номер выдаётся один раз и сохраняется между перезагрузками,
+    // чтобы битовые наборы в RecipeProgressStore оставались корректными
+    private final Map<String, Integer> recipeOrdinals;
+
+    // Рецепты по порядковому номеру (null для удалённых рецептов)
+    private final List<RecipeEntry> recipesByOrdinal;
+
+    // ID рецептов по порядковому номеру (включая удалённые) и хеш этого списка для сверки с клиентом
+    private final List<String> ordinalIds;
+    private volatile long ordinalTableHash;
+    private volatile boolean ordinalTableHashValid = false;
+
+    // Идёт ли загрузка рецептов (номера выдаются в конце загрузки)
+    private boolean loading = false;
+
+    // Индекс рецептов Minecraft по результату крафта
+    private final RecipeOutputIndex outputIndex;
+
+    // Поисковый индекс рецептов (строится лениво при первом поиске)
+    private final RecipeSearchIndex searchIndex;
+
+    // Фронтиры доступных для изучения рецептов по игрокам
+    private final RecipeAvailabilityIndex availabilityIndex;
+
+    // Скомпилированный граф связей рецептов и узлов дерева (null — требуется пересборка)
+    private volatile PrerequisiteGraph prerequisiteGraph;
+
     public RecipeManager() {
         // Устанавливаем singleton заранее, чтобы избежать рекурсивных вызовов getInstance() во время загрузки
         instance = this;
 
         this.recipes = new HashMap<>();
-        this.recipesByTag = new HashMap<>();
         this.filteredRecipes = new HashMap<>();
+        this.recipeOrdinals = new HashMap<>();
+        this.recipesByOrdinal = new ArrayList<>();
+        this.ordinalIds = new ArrayList<>();
+        this.outputIndex = new RecipeOutputIndex();
+        this.searchIndex = new RecipeSearchIndex();
+        this.tagIndex = new RecipeTagIndex(this::getRecipeByOrdinal);
+        this.availabilityIndex = new RecipeAvailabilityIndex(this);
+        RecipeProgressStore.getInstance().addListener(availabilityIndex);
 
         // Инициализация тегов
         for (RecipeTag tag : RecipeTag.values()) {
-            recipesByTag.put(tag, new ArrayList<>());
             filteredRecipes.put(tag.name(), new ArrayList<>());
         }
 
@@ -63,11 +105,13 @@ public class RecipeManager {
     }
 
     private void loadRecipes() {
+        loading = true;
+
         // Очищаем существующие рецепты
-        recipes.clear();
-        for (List<RecipeEntry> tagList : recipesByTag.values()) {
-            tagList.clear();
+        synchronized (recipes) {
+            recipes.clear();
         }
+        tagIndex.clear();
         
         // Загружаем сохраненные настройки рецептов
         com.khimkhaosow.craftmastery.config.RecipeConfig.loadRecipes();
@@ -98,15 +142,46 @@ public class RecipeManager {
             // Определяем теги на основе типа рецепта
             determineRecipeTags(entry, recipe);
 
-            recipes.put(location.toString(), entry);
-
-            // Добавляем в списки по тегам
-            for (RecipeTag tag : entry.getTags()) {
-                recipesByTag.get(tag).add(entry);
+            synchronized (recipes) {
+                recipes.put(location.toString(), entry);
             }
         }
 
-        CraftMastery.logger.info("Loaded {} recipes", recipes.size());
+        // Выдаём порядковые номера в отсортированном порядке, чтобы они не зависели от порядка реестра
+        // (вместе с номером рецепт попадает в индекс тегов)
+        for (String recipeId : new TreeSet<>(recipes.keySet())) {
+            assignOrdinal(recipes.get(recipeId));
+        }
+        loading = false;
+
+        // Перестраиваем индекс результатов для обработчика крафта
+        outputIndex.rebuild();
+        searchIndex.invalidate();
+
+        // Компилируем граф связей сразу, чтобы ошибки конфигурации попали в лог при загрузке
+        invalidatePrerequisiteGraph();
+        PrerequisiteGraph graph = getPrerequisiteGraph();
+
+        CraftMastery.logger.info("Loaded {} recipes ({} indexed outputs, {} graph problems)",
+            recipes.size(), outputIndex.size(), graph.getProblems().size());
+    }
+
+    /**
+     * Присваивает рецепту порядковый номер (существующий для известного ID или следующий свободный)
+     */
+    private void assignOrdinal(RecipeEntry entry) {
+        Integer ordinal = recipeOrdinals.get(entry.getRecipeId());
+        if (ordinal == null) {
+            ordinal = recipesByOrdinal.size();
+            recipeOrdinals.put(entry.getRecipeId(), ordinal);
+            recipesByOrdinal.add(entry);
+            ordinalIds.add(entry.getRecipeId());
+            ordinalTableHashValid = false;
+        } else {
+            recipesByOrdinal.set(ordinal, entry);
+        }
+        entry.setOrdinal(ordinal);
+        tagIndex.update(entry);
     }
 
     private void determineRecipeTags(RecipeEntry entry, IRecipe recipe) {
@@ -134,18 +209,132 @@ public class RecipeManager {
         return recipes.get(location.toString());
     }
 
+    /**
+     * Получает индекс рецептов по результату крафта
+     */
+    public RecipeOutputIndex getOutputIndex() {
+        return outputIndex;
+    }
+
+    /**
+     * Получает рецепт по порядковому номеру
+     */
+    public RecipeEntry getRecipeByOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= recipesByOrdinal.size()) {
+            return null;
+        }
+        return recipesByOrdinal.get(ordinal);
+    }
+
+    /**
+     * Получает количество выданных порядковых номеров (верхняя граница для битовых наборов)
+     */
+    public int getOrdinalCount() {
+        return recipesByOrdinal.size();
+    }
+
+    /**
+     * Получает ID рецептов в порядке их номеров (неизменяемое представление)
+     */
+    public List<String> getOrdinalIds() {
+        return Collections.unmodifiableList(ordinalIds);
+    }
+
+    /**
+     * Получает хеш списка ID по номерам (FNV-1a, 64 бита).
+     * Совпадение хешей на клиенте и сервере означает, что номера рецептов совпадают.
+     */
+    public long getOrdinalTableHash() {
+        if (!ordinalTableHashValid) {
+            long hash = 0xcbf29ce484222325L;
+            for (String id : ordinalIds) {
+                for (byte b : id.getBytes(StandardCharsets.UTF_8)) {
+                    hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+                }
+                // Разделитель, чтобы "ab","c" и "a","bc" давали разные хеши
+                hash = (hash ^ 0xFF) * 0x100000001b3L;
+            }
+            ordinalTableHash = hash;
+            ordinalTableHashValid = true;
+        }
+        return ordinalTableHash;
+    }
+
     /**
      * Получает все рецепты
      */
     public List<RecipeEntry> getAllRecipes() {
-        return new ArrayList<>(recipes.values());
+        // Копия берётся под блокировкой: её читает и поток отложенного сохранения конфигурации
+        synchronized (recipes) {
+            return new ArrayList<>(recipes.values());
+        }
     }
 
     /**
-     * Получает рецепты по тегу
+     * Получает индекс рецептов по тегам
+     */
+    public RecipeTagIndex getTagIndex() {
+        return tagIndex;
+    }
+
+    /**
+     * Получает рецепты по тегу (неизменяемое представление)
      */
     public List<RecipeEntry> getRecipesByTag(RecipeTag tag) {
-        return new ArrayList<>(recipesByTag.get(tag));
+        return tagIndex.withTag(tag);
+    }
+
+    /**
+     * Получает граф связей рецептов и узлов дерева, пересобирая его при необходимости
+     */
+    public PrerequisiteGraph getPrerequisiteGraph() {
+        RecipeTreeConfigManager treeConfig = RecipeTreeConfigManager.getInstance();
+        PrerequisiteGraph graph = prerequisiteGraph;
+        if (graph != null && graph.getTreeRevision() == treeConfig.getRevision()) {
+            return graph;
+        }
+
+        synchronized (this) {
+            graph = prerequisiteGraph;
+            int revision;
+            List<NodeData> nodes;
+            List<TabData> tabs;
+            synchronized (treeConfig) {
+                revision = treeConfig.getRevision();
+                if (graph != null && graph.getTreeRevision() == revision) {
+                    return graph;
+                }
+                nodes = new ArrayList<>(treeConfig.getNodes());
+                tabs = new ArrayList<>(treeConfig.getTabs());
+            }
+
+            PrerequisiteGraph previous = graph;
+            graph = PrerequisiteGraph.compile(this, nodes, tabs, revision);
+            prerequisiteGraph = graph;
+
+            // Сообщаем о проблемах только при их изменении, чтобы правки в редакторе не засоряли лог
+            if (previous == null || !previous.getProblems().equals(graph.getProblems())) {
+                for (String problem : graph.getProblems()) {
+                    CraftMastery.logger.warn("Prerequisite graph: {}", problem);
+                }
+            }
+            return graph;
+        }
+    }
+
+    /**
+     * Сбрасывает граф связей; он будет собран заново при следующем обращении
+     */
+    public void invalidatePrerequisiteGraph() {
+        prerequisiteGraph = null;
+        CraftDecisionCache.getInstance().invalidateAll();
+    }
+
+    /**
+     * Получает индекс доступных для изучения рецептов
+     */
+    public RecipeAvailabilityIndex getAvailabilityIndex() {
+        return availabilityIndex;
     }
 
     /**
@@ -156,15 +345,13 @@ public class RecipeManager {
         PlayerExperienceData expData = ExperienceManager.getInstance().getPlayerData(player);
         UUID playerUUID = player.getUniqueID();
 
-        for (RecipeEntry recipe : recipes.values()) {
+        // Требования, уровень, очки и права уже проверены индексом
+        for (RecipeEntry recipe : availabilityIndex.getAvailable(player, expData)) {
             // Проверяем, не заблокирован ли рецепт вкладками
             boolean tabBlocked = isRecipeBlockedByTabs(recipe, playerUUID);
             if (tabBlocked) continue;
 
-            // Проверяем, может ли игрок изучить рецепт
-            if (recipe.canPlayerStudy(player, expData)) {
-                available.add(recipe);
-            }
+            available.add(recipe);
         }
 
         return available;
@@ -240,11 +427,9 @@ public class RecipeManager {
      * Обновляет теги рецепта для игрока
      */
     private void updateRecipeTags(RecipeEntry recipe, UUID playerUUID) {
-        Set<RecipeTag> currentTags = recipe.getTags();
-
         // Убираем старые теги состояния
-        recipe.tags.remove(RecipeTag.STUDIED);
-        recipe.tags.remove(RecipeTag.NOT_STUDIED);
+        recipe.removeTag(RecipeTag.STUDIED);
+        recipe.removeTag(RecipeTag.NOT_STUDIED);
 
         // Добавляем новый тег состояния
         if (recipe.isStudiedByPlayer(playerUUID)) {
@@ -269,59 +454,36 @@ public class RecipeManager {
      */
     private void blockConflictingRecipes(RecipeEntry recipe, UUID playerUUID) {
         // Блокируем рецепты из тех же вкладок, если есть связи
-        for (String blockingId : recipe.getBlockingRecipes()) {
-            RecipeEntry blockingRecipe = getRecipe(blockingId);
+        for (int blockedOrdinal : getPrerequisiteGraph().getBlockedRecipes(recipe.getOrdinal())) {
+            RecipeEntry blockingRecipe = getRecipeByOrdinal(blockedOrdinal);
             if (blockingRecipe != null && blockingRecipe.isStudiedByPlayer(playerUUID)) {
-                resetRecipe(null, blockingId); // TODO: передать реального игрока
+                resetRecipe(null, blockingRecipe.getRecipeId()); // TODO: передать реального игрока
             }
         }
     }
 
     /**
-     * Фильтрует рецепты по тегам
+     * Фильтрует рецепты по тегам (рецепт подходит, если у него есть хотя бы один из тегов).
+     * Возвращает неизменяемое представление.
      */
     public List<RecipeEntry> filterRecipes(Set<RecipeTag> filterTags) {
-        List<RecipeEntry> filtered = new ArrayList<>();
-
-        if (filterTags.isEmpty()) {
-            return getAllRecipes();
-        }
-
-        for (RecipeEntry recipe : recipes.values()) {
-            boolean matches = false;
-            for (RecipeTag tag : filterTags) {
-                if (recipe.hasTag(tag)) {
-                    matches = true;
-                    break;
-                }
-            }
-            if (matches) {
-                filtered.add(recipe);
-            }
-        }
+        return tagIndex.query(filterTags, null, null);
+    }
 
-        return filtered;
+    /**
+     * Фильтрует рецепты по тегам: хотя бы один из anyOf, все из allOf и ни одного из noneOf.
+     * Возвращает неизменяемое представление.
+     */
+    public List<RecipeEntry> filterRecipes(Set<RecipeTag> anyOf, Set<RecipeTag> allOf, Set<RecipeTag> noneOf) {
+        return tagIndex.query(anyOf, allOf, noneOf);
     }
 
     /**
-     * Ищет рецепты по названию результата
+     * Ищет рецепты по названию результата, пути в реестре, моду, тегам и категории.
+     * Результаты отсортированы по релевантности.
      */
     public List<RecipeEntry> searchRecipes(String query) {
-        List<RecipeEntry> results = new ArrayList<>();
-        String lowerQuery = query.toLowerCase();
-
-        for (RecipeEntry recipe : recipes.values()) {
-            if (recipe.getRecipeResult().isEmpty()) continue;
-
-            String itemName = recipe.getRecipeResult().getDisplayName().toLowerCase();
-            String modName = recipe.getRecipeResult().getItem().getRegistryName().getNamespace().toLowerCase();
-
-            if (itemName.contains(lowerQuery) || modName.contains(lowerQuery)) {
-                results.add(recipe);
-            }
-        }
-
-        return results;
+        return searchIndex.search(query, recipes.values());
     }
 
     /**
@@ -332,23 +494,25 @@ public class RecipeManager {
         if (recipe == null) return;
 
         String recipeId = recipe.getRecipeId();
-        if (recipes.containsKey(recipeId)) {
+        RecipeEntry previous;
+        synchronized (recipes) {
+            previous = recipes.put(recipeId, recipe);
+        }
+        if (previous != null) {
+             // Новый рецепт получит тот же номер и заменит старый в индексе тегов
              CraftMastery.logger.warn("Recipe with ID {} already exists, overwriting.", recipeId);
-             // Удаляем старый рецепт из списков по тегам
-             RecipeEntry oldRecipe = recipes.get(recipeId);
-             for (RecipeTag tag : oldRecipe.getTags()) {
-                 recipesByTag.get(tag).remove(oldRecipe);
-             }
         }
-        recipes.put(recipeId, recipe);
-        
-        // Обновляем списки по тегам
-        for (RecipeTag tag : recipe.getTags()) {
-            recipesByTag.get(tag).add(recipe);
+        if (!loading) {
+            assignOrdinal(recipe);
+            invalidatePrerequisiteGraph();
+
+            // Сохраняем изменённые категории (отложенно; при загрузке из конфигурации сохранять нечего)
+            RecipeConfig.markDirty(recipe.getCategory());
+            if (previous != null && !previous.getCategory().equals(recipe.getCategory())) {
+                RecipeConfig.markDirty(previous.getCategory());
+            }
         }
-        
-        // Сохраняем изменения в конфигурацию
-        com.khimkhaosow.craftmastery.config.RecipeConfig.saveRecipes(this);
+        searchIndex.invalidate();
 
         CraftMastery.logger.info("Registered/Updated recipe: {}", recipeId);
     }
@@ -382,10 +546,16 @@ public class RecipeManager {
      * Очищает все рецепты
      */
     public void clearRecipes() {
-        recipes.clear();
-        for (List<RecipeEntry> tagList : recipesByTag.values()) {
-            tagList.clear();
+        synchronized (recipes) {
+            recipes.clear();
+        }
+        tagIndex.clear();
+        // Номера сохраняются, чтобы прогресс игроков не сместился после перезагрузки
+        for (int i = 0; i < recipesByOrdinal.size(); i++) {
+            recipesByOrdinal.set(i, null);
         }
+        searchIndex.invalidate();
+        invalidatePrerequisiteGraph();
     }
 
     /**
@@ -425,10 +595,35 @@ public class RecipeManager {
     }
     
     /**
-     * Сохраняет все рецепты
+     * Импортирует массив рецептов из JSON одной пакетной правкой (файлы категорий пишутся один раз)
+     * @return число импортированных рецептов
+     */
+    public int importRecipesFromJson(String json) {
+        int imported = 0;
+        try (ConfigSaveScheduler.Batch batch = ConfigSaveScheduler.getInstance().beginBatch()) {
+            for (JsonElement element : JsonParser.parseString(json).getAsJsonArray()) {
+                try {
+                    RecipeEntry recipe = RecipeConfig.importRecipe(element.getAsJsonObject());
+                    if (recipe != null) {
+                        registerRecipe(recipe);
+                        imported++;
+                    }
+                } catch (RuntimeException e) {
+                    CraftMastery.logger.error("Failed to import recipe from JSON", e);
+                }
+            }
+        } catch (RuntimeException e) {
+            CraftMastery.logger.error("Failed to import recipes from JSON", e);
+        }
+        return imported;
+    }
+
+    /**
+     * Сохраняет все рецепты сразу (без отложенной записи)
      */
     public void saveAllRecipes() {
-        com.khimkhaosow.craftmastery.config.RecipeConfig.saveRecipes(this);
+        RecipeConfig.saveRecipes(this);
+        ConfigSaveScheduler.getInstance().flush();
     }
     
     /**
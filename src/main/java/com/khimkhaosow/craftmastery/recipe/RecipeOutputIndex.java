@@ -0,0 +1,127 @@
+package com.khimkhaosow.craftmastery.recipe;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.minecraft.inventory.IInventory;
+import net.minecraft.inventory.InventoryCrafting;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.crafting.IRecipe;
+import net.minecraft.world.World;
+import net.minecraftforge.fml.common.registry.ForgeRegistries;
+
+/**
+ * Индекс рецептов по результату крафта (предмет, метаданные, хеш NBT).
+ * Строится вместе с загрузкой рецептов в RecipeManager, чтобы обработчик крафта
+ * проверял только рецепты-кандидаты, а не весь реестр.
+ */
+public class RecipeOutputIndex {
+
+    // Индекс заменяется целиком при перестроении, читатели видят либо старую, либо новую версию
+    private volatile Map<OutputKey, List<IRecipe>> index = Collections.emptyMap();
+
+    /**
+     * Перестраивает индекс по текущему реестру рецептов
+     */
+    public void rebuild() {
+        Map<OutputKey, List<IRecipe>> rebuilt = new HashMap<>();
+        for (IRecipe recipe : ForgeRegistries.RECIPES) {
+            ItemStack output = recipe.getRecipeOutput();
+            if (output.isEmpty()) continue;
+
+            rebuilt.computeIfAbsent(OutputKey.of(output), key -> new ArrayList<>(1)).add(recipe);
+        }
+        index = rebuilt;
+    }
+
+    /**
+     * Получает рецепты, результат которых совпадает с указанным предметом
+     */
+    public List<IRecipe> getCandidates(ItemStack output) {
+        if (output == null || output.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<IRecipe> candidates = index.get(OutputKey.of(output));
+        return candidates != null ? candidates : Collections.emptyList();
+    }
+
+    /**
+     * Находит рецепт, по которому был получен результат.
+     * Кандидаты перепроверяются по сетке крафта через matches(); если сетка недоступна
+     * или ни один кандидат не подошёл, используется сравнение результата.
+     */
+    public IRecipe findRecipe(IInventory craftMatrix, ItemStack output, World world) {
+        List<IRecipe> candidates = getCandidates(output);
+        if (candidates.isEmpty()) return null;
+
+        if (craftMatrix instanceof InventoryCrafting && world != null) {
+            InventoryCrafting inventory = (InventoryCrafting) craftMatrix;
+            for (IRecipe recipe : candidates) {
+                if (isSameOutput(recipe.getRecipeOutput(), output) && recipe.matches(inventory, world)) {
+                    return recipe;
+                }
+            }
+        }
+
+        for (IRecipe recipe : candidates) {
+            ItemStack recipeOutput = recipe.getRecipeOutput();
+            if (isSameOutput(recipeOutput, output) && recipeOutput.getCount() <= output.getCount()) {
+                return recipe;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Получает количество различных результатов в индексе
+     */
+    public int size() {
+        return index.size();
+    }
+
+    private static boolean isSameOutput(ItemStack recipeOutput, ItemStack output) {
+        // Защита от коллизий хеша NBT
+        return ItemStack.areItemsEqual(recipeOutput, output)
+            && ItemStack.areItemStackTagsEqual(recipeOutput, output);
+    }
+
+    /**
+     * Ключ индекса: предмет, метаданные и хеш NBT
+     */
+    private static final class OutputKey {
+        private final Item item;
+        private final int meta;
+        private final int nbtHash;
+
+        private OutputKey(Item item, int meta, int nbtHash) {
+            this.item = item;
+            this.meta = meta;
+            this.nbtHash = nbtHash;
+        }
+
+        static OutputKey of(ItemStack stack) {
+            int nbtHash = stack.hasTagCompound() ? stack.getTagCompound().hashCode() : 0;
+            return new OutputKey(stack.getItem(), stack.getMetadata(), nbtHash);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof OutputKey)) return false;
+            OutputKey other = (OutputKey) o;
+            return item == other.item && meta == other.meta && nbtHash == other.nbtHash;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(item);
+            result = 31 * result + meta;
+            result = 31 * result + nbtHash;
+            return result;
+        }
+    }
+}
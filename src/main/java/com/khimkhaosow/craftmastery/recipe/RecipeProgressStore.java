@@ -0,0 +1,194 @@
+package com.khimkhaosow.craftmastery.recipe;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Хранилище прогресса изучения рецептов по игрокам.
+ * Каждый RecipeEntry получает порядковый номер в RecipeManager, а состояние игрока
+ * хранится в двух BitSet (изученные и сброшенные рецепты), поэтому проверка —
+ * это чтение одного машинного слова вместо поиска UUID в наборе у каждого рецепта.
+ */
+public class RecipeProgressStore {
+
+    private static RecipeProgressStore instance;
+
+    // Прогресс игроков по UUID
+    private final Map<UUID, PlayerProgress> players;
+
+    // Подписчики на изменения прогресса
+    private final List<ProgressListener> listeners;
+
+    public RecipeProgressStore() {
+        this.players = new ConcurrentHashMap<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    public static RecipeProgressStore getInstance() {
+        if (instance == null) {
+            instance = new RecipeProgressStore();
+        }
+        return instance;
+    }
+
+    /**
+     * Проверяет, изучен ли рецепт с указанным номером
+     */
+    public boolean isStudied(UUID playerUUID, int ordinal) {
+        if (playerUUID == null || ordinal < 0) return false;
+        PlayerProgress progress = players.get(playerUUID);
+        return progress != null && progress.studied.get(ordinal);
+    }
+
+    /**
+     * Проверяет, сброшен ли рецепт с указанным номером
+     */
+    public boolean isReset(UUID playerUUID, int ordinal) {
+        if (playerUUID == null || ordinal < 0) return false;
+        PlayerProgress progress = players.get(playerUUID);
+        return progress != null && progress.reset.get(ordinal);
+    }
+
+    /**
+     * Отмечает рецепт изученным (и снимает отметку сброса)
+     */
+    public void markStudied(UUID playerUUID, int ordinal) {
+        if (playerUUID == null || ordinal < 0) return;
+        PlayerProgress progress = getOrCreate(playerUUID);
+        boolean wasStudied = progress.studied.get(ordinal);
+        progress.studied.set(ordinal);
+        progress.reset.clear(ordinal);
+        if (!wasStudied) {
+            notifyStudiedChanged(playerUUID, ordinal, true);
+        }
+    }
+
+    /**
+     * Отмечает рецепт сброшенным
+     */
+    public void markReset(UUID playerUUID, int ordinal) {
+        if (playerUUID == null || ordinal < 0) return;
+        PlayerProgress progress = getOrCreate(playerUUID);
+        boolean wasStudied = progress.studied.get(ordinal);
+        progress.studied.clear(ordinal);
+        progress.reset.set(ordinal);
+        if (wasStudied) {
+            notifyStudiedChanged(playerUUID, ordinal, false);
+        }
+    }
+
+    /**
+     * Устанавливает состояние рецепта напрямую (используется при синхронизации с сервером)
+     */
+    public void setState(UUID playerUUID, int ordinal, boolean studied, boolean reset) {
+        if (playerUUID == null || ordinal < 0) return;
+        PlayerProgress progress = getOrCreate(playerUUID);
+        boolean wasStudied = progress.studied.get(ordinal);
+        progress.studied.set(ordinal, studied);
+        progress.reset.set(ordinal, reset);
+        if (wasStudied != studied) {
+            notifyStudiedChanged(playerUUID, ordinal, studied);
+        }
+    }
+
+    /**
+     * Заменяет прогресс игрока целиком, уведомляя подписчиков только об изменившихся рецептах
+     */
+    public void replace(UUID playerUUID, BitSet studied, BitSet reset) {
+        if (playerUUID == null) return;
+        PlayerProgress progress = getOrCreate(playerUUID);
+        BitSet changed = (BitSet) progress.studied.clone();
+        changed.xor(studied);
+
+        progress.studied.clear();
+        progress.studied.or(studied);
+        progress.reset.clear();
+        progress.reset.or(reset);
+
+        for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+            notifyStudiedChanged(playerUUID, i, studied.get(i));
+        }
+    }
+
+    /**
+     * Получает копию набора изученных рецептов игрока
+     */
+    public BitSet getStudied(UUID playerUUID) {
+        PlayerProgress progress = players.get(playerUUID);
+        return progress != null ? (BitSet) progress.studied.clone() : new BitSet();
+    }
+
+    /**
+     * Получает копию набора сброшенных рецептов игрока
+     */
+    public BitSet getReset(UUID playerUUID) {
+        PlayerProgress progress = players.get(playerUUID);
+        return progress != null ? (BitSet) progress.reset.clone() : new BitSet();
+    }
+
+    /**
+     * Получает количество изученных рецептов игрока
+     */
+    public int countStudied(UUID playerUUID) {
+        PlayerProgress progress = players.get(playerUUID);
+        return progress != null ? progress.studied.cardinality() : 0;
+    }
+
+    /**
+     * Удаляет прогресс игрока из памяти
+     */
+    public void clearPlayer(UUID playerUUID) {
+        if (playerUUID != null) {
+            players.remove(playerUUID);
+            for (ProgressListener listener : listeners) {
+                listener.onPlayerCleared(playerUUID);
+            }
+        }
+    }
+
+    /**
+     * Добавляет подписчика на изменения прогресса
+     */
+    public void addListener(ProgressListener listener) {
+        if (listener != null && !listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    private void notifyStudiedChanged(UUID playerUUID, int ordinal, boolean studied) {
+        for (ProgressListener listener : listeners) {
+            listener.onStudiedChanged(playerUUID, ordinal, studied);
+        }
+    }
+
+    private PlayerProgress getOrCreate(UUID playerUUID) {
+        return players.computeIfAbsent(playerUUID, key -> new PlayerProgress());
+    }
+
+    /**
+     * Подписчик на изменения прогресса изучения
+     */
+    public interface ProgressListener {
+        /**
+         * Вызывается, когда рецепт становится изученным или перестаёт им быть
+         */
+        void onStudiedChanged(UUID playerUUID, int ordinal, boolean studied);
+
+        /**
+         * Вызывается, когда прогресс игрока выгружается из памяти
+         */
+        void onPlayerCleared(UUID playerUUID);
+    }
+
+    /**
+     * Битовые наборы одного игрока
+     */
+    private static class PlayerProgress {
+        final BitSet studied = new BitSet();
+        final BitSet reset = new BitSet();
+    }
+}
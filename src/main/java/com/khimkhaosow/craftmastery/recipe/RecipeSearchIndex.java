@@ -0,0 +1,217 @@
+package com.khimkhaosow.craftmastery.recipe;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.khimkhaosow.craftmastery.CraftMastery;
+
+import net.minecraft.item.ItemStack;
+import net.minecraftforge.fml.common.FMLCommonHandler;
+
+/**
+ * Поисковый индекс рецептов по n-граммам.
+ * Индексирует отображаемое имя результата, путь в реестре, ID мода, теги (кроме тегов изучения) и категорию.
+ * Строится лениво при первом поиске, сбрасывается при перезагрузке рецептов и перестраивается при смене языка,
+ * так что поиск при наборе текста не обращается к локализации и NBT.
+ */
+public class RecipeSearchIndex {
+
+    // Максимальная длина n-граммы; более длинные запросы проверяются по триграммам
+    private static final int MAX_GRAM = 3;
+
+    // Веса совпадений для ранжирования
+    private static final int SCORE_NAME_EXACT = 100;
+    private static final int SCORE_NAME_PREFIX = 80;
+    private static final int SCORE_NAME_WORD_PREFIX = 60;
+    private static final int SCORE_NAME_CONTAINS = 40;
+    private static final int SCORE_PATH = 30;
+    private static final int SCORE_MOD = 20;
+    private static final int SCORE_TAG_OR_CATEGORY = 10;
+
+    private final List<Document> documents = new ArrayList<>();
+    private final Map<String, BitSet> postings = new HashMap<>();
+    private boolean built = false;
+    private String builtLanguage;
+
+    /**
+     * Сбрасывает индекс; он будет перестроен при следующем поиске
+     */
+    public synchronized void invalidate() {
+        documents.clear();
+        postings.clear();
+        built = false;
+    }
+
+    /**
+     * Ищет рецепты и возвращает их в порядке убывания релевантности
+     */
+    public synchronized List<RecipeEntry> search(String query, Collection<RecipeEntry> recipes) {
+        String normalized = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        ensureBuilt(recipes);
+        if (normalized.isEmpty()) {
+            List<RecipeEntry> all = new ArrayList<>(documents.size());
+            for (Document document : documents) {
+                all.add(document.entry);
+            }
+            return all;
+        }
+
+        BitSet candidates = findCandidates(normalized);
+        if (candidates == null || candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Document> matches = new ArrayList<>();
+        for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+            Document document = documents.get(id);
+            int score = document.score(normalized);
+            if (score > 0) {
+                document.lastScore = score;
+                matches.add(document);
+            }
+        }
+
+        matches.sort((a, b) -> {
+            int byScore = Integer.compare(b.lastScore, a.lastScore);
+            return byScore != 0 ? byScore : a.name.compareTo(b.name);
+        });
+
+        List<RecipeEntry> results = new ArrayList<>(matches.size());
+        for (Document document : matches) {
+            results.add(document.entry);
+        }
+        return results;
+    }
+
+    private void ensureBuilt(Collection<RecipeEntry> recipes) {
+        String language = currentLanguage();
+        if (built && language.equals(builtLanguage)) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        documents.clear();
+        postings.clear();
+
+        for (RecipeEntry entry : recipes) {
+            ItemStack result = entry.getRecipeResult();
+            if (result.isEmpty()) continue;
+
+            Document document = new Document(entry, result);
+            int id = documents.size();
+            documents.add(document);
+            for (String field : document.fields()) {
+                indexField(id, field);
+            }
+        }
+
+        built = true;
+        builtLanguage = language;
+        CraftMastery.logger.debug("Built recipe search index: {} recipes, {} grams in {} ms",
+            documents.size(), postings.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void indexField(int id, String field) {
+        int length = field.length();
+        for (int start = 0; start < length; start++) {
+            for (int gram = 1; gram <= MAX_GRAM && start + gram <= length; gram++) {
+                postings.computeIfAbsent(field.substring(start, start + gram), key -> new BitSet()).set(id);
+            }
+        }
+    }
+
+    /**
+     * Пересекает списки документов для всех n-грамм запроса
+     */
+    private BitSet findCandidates(String query) {
+        if (query.length() <= MAX_GRAM) {
+            BitSet posting = postings.get(query);
+            return posting != null ? (BitSet) posting.clone() : null;
+        }
+
+        BitSet result = null;
+        for (int start = 0; start + MAX_GRAM <= query.length(); start++) {
+            BitSet posting = postings.get(query.substring(start, start + MAX_GRAM));
+            if (posting == null) {
+                return null;
+            }
+            if (result == null) {
+                result = (BitSet) posting.clone();
+            } else {
+                result.and(posting);
+                if (result.isEmpty()) {
+                    return result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String currentLanguage() {
+        try {
+            String language = FMLCommonHandler.instance().getCurrentLanguage();
+            return language != null ? language : "";
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    /**
+     * Заранее подготовленные поля одного рецепта
+     */
+    private static final class Document {
+        final RecipeEntry entry;
+        final String name;
+        final String path;
+        final String mod;
+        final String tags;
+        final String category;
+        int lastScore;
+
+        Document(RecipeEntry entry, ItemStack result) {
+            this.entry = entry;
+            this.name = result.getDisplayName().toLowerCase(Locale.ROOT);
+
+            String itemPath = "";
+            String itemMod = "";
+            if (result.getItem().getRegistryName() != null) {
+                itemPath = result.getItem().getRegistryName().getPath();
+                itemMod = result.getItem().getRegistryName().getNamespace();
+            }
+            this.path = (entry.getRecipeLocation().getPath() + " " + itemPath).toLowerCase(Locale.ROOT);
+            this.mod = (itemMod + " " + entry.getRecipeLocation().getNamespace()).toLowerCase(Locale.ROOT);
+
+            StringBuilder tagText = new StringBuilder();
+            for (RecipeTag tag : entry.getTags()) {
+                // Теги изучения относятся к конкретному игроку и меняются при каждом изучении — в индекс не входят
+                if (tag == RecipeTag.STUDIED || tag == RecipeTag.NOT_STUDIED) continue;
+                tagText.append(tag.name()).append(' ').append(tag.getDisplayName()).append(' ');
+            }
+            this.tags = tagText.toString().toLowerCase(Locale.ROOT);
+            this.category = entry.getCategory().toLowerCase(Locale.ROOT);
+        }
+
+        String[] fields() {
+            return new String[] { name, path, mod, tags, category };
+        }
+
+        int score(String query) {
+            if (name.equals(query)) return SCORE_NAME_EXACT;
+            if (name.startsWith(query)) return SCORE_NAME_PREFIX;
+            int index = name.indexOf(query);
+            if (index > 0) {
+                return Character.isLetterOrDigit(name.charAt(index - 1)) ? SCORE_NAME_CONTAINS : SCORE_NAME_WORD_PREFIX;
+            }
+            if (path.contains(query)) return SCORE_PATH;
+            if (mod.contains(query)) return SCORE_MOD;
+            if (tags.contains(query) || category.contains(query)) return SCORE_TAG_OR_CATEGORY;
+            return 0;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.khimkhaosow.craftmastery.recipe;
 
+import java.util.EnumSet;
+
 import net.minecraft.util.text.TextFormatting;
 
 /**
@@ -37,4 +39,37 @@ public enum RecipeTag {
     public String getDescription() {
         return description;
     }
+
+    /**
+     * Получает бит тега в маске RecipeEntry
+     */
+    public long getMask() {
+        return 1L << ordinal();
+    }
+
+    /**
+     * Собирает набор тегов из битовой маски
+     */
+    public static EnumSet<RecipeTag> fromMask(long mask) {
+        EnumSet<RecipeTag> result = EnumSet.noneOf(RecipeTag.class);
+        for (RecipeTag tag : values()) {
+            if ((mask & tag.getMask()) != 0) {
+                result.add(tag);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Собирает битовую маску из набора тегов
+     */
+    public static long toMask(Iterable<RecipeTag> tags) {
+        long mask = 0L;
+        if (tags != null) {
+            for (RecipeTag tag : tags) {
+                mask |= tag.getMask();
+            }
+        }
+        return mask;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,152 @@
+package com.khimkhaosow.craftmastery.recipe;
+
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Индекс рецептов по тегам.
+ * Для каждого тега хранится битовый набор порядковых номеров рецептов, поэтому фильтры
+ * (любой из / все / ни один из тегов) сводятся к операциям над BitSet, а результат
+ * возвращается как неизменяемое представление без копирования записей.
+ */
+public class RecipeTagIndex {
+
+    // Рецепты по тегу (бит = порядковый номер рецепта)
+    private final Map<RecipeTag, BitSet> byTag = new EnumMap<>(RecipeTag.class);
+
+    // Все зарегистрированные рецепты
+    private final BitSet live = new BitSet();
+
+    // Маска тегов, под которой рецепт сейчас учтён в индексе
+    private long[] indexedMasks = new long[0];
+
+    // Получение рецепта по номеру
+    private final IntFunction<RecipeEntry> resolver;
+
+    public RecipeTagIndex(IntFunction<RecipeEntry> resolver) {
+        this.resolver = resolver;
+        for (RecipeTag tag : RecipeTag.values()) {
+            byTag.put(tag, new BitSet());
+        }
+    }
+
+    /**
+     * Добавляет рецепт в индекс или обновляет его теги
+     */
+    public synchronized void update(RecipeEntry entry) {
+        int ordinal = entry.getOrdinal();
+        if (ordinal < 0) return;
+
+        ensureCapacity(ordinal);
+        long oldMask = live.get(ordinal) ? indexedMasks[ordinal] : 0L;
+        long newMask = entry.getTagMask();
+
+        long changed = oldMask ^ newMask;
+        if (changed != 0) {
+            for (RecipeTag tag : RecipeTag.values()) {
+                if ((changed & tag.getMask()) != 0) {
+                    byTag.get(tag).set(ordinal, (newMask & tag.getMask()) != 0);
+                }
+            }
+        }
+
+        indexedMasks[ordinal] = newMask;
+        live.set(ordinal);
+    }
+
+    /**
+     * Удаляет все рецепты из индекса (номера при этом не освобождаются)
+     */
+    public synchronized void clear() {
+        for (BitSet bits : byTag.values()) {
+            bits.clear();
+        }
+        live.clear();
+    }
+
+    /**
+     * Получает рецепты с указанным тегом
+     */
+    public synchronized List<RecipeEntry> withTag(RecipeTag tag) {
+        return new RecipeView(byTag.get(tag), resolver);
+    }
+
+    /**
+     * Получает все рецепты индекса
+     */
+    public synchronized List<RecipeEntry> all() {
+        return new RecipeView(live, resolver);
+    }
+
+    /**
+     * Фильтрует рецепты: хотя бы один из anyOf, все из allOf и ни одного из noneOf.
+     * Пустой или null набор условие не накладывает.
+     */
+    public synchronized List<RecipeEntry> query(Collection<RecipeTag> anyOf, Collection<RecipeTag> allOf,
+                                                Collection<RecipeTag> noneOf) {
+        BitSet result = (BitSet) live.clone();
+
+        if (anyOf != null && !anyOf.isEmpty()) {
+            BitSet union = new BitSet();
+            for (RecipeTag tag : anyOf) {
+                union.or(byTag.get(tag));
+            }
+            result.and(union);
+        }
+        if (allOf != null) {
+            for (RecipeTag tag : allOf) {
+                result.and(byTag.get(tag));
+            }
+        }
+        if (noneOf != null) {
+            for (RecipeTag tag : noneOf) {
+                result.andNot(byTag.get(tag));
+            }
+        }
+
+        return new RecipeView(result, resolver);
+    }
+
+    /**
+     * Получает количество рецептов с тегом
+     */
+    public synchronized int count(RecipeTag tag) {
+        return byTag.get(tag).cardinality();
+    }
+
+    private void ensureCapacity(int ordinal) {
+        if (ordinal >= indexedMasks.length) {
+            long[] grown = new long[Math.max(ordinal + 1, indexedMasks.length * 2)];
+            System.arraycopy(indexedMasks, 0, grown, 0, indexedMasks.length);
+            indexedMasks = grown;
+        }
+    }
+
+    /**
+     * Неизменяемый список рецептов по снимку номеров
+     */
+    private static final class RecipeView extends AbstractList<RecipeEntry> {
+        private final int[] ordinals;
+        private final IntFunction<RecipeEntry> resolver;
+
+        RecipeView(BitSet bits, IntFunction<RecipeEntry> resolver) {
+            this.ordinals = bits.stream().toArray();
+            this.resolver = resolver;
+        }
+
+        @Override
+        public RecipeEntry get(int index) {
+            return resolver.apply(ordinals[index]);
+        }
+
+        @Override
+        public int size() {
+            return ordinals.length;
+        }
+    }
+}
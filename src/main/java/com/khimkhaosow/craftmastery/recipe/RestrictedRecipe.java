@@ -1,6 +1,5 @@
 package com.khimkhaosow.craftmastery.recipe;
 
-import com.khimkhaosow.craftmastery.experience.ExperienceManager;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.inventory.InventoryCrafting;
 import net.minecraft.item.ItemStack;
@@ -29,7 +28,7 @@ public class RestrictedRecipe extends IForgeRegistryEntry.Impl<IRecipe> implemen
         EntityPlayer player = findPlayer(inv);
         if (player != null) {
             RecipeEntry entry = RecipeManager.getInstance().getRecipe(originalId);
-            if (entry != null && !entry.isStudiedByPlayer(player.getUniqueID())) {
+            if (entry != null && !CraftDecisionCache.getInstance().isAllowed(player, entry)) {
                 return false;
             }
         }
@@ -41,7 +40,7 @@ public class RestrictedRecipe extends IForgeRegistryEntry.Impl<IRecipe> implemen
         EntityPlayer player = findPlayer(inv);
         if (player != null) {
             RecipeEntry entry = RecipeManager.getInstance().getRecipe(originalId);
-            if (entry != null && !entry.isStudiedByPlayer(player.getUniqueID())) {
+            if (entry != null && !CraftDecisionCache.getInstance().isAllowed(player, entry)) {
                 return ItemStack.EMPTY;
             }
         }
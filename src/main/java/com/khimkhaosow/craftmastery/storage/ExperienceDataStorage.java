@@ -1,5 +1,6 @@
 package com.khimkhaosow.craftmastery.storage;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -15,7 +16,7 @@ import net.minecraft.world.storage.WorldSavedData;
  */
 public class ExperienceDataStorage extends WorldSavedData {
 
-    private static final String DATA_NAME = "craftmastery_experience";
+    public static final String DATA_NAME = "craftmastery_experience";
     private final Map<UUID, PlayerExperienceData> playerDataMap;
 
     public ExperienceDataStorage() {
@@ -131,6 +132,13 @@ public class ExperienceDataStorage extends WorldSavedData {
         return playerDataMap.computeIfAbsent(playerUUID, PlayerExperienceData::new);
     }
 
+    /**
+     * Все сохранённые данные (используется при переносе в ProgressionStore)
+     */
+    public Map<UUID, PlayerExperienceData> getAllPlayerData() {
+        return Collections.unmodifiableMap(playerDataMap);
+    }
+
     public void resetPlayerData(UUID playerUUID) {
         if (playerDataMap.containsKey(playerUUID)) {
             playerDataMap.get(playerUUID).reset();
@@ -0,0 +1,127 @@
+package com.khimkhaosow.craftmastery.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import com.khimkhaosow.craftmastery.CraftMastery;
+
+/**
+ * Хранение прогресса в файлах мира (по умолчанию).
+ * Каждый игрок — отдельный двоичный файл data/craftmastery/players/<первые два символа UUID>/<UUID>.dat,
+ * таблица ID рецептов — data/craftmastery/recipe_ids.dat (переписывается сразу при выдаче новых индексов).
+ * Файлы пишутся через временный файл и атомарное переименование.
+ */
+public class FileProgressionBackend implements ProgressionBackend {
+
+    private static final String PLAYERS_DIRECTORY = "players";
+    private static final String RECIPE_TABLE_FILE = "recipe_ids.dat";
+
+    private File rootDirectory;
+    private File directory;
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+
+    @Override
+    public void open(File worldDirectory) throws IOException {
+        File root = new File(worldDirectory, ProgressionStore.ROOT_DIRECTORY);
+        File playersDir = new File(root, PLAYERS_DIRECTORY);
+        if (!playersDir.exists() && !playersDir.mkdirs()) {
+            throw new IOException("Unable to create progression directory " + playersDir);
+        }
+        rootDirectory = root;
+        directory = playersDir;
+    }
+
+    @Override
+    public List<String> loadRecipeTable() throws IOException {
+        File file = new File(rootDirectory, RECIPE_TABLE_FILE);
+        return file.exists() ? ProgressionCodec.decodeRecipeTable(Files.readAllBytes(file.toPath())) : null;
+    }
+
+    @Override
+    public synchronized List<String> allocateRecipeIds(List<String> recipeIds) throws IOException {
+        List<String> stored = loadRecipeTable();
+        List<String> table = stored != null ? new ArrayList<>(stored) : new ArrayList<>();
+        Set<String> known = new HashSet<>(table);
+        boolean changed = false;
+        for (String recipeId : recipeIds) {
+            if (known.add(recipeId)) {
+                table.add(recipeId);
+                changed = true;
+            }
+        }
+        if (changed) {
+            writeAtomically(new File(rootDirectory, RECIPE_TABLE_FILE).toPath(), ProgressionCodec.encodeRecipeTable(table));
+        }
+        return table;
+    }
+
+    @Override
+    public PlayerProgressRecord load(UUID playerUUID) throws IOException {
+        File file = getPlayerFile(playerUUID);
+        return file.exists() ? ProgressionCodec.decode(Files.readAllBytes(file.toPath())) : null;
+    }
+
+    @Override
+    public void store(List<PlayerProgressRecord> records) throws IOException {
+        IOException failure = null;
+        for (PlayerProgressRecord record : records) {
+            try {
+                writeAtomically(getPlayerFile(record.getPlayerUUID()).toPath(), ProgressionCodec.encode(record));
+            } catch (IOException e) {
+                CraftMastery.logger.error("Failed to save progression for {}: {}", record.getPlayerUUID(), e.getMessage());
+                failure = e;
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void close() {
+        rootDirectory = null;
+        directory = null;
+    }
+
+    /**
+     * Записывает данные во временный файл и атомарно заменяет им основной
+     */
+    private static void writeAtomically(Path target, byte[] bytes) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(temp, bytes);
+
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Файл игрока в подкаталоге по первым двум символам UUID, чтобы каталоги оставались небольшими
+     */
+    private File getPlayerFile(UUID playerUUID) {
+        String name = playerUUID.toString();
+        return new File(new File(directory, name.substring(0, 2)), name + ".dat");
+    }
+}
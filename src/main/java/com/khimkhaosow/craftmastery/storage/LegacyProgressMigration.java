@@ -0,0 +1,86 @@
+package com.khimkhaosow.craftmastery.storage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import com.khimkhaosow.craftmastery.CraftMastery;
+import com.khimkhaosow.craftmastery.experience.PlayerExperienceData;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+
+/**
+ * Однократный перенос старых хранилищ мира (PlayerDataStorage с Gson-строкой в NBT и
+ * ExperienceDataStorage с NBT-структурой) в файлы ProgressionStore.
+ * После переноса старые файлы переименовываются в *.migrated и больше не читаются.
+ */
+final class LegacyProgressMigration {
+
+    private LegacyProgressMigration() {
+    }
+
+    /**
+     * Читает данные из старых хранилищ. PlayerDataStorage имеет приоритет,
+     * ExperienceDataStorage дополняет его игроками, которых там нет.
+     */
+    static Map<UUID, PlayerProgressRecord> read(File dataDirectory) {
+        Map<UUID, PlayerProgressRecord> records = new LinkedHashMap<>();
+
+        NBTTagCompound gsonBlob = readData(getPlayerDataFile(dataDirectory));
+        if (gsonBlob != null) {
+            PlayerDataStorage storage = new PlayerDataStorage();
+            storage.readFromNBT(gsonBlob);
+            addAll(records, storage.getAllPlayerData());
+        }
+
+        NBTTagCompound nbtLayout = readData(getExperienceDataFile(dataDirectory));
+        if (nbtLayout != null) {
+            ExperienceDataStorage storage = new ExperienceDataStorage();
+            storage.readFromNBT(nbtLayout);
+            addAll(records, storage.getAllPlayerData());
+        }
+        return records;
+    }
+
+    /**
+     * Помечает старые файлы перенесёнными
+     */
+    static void retire(File dataDirectory) {
+        for (File file : new File[] { getPlayerDataFile(dataDirectory), getExperienceDataFile(dataDirectory) }) {
+            if (file.exists() && !file.renameTo(new File(file.getPath() + ".migrated"))) {
+                CraftMastery.logger.warn("Unable to rename migrated legacy file {}", file);
+            }
+        }
+    }
+
+    private static void addAll(Map<UUID, PlayerProgressRecord> records, Map<UUID, PlayerExperienceData> legacy) {
+        for (Map.Entry<UUID, PlayerExperienceData> entry : legacy.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null && !records.containsKey(entry.getKey())) {
+                records.put(entry.getKey(), PlayerProgressRecord.fromExperienceData(entry.getKey(), entry.getValue()));
+            }
+        }
+    }
+
+    private static NBTTagCompound readData(File file) {
+        if (!file.exists()) return null;
+        try (InputStream in = new FileInputStream(file)) {
+            return CompressedStreamTools.readCompressed(in).getCompoundTag("data");
+        } catch (IOException | RuntimeException e) {
+            CraftMastery.logger.error("Failed to read legacy progression file {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private static File getPlayerDataFile(File dataDirectory) {
+        return new File(dataDirectory, PlayerDataStorage.DATA_NAME + ".dat");
+    }
+
+    private static File getExperienceDataFile(File dataDirectory) {
+        return new File(dataDirectory, ExperienceDataStorage.DATA_NAME + ".dat");
+    }
+}
@@ -3,7 +3,9 @@ package com.khimkhaosow.craftmastery.storage;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
+import com.khimkhaosow.craftmastery.experience.ExperienceType;
 import com.khimkhaosow.craftmastery.experience.PlayerExperienceData; // Добавлен импорт PlayerExperienceData
+import com.khimkhaosow.craftmastery.experience.PointsType;
 import com.khimkhaosow.craftmastery.util.Reference;
 import net.minecraft.entity.player.EntityPlayer; // Добавлен импорт EntityPlayer
 import net.minecraft.world.storage.WorldSavedData;
@@ -11,6 +13,7 @@ import net.minecraft.nbt.NBTTagCompound;
 
 import java.io.*;
 import java.lang.reflect.Type;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -35,15 +38,27 @@ public class PlayerDataStorage extends WorldSavedData {
     public void readFromNBT(NBTTagCompound nbt) {
         String json = nbt.getString("PlayerData");
         if (!json.isEmpty()) {
-            Type type = new TypeToken<Map<UUID, PlayerExperienceData>>(){}.getType(); // PlayerExperienceData используется здесь
-            this.playerData = GSON.fromJson(json, type);
+            // Формат строки — прежние поля PlayerExperienceData со словарями по типам
+            Type type = new TypeToken<Map<UUID, StoredData>>(){}.getType();
+            Map<UUID, StoredData> stored = GSON.fromJson(json, type);
+            this.playerData = new HashMap<>();
+            if (stored != null) {
+                for (Map.Entry<UUID, StoredData> entry : stored.entrySet()) {
+                    if (entry.getKey() != null && entry.getValue() != null) {
+                        playerData.put(entry.getKey(), entry.getValue().toData(entry.getKey()));
+                    }
+                }
+            }
         }
     }
 
     @Override
     public NBTTagCompound writeToNBT(NBTTagCompound nbt) {
-        String json = GSON.toJson(this.playerData);
-        nbt.setString("PlayerData", json);
+        Map<UUID, StoredData> stored = new HashMap<>();
+        for (Map.Entry<UUID, PlayerExperienceData> entry : playerData.entrySet()) {
+            stored.put(entry.getKey(), StoredData.of(entry.getValue()));
+        }
+        nbt.setString("PlayerData", GSON.toJson(stored));
         return nbt;
     }
 
@@ -56,6 +71,66 @@ public class PlayerDataStorage extends WorldSavedData {
         return this.playerData.getOrDefault(playerUUID, new PlayerExperienceData(playerUUID));
     }
 
+    /**
+     * Все сохранённые данные (используется при переносе в ProgressionStore)
+     */
+    public Map<UUID, PlayerExperienceData> getAllPlayerData() {
+        return playerData != null ? Collections.unmodifiableMap(playerData) : Collections.emptyMap();
+    }
+
+    /**
+     * Данные игрока в виде, в котором они хранились в Gson-строке
+     */
+    private static class StoredData {
+        int level = 1;
+        float currentLevelExperience;
+        float totalExperience;
+        Map<PointsType, Integer> points;
+        Map<ExperienceType, Float> experienceByType;
+        Map<ExperienceType, Float> experienceMultipliers;
+
+        static StoredData of(PlayerExperienceData data) {
+            StoredData stored = new StoredData();
+            stored.level = data.getLevel();
+            stored.currentLevelExperience = data.getCurrentLevelExperience();
+            stored.totalExperience = data.getTotalExperience();
+            stored.points = new HashMap<>();
+            for (PointsType type : PointsType.values()) {
+                stored.points.put(type, data.getPoints(type));
+            }
+            stored.experienceByType = new HashMap<>();
+            stored.experienceMultipliers = new HashMap<>();
+            for (ExperienceType type : ExperienceType.values()) {
+                stored.experienceByType.put(type, data.getExperience(type));
+                stored.experienceMultipliers.put(type, data.getExperienceMultiplier(type));
+            }
+            return stored;
+        }
+
+        PlayerExperienceData toData(UUID playerUUID) {
+            PlayerExperienceData data = new PlayerExperienceData(playerUUID);
+            data.setLevel(level);
+            data.setCurrentLevelExperience(currentLevelExperience);
+            data.setTotalExperience(totalExperience);
+            if (points != null) {
+                for (Map.Entry<PointsType, Integer> entry : points.entrySet()) {
+                    if (entry.getKey() != null && entry.getValue() != null) data.setPoints(entry.getKey(), entry.getValue());
+                }
+            }
+            if (experienceByType != null) {
+                for (Map.Entry<ExperienceType, Float> entry : experienceByType.entrySet()) {
+                    if (entry.getKey() != null && entry.getValue() != null) data.setExperience(entry.getKey(), entry.getValue());
+                }
+            }
+            if (experienceMultipliers != null) {
+                for (Map.Entry<ExperienceType, Float> entry : experienceMultipliers.entrySet()) {
+                    if (entry.getKey() != null && entry.getValue() != null) data.setExperienceMultiplier(entry.getKey(), entry.getValue());
+                }
+            }
+            return data;
+        }
+    }
+
     public static PlayerDataStorage get(EntityPlayer player) { // EntityPlayer используется здесь
         PlayerDataStorage storage = (PlayerDataStorage) player.world.getMapStorage().getOrLoadData(PlayerDataStorage.class, DATA_NAME);
         if (storage == null) {
@@ -0,0 +1,196 @@
+package com.khimkhaosow.craftmastery.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+
+import com.khimkhaosow.craftmastery.experience.ExperienceType;
+import com.khimkhaosow.craftmastery.experience.PlayerExperienceData;
+import com.khimkhaosow.craftmastery.experience.PointsType;
+import com.khimkhaosow.craftmastery.recipe.RecipeEntry;
+import com.khimkhaosow.craftmastery.recipe.RecipeManager;
+import com.khimkhaosow.craftmastery.recipe.RecipeProgressStore;
+import com.khimkhaosow.craftmastery.tabs.Tab;
+import com.khimkhaosow.craftmastery.tabs.TabManager;
+
+/**
+ * Снимок прогресса одного игрока: опыт, очки, изученные и сброшенные рецепты, изученные вкладки.
+ * Снимается на серверном потоке и дальше не меняется, поэтому его можно записывать в фоне.
+ * Значения по типам опыта и очков хранятся в массивах по ordinal() перечислений, рецепты —
+ * битовыми наборами по индексам RecipeIdTable, а не по порядковым номерам RecipeManager.
+ */
+public class PlayerProgressRecord {
+
+    private static final ExperienceType[] EXPERIENCE_TYPES = ExperienceType.values();
+    private static final PointsType[] POINTS_TYPES = PointsType.values();
+
+    final UUID playerUUID;
+
+    // Журнал, которым записан снимок (null — неизвестен), и номер последней учтённой записи этого журнала
+    UUID journalId;
+    long journalSequence;
+
+    // Опыт в фиксированной точке ExperienceCurve
+    int level = 1;
+    long currentLevelExperience;
+    long totalExperience;
+    final long[] experience = new long[EXPERIENCE_TYPES.length];
+    final float[] multipliers = new float[EXPERIENCE_TYPES.length];
+    final int[] points = new int[POINTS_TYPES.length];
+
+    final BitSet studiedRecipes = new BitSet();
+    final BitSet resetRecipes = new BitSet();
+    final List<String> studiedTabs = new ArrayList<>();
+
+    PlayerProgressRecord(UUID playerUUID) {
+        this.playerUUID = playerUUID;
+        Arrays.fill(multipliers, 1.0f);
+    }
+
+    /**
+     * Снимает прогресс игрока (вызывать на серверном потоке).
+     * unknown — рецепты из загруженного снимка, которых нет в RecipeManager (или null): они переносятся
+     * в новый снимок как есть, чтобы прогресс вернулся, когда рецепт снова появится.
+     */
+    public static PlayerProgressRecord capture(UUID playerUUID, PlayerExperienceData data, RecipeIdTable recipeIds,
+                                               UnknownRecipes unknown, UUID journalId, long journalSequence)
+            throws IOException {
+        PlayerProgressRecord record = fromExperienceData(playerUUID, data);
+        record.journalId = journalId;
+        record.journalSequence = journalSequence;
+
+        RecipeManager manager = RecipeManager.getInstance();
+        RecipeProgressStore progress = RecipeProgressStore.getInstance();
+        toTableIndices(manager, recipeIds, progress.getStudied(playerUUID), record.studiedRecipes);
+        toTableIndices(manager, recipeIds, progress.getReset(playerUUID), record.resetRecipes);
+        if (unknown != null) {
+            carryUnknown(manager, recipeIds, unknown.studied, record.studiedRecipes);
+            carryUnknown(manager, recipeIds, unknown.reset, record.resetRecipes);
+        }
+
+        for (Tab tab : TabManager.getInstance().getAllTabs()) {
+            if (tab.isStudiedByPlayer(playerUUID)) {
+                record.studiedTabs.add(tab.getId());
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Создаёт снимок только из данных опыта (используется при переносе старых хранилищ)
+     */
+    public static PlayerProgressRecord fromExperienceData(UUID playerUUID, PlayerExperienceData data) {
+        PlayerProgressRecord record = new PlayerProgressRecord(playerUUID);
+        record.level = data.getLevel();
+        record.currentLevelExperience = data.getCurrentLevelExperienceFixed();
+        record.totalExperience = data.getTotalExperienceFixed();
+        for (ExperienceType type : EXPERIENCE_TYPES) {
+            record.experience[type.ordinal()] = data.getExperienceFixed(type);
+            record.multipliers[type.ordinal()] = data.getExperienceMultiplier(type);
+        }
+        for (PointsType type : POINTS_TYPES) {
+            record.points[type.ordinal()] = data.getPoints(type);
+        }
+        return record;
+    }
+
+    private static void toTableIndices(RecipeManager manager, RecipeIdTable recipeIds, BitSet ordinals, BitSet target)
+            throws IOException {
+        List<String> ids = manager.getOrdinalIds();
+        for (int i = ordinals.nextSetBit(0); i >= 0; i = ordinals.nextSetBit(i + 1)) {
+            if (i < ids.size()) {
+                target.set(recipeIds.indexOf(ids.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Добавляет биты рецептов, которые RecipeManager по-прежнему не знает (известные берутся из живого состояния)
+     */
+    private static void carryUnknown(RecipeManager manager, RecipeIdTable recipeIds, BitSet unknown, BitSet target) {
+        for (int i = unknown.nextSetBit(0); i >= 0; i = unknown.nextSetBit(i + 1)) {
+            if (resolve(manager, recipeIds, i) == null) {
+                target.set(i);
+            }
+        }
+    }
+
+    /**
+     * Восстанавливает данные опыта из снимка
+     */
+    public PlayerExperienceData toExperienceData() {
+        PlayerExperienceData data = new PlayerExperienceData(playerUUID);
+        data.setLevel(level);
+        data.setCurrentLevelExperienceFixed(currentLevelExperience);
+        data.setTotalExperienceFixed(totalExperience);
+        for (ExperienceType type : EXPERIENCE_TYPES) {
+            data.setExperienceFixed(type, experience[type.ordinal()]);
+            data.setExperienceMultiplier(type, multipliers[type.ordinal()]);
+        }
+        for (PointsType type : POINTS_TYPES) {
+            data.setPoints(type, points[type.ordinal()]);
+        }
+        return data;
+    }
+
+    /**
+     * Применяет изученные рецепты и вкладки из снимка (неизвестные вкладки пропускаются).
+     * Возвращает рецепты, которых нет в RecipeManager, для передачи в capture (null — таких нет).
+     */
+    public UnknownRecipes applyStudyState(RecipeIdTable recipeIds) {
+        RecipeManager manager = RecipeManager.getInstance();
+        RecipeProgressStore progress = RecipeProgressStore.getInstance();
+        UnknownRecipes unknown = new UnknownRecipes();
+        for (int i = resetRecipes.nextSetBit(0); i >= 0; i = resetRecipes.nextSetBit(i + 1)) {
+            RecipeEntry entry = resolve(manager, recipeIds, i);
+            if (entry != null) {
+                progress.markReset(playerUUID, entry.getOrdinal());
+            } else {
+                unknown.reset.set(i);
+            }
+        }
+        for (int i = studiedRecipes.nextSetBit(0); i >= 0; i = studiedRecipes.nextSetBit(i + 1)) {
+            RecipeEntry entry = resolve(manager, recipeIds, i);
+            if (entry != null) {
+                progress.markStudied(playerUUID, entry.getOrdinal());
+            } else {
+                unknown.studied.set(i);
+            }
+        }
+
+        TabManager tabManager = TabManager.getInstance();
+        for (String tabId : studiedTabs) {
+            Tab tab = tabManager.getTab(tabId);
+            if (tab != null) tab.setStudiedByPlayer(playerUUID, true);
+        }
+        return unknown.studied.isEmpty() && unknown.reset.isEmpty() ? null : unknown;
+    }
+
+    /**
+     * Граница индексов рецептов в снимке: все установленные биты меньше неё
+     */
+    int recipeIndexLimit() {
+        return Math.max(studiedRecipes.length(), resetRecipes.length());
+    }
+
+    private static RecipeEntry resolve(RecipeManager manager, RecipeIdTable recipeIds, int index) {
+        String recipeId = recipeIds.idAt(index);
+        return recipeId != null ? manager.getRecipe(recipeId) : null;
+    }
+
+    public UUID getPlayerUUID() {
+        return playerUUID;
+    }
+
+    /**
+     * Индексы RecipeIdTable из загруженного снимка, для которых в RecipeManager нет рецепта
+     * (например, отключён мод). Не меняются после загрузки.
+     */
+    public static final class UnknownRecipes {
+        final BitSet studied = new BitSet();
+        final BitSet reset = new BitSet();
+    }
+}
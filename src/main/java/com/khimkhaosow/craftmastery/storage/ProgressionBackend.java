@@ -0,0 +1,61 @@
+package com.khimkhaosow.craftmastery.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Место хранения снимков прогресса игроков и таблицы ID рецептов.
+ * ProgressionStore отвечает за кеш, отметки изменений, журнал и фоновые потоки, а реализация —
+ * только за чтение и запись. Методы чтения вызываются из потока загрузки или серверного потока,
+ * методы записи — из потока записи; реализация сама отвечает за согласованность между ними.
+ */
+public interface ProgressionBackend {
+
+    /**
+     * Короткое имя для логов
+     */
+    String getName();
+
+    /**
+     * Может ли хранилище одновременно использоваться другими серверами.
+     * Тогда прогресс вышедших игроков не держится в памяти, а номера журнала в снимках,
+     * записанных другим сервером, не сравниваются с номерами своего журнала.
+     */
+    boolean isShared();
+
+    /**
+     * Подготавливает хранилище для мира
+     */
+    void open(File worldDirectory) throws IOException;
+
+    /**
+     * Читает таблицу ID рецептов или возвращает null, если её ещё нет
+     */
+    List<String> loadRecipeTable() throws IOException;
+
+    /**
+     * Выдаёт индексы рецептам, которых ещё нет в таблице, записывает её и возвращает всю таблицу.
+     * Для общего хранилища выдача атомарна (с повторным чтением таблицы), чтобы разные серверы
+     * не выдали один индекс разным рецептам.
+     */
+    List<String> allocateRecipeIds(List<String> recipeIds) throws IOException;
+
+    /**
+     * Читает снимок игрока или возвращает null, если его нет.
+     * Повреждённые данные — IOException, а не null, чтобы их не перезаписали пустым прогрессом.
+     */
+    PlayerProgressRecord load(UUID playerUUID) throws IOException;
+
+    /**
+     * Записывает снимки игроков (их индексы рецептов уже выданы через allocateRecipeIds).
+     * Бросает IOException, если записать удалось не всё.
+     */
+    void store(List<PlayerProgressRecord> records) throws IOException;
+
+    /**
+     * Освобождает ресурсы (после последней записи)
+     */
+    void close();
+}
@@ -0,0 +1,281 @@
+package com.khimkhaosow.craftmastery.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import com.khimkhaosow.craftmastery.experience.ExperienceType;
+import com.khimkhaosow.craftmastery.experience.PointsType;
+import com.khimkhaosow.craftmastery.network.WireFormat;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Двоичный формат файлов прогресса.
+ * Файл игрока: сигнатура, версия, UUID, номер последней учтённой записи журнала и ID этого журнала
+ * (нулевой UUID — неизвестен), уровень и опыт уровня, затем таблица имён типов опыта
+ * с опытом (long в фиксированной точке ExperienceCurve) и множителями, таблица имён типов очков с очками (zig-zag varint), битовые наборы
+ * изученных и сброшенных рецептов по индексам RecipeIdTable и список ID изученных вкладок.
+ * Значения перечислений пишутся по ordinal(), но с таблицей имён: при чтении они сопоставляются
+ * по имени, поэтому добавление, удаление и перестановка констант не ломают старые файлы.
+ * Здесь же кодируются данные событий ProgressionJournal: ID рецепта или вкладки, изменение очков
+ * или полное состояние опыта в том же виде, что и в файле игрока.
+ */
+public final class ProgressionCodec {
+
+    // "CMPR" и "CMRI"
+    private static final int PLAYER_MAGIC = 0x434D5052;
+    private static final int RECIPE_TABLE_MAGIC = 0x434D5249;
+
+    public static final int FORMAT_VERSION = 1;
+
+    private static final UUID NO_JOURNAL = new UUID(0L, 0L);
+
+    private static final ExperienceType[] EXPERIENCE_TYPES = ExperienceType.values();
+    private static final PointsType[] POINTS_TYPES = PointsType.values();
+
+    private ProgressionCodec() {
+    }
+
+    /**
+     * Кодирует снимок прогресса игрока
+     */
+    public static byte[] encode(PlayerProgressRecord record) {
+        ByteBuf buf = Unpooled.buffer(256);
+        buf.writeInt(PLAYER_MAGIC);
+        buf.writeByte(FORMAT_VERSION);
+        buf.writeLong(record.playerUUID.getMostSignificantBits());
+        buf.writeLong(record.playerUUID.getLeastSignificantBits());
+        buf.writeLong(record.journalSequence);
+        UUID journalId = record.journalId != null ? record.journalId : NO_JOURNAL;
+        buf.writeLong(journalId.getMostSignificantBits());
+        buf.writeLong(journalId.getLeastSignificantBits());
+
+        writeExperience(buf, record);
+
+        WireFormat.writeBitSet(buf, record.studiedRecipes);
+        WireFormat.writeBitSet(buf, record.resetRecipes);
+
+        WireFormat.writeVarInt(buf, record.studiedTabs.size());
+        for (String tabId : record.studiedTabs) {
+            WireFormat.writeString(buf, tabId);
+        }
+        return toArray(buf);
+    }
+
+    /**
+     * Декодирует снимок прогресса игрока
+     */
+    public static PlayerProgressRecord decode(byte[] bytes) throws IOException {
+        ByteBuf buf = Unpooled.wrappedBuffer(bytes);
+        try {
+            readHeader(buf, PLAYER_MAGIC);
+            PlayerProgressRecord record = new PlayerProgressRecord(new UUID(buf.readLong(), buf.readLong()));
+            record.journalSequence = buf.readLong();
+            UUID journalId = new UUID(buf.readLong(), buf.readLong());
+            record.journalId = journalId.equals(NO_JOURNAL) ? null : journalId;
+
+            readExperience(buf, record);
+
+            record.studiedRecipes.or(WireFormat.readBitSet(buf));
+            record.resetRecipes.or(WireFormat.readBitSet(buf));
+
+            int tabs = WireFormat.readVarInt(buf);
+            for (int i = 0; i < tabs; i++) {
+                record.studiedTabs.add(WireFormat.readString(buf));
+            }
+            return record;
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Corrupted progression data", e);
+        }
+    }
+
+    /**
+     * Пишет уровень, опыт, множители и очки (общая часть файла игрока и записи журнала)
+     */
+    static void writeExperience(ByteBuf buf, PlayerProgressRecord record) {
+        WireFormat.writeSignedVarInt(buf, record.level);
+        buf.writeLong(record.currentLevelExperience);
+        buf.writeLong(record.totalExperience);
+
+        WireFormat.writeVarInt(buf, EXPERIENCE_TYPES.length);
+        for (ExperienceType type : EXPERIENCE_TYPES) {
+            WireFormat.writeString(buf, type.name());
+            buf.writeLong(record.experience[type.ordinal()]);
+            buf.writeFloat(record.multipliers[type.ordinal()]);
+        }
+
+        WireFormat.writeVarInt(buf, POINTS_TYPES.length);
+        for (PointsType type : POINTS_TYPES) {
+            WireFormat.writeString(buf, type.name());
+            WireFormat.writeSignedVarInt(buf, record.points[type.ordinal()]);
+        }
+    }
+
+    /**
+     * Читает данные, записанные writeExperience
+     */
+    static void readExperience(ByteBuf buf, PlayerProgressRecord record) {
+        record.level = WireFormat.readSignedVarInt(buf);
+        record.currentLevelExperience = buf.readLong();
+        record.totalExperience = buf.readLong();
+
+        int experienceTypes = WireFormat.readVarInt(buf);
+        for (int i = 0; i < experienceTypes; i++) {
+            ExperienceType type = findConstant(EXPERIENCE_TYPES, WireFormat.readString(buf));
+            long experience = buf.readLong();
+            float multiplier = buf.readFloat();
+            if (type != null) {
+                record.experience[type.ordinal()] = experience;
+                record.multipliers[type.ordinal()] = multiplier;
+            }
+        }
+
+        int pointsTypes = WireFormat.readVarInt(buf);
+        for (int i = 0; i < pointsTypes; i++) {
+            PointsType type = findConstant(POINTS_TYPES, WireFormat.readString(buf));
+            int points = WireFormat.readSignedVarInt(buf);
+            if (type != null) {
+                record.points[type.ordinal()] = points;
+            }
+        }
+    }
+
+    /**
+     * Данные события изучения или сброса рецепта или вкладки
+     */
+    static byte[] encodeIdEvent(String id) {
+        ByteBuf buf = Unpooled.buffer(id.length() + 2);
+        WireFormat.writeString(buf, id);
+        return toArray(buf);
+    }
+
+    /**
+     * Данные события изменения очков
+     */
+    static byte[] encodePointsEvent(PointsType type, int delta) {
+        ByteBuf buf = Unpooled.buffer(24);
+        WireFormat.writeString(buf, type.name());
+        WireFormat.writeSignedVarInt(buf, delta);
+        return toArray(buf);
+    }
+
+    /**
+     * Данные события изменения опыта (полное состояние, поэтому повышение уровня тоже входит сюда)
+     */
+    static byte[] encodeExperienceEvent(PlayerProgressRecord record) {
+        ByteBuf buf = Unpooled.buffer(128);
+        writeExperience(buf, record);
+        return toArray(buf);
+    }
+
+    /**
+     * Применяет событие журнала к снимку игрока
+     */
+    static void applyEvent(PlayerProgressRecord record, ProgressionJournal.Entry entry, RecipeIdTable recipeIds)
+            throws IOException {
+        ByteBuf buf = Unpooled.wrappedBuffer(entry.payload);
+        try {
+            switch (entry.type) {
+                case ProgressionJournal.STUDY: {
+                    int index = recipeIds.indexOf(WireFormat.readString(buf));
+                    record.studiedRecipes.set(index);
+                    record.resetRecipes.clear(index);
+                    break;
+                }
+                case ProgressionJournal.RESET: {
+                    int index = recipeIds.indexOf(WireFormat.readString(buf));
+                    record.studiedRecipes.clear(index);
+                    record.resetRecipes.set(index);
+                    break;
+                }
+                case ProgressionJournal.POINTS: {
+                    PointsType type = findConstant(POINTS_TYPES, WireFormat.readString(buf));
+                    int delta = WireFormat.readSignedVarInt(buf);
+                    if (type != null) {
+                        record.points[type.ordinal()] += delta;
+                    }
+                    break;
+                }
+                case ProgressionJournal.EXPERIENCE:
+                    readExperience(buf, record);
+                    break;
+                case ProgressionJournal.TAB_STUDY: {
+                    String tabId = WireFormat.readString(buf);
+                    if (!record.studiedTabs.contains(tabId)) {
+                        record.studiedTabs.add(tabId);
+                    }
+                    break;
+                }
+                case ProgressionJournal.TAB_RESET:
+                    record.studiedTabs.remove(WireFormat.readString(buf));
+                    break;
+                default:
+                    throw new IOException("Unknown journal event type " + entry.type);
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Corrupted journal event", e);
+        }
+        record.journalSequence = entry.sequence;
+    }
+
+    /**
+     * Кодирует таблицу ID рецептов
+     */
+    public static byte[] encodeRecipeTable(List<String> ids) {
+        ByteBuf buf = Unpooled.buffer(ids.size() * 24 + 16);
+        buf.writeInt(RECIPE_TABLE_MAGIC);
+        buf.writeByte(FORMAT_VERSION);
+        WireFormat.writeVarInt(buf, ids.size());
+        for (String id : ids) {
+            WireFormat.writeString(buf, id);
+        }
+        return toArray(buf);
+    }
+
+    /**
+     * Декодирует таблицу ID рецептов
+     */
+    public static List<String> decodeRecipeTable(byte[] bytes) throws IOException {
+        ByteBuf buf = Unpooled.wrappedBuffer(bytes);
+        try {
+            readHeader(buf, RECIPE_TABLE_MAGIC);
+            int count = WireFormat.readVarInt(buf);
+            List<String> ids = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                ids.add(WireFormat.readString(buf));
+            }
+            return ids;
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Corrupted recipe id table", e);
+        }
+    }
+
+    private static int readHeader(ByteBuf buf, int expectedMagic) throws IOException {
+        if (buf.readInt() != expectedMagic) {
+            throw new IOException("Unknown file signature");
+        }
+        int version = buf.readUnsignedByte();
+        if (version > FORMAT_VERSION) {
+            throw new IOException("Unsupported format version " + version);
+        }
+        return version;
+    }
+
+    static <E extends Enum<E>> E findConstant(E[] constants, String name) {
+        for (E constant : constants) {
+            if (constant.name().equals(name)) {
+                return constant;
+            }
+        }
+        return null;
+    }
+
+    private static byte[] toArray(ByteBuf buf) {
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.readBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,402 @@
+package com.khimkhaosow.craftmastery.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+import com.khimkhaosow.craftmastery.CraftMastery;
+
+/**
+ * Журнал событий прогресса, в который только дописывают.
+ * Каждое событие получает возрастающий номер и пишется в текущий сегмент journal/<номер первого события>.log
+ * кадром «длина, тело, CRC32». Запись идёт в отдельном потоке: всё, что накопилось в очереди, пишется
+ * одним буферизованным блоком и закрепляется одним fsync (групповая фиксация).
+ * Сегменты, уже учтённые в снимках игроков, удаляются (см. ProgressionStore); последний сегмент
+ * не удаляется никогда, по его имени восстанавливается следующий номер события.
+ * У журнала есть постоянный ID (journal.id): снимок хранит ID журнала вместе с номером события,
+ * поэтому номера другого сервера общей базы не принимаются за свои.
+ */
+public class ProgressionJournal {
+
+    public static final byte STUDY = 1;
+    public static final byte RESET = 2;
+    public static final byte POINTS = 3;
+    public static final byte EXPERIENCE = 4;
+    public static final byte TAB_STUDY = 5;
+    public static final byte TAB_RESET = 6;
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String ID_FILE = "journal.id";
+
+    // Номер события, UUID и тип
+    private static final int HEADER_SIZE = 8 + 16 + 1;
+    private static final int MAX_ENTRY_SIZE = 1 << 20;
+
+    private final File directory;
+
+    // Постоянный ID журнала (известен после recover)
+    private UUID id;
+
+    // События и команды для потока журнала
+    private final LinkedBlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+
+    private Thread thread;
+
+    // Номер последнего выданного события и первого события текущего сегмента (под блокировкой журнала)
+    private long lastSequence = 0;
+    private long segmentStart = 1;
+
+    // Текущий сегмент (только поток журнала)
+    private FileOutputStream segmentFile;
+    private DataOutputStream segmentOut;
+
+    public ProgressionJournal(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Читает все сегменты (до запуска потока) и восстанавливает счётчик номеров.
+     * Чтение сегмента останавливается на первом оборванном или повреждённом кадре.
+     */
+    public List<Entry> recover() throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create journal directory " + directory);
+        }
+        id = readOrCreateId();
+
+        List<Entry> entries = new ArrayList<>();
+        long maxSegment = 0;
+        for (File segment : listSegments()) {
+            maxSegment = Math.max(maxSegment, segmentStart(segment));
+            readSegment(segment, entries);
+        }
+        entries.sort((a, b) -> Long.compare(a.sequence, b.sequence));
+
+        long last = entries.isEmpty() ? 0 : entries.get(entries.size() - 1).sequence;
+        synchronized (this) {
+            lastSequence = Math.max(last, maxSegment - 1);
+        }
+        return entries;
+    }
+
+    /**
+     * Открывает новый сегмент и запускает поток журнала.
+     * Возвращает номер первого события нового сегмента: всё, что раньше, лежит в старых сегментах.
+     */
+    public synchronized long start() throws IOException {
+        segmentStart = lastSequence + 1;
+        openSegment(segmentStart);
+
+        thread = new Thread(this::run, "CraftMastery Progression Journal");
+        thread.setDaemon(true);
+        thread.start();
+        return segmentStart;
+    }
+
+    /**
+     * Дописывает событие игрока и возвращает его номер
+     */
+    public synchronized long append(UUID playerUUID, byte type, byte[] payload) {
+        long sequence = ++lastSequence;
+        queue.add(new Entry(sequence, playerUUID, type, payload));
+        return sequence;
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    /**
+     * Начинает новый сегмент, если в текущем есть события.
+     * Возвращает границу: все события с меньшими номерами находятся в предыдущих сегментах.
+     */
+    public synchronized long rotate() {
+        if (lastSequence >= segmentStart) {
+            segmentStart = lastSequence + 1;
+            queue.add(new Rotate(segmentStart));
+        }
+        return segmentStart;
+    }
+
+    /**
+     * Удаляет сегменты, все события которых имеют номера меньше границы (выполняется в потоке журнала
+     * после уже поставленных в очередь записей)
+     */
+    public void deleteSegmentsBefore(long boundary) {
+        queue.add(new Delete(boundary));
+    }
+
+    /**
+     * Дописывает оставшиеся события, закрепляет их и останавливает поток
+     */
+    public void close() {
+        if (thread == null) return;
+        queue.add(Stop.INSTANCE);
+        try {
+            thread.join(30000);
+            if (thread.isAlive()) {
+                CraftMastery.logger.warn("Progression journal did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    private void run() {
+        List<Object> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                running = process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (IOException e) {
+                CraftMastery.logger.error("Progression journal write failed: {}", e.getMessage());
+                running = !batch.contains(Stop.INSTANCE);
+            }
+            batch.clear();
+        }
+        closeSegment();
+    }
+
+    /**
+     * Пишет пачку событий и выполняет команды; fsync — один на пачку
+     */
+    private boolean process(List<Object> batch) throws IOException {
+        boolean pending = false;
+        CRC32 crc = new CRC32();
+        for (Object item : batch) {
+            if (item instanceof Entry) {
+                writeEntry((Entry) item, crc);
+                pending = true;
+            } else if (item instanceof Rotate) {
+                sync();
+                pending = false;
+                closeSegment();
+                openSegment(((Rotate) item).segmentStart);
+            } else if (item instanceof Delete) {
+                if (pending) {
+                    sync();
+                    pending = false;
+                }
+                deleteBefore(((Delete) item).boundary);
+            } else if (item == Stop.INSTANCE) {
+                sync();
+                return false;
+            }
+        }
+        if (pending) {
+            sync();
+        }
+        return true;
+    }
+
+    private void writeEntry(Entry entry, CRC32 crc) throws IOException {
+        if (segmentOut == null) {
+            throw new IOException("No open journal segment");
+        }
+        byte[] body = new byte[HEADER_SIZE + entry.payload.length];
+        writeLong(body, 0, entry.sequence);
+        writeLong(body, 8, entry.playerUUID.getMostSignificantBits());
+        writeLong(body, 16, entry.playerUUID.getLeastSignificantBits());
+        body[24] = entry.type;
+        System.arraycopy(entry.payload, 0, body, HEADER_SIZE, entry.payload.length);
+
+        crc.reset();
+        crc.update(body, 0, body.length);
+        segmentOut.writeInt(body.length);
+        segmentOut.write(body);
+        segmentOut.writeInt((int) crc.getValue());
+    }
+
+    private void sync() throws IOException {
+        if (segmentOut == null) return;
+        segmentOut.flush();
+        segmentFile.getChannel().force(false);
+    }
+
+    private void openSegment(long start) throws IOException {
+        segmentFile = new FileOutputStream(getSegmentFile(start), true);
+        segmentOut = new DataOutputStream(new BufferedOutputStream(segmentFile, 64 * 1024));
+    }
+
+    private void closeSegment() {
+        if (segmentOut == null) return;
+        try {
+            segmentOut.close();
+        } catch (IOException e) {
+            CraftMastery.logger.error("Failed to close journal segment: {}", e.getMessage());
+        }
+        segmentOut = null;
+        segmentFile = null;
+    }
+
+    private void deleteBefore(long boundary) {
+        List<File> segments = listSegments();
+        // Сегмент целиком раньше границы, если следующий за ним начинается не позже неё
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (segmentStart(segments.get(i + 1)) <= boundary && !segments.get(i).delete()) {
+                CraftMastery.logger.warn("Unable to delete journal segment {}", segments.get(i));
+            }
+        }
+    }
+
+    private void readSegment(File segment, List<Entry> entries) throws IOException {
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (length < HEADER_SIZE || length > MAX_ENTRY_SIZE) {
+                    CraftMastery.logger.warn("Corrupted entry in journal segment {}, ignoring the rest", segment.getName());
+                    return;
+                }
+
+                byte[] body = new byte[length];
+                int checksum;
+                try {
+                    in.readFully(body);
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    CraftMastery.logger.warn("Journal segment {} ends with an incomplete entry", segment.getName());
+                    return;
+                }
+
+                crc.reset();
+                crc.update(body, 0, body.length);
+                if ((int) crc.getValue() != checksum) {
+                    CraftMastery.logger.warn("Checksum mismatch in journal segment {}, ignoring the rest", segment.getName());
+                    return;
+                }
+
+                UUID playerUUID = new UUID(readLong(body, 8), readLong(body, 16));
+                entries.add(new Entry(readLong(body, 0), playerUUID, body[24],
+                    Arrays.copyOfRange(body, HEADER_SIZE, body.length)));
+            }
+        }
+    }
+
+    private UUID readOrCreateId() throws IOException {
+        File file = new File(directory, ID_FILE);
+        if (file.exists()) {
+            try {
+                return UUID.fromString(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim());
+            } catch (IllegalArgumentException e) {
+                CraftMastery.logger.warn("Invalid progression journal id, creating a new one");
+            }
+        }
+        UUID created = UUID.randomUUID();
+        Files.write(file.toPath(), created.toString().getBytes(StandardCharsets.UTF_8));
+        return created;
+    }
+
+    private List<File> listSegments() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) return Collections.emptyList();
+
+        List<File> segments = new ArrayList<>();
+        for (File file : files) {
+            if (segmentStart(file) > 0) {
+                segments.add(file);
+            }
+        }
+        segments.sort((a, b) -> Long.compare(segmentStart(a), segmentStart(b)));
+        return segments;
+    }
+
+    private File getSegmentFile(long start) {
+        return new File(directory, String.format("%020d", start) + SEGMENT_SUFFIX);
+    }
+
+    private static long segmentStart(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Событие журнала
+     */
+    public static final class Entry {
+        final long sequence;
+        final UUID playerUUID;
+        final byte type;
+        final byte[] payload;
+
+        Entry(long sequence, UUID playerUUID, byte type, byte[] payload) {
+            this.sequence = sequence;
+            this.playerUUID = playerUUID;
+            this.type = type;
+            this.payload = payload;
+        }
+
+        public UUID getPlayerUUID() {
+            return playerUUID;
+        }
+    }
+
+    private static final class Rotate {
+        final long segmentStart;
+
+        Rotate(long segmentStart) {
+            this.segmentStart = segmentStart;
+        }
+    }
+
+    private static final class Delete {
+        final long boundary;
+
+        Delete(long boundary) {
+            this.boundary = boundary;
+        }
+    }
+
+    private enum Stop {
+        INSTANCE
+    }
+}
@@ -0,0 +1,776 @@
+package com.khimkhaosow.craftmastery.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.khimkhaosow.craftmastery.CraftMastery;
+import com.khimkhaosow.craftmastery.config.ModConfig;
+import com.khimkhaosow.craftmastery.experience.ExperienceManager;
+import com.khimkhaosow.craftmastery.experience.PlayerExperienceData;
+import com.khimkhaosow.craftmastery.experience.PointsType;
+import com.khimkhaosow.craftmastery.recipe.RecipeManager;
+import com.khimkhaosow.craftmastery.recipe.RecipeProgressStore;
+import com.khimkhaosow.craftmastery.tabs.Tab;
+import com.khimkhaosow.craftmastery.tabs.TabManager;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.text.TextComponentString;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.FMLCommonHandler;
+import net.minecraftforge.fml.common.eventhandler.EventPriority;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedInEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedOutEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+/**
+ * Хранилище прогресса игроков с отложенной записью.
+ * Снимки игроков (см. ProgressionCodec) читает и пишет ProgressionBackend, выбранный в
+ * ModConfig.progressionBackend: файлы мира (по умолчанию) или SQL-база, общая для нескольких серверов.
+ * Прогресс загружается при входе в фоновом потоке; пока чтение не завершилось, игрок считается
+ * загружающимся (isLoading), и серверный поток не ждёт диск. После выхода прогресс остаётся в памяти
+ * в LRU-кеше на ModConfig.offlinePlayerCacheSize игроков и выгружается при вытеснении; для общей базы
+ * (ProgressionBackend.isShared) кеша нет — вышедший игрок выгружается в конце тика, и вход всегда читает базу.
+ * Изменения только помечают игрока; раз в ModConfig.progressionSaveTicks тиков (и при сохранении мира)
+ * для помеченных игроков на серверном потоке снимаются PlayerProgressRecord, а записывает их единственный
+ * фоновый поток. Ещё не записанные снимки хранятся по игроку (новый заменяет старый), поэтому при медленном
+ * диске запросы сливаются, а снимки одного игрока не обгоняют друг друга. При остановке сервера всё
+ * несохранённое записывается синхронно после остановки потока записи.
+ * <p>
+ * Между записями снимков каждое изменение сразу дописывается в ProgressionJournal. Снимок хранит ID журнала
+ * и номер последнего учтённого события (номера разных журналов не сравниваются); при каждой периодической записи журнал переходит на новый сегмент,
+ * и после записи снимков старые сегменты удаляются (уплотнение). Если сервер упал, при следующем открытии
+ * события из журнала применяются к снимкам игроков. Пока игрок в памяти, его события уже отражены
+ * в живом состоянии, а при выгрузке снимается снимок, поэтому при обычной загрузке журнал не читается.
+ */
+public class ProgressionStore implements RecipeProgressStore.ProgressListener {
+
+    private static ProgressionStore instance;
+
+    static final String ROOT_DIRECTORY = "data/craftmastery";
+    private static final String JOURNAL_DIRECTORY = "journal";
+
+    // Попытки фонового чтения прогресса игрока и пауза между ними (растёт с каждой попыткой)
+    private static final int LOAD_ATTEMPTS = 3;
+    private static final long LOAD_RETRY_MILLIS = 500;
+
+    // Хранилище снимков (null, пока сервер не запущен)
+    private volatile ProgressionBackend backend;
+
+    // Постоянные индексы рецептов для битовых наборов в снимках игроков
+    private RecipeIdTable recipeIds = new RecipeIdTable(null);
+
+    // Фоновые потоки записи и загрузки
+    private ExecutorService writer;
+    private ExecutorService loader;
+
+    // Поставлена ли запись в очередь потока записи (повторные запросы до её начала сливаются)
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+
+    // Граница журнала, все события до которой учтены в снимках pendingWrites
+    private volatile long pendingBoundary = 0;
+
+    // Журнал событий (null, если не открылся); события пишутся, только если включён ModConfig.progressionJournal
+    private ProgressionJournal journal;
+
+    // Граница журнала на момент последней периодической записи
+    private long compactedBoundary = 0;
+
+    // Была ли ошибка записи снимка: тогда сегменты журнала не удаляются до следующего запуска
+    private volatile boolean compactionBlocked = false;
+
+    // Снятые, но ещё не записанные снимки (чтобы повторная загрузка не прочла устаревшие данные)
+    private final ConcurrentMap<UUID, PlayerProgressRecord> pendingWrites = new ConcurrentHashMap<>();
+
+    // Игроки с несохранёнными изменениями
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+
+    // Игроки, прогресс которых загружен в память
+    private final Set<UUID> loaded = ConcurrentHashMap.newKeySet();
+
+    // Рецепты из загруженных снимков, которых нет в RecipeManager: переносятся в следующие снимки
+    private final Map<UUID, PlayerProgressRecord.UnknownRecipes> unknownRecipes = new ConcurrentHashMap<>();
+
+    // Игроки, прогресс которых читается в фоне, и прочитанные снимки для серверного потока
+    private final Set<UUID> loading = ConcurrentHashMap.newKeySet();
+    private final Queue<CompletedLoad> completedLoads = new ConcurrentLinkedQueue<>();
+
+    // Игроки на сервере
+    private final Set<UUID> online = ConcurrentHashMap.newKeySet();
+
+    // Загруженные игроки не в сети, в порядке последнего обращения (доступ только с серверного потока)
+    private final LinkedHashMap<UUID, Boolean> offlineCache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private int ticksSinceFlush = 0;
+
+    public ProgressionStore() {
+        RecipeProgressStore.getInstance().addListener(this);
+    }
+
+    public static ProgressionStore getInstance() {
+        if (instance == null) {
+            instance = new ProgressionStore();
+        }
+        return instance;
+    }
+
+    /**
+     * Открывает хранилище для мира (при запуске сервера)
+     */
+    public void open(File worldDirectory) {
+        ProgressionBackend opened = createBackend();
+        try {
+            opened.open(worldDirectory);
+        } catch (IOException e) {
+            // Запуск с пустым прогрессом разошёлся бы с общим хранилищем — не продолжаем молча
+            throw new IllegalStateException("Failed to open " + opened.getName() + " progression storage", e);
+        }
+
+        backend = opened;
+        recipeIds = openRecipeTable(opened);
+        migrateLegacy(new File(worldDirectory, "data"));
+        // Журнал открывается и при отключённой записи: события, оставшиеся с прошлого запуска, надо применить
+        journal = openJournal(new File(new File(worldDirectory, ROOT_DIRECTORY), JOURNAL_DIRECTORY));
+
+        writer = Executors.newSingleThreadExecutor(daemonThreads("CraftMastery Progression Writer"));
+        loader = Executors.newSingleThreadExecutor(daemonThreads("CraftMastery Progression Loader"));
+        CraftMastery.logger.info("Progression storage opened ({} backend)", opened.getName());
+    }
+
+    /**
+     * Записывает все изменения синхронно и закрывает хранилище (при остановке сервера).
+     * Загруженный прогресс выгружается, чтобы он не попал в следующий мир.
+     */
+    public void close() {
+        if (backend == null) return;
+
+        loader.shutdownNow();
+        long boundary = rotateJournal();
+        if (captureDirty(boundary - 1)) {
+            pendingBoundary = boundary;
+        }
+        int records = pendingWrites.size();
+
+        // Дожидаемся потока записи, затем дописываем оставшееся здесь: писатель всегда один
+        writer.shutdown();
+        boolean writerStopped = false;
+        try {
+            writerStopped = writer.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerStopped) {
+            writePending();
+        } else {
+            // Второй писатель мог бы обогнать первый; несохранённое восстановится из журнала
+            CraftMastery.logger.warn("Progression writer did not finish in time, remaining changes stay in the journal");
+        }
+
+        if (journal != null) {
+            journal.close();
+        }
+        CraftMastery.logger.info("Saved progression for {} players on shutdown", records);
+
+        for (UUID playerUUID : new ArrayList<>(loaded)) {
+            unloadPlayer(playerUUID);
+        }
+        backend.close();
+        backend = null;
+        writer = null;
+        loader = null;
+        journal = null;
+        compactedBoundary = 0;
+        compactionBlocked = false;
+        pendingWrites.clear();
+        pendingBoundary = 0;
+        writeScheduled.set(false);
+        loading.clear();
+        completedLoads.clear();
+        recipeIds = new RecipeIdTable(null);
+    }
+
+    public boolean isOpen() {
+        return backend != null;
+    }
+
+    /**
+     * Проверяет, читается ли прогресс игрока в фоне (его данные ещё не в памяти)
+     */
+    public boolean isLoading(UUID playerUUID) {
+        return playerUUID != null && loading.contains(playerUUID);
+    }
+
+    /**
+     * Помечает прогресс игрока как изменённый
+     */
+    public void markDirty(UUID playerUUID) {
+        if (backend != null && playerUUID != null && loaded.contains(playerUUID)) {
+            dirty.add(playerUUID);
+        }
+    }
+
+    /**
+     * Записывает изучение или сброс вкладки в журнал
+     */
+    public void recordTab(UUID playerUUID, String tabId, boolean studied) {
+        record(playerUUID, studied ? ProgressionJournal.TAB_STUDY : ProgressionJournal.TAB_RESET,
+            ProgressionCodec.encodeIdEvent(tabId));
+    }
+
+    /**
+     * Записывает изменение очков в журнал
+     */
+    public void recordPoints(UUID playerUUID, PointsType type, int delta) {
+        if (delta != 0) {
+            record(playerUUID, ProgressionJournal.POINTS, ProgressionCodec.encodePointsEvent(type, delta));
+        }
+    }
+
+    /**
+     * Записывает текущее состояние опыта и очков игрока в журнал
+     */
+    public void recordExperience(PlayerExperienceData data) {
+        if (data != null && loaded.contains(data.getPlayerUUID())) {
+            record(data.getPlayerUUID(), ProgressionJournal.EXPERIENCE, ProgressionCodec.encodeExperienceEvent(
+                PlayerProgressRecord.fromExperienceData(data.getPlayerUUID(), data)));
+        }
+    }
+
+    /**
+     * Дописывает событие загруженного игрока в журнал и помечает игрока изменённым
+     */
+    private void record(UUID playerUUID, byte type, byte[] payload) {
+        if (backend == null || playerUUID == null || !loaded.contains(playerUUID)) return;
+
+        if (journal != null && ModConfig.progressionJournal) {
+            journal.append(playerUUID, type, payload);
+        }
+        dirty.add(playerUUID);
+    }
+
+    /**
+     * Загружает прогресс игрока синхронно (для игроков не в сети, например из команд):
+     * применяет изученные рецепты и вкладки и возвращает данные опыта.
+     * Возвращает null, если сохранённого прогресса нет или хранилище не открыто.
+     * Если прочитать не удалось — IOException, и игрок не отмечается загруженным,
+     * чтобы сохранённый прогресс не перезаписали пустым.
+     */
+    public PlayerExperienceData loadPlayer(UUID playerUUID) throws IOException {
+        if (backend == null || playerUUID == null) return null;
+        return applyLoaded(playerUUID, readRecord(playerUUID));
+    }
+
+    /**
+     * Выгружает прогресс игрока из памяти (без записи)
+     */
+    public void unloadPlayer(UUID playerUUID) {
+        loaded.remove(playerUUID);
+        unknownRecipes.remove(playerUUID);
+        dirty.remove(playerUUID);
+        online.remove(playerUUID);
+        offlineCache.remove(playerUUID);
+        ExperienceManager.getInstance().unloadPlayerData(playerUUID);
+        RecipeProgressStore.getInstance().clearPlayer(playerUUID);
+        for (Tab tab : TabManager.getInstance().getAllTabs()) {
+            tab.setStudiedByPlayer(playerUUID, false);
+        }
+    }
+
+    /**
+     * Снимает изменённых игроков на текущем потоке и запрашивает запись в фоне
+     */
+    public void flushAsync() {
+        if (backend == null) return;
+
+        // Новый сегмент журнала: всё, что до границы, войдёт в снимки этой записи
+        long boundary = rotateJournal();
+        if (dirty.isEmpty() && boundary == compactedBoundary) return;
+        compactedBoundary = boundary;
+
+        // Если снять удалось не всех, старые сегменты журнала нужны до следующей записи
+        if (captureDirty(boundary - 1)) {
+            pendingBoundary = boundary;
+        }
+        requestWrite();
+    }
+
+    /**
+     * Событие: игрок зашел на сервер — начинаем фоновую загрузку прогресса раньше остальных обработчиков входа
+     */
+    @SubscribeEvent(priority = EventPriority.HIGHEST)
+    public void onPlayerLogin(PlayerLoggedInEvent event) {
+        if (event.player.world.isRemote || backend == null) return;
+
+        UUID playerUUID = event.player.getUniqueID();
+        online.add(playerUUID);
+        if (offlineCache.remove(playerUUID) != null || loaded.contains(playerUUID)) return;
+
+        // Не было в кеше — читаем в фоне, результат применяется в начале следующего тика
+        if (loading.add(playerUUID)) {
+            loader.execute(() -> completedLoads.add(readInBackground(playerUUID)));
+        }
+    }
+
+    /**
+     * Событие: игрок вышел с сервера — переносим в LRU-кеш после остальных обработчиков выхода
+     */
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public void onPlayerLogout(PlayerLoggedOutEvent event) {
+        if (event.player.world.isRemote || backend == null) return;
+
+        UUID playerUUID = event.player.getUniqueID();
+        online.remove(playerUUID);
+        if (loaded.contains(playerUUID)) {
+            touchOffline(playerUUID);
+        }
+    }
+
+    @Override
+    public void onStudiedChanged(UUID playerUUID, int ordinal, boolean studied) {
+        List<String> ids = RecipeManager.getInstance().getOrdinalIds();
+        if (ordinal < ids.size()) {
+            record(playerUUID, studied ? ProgressionJournal.STUDY : ProgressionJournal.RESET,
+                ProgressionCodec.encodeIdEvent(ids.get(ordinal)));
+        } else {
+            markDirty(playerUUID);
+        }
+    }
+
+    @Override
+    public void onPlayerCleared(UUID playerUUID) {
+    }
+
+    /**
+     * Событие: серверный тик — применение загруженного в фоне прогресса и периодическая фоновая запись
+     */
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase == TickEvent.Phase.START) {
+            applyCompletedLoads();
+            return;
+        }
+
+        if (backend != null && backend.isShared()) {
+            // Общую базу меняют другие серверы: прогресс вышедших игроков не держим, чтобы не отдать устаревший
+            evictOffline();
+        }
+
+        if (++ticksSinceFlush >= ModConfig.progressionSaveTicks) {
+            ticksSinceFlush = 0;
+            flushAsync();
+        }
+    }
+
+    /**
+     * Событие: сохранение мира
+     */
+    @SubscribeEvent
+    public void onWorldSave(WorldEvent.Save event) {
+        if (!event.getWorld().isRemote && event.getWorld().provider.getDimension() == 0) {
+            flushAsync();
+        }
+    }
+
+    /**
+     * Применяет прочитанные в фоне снимки игроков, которые всё ещё на сервере, и отправляет им данные
+     */
+    private void applyCompletedLoads() {
+        CompletedLoad load;
+        while ((load = completedLoads.poll()) != null) {
+            UUID playerUUID = load.playerUUID;
+            loading.remove(playerUUID);
+            if (backend == null || !online.contains(playerUUID) || loaded.contains(playerUUID)) continue;
+
+            MinecraftServer server = FMLCommonHandler.instance().getMinecraftServerInstance();
+            EntityPlayerMP player = server != null ? server.getPlayerList().getPlayerByUUID(playerUUID) : null;
+            if (load.failed) {
+                // Игра с пустым прогрессом затёрла бы сохранённый при следующей записи — не пускаем
+                if (player != null) {
+                    player.connection.disconnect(new TextComponentString(
+                        "Не удалось загрузить прогресс CraftMastery. Попробуйте зайти позже."));
+                }
+                continue;
+            }
+
+            PlayerExperienceData data = applyLoaded(playerUUID, load.record);
+            ExperienceManager experience = ExperienceManager.getInstance();
+            experience.acceptLoadedData(playerUUID, data);
+
+            if (player != null) {
+                // Изученные рецепты уйдут клиенту через RecipeSyncTracker как изменения прогресса
+                experience.resyncToClient(player);
+            }
+        }
+    }
+
+    /**
+     * Читает снимок игрока в потоке загрузки; временные ошибки повторяются несколько раз
+     */
+    private CompletedLoad readInBackground(UUID playerUUID) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return new CompletedLoad(playerUUID, readRecord(playerUUID), false);
+            } catch (IOException e) {
+                CraftMastery.logger.error("Failed to load progression for {} (attempt {} of {}): {}",
+                    playerUUID, attempt, LOAD_ATTEMPTS, e.getMessage());
+            }
+            if (attempt >= LOAD_ATTEMPTS) break;
+            try {
+                Thread.sleep(LOAD_RETRY_MILLIS * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return new CompletedLoad(playerUUID, null, true);
+    }
+
+    /**
+     * Читает снимок игрока: сначала среди ещё не записанных, затем из хранилища.
+     * null — сохранённого прогресса нет; ошибка чтения или повреждённые данные — IOException
+     */
+    private PlayerProgressRecord readRecord(UUID playerUUID) throws IOException {
+        PlayerProgressRecord record = pendingWrites.get(playerUUID);
+        if (record != null) {
+            return record;
+        }
+        try {
+            record = backend.load(playerUUID);
+        } catch (RuntimeException e) {
+            throw new IOException("Failed to load progression for " + playerUUID, e);
+        }
+        if (record != null && record.recipeIndexLimit() > recipeIds.size()) {
+            // Индексы выдал другой сервер общей базы после того, как мы прочли таблицу
+            recipeIds.refresh();
+        }
+        return record;
+    }
+
+    /**
+     * Применяет изученные рецепты и вкладки из снимка и отмечает игрока загруженным (серверный поток)
+     */
+    private PlayerExperienceData applyLoaded(UUID playerUUID, PlayerProgressRecord record) {
+        PlayerExperienceData data = null;
+        if (record != null) {
+            PlayerProgressRecord.UnknownRecipes unknown = record.applyStudyState(recipeIds);
+            if (unknown != null) {
+                unknownRecipes.put(playerUUID, unknown);
+            }
+            data = record.toExperienceData();
+        }
+
+        // Отмечаем загруженным после применения, чтобы загрузка не считалась изменением
+        loaded.add(playerUUID);
+        if (!online.contains(playerUUID)) {
+            // Данные игрока не в сети (например, из команды) — держим их в том же LRU-кеше
+            touchOffline(playerUUID);
+        }
+        return data;
+    }
+
+    /**
+     * Отмечает обращение к игроку не в сети и вытесняет самых давних сверх лимита кеша
+     */
+    private void touchOffline(UUID playerUUID) {
+        offlineCache.put(playerUUID, Boolean.TRUE);
+
+        List<UUID> eldest = new ArrayList<>();
+        Iterator<UUID> iterator = offlineCache.keySet().iterator();
+        for (int excess = offlineCache.size() - ModConfig.offlinePlayerCacheSize; excess > 0 && iterator.hasNext(); excess--) {
+            UUID next = iterator.next();
+            if (next.equals(playerUUID)) break;
+            eldest.add(next);
+        }
+        for (UUID evicted : eldest) {
+            evict(evicted);
+        }
+    }
+
+    /**
+     * Вытесняет всех игроков не в сети
+     */
+    private void evictOffline() {
+        for (UUID playerUUID : new ArrayList<>(offlineCache.keySet())) {
+            evict(playerUUID);
+        }
+    }
+
+    /**
+     * Вытесняет игрока: при наличии изменений ставит запись в очередь, затем выгружает.
+     * Если снять прогресс не удалось, игрок остаётся в памяти, чтобы изменения не потерялись.
+     */
+    private void evict(UUID playerUUID) {
+        if (dirty.remove(playerUUID)) {
+            try {
+                PlayerProgressRecord record = PlayerProgressRecord.capture(playerUUID,
+                    ExperienceManager.getInstance().getPlayerData(playerUUID), recipeIds, unknownRecipes.get(playerUUID),
+                    journalId(), lastJournalSequence());
+                pendingWrites.put(playerUUID, record);
+            } catch (IOException e) {
+                CraftMastery.logger.error("Failed to capture progression for {}: {}", playerUUID, e.getMessage());
+                dirty.add(playerUUID);
+                return;
+            }
+            requestWrite();
+        }
+        unloadPlayer(playerUUID);
+    }
+
+    /**
+     * Ставит запись в очередь потока записи, если она ещё не стоит там
+     */
+    private void requestWrite() {
+        if (writeScheduled.compareAndSet(false, true)) {
+            writer.execute(this::writePending);
+        }
+    }
+
+    /**
+     * Записывает все ждущие снимки (поток записи или close() после его остановки).
+     * Снимки, не записанные из-за ошибки, остаются в pendingWrites до следующей записи.
+     */
+    private void writePending() {
+        // Сбрасываем отметку до чтения: запрос, пришедший во время записи, запустит ещё одну
+        writeScheduled.set(false);
+        long boundary = pendingBoundary;
+        List<PlayerProgressRecord> records = new ArrayList<>(pendingWrites.values());
+
+        if (writeBatch(records) && boundary > 0) {
+            compactJournal(boundary);
+        }
+    }
+
+    /**
+     * Снимает изменённых игроков в pendingWrites; journalSequence — номер последнего события журнала,
+     * учтённого в снимках. Возвращает false, если кого-то снять не удалось (он остаётся изменённым).
+     */
+    private boolean captureDirty(long journalSequence) {
+        boolean complete = true;
+        ExperienceManager experience = ExperienceManager.getInstance();
+        UUID journalId = journalId();
+        for (UUID playerUUID : new ArrayList<>(dirty)) {
+            dirty.remove(playerUUID);
+            try {
+                pendingWrites.put(playerUUID, PlayerProgressRecord.capture(playerUUID,
+                    experience.getPlayerData(playerUUID), recipeIds, unknownRecipes.get(playerUUID),
+                    journalId, journalSequence));
+            } catch (IOException e) {
+                // Индекс нового рецепта не выдан — снимок без него потерял бы изученный рецепт
+                CraftMastery.logger.error("Failed to capture progression for {}: {}", playerUUID, e.getMessage());
+                dirty.add(playerUUID);
+                complete = false;
+            }
+        }
+        return complete;
+    }
+
+    /**
+     * Записывает снимки игроков. Возвращает false, если что-то записать не удалось.
+     */
+    private boolean writeBatch(List<PlayerProgressRecord> records) {
+        try {
+            backend.store(records);
+        } catch (IOException | RuntimeException e) {
+            CraftMastery.logger.error("Failed to save progression of {} players: {}", records.size(), e.getMessage());
+            // Изменения остаются в журнале и будут применены при следующем открытии
+            compactionBlocked = true;
+            return false;
+        }
+
+        for (PlayerProgressRecord record : records) {
+            pendingWrites.remove(record.getPlayerUUID(), record);
+        }
+        return true;
+    }
+
+    private long rotateJournal() {
+        return journal != null ? journal.rotate() : 1;
+    }
+
+    private UUID journalId() {
+        return journal != null ? journal.getId() : null;
+    }
+
+    private long lastJournalSequence() {
+        return journal != null ? journal.getLastSequence() : 0;
+    }
+
+    /**
+     * Удаляет сегменты журнала, уже учтённые в записанных снимках
+     */
+    private void compactJournal(long boundary) {
+        if (journal != null && !compactionBlocked) {
+            journal.deleteSegmentsBefore(boundary);
+        }
+    }
+
+    /**
+     * Открывает журнал: применяет оставшиеся после падения события к снимкам игроков,
+     * записывает снимки и начинает новый сегмент
+     */
+    private ProgressionJournal openJournal(File journalDirectory) {
+        ProgressionJournal opened = new ProgressionJournal(journalDirectory);
+        List<ProgressionJournal.Entry> entries;
+        try {
+            entries = opened.recover();
+        } catch (IOException e) {
+            CraftMastery.logger.error("Failed to read progression journal, continuing without it: {}", e.getMessage());
+            return null;
+        }
+
+        Map<UUID, PlayerProgressRecord> replayed = new LinkedHashMap<>();
+        Set<UUID> unreadable = new HashSet<>();
+        boolean complete = true;
+        for (ProgressionJournal.Entry entry : entries) {
+            UUID playerUUID = entry.getPlayerUUID();
+            if (unreadable.contains(playerUUID)) continue;
+
+            PlayerProgressRecord record = replayed.get(playerUUID);
+            if (record == null) {
+                try {
+                    record = backend.load(playerUUID);
+                } catch (IOException e) {
+                    // Не затираем повреждённый снимок частичным состоянием из журнала
+                    CraftMastery.logger.error("Failed to load progression for {}: {}", playerUUID, e.getMessage());
+                    unreadable.add(playerUUID);
+                    complete = false;
+                    continue;
+                }
+                if (record == null) {
+                    record = PlayerProgressRecord.fromExperienceData(playerUUID, new PlayerExperienceData(playerUUID));
+                }
+                replayed.put(playerUUID, record);
+            }
+            if (record.journalId == null || record.journalId.equals(opened.getId())) {
+                if (entry.sequence <= record.journalSequence) continue;
+            } else if (backend.isShared()) {
+                // Снимок записан другим сервером общей базы: номера его журнала с нашими не сравнить,
+                // и события, возможно уже учтённые в снимке, применились бы повторно
+                CraftMastery.logger.warn("Skipping journal events for {}: snapshot was written by another server", playerUUID);
+                replayed.remove(playerUUID);
+                unreadable.add(playerUUID);
+                continue;
+            }
+
+            try {
+                ProgressionCodec.applyEvent(record, entry, recipeIds);
+            } catch (IOException e) {
+                CraftMastery.logger.error("Skipping journal event {} for {}: {}", entry.sequence, entry.getPlayerUUID(), e.getMessage());
+                complete = false;
+            }
+        }
+
+        if (!replayed.isEmpty()) {
+            for (PlayerProgressRecord record : replayed.values()) {
+                record.journalId = opened.getId();
+            }
+            complete &= writeBatch(new ArrayList<>(replayed.values()));
+            CraftMastery.logger.info("Recovered progression of {} players from {} journal events", replayed.size(), entries.size());
+        }
+
+        try {
+            long boundary = opened.start();
+            if (complete) {
+                opened.deleteSegmentsBefore(boundary);
+            }
+        } catch (IOException e) {
+            CraftMastery.logger.error("Failed to open progression journal, continuing without it: {}", e.getMessage());
+            return null;
+        }
+        return opened;
+    }
+
+    private static ProgressionBackend createBackend() {
+        if ("sql".equalsIgnoreCase(ModConfig.progressionBackend)) {
+            return new SqlProgressionBackend(ModConfig.progressionJdbcUrl);
+        }
+        return new FileProgressionBackend();
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Читает таблицу ID рецептов и сразу выдаёт индексы рецептам, которых в ней ещё нет
+     */
+    private static RecipeIdTable openRecipeTable(ProgressionBackend opened) {
+        RecipeIdTable table = new RecipeIdTable(opened);
+        try {
+            table.refresh();
+            table.ensureIndexed(RecipeManager.getInstance().getOrdinalIds());
+            return table;
+        } catch (IOException e) {
+            // Без таблицы битовые наборы в снимках игроков не расшифровать — не продолжаем молча
+            throw new IllegalStateException("Failed to load recipe id table", e);
+        }
+    }
+
+    /**
+     * Переносит старые хранилища мира (если они ещё есть) в хранилище снимков
+     */
+    private void migrateLegacy(File dataDirectory) {
+        Map<UUID, PlayerProgressRecord> legacy = LegacyProgressMigration.read(dataDirectory);
+        if (legacy.isEmpty()) {
+            LegacyProgressMigration.retire(dataDirectory);
+            return;
+        }
+
+        List<PlayerProgressRecord> migrated = new ArrayList<>();
+        for (PlayerProgressRecord record : legacy.values()) {
+            try {
+                if (backend.load(record.getPlayerUUID()) != null) continue;
+            } catch (IOException e) {
+                continue; // Уже есть (пусть и повреждённый) снимок — старые данные его не заменяют
+            }
+            migrated.add(record);
+        }
+
+        try {
+            backend.store(migrated);
+        } catch (IOException e) {
+            CraftMastery.logger.error("Failed to migrate legacy progression: {}", e.getMessage());
+            return; // Старые файлы остаются, перенос повторится при следующем запуске
+        }
+
+        LegacyProgressMigration.retire(dataDirectory);
+        CraftMastery.logger.info("Migrated {} players from legacy experience storage", migrated.size());
+    }
+
+    /**
+     * Снимок, прочитанный потоком загрузки (failed — прочитать не удалось)
+     */
+    private static final class CompletedLoad {
+        final UUID playerUUID;
+        final PlayerProgressRecord record;
+        final boolean failed;
+
+        CompletedLoad(UUID playerUUID, PlayerProgressRecord record, boolean failed) {
+            this.playerUUID = playerUUID;
+            this.record = record;
+            this.failed = failed;
+        }
+    }
+}
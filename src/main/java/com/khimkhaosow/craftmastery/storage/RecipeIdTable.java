@@ -0,0 +1,93 @@
+package com.khimkhaosow.craftmastery.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Постоянная таблица ID рецептов мира. Индекс выдаётся рецепту один раз и больше не меняется,
+ * поэтому битовые наборы изученных рецептов в файлах игроков остаются корректными при добавлении
+ * и удалении рецептов (в отличие от порядковых номеров RecipeManager, действующих в пределах запуска).
+ * Новые индексы выдаёт ProgressionBackend (для общей базы — в транзакции), и таблица сразу
+ * записывается, поэтому индекс попадает в снимок игрока только после того, как закреплён в хранилище,
+ * и несколько серверов с общей базой не выдают один индекс разным рецептам.
+ * Методы синхронизированы: таблицей пользуются серверный поток и поток загрузки.
+ */
+public class RecipeIdTable {
+
+    private final ProgressionBackend backend;
+
+    private final List<String> ids = new ArrayList<>();
+    private final Map<String, Integer> indices = new HashMap<>();
+
+    public RecipeIdTable(ProgressionBackend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * Перечитывает таблицу из хранилища (другие серверы общей базы могли выдать новые индексы)
+     */
+    public synchronized void refresh() throws IOException {
+        List<String> stored = backend != null ? backend.loadRecipeTable() : null;
+        replace(stored != null ? stored : Collections.<String>emptyList());
+    }
+
+    /**
+     * Выдаёт индексы всем ещё не известным рецептам одним обращением к хранилищу
+     */
+    public synchronized void ensureIndexed(Collection<String> recipeIds) throws IOException {
+        Set<String> missing = new LinkedHashSet<>();
+        for (String recipeId : recipeIds) {
+            if (!indices.containsKey(recipeId)) {
+                missing.add(recipeId);
+            }
+        }
+        if (missing.isEmpty()) return;
+        if (backend == null) {
+            throw new IOException("Progression storage is not open");
+        }
+        replace(backend.allocateRecipeIds(new ArrayList<>(missing)));
+    }
+
+    /**
+     * Получает индекс рецепта, выдавая новый для неизвестного ID
+     */
+    public synchronized int indexOf(String recipeId) throws IOException {
+        Integer index = indices.get(recipeId);
+        if (index == null) {
+            ensureIndexed(Collections.singletonList(recipeId));
+            index = indices.get(recipeId);
+            if (index == null) {
+                throw new IOException("Storage did not allocate an index for recipe " + recipeId);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Получает ID рецепта по индексу или null
+     */
+    public synchronized String idAt(int index) {
+        return index >= 0 && index < ids.size() ? ids.get(index) : null;
+    }
+
+    public synchronized int size() {
+        return ids.size();
+    }
+
+    private void replace(List<String> storedIds) {
+        ids.clear();
+        indices.clear();
+        for (String id : storedIds) {
+            // Если два сервера одновременно выдали рецепту два индекса, оба читаются, а пишется первый
+            indices.putIfAbsent(id, ids.size());
+            ids.add(id);
+        }
+    }
+}
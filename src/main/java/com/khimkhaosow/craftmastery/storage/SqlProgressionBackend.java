@@ -0,0 +1,259 @@
+package com.khimkhaosow.craftmastery.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.UUID;
+
+import com.khimkhaosow.craftmastery.CraftMastery;
+
+/**
+ * Хранение прогресса в SQL-базе, общей для нескольких серверов.
+ * По умолчанию — встроенная SQLite в файле мира: её драйвер собран в jar мода, отдельный сервер не нужен.
+ * Для H2 или MySQL/MariaDB драйвер кладётся в mods. Адрес базы задаётся
+ * ModConfig.progressionJdbcUrl ({world} заменяется на каталог мира). Снимок игрока хранится
+ * тем же двоичным ProgressionCodec в BLOB, таблица ID рецептов — построчно.
+ * Записи одной пачки выполняются в одной транзакции пакетными upsert'ами через подготовленные запросы.
+ * Новые индексы рецептов выдаются в транзакции обычной вставкой после повторного чтения таблицы:
+ * если другой сервер успел занять те же индексы, вставка нарушает первичный ключ и повторяется.
+ * Соединение одно, все обращения к нему синхронизированы.
+ */
+public class SqlProgressionBackend implements ProgressionBackend {
+
+    private static final String PLAYERS_TABLE = "craftmastery_players";
+    private static final String RECIPES_TABLE = "craftmastery_recipe_ids";
+
+    // Попытки выдать индексы рецептов при одновременной выдаче другими серверами
+    private static final int ALLOCATE_ATTEMPTS = 5;
+
+    private final String url;
+
+    private Connection connection;
+    private Dialect dialect;
+
+    public SqlProgressionBackend(String url) {
+        this.url = url;
+    }
+
+    @Override
+    public String getName() {
+        return "sql";
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    @Override
+    public synchronized void open(File worldDirectory) throws IOException {
+        String resolved = url.replace("{world}", worldDirectory.getAbsolutePath().replace('\\', '/'));
+        try {
+            connection = connect(resolved);
+            dialect = Dialect.detect(connection.getMetaData().getDatabaseProductName());
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + PLAYERS_TABLE
+                    + " (uuid VARCHAR(36) NOT NULL PRIMARY KEY, data BLOB NOT NULL)");
+                statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + RECIPES_TABLE
+                    + " (idx INT NOT NULL PRIMARY KEY, recipe_id VARCHAR(255) NOT NULL)");
+            }
+            connection.setAutoCommit(false);
+            connection.commit();
+        } catch (SQLException e) {
+            close();
+            throw new IOException("Unable to open progression database " + resolved + ": " + e.getMessage(), e);
+        }
+        CraftMastery.logger.info("Connected to progression database ({})", dialect);
+    }
+
+    @Override
+    public synchronized List<String> loadRecipeTable() throws IOException {
+        List<String> ids;
+        try {
+            ids = readRecipeTable();
+            connection.commit();
+        } catch (SQLException e) {
+            throw new IOException("Failed to read recipe id table: " + e.getMessage(), e);
+        }
+        return ids.isEmpty() ? null : ids;
+    }
+
+    @Override
+    public synchronized List<String> allocateRecipeIds(List<String> recipeIds) throws IOException {
+        SQLException failure = null;
+        for (int attempt = 0; attempt < ALLOCATE_ATTEMPTS; attempt++) {
+            try {
+                List<String> table = readRecipeTable();
+                Set<String> known = new HashSet<>(table);
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "INSERT INTO " + RECIPES_TABLE + " (idx, recipe_id) VALUES (?, ?)")) {
+                    for (String recipeId : recipeIds) {
+                        if (known.add(recipeId)) {
+                            statement.setInt(1, table.size());
+                            statement.setString(2, recipeId);
+                            statement.addBatch();
+                            table.add(recipeId);
+                        }
+                    }
+                    statement.executeBatch();
+                }
+                connection.commit();
+                return table;
+            } catch (SQLException e) {
+                // Скорее всего, другой сервер занял те же индексы — перечитываем таблицу и пробуем снова
+                rollback();
+                failure = e;
+            } catch (IOException e) {
+                rollback();
+                throw e;
+            }
+        }
+        throw new IOException("Failed to allocate recipe ids: " + failure.getMessage(), failure);
+    }
+
+    @Override
+    public synchronized PlayerProgressRecord load(UUID playerUUID) throws IOException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT data FROM " + PLAYERS_TABLE + " WHERE uuid = ?")) {
+            statement.setString(1, playerUUID.toString());
+            byte[] data = null;
+            try (ResultSet result = statement.executeQuery()) {
+                if (result.next()) {
+                    data = result.getBytes(1);
+                }
+            }
+            connection.commit();
+            return data != null ? ProgressionCodec.decode(data) : null;
+        } catch (SQLException e) {
+            throw new IOException("Failed to read progression for " + playerUUID + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void store(List<PlayerProgressRecord> records) throws IOException {
+        if (records.isEmpty()) return;
+        try {
+            try (PreparedStatement statement = connection.prepareStatement(dialect.upsert(PLAYERS_TABLE, "uuid", "data"))) {
+                for (PlayerProgressRecord record : records) {
+                    statement.setString(1, record.getPlayerUUID().toString());
+                    statement.setBytes(2, ProgressionCodec.encode(record));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw new IOException("Failed to save progression batch: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            CraftMastery.logger.warn("Failed to close progression database: {}", e.getMessage());
+        }
+        connection = null;
+    }
+
+    /**
+     * Читает таблицу ID рецептов в текущей транзакции
+     */
+    private List<String> readRecipeTable() throws SQLException, IOException {
+        List<String> ids = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT idx, recipe_id FROM " + RECIPES_TABLE + " ORDER BY idx")) {
+            while (result.next()) {
+                if (result.getInt(1) != ids.size()) {
+                    throw new IOException("Recipe id table has a gap at index " + ids.size());
+                }
+                ids.add(result.getString(2));
+            }
+        }
+        return ids;
+    }
+
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            CraftMastery.logger.warn("Failed to roll back progression batch: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Ищет драйвер через ServiceLoader загрузчика мода: DriverManager не видит классы,
+     * загруженные загрузчиком Forge
+     */
+    private static Connection connect(String url) throws SQLException {
+        for (Driver driver : ServiceLoader.load(Driver.class, SqlProgressionBackend.class.getClassLoader())) {
+            if (driver.acceptsURL(url)) {
+                Connection connection = driver.connect(url, new Properties());
+                if (connection != null) return connection;
+            }
+        }
+        throw new SQLException("No JDBC driver found for " + url);
+    }
+
+    /**
+     * Синтаксис upsert для поддерживаемых баз (первый столбец — ключ)
+     */
+    private enum Dialect {
+        SQLITE,
+        H2,
+        MYSQL;
+
+        static Dialect detect(String productName) throws SQLException {
+            String name = productName.toLowerCase();
+            if (name.contains("sqlite")) return SQLITE;
+            if (name.contains("h2")) return H2;
+            if (name.contains("mysql") || name.contains("mariadb")) return MYSQL;
+            throw new SQLException("Unsupported database " + productName);
+        }
+
+        String upsert(String table, String... columns) {
+            StringBuilder sql = new StringBuilder();
+            switch (this) {
+                case SQLITE:
+                    sql.append("INSERT OR REPLACE INTO ");
+                    break;
+                case H2:
+                    sql.append("MERGE INTO ");
+                    break;
+                default:
+                    sql.append("INSERT INTO ");
+                    break;
+            }
+            sql.append(table).append(" (").append(String.join(", ", columns)).append(")");
+            if (this == H2) {
+                sql.append(" KEY (").append(columns[0]).append(")");
+            }
+            sql.append(" VALUES (");
+            for (int i = 0; i < columns.length; i++) {
+                sql.append(i > 0 ? ", ?" : "?");
+            }
+            sql.append(")");
+            if (this == MYSQL) {
+                sql.append(" ON DUPLICATE KEY UPDATE ");
+                for (int i = 1; i < columns.length; i++) {
+                    if (i > 1) sql.append(", ");
+                    sql.append(columns[i]).append(" = VALUES(").append(columns[i]).append(")");
+                }
+            }
+            return sql.toString();
+        }
+    }
+}
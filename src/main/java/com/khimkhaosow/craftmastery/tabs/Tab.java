@@ -8,6 +8,7 @@ import java.util.UUID;
 
 import com.khimkhaosow.craftmastery.CraftMastery;
 import com.khimkhaosow.craftmastery.experience.PointsType;
+import com.khimkhaosow.craftmastery.storage.ProgressionStore;
 
 import net.minecraft.util.text.TextFormatting;
 
@@ -125,13 +126,17 @@ public class Tab {
             return;
         }
 
+        ProgressionStore progression = ProgressionStore.getInstance();
+
         // Тратим спец-очки
         if (requiredSpecialPoints > 0) {
             expData.spendPoints(PointsType.SPECIAL, requiredSpecialPoints);
+            progression.recordPoints(playerUUID, PointsType.SPECIAL, -requiredSpecialPoints);
         }
 
         // Отмечаем как изученную
         studiedByPlayers.add(playerUUID);
+        progression.recordTab(playerUUID, id, true);
 
         CraftMastery.logger.info("Player {} studied tab {}", playerUUID, id);
     }
@@ -149,20 +154,36 @@ public class Tab {
             return;
         }
 
+        ProgressionStore progression = ProgressionStore.getInstance();
+
         // Тратим очки сброса
         expData.spendPoints(PointsType.RESET_SPECIAL, resetCost);
+        progression.recordPoints(playerUUID, PointsType.RESET_SPECIAL, -resetCost);
 
         // Убираем из изученных
         studiedByPlayers.remove(playerUUID);
+        progression.recordTab(playerUUID, id, false);
 
         CraftMastery.logger.info("Player {} reset tab {}", playerUUID, id);
     }
 
     public void forceStudyForPlayer(UUID playerUUID) {
         studiedByPlayers.add(playerUUID);
+        ProgressionStore.getInstance().recordTab(playerUUID, id, true);
         CraftMastery.logger.info("Player {} force-studied tab {}", playerUUID, id);
     }
 
+    /**
+     * Устанавливает отметку изучения без проверок и списания очков (при загрузке прогресса)
+     */
+    public void setStudiedByPlayer(UUID playerUUID, boolean studied) {
+        if (studied) {
+            studiedByPlayers.add(playerUUID);
+        } else {
+            studiedByPlayers.remove(playerUUID);
+        }
+    }
+
     /**
      * Проверяет, изучена ли вкладка игроком
      */
@@ -1,12 +1,11 @@
 package com.khimkhaosow.craftmastery.tabs;
 
-import com.khimkhaosow.craftmastery.config.RecipeTreeConfigManager;
-import com.khimkhaosow.craftmastery.config.RecipeTreeConfigManager.NodeData;
 import com.khimkhaosow.craftmastery.config.RecipeTreeConfigManager.TabData;
 import com.khimkhaosow.craftmastery.permissions.PermissionManager;
 import com.khimkhaosow.craftmastery.permissions.PermissionType;
-import com.khimkhaosow.craftmastery.recipe.RecipeEntry;
+import com.khimkhaosow.craftmastery.recipe.PrerequisiteGraph;
 import com.khimkhaosow.craftmastery.recipe.RecipeManager;
+import com.khimkhaosow.craftmastery.recipe.RecipeProgressStore;
 
 import net.minecraft.entity.player.EntityPlayer;
 
@@ -15,7 +14,6 @@ import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 
@@ -51,14 +49,11 @@ public final class TabAvailabilityHelper {
             }
         }
 
-        // Required nodes
-        for (String requiredNodeId : safeList(tabData.requiredNodes)) {
-            String trimmed = requiredNodeId.trim();
-            if (trimmed.isEmpty()) {
-                continue;
-            }
-            if (!isNodeStudied(player, trimmed)) {
-                reasons.add(String.format("Нужно изучить узел \"%s\"", trimmed));
+        // Required nodes (unknown nodes are dropped by the graph so that configuration typos do not brick the GUI)
+        PrerequisiteGraph graph = RecipeManager.getInstance().getPrerequisiteGraph();
+        for (int nodeIndex : graph.getTabRequiredNodes(tabData.id)) {
+            if (!isNodeStudied(graph, playerUUID, nodeIndex)) {
+                reasons.add(String.format("Нужно изучить узел \"%s\"", graph.getNodeId(nodeIndex)));
             }
         }
 
@@ -97,22 +92,13 @@ public final class TabAvailabilityHelper {
         return false;
     }
 
-    private static boolean isNodeStudied(EntityPlayer player, String nodeId) {
-        Optional<NodeData> nodeOptional = RecipeTreeConfigManager.getInstance().getNode(nodeId);
-        if (!nodeOptional.isPresent()) {
-            // Unknown node – treat as satisfied so that configuration typos do not brick the GUI
-            return true;
-        }
-        NodeData node = nodeOptional.get();
-        if (node.recipeId == null || node.recipeId.trim().isEmpty()) {
-            // Custom nodes without recipes are considered always available for now
-            return true;
-        }
-        RecipeEntry recipe = RecipeManager.getInstance().getRecipe(node.recipeId);
-        if (recipe == null) {
+    private static boolean isNodeStudied(PrerequisiteGraph graph, UUID playerUUID, int nodeIndex) {
+        int recipeOrdinal = graph.getNodeRecipe(nodeIndex);
+        if (recipeOrdinal < 0) {
+            // Custom nodes without recipes (or with missing recipes) are considered always available for now
             return true;
         }
-        return recipe.isStudiedByPlayer(player.getUniqueID());
+        return RecipeProgressStore.getInstance().isStudied(playerUUID, recipeOrdinal);
     }
 
     private static PermissionType resolvePermission(String permissionId) {